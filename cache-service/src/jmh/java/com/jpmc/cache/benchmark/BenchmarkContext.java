@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package com.jpmc.cache.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jpmc.cache.CacheServiceApplication;
+import com.jpmc.cache.TestEmployees;
+import com.jpmc.cache.model.Employee;
+
+/**
+ * Starts the cache service application, by default without its web server, against
+ * a private in-memory H2 database for a benchmark trial, and seeds the {@code employees}
+ * table.
+ *
+ * @author r.pandiarajan
+ */
+final class BenchmarkContext
+{
+    private static final int INSERT_BATCH_SIZE = 1_000;
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Starts the application with logging and SQL output turned down, so that the
+     * benchmarks measure the cache rather than the console.
+     *
+     * @param properties Properties overriding the application defaults.
+     * @return The started application context.
+     */
+    static ConfigurableApplicationContext start(Map<String, Object> properties) {
+        return start(properties, WebApplicationType.NONE);
+    }
+
+    /**
+     * Starts the application like {@link #start(Map)}, with the given web application type.
+     *
+     * @param properties Properties overriding the application defaults.
+     * @param webApplicationType {@link WebApplicationType#SERVLET} to start the web server.
+     * @return The started application context.
+     */
+    static ConfigurableApplicationContext start(Map<String, Object> properties, WebApplicationType webApplicationType) {
+        Map<String, Object> defaults = new HashMap<>();
+        defaults.put("spring.profiles.active", "local");
+        defaults.put("spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        defaults.put("spring.h2.console.enabled", "false");
+        defaults.put("spring.jpa.show-sql", "false");
+        defaults.put("logging.level.root", "WARN");
+        defaults.put("logging.level.org.springframework.web", "WARN");
+        defaults.put("logging.level.com.jpmc.cache", "WARN");
+        defaults.putAll(properties);
+        // Passed as command line arguments, so that they override application.properties
+        String[] args = defaults.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(CacheServiceApplication.class)
+                .web(webApplicationType)
+                .run(args);
+    }
+
+    /**
+     * Inserts employees with IDs {@code 0} to {@code count - 1} with batched JDBC statements.
+     *
+     * @param context The application context.
+     * @param count The number of employees to insert.
+     */
+    static void insertEmployees(ConfigurableApplicationContext context, int count) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Long> ids = LongStream.range(0, count).boxed().toList();
+        jdbcTemplate.batchUpdate("INSERT INTO employees (id, name, salary) VALUES (?, ?, ?)", ids, INSERT_BATCH_SIZE,
+                (statement, id) -> {
+                    statement.setLong(1, id);
+                    statement.setString(2, "employee-" + id);
+                    statement.setDouble(3, 1000.0 + id);
+                });
+    }
+
+    /**
+     * @param id The ID of the employee.
+     * @return A new {@link Employee} shaped like the seeded rows.
+     */
+    static Employee employee(long id) {
+        return TestEmployees.employee(id, "employee-" + id, 1000.0 + id);
+    }
+}
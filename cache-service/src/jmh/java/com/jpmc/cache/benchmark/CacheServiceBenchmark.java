@@ -0,0 +1,102 @@
+/**
+ *
+ */
+package com.jpmc.cache.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.service.CacheService;
+
+/**
+ * Throughput and latency of the single-threaded {@link CacheService} hot paths: a
+ * cache hit, as an object and as JSON, a cache miss loaded from H2, and an add that
+ * evicts an entry.
+ *
+ * Each trial starts the application against its own H2 database seeded with ten
+ * times as many employees as the cache holds, and fills the cache with the first
+ * {@code cacheSize} of them.
+ *
+ * @author r.pandiarajan
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheServiceBenchmark
+{
+    private static final int DB_ROWS_PER_ENTRY = 10;
+
+    @Param({ "1000", "100000" })
+    int cacheSize;
+
+    @Param({ "HEAP", "OFF_HEAP" })
+    String storageMode;
+
+    private ConfigurableApplicationContext context;
+    private CacheService cacheService;
+    private int dbRows;
+    private final AtomicLong nextNewId = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dbRows = cacheSize * DB_ROWS_PER_ENTRY;
+        context = BenchmarkContext.start(Map.of(
+                "cache.max-size", cacheSize,
+                "cache.storage-mode", storageMode,
+                "cache.off-heap.max-bytes", cacheSize * 128L));
+        cacheService = context.getBean(CacheService.class);
+        BenchmarkContext.insertEmployees(context, dbRows);
+        cacheService.getMany(LongStream.range(0, cacheSize).boxed().toList());
+        nextNewId.set(dbRows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Employee getHit() {
+        return cacheService.get(ThreadLocalRandom.current().nextLong(cacheSize));
+    }
+
+    /**
+     * A hit answered with the JSON bytes kept for the entry, as by {@code GET /cache/get/{id}}.
+     */
+    @Benchmark
+    public byte[] getJsonHit() {
+        return cacheService.getJson(ThreadLocalRandom.current().nextLong(cacheSize));
+    }
+
+    @Benchmark
+    public Employee getMissThenLoad() {
+        return cacheService.get(ThreadLocalRandom.current().nextLong(cacheSize, dbRows));
+    }
+
+    @Benchmark
+    public void addWithEviction() {
+        cacheService.add(BenchmarkContext.employee(nextNewId.getAndIncrement()));
+    }
+}
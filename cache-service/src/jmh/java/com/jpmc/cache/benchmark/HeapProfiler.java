@@ -0,0 +1,118 @@
+/**
+ *
+ */
+package com.jpmc.cache.benchmark;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * JMH profiler reporting, for each iteration, the live heap and the pause of a full
+ * GC forced before the iteration, which traces every object the benchmark retains,
+ * then the number, total and longest of the GC pauses of the iteration, from the
+ * notifications of the {@link GarbageCollectorMXBean}s. The live heap and full GC
+ * pause are averaged over the iterations, the pauses and their total are summed,
+ * and the longest pause is the maximum. With G1, the young and mixed collections,
+ * and the remark and cleanup pauses of a concurrent cycle, are each one
+ * notification.
+ *
+ * Run with {@code -prof com.jpmc.cache.benchmark.HeapProfiler}.
+ *
+ * @author r.pandiarajan
+ */
+public class HeapProfiler implements InternalProfiler, NotificationListener
+{
+    private static final String SYSTEM_GC_CAUSE = "System.gc()";
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    private final LongAdder pauses = new LongAdder();
+    private final LongAdder pauseMillis = new LongAdder();
+    private final LongAccumulator maxPauseMillis = new LongAccumulator(Math::max, 0);
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private long liveHeap;
+    private long fullGcMillis;
+
+    @Override
+    public String getDescription() {
+        return "GC pauses, live heap and full GC pause per iteration";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        // Measured before the iteration, as the last one is followed by the trial teardown. The first
+        // collection frees the garbage of the previous iteration, the second one only traces the live heap.
+        System.gc();
+        long start = System.nanoTime();
+        System.gc();
+        fullGcMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        liveHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        pauses.reset();
+        pauseMillis.reset();
+        maxPauseMillis.reset();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(this, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+            IterationParams iterationParams, IterationResult result) {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(this);
+            }
+            catch (ListenerNotFoundException e) {
+                // Already removed
+            }
+        }
+        emitters.clear();
+        return List.of(
+                new ScalarResult("heap.live", liveHeap / BYTES_PER_MB, "MB", AggregationPolicy.AVG),
+                new ScalarResult("gc.full.pause", fullGcMillis, "ms", AggregationPolicy.AVG),
+                new ScalarResult("gc.pauses", pauses.sum(), "#", AggregationPolicy.SUM),
+                new ScalarResult("gc.pause.total", pauseMillis.sum(), "ms", AggregationPolicy.SUM),
+                new ScalarResult("gc.pause.max", maxPauseMillis.get(), "ms", AggregationPolicy.MAX));
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        // Collections forced by this profiler are notified asynchronously, possibly during the iteration
+        if (SYSTEM_GC_CAUSE.equals(info.getGcCause())) {
+            return;
+        }
+        long millis = info.getGcInfo().getDuration();
+        pauses.increment();
+        pauseMillis.add(millis);
+        maxPauseMillis.accumulate(millis);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ *
+ */
+package com.jpmc.cache.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.service.CacheService;
+
+/**
+ * Mixed read/write workload over {@link CacheService} with Zipfian-distributed
+ * keys: 90% {@code get} and 10% {@code add} of an existing ID, run at 1, 4 and 16
+ * threads. The key space is ten times the cache size, so the skew of the access
+ * pattern decides the hit ratio, and misses are loaded from H2.
+ *
+ * @author r.pandiarajan
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MixedWorkloadBenchmark
+{
+    private static final int KEY_SPACE_PER_ENTRY = 10;
+    private static final int SEQUENCE_LENGTH = 1 << 16;
+    private static final int WRITE_PERCENT = 10;
+
+    @State(Scope.Benchmark)
+    public static class Cache
+    {
+        @Param({ "1000", "100000" })
+        int cacheSize;
+
+        ConfigurableApplicationContext context;
+        CacheService cacheService;
+        ZipfianGenerator keys;
+        final AtomicLong seeds = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int keySpace = cacheSize * KEY_SPACE_PER_ENTRY;
+            context = BenchmarkContext.start(Map.of("cache.max-size", cacheSize));
+            cacheService = context.getBean(CacheService.class);
+            BenchmarkContext.insertEmployees(context, keySpace);
+            cacheService.getMany(LongStream.range(0, cacheSize).boxed().toList());
+            keys = new ZipfianGenerator(keySpace, ZipfianGenerator.DEFAULT_THETA);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Accesses
+    {
+        long[] keys;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Cache cache) {
+            keys = cache.keys.sequence(SEQUENCE_LENGTH, cache.seeds.incrementAndGet());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Employee mixedZipfian1Thread(Cache cache, Accesses accesses) {
+        return access(cache, accesses);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Employee mixedZipfian4Threads(Cache cache, Accesses accesses) {
+        return access(cache, accesses);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Employee mixedZipfian16Threads(Cache cache, Accesses accesses) {
+        return access(cache, accesses);
+    }
+
+    private static Employee access(Cache cache, Accesses accesses) {
+        int index = accesses.next++ & (SEQUENCE_LENGTH - 1);
+        long id = accesses.keys[index];
+        if (index % 100 < WRITE_PERCENT) {
+            Employee employee = BenchmarkContext.employee(id);
+            cache.cacheService.add(employee);
+            return employee;
+        }
+        return cache.cacheService.get(id);
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ *
+ */
+package com.jpmc.cache.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.protocol.BinaryCacheClient;
+import com.jpmc.cache.protocol.BinaryProtocolServer;
+import com.jpmc.cache.service.CacheService;
+
+/**
+ * Cache hits served over the network: {@code GET /cache/get/{id}} over HTTP/1.1 with
+ * a keep-alive connection, against a GET of the {@link com.jpmc.cache.protocol.BinaryProtocol}
+ * one request at a time and pipelined by {@value #PIPELINE_DEPTH}, each client thread
+ * holding its own connection. Responses are decoded to {@link Employee} on both paths.
+ *
+ * @author r.pandiarajan
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ProtocolBenchmark
+{
+    private static final int CACHE_SIZE = 10_000;
+    private static final int PIPELINE_DEPTH = 32;
+
+    @State(Scope.Benchmark)
+    public static class Server
+    {
+        ConfigurableApplicationContext context;
+        String baseUrl;
+        int binaryPort;
+        final ObjectMapper objectMapper = new ObjectMapper();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            context = BenchmarkContext.start(Map.of(
+                    "server.port", 0,
+                    "cache.max-size", CACHE_SIZE,
+                    "cache.binary.enabled", true,
+                    "cache.binary.port", 0), WebApplicationType.SERVLET);
+            BenchmarkContext.insertEmployees(context, CACHE_SIZE);
+            context.getBean(CacheService.class).getMany(LongStream.range(0, CACHE_SIZE).boxed().toList());
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            binaryPort = context.getBean(BinaryProtocolServer.class).getPort();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client
+    {
+        HttpClient httpClient;
+        BinaryCacheClient binaryClient;
+
+        @Setup(Level.Trial)
+        public void setUp(Server server) {
+            httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            binaryClient = new BinaryCacheClient("localhost", server.binaryPort, server.objectMapper);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            binaryClient.close();
+            httpClient.close();
+        }
+    }
+
+    @Benchmark
+    public Employee restGet(Server server, Client client) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(server.baseUrl + "/cache/get/" + randomId())).build();
+        byte[] body = client.httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray()).body();
+        return server.objectMapper.readValue(body, Employee.class);
+    }
+
+    @Benchmark
+    public Employee binaryGet(Client client) {
+        return client.binaryClient.get(randomId());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public List<Employee> binaryGetPipelined(Client client) {
+        List<Long> ids = new ArrayList<>(PIPELINE_DEPTH);
+        for (int i = 0; i < PIPELINE_DEPTH; i++) {
+            ids.add(randomId());
+        }
+        return client.binaryClient.getPipelined(ids);
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(CACHE_SIZE);
+    }
+}
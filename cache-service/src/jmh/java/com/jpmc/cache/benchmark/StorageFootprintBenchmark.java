@@ -0,0 +1,86 @@
+/**
+ *
+ */
+package com.jpmc.cache.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.service.CacheService;
+
+/**
+ * Heap footprint and GC pauses of a full cache, for both storage modes, to be run
+ * with the {@link HeapProfiler}. Each trial fills the cache with {@code entries}
+ * employees loaded from H2, then empties the table, so that the live heap is that
+ * of the application and the cache only. The heap retained by the cache is the
+ * difference between the live heaps of the two cache sizes. The measured workload
+ * is {@code get} hits only: an {@code add} keeps its entry on the heap until it is
+ * written back, in both modes, so writes would hide the footprint of the store.
+ *
+ * The fork runs G1 in a fixed 2 GB heap, so that the collector does not depend on
+ * the machine.
+ *
+ * @author r.pandiarajan
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = { "-XX:+UseG1GC", "-Xms2g", "-Xmx2g", "-XX:MaxDirectMemorySize=1g" })
+@State(Scope.Benchmark)
+public class StorageFootprintBenchmark
+{
+    private static final int FILL_CHUNK_SIZE = 10_000;
+
+    @Param({ "1000", "1000000" })
+    int entries;
+
+    @Param({ "HEAP", "OFF_HEAP" })
+    String storageMode;
+
+    private ConfigurableApplicationContext context;
+    private CacheService cacheService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(Map.of(
+                "cache.max-size", entries,
+                "cache.storage-mode", storageMode,
+                "cache.off-heap.max-bytes", entries * 128L));
+        cacheService = context.getBean(CacheService.class);
+        BenchmarkContext.insertEmployees(context, entries);
+        for (long from = 0; from < entries; from += FILL_CHUNK_SIZE) {
+            cacheService.getMany(LongStream.range(from, Math.min(from + FILL_CHUNK_SIZE, entries)).boxed().toList());
+        }
+        context.getBean(JdbcTemplate.class).execute("TRUNCATE TABLE employees");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Employee getHit() {
+        return cacheService.get(ThreadLocalRandom.current().nextLong(entries));
+    }
+}
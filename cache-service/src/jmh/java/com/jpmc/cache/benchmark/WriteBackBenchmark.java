@@ -0,0 +1,101 @@
+/**
+ *
+ */
+package com.jpmc.cache.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.repository.EmployeeRepository;
+import com.jpmc.cache.repository.JdbcEmployeeWriter;
+
+/**
+ * Throughput of writing back a batch of evicted entries to H2, in entries per
+ * millisecond, with one {@link EmployeeRepository#save(Object)} per entry, with
+ * {@link EmployeeRepository#saveAll(Iterable)} as the write-behind queue does, and
+ * with the batched upserts of the {@link JdbcEmployeeWriter}.
+ *
+ * Each trial seeds the {@code employees} table; three quarters of every batch update
+ * seeded rows with a new salary, as evictions of cached entries do, and the rest
+ * insert new rows.
+ *
+ * @author r.pandiarajan
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBackBenchmark
+{
+    private static final int DB_ROWS = 100_000;
+    private static final int BATCH_SIZE = 100;
+
+    @Param({ "SAVE", "SAVE_ALL", "JDBC_UPSERT" })
+    String writer;
+
+    private ConfigurableApplicationContext context;
+    private EmployeeRepository employeeRepository;
+    private JdbcEmployeeWriter jdbcWriter;
+    private long nextNewId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(Map.of(
+                "cache.jdbc-writer.enabled", true,
+                "cache.jdbc-writer.batch-size", BATCH_SIZE,
+                "cache.write-behind.enabled", false));
+        employeeRepository = context.getBean(EmployeeRepository.class);
+        jdbcWriter = context.getBean(JdbcEmployeeWriter.class);
+        BenchmarkContext.insertEmployees(context, DB_ROWS);
+        nextNewId = DB_ROWS;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void writeBatch() {
+        List<Employee> batch = batch();
+        switch (writer) {
+            case "SAVE" -> batch.forEach(employeeRepository::save);
+            case "SAVE_ALL" -> employeeRepository.saveAll(batch);
+            default -> jdbcWriter.upsertAll(batch);
+        }
+    }
+
+    private List<Employee> batch() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Employee> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Employee employee = BenchmarkContext.employee(i % 4 == 3 ? nextNewId++ : random.nextLong(DB_ROWS));
+            employee.setSalary(random.nextDouble(1000.0, 100_000.0));
+            batch.add(employee);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ *
+ */
+package com.jpmc.cache.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Generates integers in {@code [0, items)} following a Zipfian distribution, where
+ * low values are the most popular, using the algorithm from Gray et al., "Quickly
+ * Generating Billion-Record Synthetic Databases" (as popularized by YCSB).
+ *
+ * @author r.pandiarajan
+ */
+final class ZipfianGenerator
+{
+    /** Skew of the YCSB workloads; higher values concentrate accesses on fewer items. */
+    static final double DEFAULT_THETA = 0.99;
+
+    private final long items;
+    private final double theta;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+
+    ZipfianGenerator(long items, double theta) {
+        this.items = items;
+        this.theta = theta;
+        double zeta2 = zeta(2, theta);
+        this.zetaN = zeta(items, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetaN);
+    }
+
+    long next(SplittableRandom random) {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+
+    /**
+     * Pre-computes a sequence of values, so that drawing keys costs a benchmark
+     * thread only an array read.
+     *
+     * @param length The number of values, which must be a power of two.
+     * @param seed The seed of the random sequence.
+     * @return The generated values.
+     */
+    long[] sequence(int length, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = next(random);
+        }
+        return values;
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ *
+ */
+package com.jpmc.cache.actuator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.jpmc.cache.service.CacheMetrics;
+import com.jpmc.cache.service.CacheService;
+import com.jpmc.cache.service.WriteBehindQueue;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Actuator endpoint summarizing the effectiveness of the {@link com.jpmc.cache.model.Employee}
+ * cache in a single view: hit ratio, evictions, write-backs failed or skipped, refreshes,
+ * occupancy and the latencies of DB loads and eviction saves. It is exposed on the web
+ * as {@code /actuator/cache-stats}; the underlying meters are also available from the
+ * {@code metrics} endpoint.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@Endpoint(id = "cacheStats")
+public class CacheStatsEndpoint
+{
+    /** Service owning the cache and its {@link CacheMetrics}. */
+    @Autowired
+    CacheService cacheService;
+
+    /** Queue of evicted entries not yet saved, absent when write-behind is disabled. */
+    @Autowired(required = false)
+    WriteBehindQueue writeBehindQueue;
+
+    /**
+     * @return The current statistics of the cache.
+     */
+    @ReadOperation
+    public CacheStats cacheStats() {
+        CacheMetrics metrics = cacheService.getMetrics();
+        long hits = metrics.getHits();
+        long misses = metrics.getMisses();
+        long lookups = hits + misses;
+        return new CacheStats(hits, misses, lookups == 0 ? 0.0 : (double) hits / lookups, metrics.getPuts(),
+                metrics.getEvictions(), metrics.getWriteBackFailures(), metrics.getSkippedWriteBacks(),
+                writeBackPending(), metrics.getStaleHits(), metrics.getRefreshes(), metrics.getRefreshFailures(),
+                cacheService.getCache().size(), cacheService.getMaxCacheSize(), cacheService.getTargetCacheSize(),
+                LatencyStats.of(metrics.getLoads()), LatencyStats.of(metrics.getEvictionSaves()));
+    }
+
+    private int writeBackPending() {
+        return writeBehindQueue == null ? 0 : writeBehindQueue.size();
+    }
+
+    /**
+     * Statistics of the cache since the application started.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class CacheStats
+    {
+        private long hits;
+        private long misses;
+        private double hitRatio;
+        private long puts;
+        private long evictions;
+        private long writeBackFailures;
+        private long writeBackSkipped;
+        private int writeBackPending;
+        private long staleHits;
+        private long refreshes;
+        private long refreshFailures;
+        private int size;
+        private int maxSize;
+        /** Maximum size a resize in progress is evicting down to; the maximum size otherwise. */
+        private int targetSize;
+        private LatencyStats load;
+        private LatencyStats evictionSave;
+    }
+
+    /**
+     * Count and latencies, in milliseconds, of a timed operation.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class LatencyStats
+    {
+        private long count;
+        private double meanMillis;
+        private double maxMillis;
+
+        static LatencyStats of(Timer timer) {
+            return new LatencyStats(timer.count(), timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/**
+ *
+ */
+package com.jpmc.cache.actuator;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import com.jpmc.cache.service.CacheWarmer;
+
+/**
+ * Health indicator reporting {@code OUT_OF_SERVICE} while the {@link CacheWarmer}
+ * has not filled the cache enough to take traffic. It is part of the readiness
+ * group, so {@code /actuator/health/readiness} keeps a new instance out of the load
+ * balancer until its cache is warm, while liveness is unaffected.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+public class CacheWarmUpHealthIndicator implements HealthIndicator
+{
+    /** Warmer filling the cache on startup. */
+    @Autowired
+    CacheWarmer cacheWarmer;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = cacheWarmer.isReady() ? Health.up() : Health.outOfService();
+        return builder.withDetail("source", cacheWarmer.getSource())
+                .withDetail("complete", cacheWarmer.isComplete())
+                .withDetail("loaded", cacheWarmer.getLoaded())
+                .withDetail("target", cacheWarmer.getTarget())
+                .build();
+    }
+}
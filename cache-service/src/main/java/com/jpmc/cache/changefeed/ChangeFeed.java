@@ -0,0 +1,372 @@
+/**
+ *
+ */
+package com.jpmc.cache.changefeed;
+
+import java.sql.DatabaseMetaData;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import com.jpmc.cache.service.CacheMetrics;
+import com.jpmc.cache.service.CacheService;
+
+import io.micrometer.core.instrument.Counter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the cache in line with changes made to the {@code employees} table by other
+ * systems, writing to the database directly.
+ *
+ * Triggers on the table append the ID of every row inserted, updated or deleted to
+ * the {@code employee_changes} table, in the transaction of the change, together with
+ * an increasing sequence number and the time of the change. The feed creates the
+ * table and the triggers on startup if they are missing: SQL triggers on MySQL, and
+ * the {@link EmployeeChangeTrigger} class on H2. Every
+ * {@code cache.change-feed.poll-interval-ms}, it reads the changes past the last
+ * sequence number it applied, {@code cache.change-feed.batch-size} at a time until
+ * none is left, and passes the changed IDs of each batch to
+ * {@link CacheService#applyDatabaseChanges(java.util.Collection, java.util.Collection, boolean)},
+ * which replaces or drops the clean cached entries of these rows.
+ *
+ * Sequence numbers are allocated when a change is made but become visible when its
+ * transaction commits, so a number skipped by a read may still show up later. Skipped
+ * numbers are read again on every poll until they appear or
+ * {@code cache.change-feed.gap-timeout-ms} elapses, as rolled back changes leave
+ * gaps too. Changes older than {@code cache.change-feed.retention-ms} are deleted.
+ *
+ * The lag of the feed, from the time a change is made to the time it is applied to
+ * the cache, is published as the {@code cache.change-feed.lag} gauge. While polls
+ * fail, the time since the last successful poll is added to it.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.change-feed.enabled", havingValue = "true")
+@Slf4j
+public class ChangeFeed
+{
+    static final String INSERT = "I";
+    static final String UPDATE = "U";
+    static final String DELETE = "D";
+    static final String INSERT_CHANGE = "INSERT INTO employee_changes (employee_id, op) VALUES (?, ?)";
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS employee_changes ("
+            + "seq BIGINT AUTO_INCREMENT PRIMARY KEY, employee_id BIGINT NOT NULL, op CHAR(1) NOT NULL, "
+            + "changed_at TIMESTAMP(3) DEFAULT CURRENT_TIMESTAMP(3) NOT NULL)";
+    private static final String SELECT_CHANGES = "SELECT seq, employee_id, op, changed_at, CURRENT_TIMESTAMP(3) "
+            + "FROM employee_changes";
+    private static final String SELECT_LAST_SEQ = "SELECT COALESCE(MAX(seq), 0) FROM employee_changes";
+    private static final String SELECT_NOW = "SELECT CURRENT_TIMESTAMP(3)";
+    private static final String PURGE = "DELETE FROM employee_changes WHERE changed_at < ? AND seq < ?";
+
+    /** Maximum number of skipped sequence numbers read again. */
+    private static final int MAX_GAPS = 1000;
+
+    private static final RowMapper<Change> CHANGE_MAPPER = (rows, i) -> new Change(rows.getLong(1), rows.getLong(2),
+            rows.getString(3), rows.getTimestamp(4), rows.getTimestamp(5));
+
+    private final CacheService cacheService;
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheMetrics metrics;
+    private final Mode mode;
+    private final long pollIntervalMillis;
+    private final int batchSize;
+    private final long retentionMillis;
+    private final long gapTimeoutMillis;
+    private final Counter changes;
+    private final Counter failures;
+
+    /** Highest sequence number read. */
+    @Getter
+    private volatile long position;
+
+    /** Sequence numbers skipped by the reads, with the time they are given up at. */
+    private final Map<Long, Long> gaps = new LinkedHashMap<>();
+
+    /** Lag of the changes applied by the last successful poll, in milliseconds. */
+    private volatile long lagMillis;
+    private volatile long lastSuccessNanos = System.nanoTime();
+    private volatile boolean failing;
+    private long lastPurgeNanos = System.nanoTime();
+    private ScheduledExecutorService poller;
+
+    /**
+     * Creates a change feed.
+     *
+     * @param cacheService The service whose cached entries are updated.
+     * @param jdbcTemplate Template of the application's data source.
+     * @param metrics The cache meters, to which the feed adds its own.
+     * @param mode Whether cached entries of updated rows are replaced or dropped.
+     * @param pollIntervalMillis Time between two polls of the change table.
+     * @param batchSize Maximum number of changes read by a single query.
+     * @param retentionMillis Age after which changes are deleted from the change table.
+     * @param gapTimeoutMillis Time after which a skipped sequence number is no longer read again.
+     */
+    public ChangeFeed(CacheService cacheService, JdbcTemplate jdbcTemplate, CacheMetrics metrics,
+            @Value("${cache.change-feed.mode:update}") Mode mode,
+            @Value("${cache.change-feed.poll-interval-ms:1000}") long pollIntervalMillis,
+            @Value("${cache.change-feed.batch-size:1000}") int batchSize,
+            @Value("${cache.change-feed.retention-ms:3600000}") long retentionMillis,
+            @Value("${cache.change-feed.gap-timeout-ms:10000}") long gapTimeoutMillis) {
+        this.cacheService = cacheService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.metrics = metrics;
+        this.mode = mode;
+        this.pollIntervalMillis = Math.max(pollIntervalMillis, 1);
+        this.batchSize = Math.max(batchSize, 1);
+        this.retentionMillis = retentionMillis;
+        this.gapTimeoutMillis = gapTimeoutMillis;
+        this.changes = metrics.counter("cache.change-feed.changes", "Database changes applied to the cache");
+        this.failures = metrics.counter("cache.change-feed.failures", "Polls of the change table that failed");
+    }
+
+    /**
+     * Publishes the lag of the feed as a gauge.
+     */
+    @PostConstruct
+    public void registerMeters() {
+        metrics.gauge("cache.change-feed.lag", "Time from a database change to its application to the cache, in ms",
+                this, ChangeFeed::getLagMillis);
+    }
+
+    /**
+     * Installs the change table and its triggers, and starts polling from the latest
+     * change, once the application, including its schema, has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        install();
+        log.info("Tailing changes of the employees table from sequence number {}, every {} ms", position,
+                pollIntervalMillis);
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops polling.
+     */
+    @PreDestroy
+    public void stop() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The lag of the feed in milliseconds, growing while polls fail.
+     */
+    public long getLagMillis() {
+        long lag = lagMillis;
+        if (failing) {
+            lag += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastSuccessNanos);
+        }
+        return lag;
+    }
+
+    /**
+     * Creates the change table and the triggers feeding it, unless another instance
+     * already did, and positions the feed after the latest change.
+     */
+    void install() {
+        Dialect dialect = dialect();
+        jdbcTemplate.execute(CREATE_TABLE);
+        installTrigger(dialect, "EMPLOYEES_CHANGE_INSERT", "INSERT", "NEW", INSERT);
+        installTrigger(dialect, "EMPLOYEES_CHANGE_UPDATE", "UPDATE", "NEW", UPDATE);
+        installTrigger(dialect, "EMPLOYEES_CHANGE_DELETE", "DELETE", "OLD", DELETE);
+        position = jdbcTemplate.queryForObject(SELECT_LAST_SEQ, Long.class);
+    }
+
+    /**
+     * Applies the changes made since the last poll, then the skipped changes that have
+     * appeared since, and deletes the changes past their retention. Failures are
+     * counted and logged, and the next poll resumes from the last change applied.
+     */
+    void poll() {
+        try {
+            long maxLagMillis = 0;
+            if (!gaps.isEmpty()) {
+                maxLagMillis = apply(readGaps());
+            }
+            List<Change> batch;
+            do {
+                batch = jdbcTemplate.query(SELECT_CHANGES + " WHERE seq > ? ORDER BY seq LIMIT ?", CHANGE_MAPPER,
+                        position, batchSize);
+                maxLagMillis = Math.max(maxLagMillis, apply(batch));
+            } while (batch.size() == batchSize);
+            expireGaps();
+            purge();
+            lagMillis = maxLagMillis;
+            lastSuccessNanos = System.nanoTime();
+            failing = false;
+        }
+        catch (RuntimeException e) {
+            failing = true;
+            failures.increment();
+            log.warn("Failed to poll the employee changes after sequence number {}", position, e);
+        }
+    }
+
+    /**
+     * Applies a batch of changes to the cache, keeping the last change of each ID, and
+     * records the sequence numbers skipped before them.
+     *
+     * @return The lag of the oldest change of the batch, in milliseconds.
+     */
+    private long apply(List<Change> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        Map<Long, String> ops = new LinkedHashMap<>();
+        long oldestLagMillis = 0;
+        for (Change change : batch) {
+            ops.put(change.employeeId(), change.op());
+            oldestLagMillis = Math.max(oldestLagMillis, change.now().getTime() - change.changedAt().getTime());
+            if (change.seq() > position) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(gapTimeoutMillis);
+                for (long skipped = position + 1; skipped < change.seq() && gaps.size() < MAX_GAPS; skipped++) {
+                    gaps.put(skipped, deadline);
+                }
+                position = change.seq();
+            }
+            else {
+                gaps.remove(change.seq());
+            }
+        }
+        List<Long> updated = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        ops.forEach((id, op) -> (DELETE.equals(op) ? deleted : updated).add(id));
+        int applied = cacheService.applyDatabaseChanges(updated, deleted, mode == Mode.UPDATE);
+        changes.increment(batch.size());
+        log.debug("Applied {} employee changes up to sequence number {}, {} cached entries changed", batch.size(),
+                position, applied);
+        return oldestLagMillis + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private List<Change> readGaps() {
+        String placeholders = String.join(", ", Collections.nCopies(gaps.size(), "?"));
+        return jdbcTemplate.query(SELECT_CHANGES + " WHERE seq IN (" + placeholders + ") ORDER BY seq",
+                CHANGE_MAPPER, gaps.keySet().toArray());
+    }
+
+    private void expireGaps() {
+        long now = System.nanoTime();
+        for (Iterator<Long> deadlines = gaps.values().iterator(); deadlines.hasNext();) {
+            if (now - deadlines.next() >= 0) {
+                deadlines.remove();
+            }
+        }
+    }
+
+    /**
+     * Deletes the changes older than the retention, at most once per retention period
+     * or minute. The latest change read is kept, as it positions the feed of an
+     * instance starting later.
+     */
+    private void purge() {
+        long now = System.nanoTime();
+        if (now - lastPurgeNanos < TimeUnit.MILLISECONDS.toNanos(Math.min(retentionMillis, 60_000))) {
+            return;
+        }
+        lastPurgeNanos = now;
+        Timestamp databaseNow = jdbcTemplate.queryForObject(SELECT_NOW, Timestamp.class);
+        int purged = jdbcTemplate.update(PURGE, new Timestamp(databaseNow.getTime() - retentionMillis), position);
+        if (purged > 0) {
+            log.info("Deleted {} employee changes older than {} ms", purged, retentionMillis);
+        }
+    }
+
+    private void installTrigger(Dialect dialect, String name, String event, String row, String op) {
+        if (triggerExists(dialect, name)) {
+            return;
+        }
+        String action = dialect == Dialect.H2 ? "CALL '" + EmployeeChangeTrigger.class.getName() + "'"
+                : "INSERT INTO employee_changes (employee_id, op) VALUES (" + row + ".id, '" + op + "')";
+        try {
+            jdbcTemplate.execute("CREATE TRIGGER " + name + " AFTER " + event + " ON employees FOR EACH ROW " + action);
+            log.info("Created trigger {} recording the {} statements on employees", name, event);
+        }
+        catch (DataAccessException e) {
+            // Another instance may have created it meanwhile
+            if (!triggerExists(dialect, name)) {
+                throw e;
+            }
+        }
+    }
+
+    private boolean triggerExists(Dialect dialect, String name) {
+        String schema = dialect == Dialect.H2 ? "CURRENT_SCHEMA" : "DATABASE()";
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TRIGGERS "
+                + "WHERE TRIGGER_SCHEMA = " + schema + " AND UPPER(TRIGGER_NAME) = ?", Integer.class, name);
+        return count != null && count > 0;
+    }
+
+    private Dialect dialect() {
+        String database;
+        try {
+            database = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+                    DatabaseMetaData::getDatabaseProductName);
+        }
+        catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Failed to read the database product name", e);
+        }
+        return switch (database) {
+            case "H2" -> Dialect.H2;
+            case "MySQL", "MariaDB" -> Dialect.MYSQL;
+            default -> throw new IllegalStateException("No change triggers are defined for " + database
+                    + ", disable cache.change-feed.enabled");
+        };
+    }
+
+    /**
+     * What the feed does with the cached entries of updated rows, selected with the
+     * {@code cache.change-feed.mode} property. Entries of deleted rows are always dropped.
+     */
+    public enum Mode
+    {
+        /** Cached entries are replaced by their rows, read again in one query per batch. */
+        UPDATE,
+
+        /** Cached entries are dropped, and loaded again on their next miss. */
+        INVALIDATE
+    }
+
+    private enum Dialect
+    {
+        H2,
+        MYSQL
+    }
+
+    /**
+     * A row of the change table, read with the current time of the database.
+     */
+    private record Change(long seq, long employeeId, String op, Timestamp changedAt, Timestamp now)
+    {
+    }
+}
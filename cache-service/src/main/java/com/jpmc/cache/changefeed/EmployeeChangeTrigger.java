@@ -0,0 +1,49 @@
+/**
+ *
+ */
+package com.jpmc.cache.changefeed;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.h2.api.Trigger;
+
+/**
+ * H2 trigger appending a row to the {@code employee_changes} table for every row
+ * inserted, updated or deleted in the {@code employees} table, within the transaction
+ * of the change. H2 triggers are Java classes; on MySQL, the {@link ChangeFeed}
+ * creates equivalent SQL triggers instead.
+ *
+ * @author r.pandiarajan
+ */
+public class EmployeeChangeTrigger implements Trigger
+{
+    private int idColumn;
+
+    @Override
+    public void init(Connection connection, String schemaName, String triggerName, String tableName, boolean before,
+            int type) throws SQLException {
+        try (ResultSet columns = connection.getMetaData().getColumns(null, schemaName, tableName, null)) {
+            while (columns.next()) {
+                if ("id".equalsIgnoreCase(columns.getString("COLUMN_NAME"))) {
+                    idColumn = columns.getInt("ORDINAL_POSITION") - 1;
+                    return;
+                }
+            }
+        }
+        throw new SQLException("Table " + tableName + " has no id column");
+    }
+
+    @Override
+    public void fire(Connection connection, Object[] oldRow, Object[] newRow) throws SQLException {
+        String op = oldRow == null ? ChangeFeed.INSERT : newRow == null ? ChangeFeed.DELETE : ChangeFeed.UPDATE;
+        Object id = (newRow != null ? newRow : oldRow)[idColumn];
+        try (PreparedStatement statement = connection.prepareStatement(ChangeFeed.INSERT_CHANGE)) {
+            statement.setObject(1, id);
+            statement.setString(2, op);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,550 @@
+/**
+ *
+ */
+package com.jpmc.cache.cluster;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerInitializedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.service.CacheService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cluster mode of the cache service: several instances, sharing one database, each
+ * own the IDs that a {@link ConsistentHashRing} assigns to them, so the cluster
+ * caches as many entries as all of their heaps hold.
+ *
+ * Requests for an ID owned by another instance are forwarded to it over HTTP with
+ * the {@link #FORWARDED_HEADER}, and the receiving instance serves forwarded
+ * requests from its own cache whatever its view of the ring, so a request is never
+ * forwarded twice. Bulk requests are split by owner, and clears are broadcast.
+ *
+ * An instance joins on startup by announcing itself to {@code cache.cluster.nodes},
+ * learning the other members from their answers, and leaves on shutdown. Whenever
+ * the ring changes, cached entries now owned by another instance are handed off to
+ * it, so that entries not yet saved to the database are not lost. Entries that
+ * cannot be handed off are evicted to the database instead. Until every member has
+ * seen the change, requests forwarded by a member with the older view still reach
+ * the previous owner: its changes made during the hand-off are sent again or evicted
+ * to the database, and the new owner drops its copies of entries removed there, but
+ * a read at the new owner may return the handed off copy in the meantime. Membership is only changed by joins and leaves: an instance that
+ * crashes stays on the ring until it is removed through {@code DELETE /cluster/nodes}.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.cluster.enabled", havingValue = "true")
+@Slf4j
+public class CacheCluster
+{
+    /** Header marking a request forwarded by another member, carrying that member's URL. */
+    public static final String FORWARDED_HEADER = "X-Cache-Forwarded-By";
+
+    private static final int HANDOFF_BATCH_SIZE = 500;
+    private static final int HANDOFF_ROUNDS = 3;
+    private static final ParameterizedTypeReference<List<Employee>> EMPLOYEES = new ParameterizedTypeReference<>() { };
+    private static final ParameterizedTypeReference<List<String>> NODES = new ParameterizedTypeReference<>() { };
+
+    private final CacheService cacheService;
+    private final RestClient restClient;
+    private final List<String> seedNodes;
+    private final int virtualNodes;
+
+    /** Serializes ring changes and the hand-offs they trigger. */
+    private final ReentrantLock membershipLock = new ReentrantLock();
+
+    /** Runs the requests of a bulk operation to several members in parallel. */
+    private final ExecutorService forwarder = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("cache-cluster-", 0).factory());
+
+    /** Base URL of this instance, as known by the other members. */
+    @Getter
+    private volatile String self;
+    private volatile ConsistentHashRing ring;
+
+    /**
+     * Creates the cluster membership of this instance.
+     *
+     * @param cacheService The service owning the local cache.
+     * @param restClientBuilder Builder of the client forwarding requests to other members.
+     * @param self Base URL of this instance; defaults to {@code http://localhost:<port>}.
+     * @param seedNodes Base URLs of members to join on startup.
+     * @param virtualNodes Number of points of each member on the ring.
+     * @param timeoutMillis Connect and read timeout of requests to other members.
+     */
+    public CacheCluster(CacheService cacheService, RestClient.Builder restClientBuilder,
+            @Value("${cache.cluster.self:}") String self,
+            @Value("${cache.cluster.nodes:}") List<String> seedNodes,
+            @Value("${cache.cluster.virtual-nodes:128}") int virtualNodes,
+            @Value("${cache.cluster.timeout-ms:2000}") long timeoutMillis) {
+        this.cacheService = cacheService;
+        this.self = normalize(self);
+        this.seedNodes = seedNodes.stream().map(CacheCluster::normalize).filter(node -> !node.isEmpty()).toList();
+        this.virtualNodes = virtualNodes;
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(timeoutMillis))
+                .build());
+        requestFactory.setReadTimeout(Duration.ofMillis(timeoutMillis));
+        this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+        this.ring = new ConsistentHashRing(virtualNodes, this.self.isEmpty() ? List.of() : List.of(this.self));
+    }
+
+    /**
+     * Lets the service tell the IDs this instance owns from those it only caches a copy of.
+     */
+    @PostConstruct
+    public void registerOwnership() {
+        cacheService.setOwnership(this::isLocal);
+    }
+
+    /**
+     * Takes the URL of this instance from the port the server listens on, unless it is configured.
+     */
+    @EventListener
+    public void onWebServerInitialized(WebServerInitializedEvent event) {
+        if (self.isEmpty() && event.getApplicationContext().getServerNamespace() == null) {
+            self = "http://localhost:" + event.getWebServer().getPort();
+            ring = new ConsistentHashRing(virtualNodes, List.of(self));
+        }
+    }
+
+    /**
+     * Announces this instance to the seed members, then to the members they know of,
+     * and hands off the entries already cached that it does not own.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void join() {
+        Set<String> members = new TreeSet<>(ring.getNodes());
+        Set<String> announced = new LinkedHashSet<>();
+        List<String> pending = new ArrayList<>(seedNodes);
+        while (!pending.isEmpty()) {
+            String node = pending.remove(0);
+            if (node.equals(self) || !announced.add(node)) {
+                continue;
+            }
+            try {
+                List<String> known = restClient.post()
+                        .uri(node + "/cluster/nodes?url={url}", self)
+                        .header(FORWARDED_HEADER, self)
+                        .retrieve()
+                        .body(NODES);
+                members.add(node);
+                for (String member : known) {
+                    members.add(member);
+                    pending.add(member);
+                }
+            }
+            catch (RestClientException e) {
+                log.warn("Cluster member {} is unreachable, not joining it: {}", node, e.getMessage());
+            }
+        }
+        membershipLock.lock();
+        try {
+            // Keep members that joined this instance while it was announcing itself
+            members.addAll(ring.getNodes());
+            ring = new ConsistentHashRing(virtualNodes, members);
+            log.info("Joined cache cluster as {} with members {}", self, ring.getNodes());
+            handOff();
+        }
+        finally {
+            membershipLock.unlock();
+        }
+    }
+
+    /**
+     * Hands off every cached entry to the members remaining without this instance,
+     * and tells them that it is leaving.
+     */
+    @PreDestroy
+    public void leave() {
+        membershipLock.lock();
+        try {
+            ConsistentHashRing remaining = ring.withoutNode(self);
+            if (!remaining.getNodes().isEmpty()) {
+                ring = remaining;
+                handOff();
+                for (String node : remaining.getNodes()) {
+                    try {
+                        restClient.delete()
+                                .uri(node + "/cluster/nodes?url={url}", self)
+                                .header(FORWARDED_HEADER, self)
+                                .retrieve()
+                                .toBodilessEntity();
+                    }
+                    catch (RestClientException e) {
+                        log.warn("Failed to tell cluster member {} that {} is leaving: {}", node, self, e.getMessage());
+                    }
+                }
+                log.info("Left cache cluster, remaining members {}", remaining.getNodes());
+            }
+        }
+        finally {
+            membershipLock.unlock();
+            forwarder.shutdown();
+        }
+    }
+
+    /**
+     * Adds a member to the ring and hands off the cached entries it now owns.
+     *
+     * @param node The base URL of the member.
+     * @return The members of the ring, including the added one.
+     */
+    public Set<String> addNode(String node) {
+        membershipLock.lock();
+        try {
+            ring = ring.withNode(normalize(node));
+            log.info("Cluster member {} joined, members {}", node, ring.getNodes());
+            handOff();
+            return ring.getNodes();
+        }
+        finally {
+            membershipLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a member from the ring. The IDs it owned are spread over the remaining
+     * members, which load them from the database on their next miss.
+     *
+     * @param node The base URL of the member.
+     * @return The remaining members of the ring.
+     */
+    public Set<String> removeNode(String node) {
+        membershipLock.lock();
+        try {
+            ring = ring.withoutNode(normalize(node));
+            log.info("Cluster member {} left, members {}", node, ring.getNodes());
+            return ring.getNodes();
+        }
+        finally {
+            membershipLock.unlock();
+        }
+    }
+
+    /**
+     * @return The members of the ring, sorted by URL.
+     */
+    public Set<String> getNodes() {
+        return ring.getNodes();
+    }
+
+    /**
+     * @return The base URL of the member owning the ID.
+     */
+    public String ownerOf(Long id) {
+        String owner = ring.ownerOf(id);
+        return owner != null ? owner : self;
+    }
+
+    /**
+     * @return {@code true} if this instance owns the ID.
+     */
+    public boolean isLocal(Long id) {
+        return ownerOf(id).equals(self);
+    }
+
+    /**
+     * Forwards a request to the owner of an ID and relays its response, including
+     * error statuses, unchanged.
+     *
+     * @param id The ID the request is about.
+     * @param method The HTTP method of the request.
+     * @param path The path of the request, such as {@code /cache/get/1}.
+     * @param body The body of the request, encoded as JSON, or {@code null}.
+     * @return The status, content type and body of the owner's response.
+     */
+    public ResponseEntity<byte[]> forward(Long id, HttpMethod method, String path, Object body) {
+        return exchange(ownerOf(id), method, path, body);
+    }
+
+    /**
+     * Asynchronous variant of {@link #forward(Long, HttpMethod, String, Object)}, waiting
+     * for the owner's response on a virtual thread.
+     */
+    public CompletableFuture<ResponseEntity<byte[]>> forwardAsync(Long id, HttpMethod method, String path,
+            Object body) {
+        return CompletableFuture.supplyAsync(() -> forward(id, method, path, body), forwarder);
+    }
+
+    /**
+     * Retrieves entries from their owners: local IDs from the local cache, the others
+     * with one {@code /cache/getMany} request per owner, sent in parallel.
+     *
+     * @param ids The IDs of the entries to retrieve.
+     * @return The entries found, in the order of the requested IDs.
+     */
+    public List<Employee> getMany(Collection<Long> ids) {
+        Map<String, List<Long>> byOwner = groupByOwner(new LinkedHashSet<>(ids), Function.identity());
+        Map<Long, Employee> found = new HashMap<>();
+        for (List<Employee> employees : scatter(byOwner, cacheService::getMany,
+                (node, group) -> restClient.post()
+                        .uri(node + "/cache/getMany")
+                        .header(FORWARDED_HEADER, self)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(group)
+                        .retrieve()
+                        .body(EMPLOYEES))) {
+            for (Employee employee : employees) {
+                found.put(employee.getId(), employee);
+            }
+        }
+        List<Employee> employees = new ArrayList<>(found.size());
+        for (Long id : new LinkedHashSet<>(ids)) {
+            Employee employee = found.get(id);
+            if (employee != null) {
+                employees.add(employee);
+            }
+        }
+        return employees;
+    }
+
+    /**
+     * Adds entries to the caches of their owners, with one {@code /cache/addAll}
+     * request per remote owner.
+     *
+     * @param employees The entries to add.
+     */
+    public void addAll(Collection<Employee> employees) {
+        scatter(groupByOwner(employees, Employee::getId), group -> {
+            cacheService.addAll(group);
+            return null;
+        }, (node, group) -> send(node, HttpMethod.POST, "/cache/addAll", group));
+    }
+
+    /**
+     * Removes entries from the caches of their owners and from the database, with one
+     * {@code /cache/removeMany} request per remote owner.
+     *
+     * @param ids The IDs of the entries to remove.
+     */
+    public void removeMany(Collection<Long> ids) {
+        scatter(groupByOwner(ids, Function.identity()), group -> {
+            cacheService.removeMany(group);
+            return null;
+        }, (node, group) -> send(node, HttpMethod.DELETE, "/cache/removeMany", group));
+    }
+
+    /**
+     * Sends a request without body to every other member, such as a clear of their caches.
+     *
+     * @param method The HTTP method of the request.
+     * @param path The path of the request.
+     */
+    public void broadcast(HttpMethod method, String path) {
+        Map<String, List<Object>> others = new LinkedHashMap<>();
+        for (String node : ring.getNodes()) {
+            if (!node.equals(self)) {
+                others.put(node, List.of());
+            }
+        }
+        scatter(others, group -> null, (node, group) -> send(node, method, path, null));
+    }
+
+    /**
+     * Drops the copies of entries handed off to this instance, unless they changed
+     * since, when the previous owner changed or removed them during the hand-off.
+     *
+     * @param handedOff The entries, as they were handed off.
+     * @return The IDs of the entries not dropped.
+     */
+    public List<Long> release(Collection<Employee> handedOff) {
+        return cacheService.release(handedOff);
+    }
+
+    /**
+     * Hands off the cached entries owned by other members to them, in batches. An
+     * entry is released from the local cache once its new owner has added it, or
+     * evicted to the database if the owner cannot be reached. Must be called with
+     * {@link #membershipLock} held.
+     *
+     * Members with an older view of the ring may still forward writes of these
+     * entries here meanwhile. Entries changed after they were sent are sent again, up
+     * to {@link #HANDOFF_ROUNDS} times, and then evicted to the database. The new
+     * owner drops its copies of entries removed or evicted here after they were sent,
+     * unless it changed them itself.
+     */
+    private void handOff() {
+        Map<String, List<Long>> moved = new HashMap<>();
+        for (Long id : cacheService.getCache().keySet()) {
+            String owner = ownerOf(id);
+            if (!owner.equals(self)) {
+                moved.computeIfAbsent(owner, node -> new ArrayList<>()).add(id);
+            }
+        }
+        moved.forEach((node, ids) -> {
+            for (int from = 0; from < ids.size(); from += HANDOFF_BATCH_SIZE) {
+                List<Long> batch = ids.subList(from, Math.min(from + HANDOFF_BATCH_SIZE, ids.size()));
+                try {
+                    handOff(node, batch);
+                }
+                catch (RestClientException e) {
+                    log.warn("Failed to hand off {} entries to {}, evicting them to DB: {}", batch.size(), node,
+                            e.getMessage());
+                    cacheService.evict(batch);
+                }
+            }
+            log.info("Handed off {} entries to cluster member {}", ids.size(), node);
+        });
+    }
+
+    /**
+     * Hands off a batch of entries to their new owner, sending again the entries
+     * changed while they were sent.
+     */
+    private void handOff(String node, List<Long> batch) {
+        Map<Long, Employee> sent = new HashMap<>();
+        List<Employee> stale = new ArrayList<>();
+        List<Employee> entries = cached(batch);
+        for (int round = 0; round < HANDOFF_ROUNDS && !entries.isEmpty(); round++) {
+            send(node, HttpMethod.POST, "/cache/addAll", entries);
+            entries.forEach(employee -> sent.put(employee.getId(), employee));
+            List<Long> changed = cacheService.release(entries);
+            entries = new ArrayList<>(changed.size());
+            for (Long id : changed) {
+                Employee employee = cacheService.getCache().get(id);
+                if (employee != null) {
+                    entries.add(employee);
+                }
+                else {
+                    stale.add(sent.get(id));
+                }
+            }
+        }
+        if (!entries.isEmpty()) {
+            log.warn("{} entries handed off to {} kept changing, evicting them to DB", entries.size(), node);
+            cacheService.evict(entries.stream().map(Employee::getId).toList());
+            entries.forEach(employee -> stale.add(sent.get(employee.getId())));
+        }
+        if (!stale.isEmpty()) {
+            // The owner then loads the rows, which must hold the entries evicted here
+            cacheService.flushEvicted();
+            send(node, HttpMethod.POST, "/cluster/release", stale);
+        }
+    }
+
+    private List<Employee> cached(Collection<Long> ids) {
+        List<Employee> entries = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Employee employee = cacheService.getCache().get(id);
+            if (employee != null) {
+                entries.add(employee);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Runs a request per owner in parallel, the local group on the calling thread.
+     *
+     * @return The results of every group.
+     */
+    private <T, R> List<R> scatter(Map<String, List<T>> byOwner, Function<List<T>, R> local,
+            RemoteCall<T, R> remote) {
+        Map<String, CompletableFuture<R>> remoteResults = new LinkedHashMap<>();
+        byOwner.forEach((node, group) -> {
+            if (!node.equals(self)) {
+                remoteResults.put(node, CompletableFuture.supplyAsync(() -> remote.call(node, group), forwarder));
+            }
+        });
+        List<R> results = new ArrayList<>(byOwner.size());
+        List<T> localGroup = byOwner.get(self);
+        if (localGroup != null) {
+            results.add(local.apply(localGroup));
+        }
+        for (CompletableFuture<R> result : remoteResults.values()) {
+            try {
+                results.add(result.join());
+            }
+            catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        return results;
+    }
+
+    private <T> Map<String, List<T>> groupByOwner(Collection<T> items, Function<T, Long> id) {
+        Map<String, List<T>> byOwner = new LinkedHashMap<>();
+        for (T item : items) {
+            byOwner.computeIfAbsent(ownerOf(id.apply(item)), node -> new ArrayList<>()).add(item);
+        }
+        return byOwner;
+    }
+
+    private Void send(String node, HttpMethod method, String path, Object body) {
+        RestClient.RequestBodySpec request = restClient.method(method)
+                .uri(node + path)
+                .header(FORWARDED_HEADER, self);
+        if (body != null) {
+            request.contentType(MediaType.APPLICATION_JSON).body(body);
+        }
+        request.retrieve().toBodilessEntity();
+        return null;
+    }
+
+    private ResponseEntity<byte[]> exchange(String node, HttpMethod method, String path, Object body) {
+        RestClient.RequestBodySpec request = restClient.method(method)
+                .uri(node + path)
+                .header(FORWARDED_HEADER, self);
+        if (body != null) {
+            request.contentType(MediaType.APPLICATION_JSON).body(body);
+        }
+        return request.exchange((clientRequest, clientResponse) -> {
+            HttpHeaders headers = new HttpHeaders();
+            if (clientResponse.getHeaders().getContentType() != null) {
+                headers.setContentType(clientResponse.getHeaders().getContentType());
+            }
+            return new ResponseEntity<>(clientResponse.getBody().readAllBytes(), headers,
+                    clientResponse.getStatusCode());
+        });
+    }
+
+    private static String normalize(String node) {
+        String url = node == null ? "" : node.trim();
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * A request to another member for a group of items.
+     */
+    @FunctionalInterface
+    private interface RemoteCall<T, R>
+    {
+        R call(String node, List<T> group);
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ *
+ */
+package com.jpmc.cache.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Immutable consistent-hash ring assigning cache keys to the nodes of a cluster.
+ *
+ * Each node is placed on a 64-bit ring at {@code virtualNodes} pseudo-random points,
+ * and a key belongs to the node owning the first point at or after the hash of the
+ * key. Adding a node only moves to it the keys falling just before its points, about
+ * {@code 1/n} of them, and removing a node only moves its own keys; the keys of the
+ * other nodes stay where they are. Virtual nodes keep the share of each node close to
+ * even.
+ *
+ * Points are derived from the node names alone and collisions are resolved by name,
+ * so every member computes the same ring from the same set of nodes.
+ *
+ * @author r.pandiarajan
+ */
+public final class ConsistentHashRing
+{
+    private final NavigableMap<Long, String> points;
+    private final Set<String> nodes;
+    private final int virtualNodes;
+
+    /**
+     * Creates a ring of the given nodes.
+     *
+     * @param virtualNodes The number of points of each node on the ring.
+     * @param nodes The names of the nodes, such as their base URLs.
+     */
+    public ConsistentHashRing(int virtualNodes, Collection<String> nodes) {
+        this.virtualNodes = Math.max(virtualNodes, 1);
+        this.nodes = Collections.unmodifiableSet(new TreeSet<>(nodes));
+        NavigableMap<Long, String> ring = new TreeMap<>();
+        for (String node : this.nodes) {
+            for (int i = 0; i < this.virtualNodes; i++) {
+                ring.putIfAbsent(hash(node + "#" + i), node);
+            }
+        }
+        this.points = Collections.unmodifiableNavigableMap(ring);
+    }
+
+    /**
+     * @return A ring with the given node added.
+     */
+    public ConsistentHashRing withNode(String node) {
+        Set<String> members = new TreeSet<>(nodes);
+        members.add(node);
+        return new ConsistentHashRing(virtualNodes, members);
+    }
+
+    /**
+     * @return A ring with the given node removed.
+     */
+    public ConsistentHashRing withoutNode(String node) {
+        Set<String> members = new TreeSet<>(nodes);
+        members.remove(node);
+        return new ConsistentHashRing(virtualNodes, members);
+    }
+
+    /**
+     * Returns the node owning a key.
+     *
+     * @param key The cache key.
+     * @return The owning node, or {@code null} if the ring is empty.
+     */
+    public String ownerOf(long key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(mix(key));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    /**
+     * @return The nodes of the ring, sorted by name.
+     */
+    public Set<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Hashes a node point with 64-bit FNV-1a, finalized to spread similar names.
+     */
+    private static long hash(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * The MurmurHash3 64-bit finalizer, so that sequential IDs are spread over the ring.
+     */
+    private static long mix(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -3,19 +3,31 @@
  */
 package com.jpmc.cache.controller;
 
+import java.net.URI;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.jpmc.cache.cluster.CacheCluster;
 import com.jpmc.cache.model.Employee;
 import com.jpmc.cache.service.CacheService;
+import com.jpmc.cache.service.MissRatioCurve;
+import com.jpmc.cache.service.RemoveAllJob;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -27,6 +39,10 @@ import lombok.extern.slf4j.Slf4j;
  * The controller interacts with the {@link CacheService} to perform operations on the cache and 
  * ensures that the correct HTTP response is returned after each action.
  * 
+ * In cluster mode, requests for IDs owned by another instance of the {@link CacheCluster} 
+ * are forwarded to it, bulk requests are split by owner and clears are broadcast. Requests 
+ * carrying the {@link CacheCluster#FORWARDED_HEADER} are always served locally.
+ * 
  * @author r.pandiarajan
  */
 @RestController
@@ -39,75 +55,344 @@ public class CacheController
     @Autowired
     CacheService cacheService;
     
+    /** Cluster membership of this instance, present in cluster mode only. */
+    @Autowired(required = false)
+    CacheCluster cacheCluster;
+    
+    /** Estimate of the miss ratio of the cache at other sizes, present with adaptive sizing only. */
+    @Autowired(required = false)
+    MissRatioCurve missRatioCurve;
+    
     private static final String ADD_MSG = "Entry added successfully.";
+    private static final String ADD_ALL_MSG = "Entries added successfully.";
     private static final String REMOVE_MSG = "Entry removed from cache and DB successfully.";
+    private static final String REMOVE_MANY_MSG = "Entries removed from cache and DB successfully.";
     private static final String REMOVE_ALL_MSG = "All entries removed from cache and DB successfully.";
     private static final String CLEAR_MSG = "All entries cleared from cache successfully.";
+    private static final String RESIZE_MSG = "Cache resize to {0} entries accepted.";
+    private static final String RESIZE_INVALID_MSG = "Maximum cache size must be positive.";
+    private static final String RESIZE_OFF_HEAP_MSG = "The off-heap cache is bounded by its memory budget and cannot be resized.";
     
     /**
      * Endpoint to add an {@link Employee} entity to the cache.
      * If the cache is full, the least recently used entry will be evicted to the database.
      * 
      * @param employee The {@link Employee} entity to be added to the cache.
+     * @param forwardedBy The member that forwarded the request, if any.
      * @return A {@link ResponseEntity} containing a success message.
      */
     @PostMapping("/add")
-    public ResponseEntity<String> addEntity(@RequestBody Employee employee) {
+    public ResponseEntity<?> addEntity(@RequestBody Employee employee,
+            @RequestHeader(name = CacheCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        if (isRemote(employee.getId(), forwardedBy)) {
+            return cacheCluster.forward(employee.getId(), HttpMethod.POST, "/cache/add", employee);
+        }
         log.info("Adding new entry to cache service {}", employee.getId());
         cacheService.add(employee);
         return new ResponseEntity<>(ADD_MSG, HttpStatus.OK);
     }
 
+    /**
+     * Endpoint to add several {@link Employee} entities to the cache in one request.
+     * Least recently used entries are evicted to the database as the cache fills up.
+     * 
+     * @param employees The {@link Employee} entities to be added to the cache.
+     * @param forwardedBy The member that forwarded the request, if any.
+     * @return A {@link ResponseEntity} containing a success message.
+     */
+    @PostMapping("/addAll")
+    public ResponseEntity<String> addEntities(@RequestBody List<Employee> employees,
+            @RequestHeader(name = CacheCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        log.info("Adding {} new entries to cache service", employees.size());
+        if (isClustered(forwardedBy)) {
+            cacheCluster.addAll(employees);
+        }
+        else {
+            cacheService.addAll(employees);
+        }
+        return new ResponseEntity<>(ADD_ALL_MSG, HttpStatus.OK);
+    }
+
     /**
      * Endpoint to remove an {@link Employee} entity from the cache and the database.
      * 
      * @param employee The {@link Employee} entity to be removed.
+     * @param forwardedBy The member that forwarded the request, if any.
      * @return A {@link ResponseEntity} containing a success message.
      */
     @DeleteMapping("/remove")
-    public ResponseEntity<String> removeEntity(@RequestBody Employee employee) {
+    public ResponseEntity<?> removeEntity(@RequestBody Employee employee,
+            @RequestHeader(name = CacheCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        if (isRemote(employee.getId(), forwardedBy)) {
+            return cacheCluster.forward(employee.getId(), HttpMethod.DELETE, "/cache/remove", employee);
+        }
         log.info("Remove entry from cache and db {}", employee.getId());
         cacheService.remove(employee);
         return new ResponseEntity<>(REMOVE_MSG, HttpStatus.OK);
     }
 
     /**
-     * Endpoint to remove all {@link Employee} entities from the cache and the database.
+     * Endpoint to remove several {@link Employee} entities, by ID, from the cache and 
+     * the database in one request.
      * 
+     * @param ids The IDs of the {@link Employee} entities to be removed.
+     * @param forwardedBy The member that forwarded the request, if any.
      * @return A {@link ResponseEntity} containing a success message.
      */
+    @DeleteMapping("/removeMany")
+    public ResponseEntity<String> removeEntities(@RequestBody List<Long> ids,
+            @RequestHeader(name = CacheCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        log.info("Remove {} entries from cache and db", ids.size());
+        if (isClustered(forwardedBy)) {
+            cacheCluster.removeMany(ids);
+        }
+        else {
+            cacheService.removeMany(ids);
+        }
+        return new ResponseEntity<>(REMOVE_MANY_MSG, HttpStatus.OK);
+    }
+
+    /**
+     * Endpoint to remove all {@link Employee} entities from the cache and the database.
+     * With {@code async=true}, the rows are deleted by a background {@link RemoveAllJob} 
+     * and the job is returned with status 202, its progress being available from 
+     * {@code /removeAll/{jobId}}. In cluster mode, where it would not fence the writes 
+     * of the other members, the removal always runs synchronously.
+     * 
+     * @param async Whether to delete the rows in the background.
+     * @param forwardedBy The member that forwarded the request, if any.
+     * @return A {@link ResponseEntity} containing a success message, or the started job.
+     */
     @DeleteMapping("/removeAll")
-    public ResponseEntity<String> removeAllEntities() {
+    public ResponseEntity<?> removeAllEntities(@RequestParam(defaultValue = "false") boolean async,
+            @RequestHeader(name = CacheCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        if (async && cacheCluster == null) {
+            log.info("Start removing all entries from cache and db");
+            RemoveAllJob job = cacheService.startRemoveAll();
+            return ResponseEntity.accepted().location(URI.create("/cache/removeAll/" + job.getId())).body(job);
+        }
         log.info("Remove all entries from cache and db");
         cacheService.removeAll();
+        if (isClustered(forwardedBy)) {
+            cacheCluster.broadcast(HttpMethod.DELETE, "/cache/removeAll");
+        }
         return new ResponseEntity<>(REMOVE_ALL_MSG, HttpStatus.OK);
     }
 
+    /**
+     * Endpoint to report the progress of a removal started with {@code /removeAll?async=true}.
+     * 
+     * @param jobId The ID of the job.
+     * @return The job, running or finished.
+     * @throws EntityNotFoundException if no recent job has this ID.
+     */
+    @GetMapping("/removeAll/{jobId}")
+    public RemoveAllJob getRemoveAllJob(@PathVariable long jobId) {
+        return cacheService.getRemoveAllJob(jobId);
+    }
+
     /**
      * Endpoint to retrieve an {@link Employee} entity by its ID.
      * If the entity is not found in the cache, it will be fetched from the database 
-     * and added to the cache.
+     * and added to the cache. The entity is written as the JSON bytes kept by the 
+     * {@link CacheService}, without serializing it per request.
      * 
      * @param id The ID of the {@link Employee} entity to retrieve.
-     * @return The {@link Employee} entity.
+     * @param forwardedBy The member that forwarded the request, if any.
+     * @return A {@link ResponseEntity} containing the {@link Employee} entity as JSON.
      * @throws EntityNotFoundException if the entity is not found in both the cache and the database.
      */
     @GetMapping("/get/{id}")
-    public Employee getEntity(@PathVariable Long id) {
+    public ResponseEntity<byte[]> getEntity(@PathVariable Long id,
+            @RequestHeader(name = CacheCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        if (isRemote(id, forwardedBy)) {
+            return cacheCluster.forward(id, HttpMethod.GET, "/cache/get/" + id, null);
+        }
         log.info("Getting entry from cache or db with {}", id);
-        return cacheService.get(id);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(cacheService.getJson(id));
+    }
+
+    /**
+     * Asynchronous variant of {@code /get/{id}}. A cache hit is answered on the request 
+     * thread; on a miss, the request thread is released while the entity is loaded 
+     * from the database on a virtual thread.
+     * 
+     * @param id The ID of the {@link Employee} entity to retrieve.
+     * @param forwardedBy The member that forwarded the request, if any.
+     * @return A future of the {@link Employee} entity, or of the owner's response in cluster mode.
+     */
+    @GetMapping("/async/get/{id}")
+    public CompletableFuture<?> getEntityAsync(@PathVariable Long id,
+            @RequestHeader(name = CacheCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        if (isRemote(id, forwardedBy)) {
+            return cacheCluster.forwardAsync(id, HttpMethod.GET, "/cache/async/get/" + id, null);
+        }
+        log.info("Getting entry asynchronously from cache or db with {}", id);
+        return cacheService.getAsync(id);
+    }
+
+    /**
+     * Asynchronous variant of {@code /add}, releasing the request thread while an 
+     * evicted entry is saved to the database.
+     * 
+     * @param employee The {@link Employee} entity to be added to the cache.
+     * @param forwardedBy The member that forwarded the request, if any.
+     * @return A future of a {@link ResponseEntity} containing a success message.
+     */
+    @PostMapping("/async/add")
+    public CompletableFuture<? extends ResponseEntity<?>> addEntityAsync(@RequestBody Employee employee,
+            @RequestHeader(name = CacheCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        if (isRemote(employee.getId(), forwardedBy)) {
+            return cacheCluster.forwardAsync(employee.getId(), HttpMethod.POST, "/cache/async/add", employee);
+        }
+        log.info("Adding new entry asynchronously to cache service {}", employee.getId());
+        return cacheService.addAsync(employee).thenApply(done -> new ResponseEntity<>(ADD_MSG, HttpStatus.OK));
+    }
+
+    /**
+     * Asynchronous variant of {@code /remove}, releasing the request thread while the 
+     * entity is deleted from the database.
+     * 
+     * @param employee The {@link Employee} entity to be removed.
+     * @param forwardedBy The member that forwarded the request, if any.
+     * @return A future of a {@link ResponseEntity} containing a success message.
+     */
+    @DeleteMapping("/async/remove")
+    public CompletableFuture<? extends ResponseEntity<?>> removeEntityAsync(@RequestBody Employee employee,
+            @RequestHeader(name = CacheCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        if (isRemote(employee.getId(), forwardedBy)) {
+            return cacheCluster.forwardAsync(employee.getId(), HttpMethod.DELETE, "/cache/async/remove", employee);
+        }
+        log.info("Remove entry asynchronously from cache and db {}", employee.getId());
+        return cacheService.removeAsync(employee).thenApply(done -> new ResponseEntity<>(REMOVE_MSG, HttpStatus.OK));
+    }
+
+    /**
+     * Endpoint to retrieve several {@link Employee} entities by their IDs in one request.
+     * Entities not found in the cache are fetched from the database with a single query 
+     * and added to the cache; IDs found in neither are left out of the response.
+     * 
+     * @param ids The IDs of the {@link Employee} entities to retrieve.
+     * @param forwardedBy The member that forwarded the request, if any.
+     * @return The {@link Employee} entities found, in the order of the requested IDs.
+     */
+    @PostMapping("/getMany")
+    public List<Employee> getEntities(@RequestBody List<Long> ids,
+            @RequestHeader(name = CacheCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
+        log.info("Getting {} entries from cache or db", ids.size());
+        return isClustered(forwardedBy) ? cacheCluster.getMany(ids) : cacheService.getMany(ids);
+    }
+
+    /**
+     * Endpoint to find the {@link Employee} entities with a salary in a range. While the 
+     * cache holds every entity, they are taken from its salary index without querying 
+     * the database.
+     * 
+     * @param min The lowest salary, inclusive.
+     * @param max The highest salary, inclusive.
+     * @return The {@link Employee} entities found, by salary and then by ID.
+     */
+    @GetMapping("/query/salary")
+    public List<Employee> findBySalary(@RequestParam double min, @RequestParam double max) {
+        log.info("Querying entries with a salary between {} and {}", min, max);
+        return cacheService.findBySalaryBetween(min, max);
+    }
+
+    /**
+     * Endpoint to find the {@link Employee} entities with a name. While the cache holds 
+     * every entity, they are taken from its name index without querying the database.
+     * 
+     * @param name The name.
+     * @return The {@link Employee} entities found, by ID.
+     */
+    @GetMapping("/query/name")
+    public List<Employee> findByName(@RequestParam String name) {
+        log.info("Querying entries named {}", name);
+        return cacheService.findByName(name);
+    }
+
+    /**
+     * Endpoint to find the {@link Employee} entities whose name starts with a prefix. 
+     * While the cache holds every entity, they are taken from its name index without 
+     * querying the database.
+     * 
+     * @param prefix The prefix of the names.
+     * @return The {@link Employee} entities found, by name and then by ID.
+     */
+    @GetMapping("/query/namePrefix")
+    public List<Employee> findByNamePrefix(@RequestParam String prefix) {
+        log.info("Querying entries with a name starting with {}", prefix);
+        return cacheService.findByNamePrefix(prefix);
     }
 
     /**
      * Endpoint to clear all entries from the cache, without affecting the database.
      * 
+     * @param forwardedBy The member that forwarded the request, if any.
      * @return A {@link ResponseEntity} containing a success message.
      */
     @DeleteMapping("/clear")
-    public ResponseEntity<String> clearCache() {
+    public ResponseEntity<String> clearCache(
+            @RequestHeader(name = CacheCluster.FORWARDED_HEADER, required = false) String forwardedBy) {
         log.info("Clear entries from the cache");
         cacheService.clear();
+        if (isClustered(forwardedBy)) {
+            cacheCluster.broadcast(HttpMethod.DELETE, "/cache/clear");
+        }
         return new ResponseEntity<>(CLEAR_MSG, HttpStatus.OK);
     }
 
+    /**
+     * Endpoint to change the maximum number of entries of the cache at runtime, on this 
+     * instance. A larger size applies at once, while the entries over a smaller size are 
+     * evicted to the database a step at a time in the background, so the resize is 
+     * accepted with status 202 and its progress is reported as {@code targetSize} by 
+     * {@code /actuator/cache-stats}.
+     * 
+     * @param maxSize The new maximum number of entries.
+     * @return A {@link ResponseEntity} containing a message, with status 400 if the size 
+     *         is not positive and 409 if entries are kept off the heap.
+     */
+    @PostMapping("/resize")
+    public ResponseEntity<String> resizeCache(@RequestParam int maxSize) {
+        if (maxSize <= 0) {
+            return new ResponseEntity<>(RESIZE_INVALID_MSG, HttpStatus.BAD_REQUEST);
+        }
+        if (cacheService.getStorageMode() == CacheService.StorageMode.OFF_HEAP) {
+            return new ResponseEntity<>(RESIZE_OFF_HEAP_MSG, HttpStatus.CONFLICT);
+        }
+        log.info("Resize the cache to {} entries", maxSize);
+        cacheService.resize(maxSize);
+        return new ResponseEntity<>(MessageFormat.format(RESIZE_MSG, String.valueOf(maxSize)), HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Endpoint to report the miss ratio the cache is estimated to have at other sizes, 
+     * which drives adaptive sizing.
+     * 
+     * @param points Number of evenly spaced sizes, up to the largest size estimated.
+     * @return The estimated miss ratio by size; empty unless adaptive sizing is enabled.
+     */
+    @GetMapping("/missRatioCurve")
+    public List<MissRatioCurve.Point> getMissRatioCurve(@RequestParam(defaultValue = "20") int points) {
+        if (missRatioCurve == null) {
+            return List.of();
+        }
+        return missRatioCurve.curve(Math.max(1, Math.min(points, 1000)));
+    }
+
+    /**
+     * @return {@code true} if the request reached this instance first and cluster mode is enabled.
+     */
+    private boolean isClustered(String forwardedBy) {
+        return cacheCluster != null && forwardedBy == null;
+    }
+
+    /**
+     * @return {@code true} if the request must be forwarded to the owner of the ID.
+     */
+    private boolean isRemote(Long id, String forwardedBy) {
+        return isClustered(forwardedBy) && id != null && !cacheCluster.isLocal(id);
+    }
+
 }
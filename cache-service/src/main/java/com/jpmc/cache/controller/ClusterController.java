@@ -0,0 +1,103 @@
+/**
+ *
+ */
+package com.jpmc.cache.controller;
+
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.jpmc.cache.cluster.CacheCluster;
+import com.jpmc.cache.model.Employee;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * REST controller for the membership of a {@link CacheCluster}, available when the
+ * cluster mode is enabled. Instances call it to join and leave the cluster and to
+ * complete hand-offs, and operators to list the members, find the owner of an ID or
+ * remove a failed member.
+ *
+ * @author r.pandiarajan
+ */
+@RestController
+@RequestMapping("/cluster")
+@ConditionalOnProperty(name = "cache.cluster.enabled", havingValue = "true")
+@Slf4j
+public class ClusterController
+{
+
+    /** Membership of this instance in the cluster. */
+    @Autowired
+    CacheCluster cacheCluster;
+
+    /**
+     * Endpoint to list the members of the cluster.
+     *
+     * @return The base URLs of the members.
+     */
+    @GetMapping("/nodes")
+    public Set<String> getNodes() {
+        return cacheCluster.getNodes();
+    }
+
+    /**
+     * Endpoint to add a member to the cluster. Cached entries it now owns are handed
+     * off to it before the response is returned.
+     *
+     * @param url The base URL of the member.
+     * @return The base URLs of the members, including the added one.
+     */
+    @PostMapping("/nodes")
+    public Set<String> addNode(@RequestParam String url) {
+        log.info("Adding cluster member {}", url);
+        return cacheCluster.addNode(url);
+    }
+
+    /**
+     * Endpoint to remove a member from the cluster, when it leaves or has failed.
+     *
+     * @param url The base URL of the member.
+     * @return The base URLs of the remaining members.
+     */
+    @DeleteMapping("/nodes")
+    public Set<String> removeNode(@RequestParam String url) {
+        log.info("Removing cluster member {}", url);
+        return cacheCluster.removeNode(url);
+    }
+
+    /**
+     * Endpoint dropping the copies of entries handed off to this member, called by the
+     * previous owner for entries it removed or evicted while handing them off. Copies
+     * changed since they were handed off are kept.
+     *
+     * @param entries The entries, as they were handed off.
+     * @return The IDs of the entries whose copy was kept.
+     */
+    @PostMapping("/release")
+    public List<Long> release(@RequestBody List<Employee> entries) {
+        log.info("Releasing {} entries handed off to this member", entries.size());
+        return cacheCluster.release(entries);
+    }
+
+    /**
+     * Endpoint to find the member owning an ID.
+     *
+     * @param id The ID of an {@link com.jpmc.cache.model.Employee}.
+     * @return The base URL of the owning member.
+     */
+    @GetMapping("/owner/{id}")
+    public String getOwner(@PathVariable Long id) {
+        return cacheCluster.ownerOf(id);
+    }
+}
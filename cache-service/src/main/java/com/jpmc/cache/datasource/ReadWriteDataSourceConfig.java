@@ -0,0 +1,129 @@
+/**
+ *
+ */
+package com.jpmc.cache.datasource;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Splits the database traffic of the cache over two connection pools, so that a burst
+ * of eviction write-backs cannot take the connections that loads on a cache miss wait
+ * for.
+ *
+ * The {@code cache-write} pool connects to {@code spring.datasource.url} and the
+ * {@code cache-read} pool to {@code cache.datasource.read.url}, a read replica, or to
+ * the same database when it is blank. Each pool has its own budget of connections,
+ * {@code cache.datasource.write.max-pool-size} and
+ * {@code cache.datasource.read.max-pool-size}, and the connections of the read pool
+ * are read-only.
+ *
+ * Both pools are bound to the {@code spring.datasource.hikari.*} properties first, as
+ * the single pool of Spring Boot would be, and then given their own name, size and
+ * read-only flag, which {@code spring.datasource.hikari.maximum-pool-size},
+ * {@code pool-name} and {@code read-only} therefore do not change.
+ *
+ * The {@link DataSource} of the application is a {@link LazyConnectionDataSourceProxy}
+ * choosing the pool when the first statement runs: read-only transactions, those of
+ * the finders of the {@link com.jpmc.cache.repository.EmployeeRepository}, use the
+ * read pool, and everything else, saves, deletes, {@code JdbcTemplate} statements and
+ * schema creation, the write pool. {@link RecentWrites} sends the reads of rows just
+ * written to the write pool, as the replica may not have them yet.
+ *
+ * @author r.pandiarajan
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "cache.datasource.routing.enabled", havingValue = "true")
+@Slf4j
+public class ReadWriteDataSourceConfig
+{
+    static final String WRITE_POOL = "cache-write";
+    static final String READ_POOL = "cache-read";
+
+    /**
+     * Pool of the connections writing to the primary database.
+     *
+     * @param properties The {@code spring.datasource} properties.
+     * @param environment The environment holding the {@code spring.datasource.hikari} properties.
+     * @param maxPoolSize Maximum number of connections of the pool.
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource writeDataSource(DataSourceProperties properties, Environment environment,
+            @Value("${cache.datasource.write.max-pool-size:12}") int maxPoolSize) {
+        HikariDataSource dataSource = hikariDataSource(properties, environment);
+        dataSource.setPoolName(WRITE_POOL);
+        dataSource.setMaximumPoolSize(maxPoolSize);
+        log.info("Write pool of {} connections to {}", maxPoolSize, dataSource.getJdbcUrl());
+        return dataSource;
+    }
+
+    /**
+     * Pool of the read-only connections loading the rows missing from the cache.
+     *
+     * @param properties The {@code spring.datasource} properties.
+     * @param environment The environment holding the {@code spring.datasource.hikari} properties.
+     * @param url URL of the read replica; the primary database when blank.
+     * @param username User of the read replica; the one of the primary database when blank.
+     * @param password Password of the read replica, used with its user.
+     * @param maxPoolSize Maximum number of connections of the pool.
+     */
+    @Bean(destroyMethod = "close")
+    public HikariDataSource readDataSource(DataSourceProperties properties, Environment environment,
+            @Value("${cache.datasource.read.url:}") String url,
+            @Value("${cache.datasource.read.username:}") String username,
+            @Value("${cache.datasource.read.password:}") String password,
+            @Value("${cache.datasource.read.max-pool-size:10}") int maxPoolSize) {
+        HikariDataSource dataSource = hikariDataSource(properties, environment);
+        if (StringUtils.hasText(url)) {
+            dataSource.setJdbcUrl(url);
+        }
+        if (StringUtils.hasText(username)) {
+            dataSource.setUsername(username);
+            dataSource.setPassword(password);
+        }
+        dataSource.setPoolName(READ_POOL);
+        dataSource.setMaximumPoolSize(maxPoolSize);
+        dataSource.setReadOnly(true);
+        log.info("Read pool of {} connections to {}", maxPoolSize, dataSource.getJdbcUrl());
+        return dataSource;
+    }
+
+    /**
+     * Creates a pool connecting to {@code spring.datasource.url}, with the
+     * {@code spring.datasource.hikari} settings, such as its timeouts.
+     */
+    private static HikariDataSource hikariDataSource(DataSourceProperties properties, Environment environment) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        return dataSource;
+    }
+
+    /**
+     * The {@link DataSource} of the application, routing read-only transactions to the
+     * read pool and all other work to the write pool.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("writeDataSource") DataSource writeDataSource,
+            @Qualifier("readDataSource") DataSource readDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(writeDataSource);
+        dataSource.setReadOnlyDataSource(readDataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ *
+ */
+package com.jpmc.cache.datasource;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import com.jpmc.cache.service.CacheMetrics;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Read-your-writes protection of the reads routed to a read replica by the
+ * {@link ReadWriteDataSourceConfig}: rows written by the cache, by a write-back, an
+ * inline eviction save or a delete, are read from the primary database for
+ * {@code cache.datasource.replica-lag-ms} afterwards, so that a miss right after the
+ * write-back of an entry does not load the older row still on the replica, nor find
+ * a deleted row there. Queries, whose rows are not known beforehand, use the primary
+ * database while any write is that recent.
+ *
+ * Reads of recently written rows run in a read-write transaction, which the read-only
+ * transactions of the repository join, so their statements use the write pool. At
+ * most {@code cache.datasource.read-your-writes.max-ids} IDs are tracked; past that,
+ * every read goes to the primary database until the lag has elapsed. Without a
+ * {@code cache.datasource.read.url}, both pools connect to the same database and
+ * nothing is tracked.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.datasource.routing.enabled", havingValue = "true")
+@Slf4j
+public class RecentWrites
+{
+    private final TransactionTemplate primary;
+    private final long lagNanos;
+    private final int maxIds;
+    private final Counter primaryReads;
+
+    /** Time until which each recently written row is read from the primary database, by ID. */
+    private final Map<Long, Long> writtenUntil = new ConcurrentHashMap<>();
+
+    /** Time until which every read goes to the primary database, after a write of all rows. */
+    private volatile long allWrittenUntil;
+    private volatile boolean allWritten;
+
+    /** Source of the current time in nanoseconds. */
+    LongSupplier ticker = System::nanoTime;
+
+    /**
+     * Creates the tracker of recent writes.
+     *
+     * @param transactionManager Manager of the transactions reading from the primary database.
+     * @param metrics Meters of the reads sent to the primary database.
+     * @param readUrl URL of the read replica; nothing is tracked when blank.
+     * @param replicaLagMillis Time after a write during which the replica may miss it.
+     * @param maxIds Maximum number of IDs tracked.
+     */
+    public RecentWrites(PlatformTransactionManager transactionManager, CacheMetrics metrics,
+            @Value("${cache.datasource.read.url:}") String readUrl,
+            @Value("${cache.datasource.replica-lag-ms:1000}") long replicaLagMillis,
+            @Value("${cache.datasource.read-your-writes.max-ids:100000}") int maxIds) {
+        this.primary = new TransactionTemplate(transactionManager);
+        this.lagNanos = StringUtils.hasText(readUrl) ? TimeUnit.MILLISECONDS.toNanos(replicaLagMillis) : 0;
+        this.maxIds = maxIds;
+        this.primaryReads = metrics.counter("cache.db.primary-reads",
+                "Reads of recently written rows sent to the primary DB instead of the replica");
+    }
+
+    /**
+     * Records rows just written, so that they are read from the primary database
+     * until the replica has them.
+     *
+     * @param ids The IDs of the rows written or deleted.
+     */
+    public void record(Collection<Long> ids) {
+        if (lagNanos == 0) {
+            return;
+        }
+        long until = ticker.getAsLong() + lagNanos;
+        for (Long id : ids) {
+            writtenUntil.put(id, until);
+        }
+        if (writtenUntil.size() > maxIds) {
+            long now = ticker.getAsLong();
+            writtenUntil.values().removeIf(deadline -> deadline - now <= 0);
+            if (writtenUntil.size() > maxIds) {
+                log.warn("More than {} rows written within the replica lag, reading all rows from the primary DB",
+                        maxIds);
+                recordAll();
+            }
+        }
+    }
+
+    /**
+     * Records a write of every row, such as deleting all of them, after which all
+     * rows are read from the primary database until the replica has caught up.
+     */
+    public void recordAll() {
+        if (lagNanos == 0) {
+            return;
+        }
+        allWrittenUntil = ticker.getAsLong() + lagNanos;
+        allWritten = true;
+        writtenUntil.clear();
+    }
+
+    /**
+     * Tells whether the row of the given ID was written within the replica lag.
+     */
+    public boolean isRecent(Long id) {
+        long now = ticker.getAsLong();
+        if (allWritten && allWrittenUntil - now > 0) {
+            return true;
+        }
+        Long until = writtenUntil.get(id);
+        if (until == null) {
+            return false;
+        }
+        if (until - now > 0) {
+            return true;
+        }
+        writtenUntil.remove(id, until);
+        return false;
+    }
+
+    /**
+     * Reads rows from the primary database if any of them was written within the
+     * replica lag, and from where the read is routed otherwise.
+     *
+     * @param ids The IDs of the rows read.
+     * @param read The read, made with the repository.
+     * @return The result of the read.
+     */
+    public <T> T read(Collection<Long> ids, Supplier<T> read) {
+        for (Long id : ids) {
+            if (isRecent(id)) {
+                return readPrimary(read);
+            }
+        }
+        return read.get();
+    }
+
+    /**
+     * Runs a query from the primary database if any row was written within the
+     * replica lag, as the rows it selects are not known beforehand, and from where the
+     * read is routed otherwise.
+     *
+     * @param query The query, made with the repository.
+     * @return The result of the query.
+     */
+    public <T> T query(Supplier<T> query) {
+        long now = ticker.getAsLong();
+        writtenUntil.values().removeIf(until -> until - now <= 0);
+        if ((allWritten && allWrittenUntil - now > 0) || !writtenUntil.isEmpty()) {
+            return readPrimary(query);
+        }
+        return query.get();
+    }
+
+    /**
+     * Reads from the primary database, for reads that must see every committed write.
+     * Without a read replica, the read pool sees them too and is used.
+     *
+     * @param read The read, made with the repository.
+     * @return The result of the read.
+     */
+    public <T> T readPrimary(Supplier<T> read) {
+        if (lagNanos == 0) {
+            return read.get();
+        }
+        primaryReads.increment();
+        return primary.execute(status -> read.get());
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ *
+ */
+package com.jpmc.cache.exception;
+
+import lombok.Getter;
+
+/**
+ * Thrown when a database call is refused without being attempted, because the
+ * circuit breaker is open or because too many calls are already running or waiting.
+ * The {@link GlobalExceptionHandler} answers it with a 503 Service Unavailable
+ * response, so that clients back off instead of piling up behind a slow database.
+ *
+ * @author r.pandiarajan
+ */
+@Getter
+public class DatabaseUnavailableException extends RuntimeException
+{
+    private static final long serialVersionUID = 1L;
+
+    /** Time after which the call may be retried, in milliseconds. */
+    private final long retryAfterMillis;
+
+    /**
+     * @param message The reason the call was refused.
+     * @param retryAfterMillis Time after which the call may be retried, in milliseconds.
+     */
+    public DatabaseUnavailableException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+}
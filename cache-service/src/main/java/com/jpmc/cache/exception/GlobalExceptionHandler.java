@@ -4,7 +4,9 @@
 package com.jpmc.cache.exception;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -19,6 +21,7 @@ import jakarta.persistence.EntityNotFoundException;
  * different types of exceptions.
  * 
  * - {@link EntityNotFoundException} is handled by returning a 404 Not Found response with a custom error message.
+ * - {@link DatabaseUnavailableException} is handled by returning a 503 Service Unavailable response with a Retry-After header.
  * - A general {@link Exception} is handled by returning a 500 Internal Server Error response for unexpected errors.
  * 
  * @author r.pandiarajan
@@ -41,6 +44,23 @@ public class GlobalExceptionHandler
         return new ResponseEntity<>(errorResponse, HttpStatus.NOT_FOUND);
     }
     
+    /**
+     * Handles {@link DatabaseUnavailableException} by returning a 503 Service Unavailable 
+     * response, telling the client when to retry, rather than letting requests queue 
+     * behind an overloaded or failing database.
+     * 
+     * @param ex The {@link DatabaseUnavailableException} that was thrown.
+     * @return A {@link ResponseEntity} containing the {@link ErrorResponse} with status 503.
+     */
+    @ExceptionHandler(DatabaseUnavailableException.class)
+    public ResponseEntity<ErrorResponse> handleDatabaseUnavailableException(DatabaseUnavailableException ex){
+        ErrorResponse errorResponse = new ErrorResponse(LocalDateTime.now(), HttpStatus.SERVICE_UNAVAILABLE.value(), 
+                "Service Unavailable", ex.getMessage());
+        long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(ex.getRetryAfterMillis() + 999));
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds)).body(errorResponse);
+    }
+    
     /**
      * Handles any general {@link Exception} by returning a 500 Internal Server Error response 
      * with a generic error message.
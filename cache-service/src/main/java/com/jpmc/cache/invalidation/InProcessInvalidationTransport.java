@@ -0,0 +1,73 @@
+/**
+ *
+ */
+package com.jpmc.cache.invalidation;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link InvalidationTransport} between replicas running in the same JVM, such as
+ * application contexts started by a test. Batches are handed to the receivers of the
+ * other transports open on the same channel, on the sending thread.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.transport", havingValue = "in-process")
+@Slf4j
+public class InProcessInvalidationTransport implements InvalidationTransport
+{
+    /** Open transports by channel name. */
+    private static final Map<String, Set<InProcessInvalidationTransport>> CHANNELS = new ConcurrentHashMap<>();
+
+    private final String channel;
+    private volatile Consumer<InvalidationBatch> receiver;
+
+    /**
+     * Creates a transport on the given channel.
+     *
+     * @param channel The name of the channel shared by the replicas.
+     */
+    public InProcessInvalidationTransport(@Value("${cache.invalidation.in-process.channel:default}") String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void open(Consumer<InvalidationBatch> receiver) {
+        this.receiver = receiver;
+        CHANNELS.computeIfAbsent(channel, name -> new CopyOnWriteArraySet<>()).add(this);
+    }
+
+    @Override
+    public void send(InvalidationBatch batch) {
+        for (InProcessInvalidationTransport peer : CHANNELS.getOrDefault(channel, Set.of())) {
+            if (peer == this) {
+                continue;
+            }
+            try {
+                peer.receiver.accept(batch);
+            }
+            catch (RuntimeException e) {
+                log.warn("Failed to apply {} invalidations on channel {}", batch.invalidations().size(), channel, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Set<InProcessInvalidationTransport> peers = CHANNELS.get(channel);
+        if (peers != null) {
+            peers.remove(this);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ *
+ */
+package com.jpmc.cache.invalidation;
+
+import com.jpmc.cache.model.Employee;
+
+/**
+ * A change to the cache of one replica, broadcast by the {@link InvalidationBus} so
+ * that the other replicas update or drop their copies.
+ *
+ * Every invalidation carries the full state of its ID, so only the latest one of an
+ * ID needs to be sent and replicas can apply them without reading the database.
+ *
+ * @param type What changed.
+ * @param id The ID of the changed entry, or {@code null} for a {@link Type#CLEAR}.
+ * @param employee The new value of a {@link Type#PUT}, or {@code null}.
+ *
+ * @author r.pandiarajan
+ */
+public record Invalidation(Type type, Long id, Employee employee)
+{
+    /**
+     * @return An invalidation replacing the copies of an entry with its new value.
+     */
+    public static Invalidation put(Employee employee) {
+        return new Invalidation(Type.PUT, employee.getId(), employee);
+    }
+
+    /**
+     * @return An invalidation dropping the copies of a removed entry.
+     */
+    public static Invalidation remove(Long id) {
+        return new Invalidation(Type.REMOVE, id, null);
+    }
+
+    /**
+     * @return An invalidation dropping every copy, after all entries were removed.
+     */
+    public static Invalidation clear() {
+        return new Invalidation(Type.CLEAR, null, null);
+    }
+
+    /**
+     * Kinds of change.
+     */
+    public enum Type
+    {
+        /** An entry was added or replaced. */
+        PUT,
+
+        /** An entry was removed from the cache and the database. */
+        REMOVE,
+
+        /** Every entry was removed from the cache and the database. */
+        CLEAR
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ *
+ */
+package com.jpmc.cache.invalidation;
+
+import java.util.List;
+
+/**
+ * Invalidations sent together by the {@link InvalidationBus} of one replica.
+ *
+ * @param origin The ID of the sending replica, so that it ignores its own batches.
+ * @param invalidations The invalidations, in the order they are to be applied.
+ *
+ * @author r.pandiarajan
+ */
+public record InvalidationBatch(String origin, List<Invalidation> invalidations)
+{
+}
@@ -0,0 +1,244 @@
+/**
+ *
+ */
+package com.jpmc.cache.invalidation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.jpmc.cache.service.CacheMetrics;
+import com.jpmc.cache.service.CacheService;
+
+import io.micrometer.core.instrument.Counter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps the caches of replicas behind a load balancer coherent: the changes made by
+ * the {@link CacheService} of this replica are broadcast over an
+ * {@link InvalidationTransport}, and the changes received from the other replicas
+ * are applied to it.
+ *
+ * Changes are not sent one by one. They are collected for up to
+ * {@code cache.invalidation.flush-interval-ms} after the first one, and only the
+ * latest change of each ID is kept, so repeated writes of a hot ID cost a single
+ * message. The collected changes are then sent in batches of up to
+ * {@code cache.invalidation.max-batch-size}, by a background flusher, as soon as a
+ * batch is full or the interval has elapsed. Invalidation traffic therefore grows
+ * with the number of distinct IDs written per interval, not with the write rate.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.enabled", havingValue = "true")
+@Slf4j
+public class InvalidationBus
+{
+    private final CacheService cacheService;
+    private final InvalidationTransport transport;
+    private final int maxBatchSize;
+    private final long flushIntervalMillis;
+
+    /** ID of this replica, sent with its batches. */
+    @Getter
+    private final String origin = UUID.randomUUID().toString();
+
+    /** Guards the pending changes. */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    /** Held while pending changes are sent, so batches leave in the order of the changes. */
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    /** Latest pending change of each ID, guarded by {@link #lock}. */
+    private Map<Long, Invalidation> pending = new LinkedHashMap<>();
+
+    /** Whether a clear is pending, to be sent before the pending changes; guarded by {@link #lock}. */
+    private boolean clearPending;
+
+    private final Counter published;
+    private final Counter sent;
+    private final Counter batches;
+    private final Counter received;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    /**
+     * Creates the invalidation bus of this replica.
+     *
+     * @param cacheService The service whose changes are broadcast and which applies those of the other replicas.
+     * @param transport The transport carrying the batches.
+     * @param metrics The cache meters, extended with invalidation counters.
+     * @param maxBatchSize Maximum number of changes sent in one batch.
+     * @param flushIntervalMillis Maximum time a change waits to be coalesced with later ones.
+     */
+    public InvalidationBus(CacheService cacheService, InvalidationTransport transport, CacheMetrics metrics,
+            @Value("${cache.invalidation.max-batch-size:500}") int maxBatchSize,
+            @Value("${cache.invalidation.flush-interval-ms:10}") long flushIntervalMillis) {
+        this.cacheService = cacheService;
+        this.transport = transport;
+        this.maxBatchSize = Math.max(maxBatchSize, 1);
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.published = metrics.counter("cache.invalidation.published", "Cache changes published to the other replicas");
+        this.sent = metrics.counter("cache.invalidation.sent", "Cache changes sent, after coalescing changes of the same ID");
+        this.batches = metrics.counter("cache.invalidation.batches", "Batches of cache changes sent");
+        this.received = metrics.counter("cache.invalidation.received", "Cache changes received from the other replicas");
+    }
+
+    /**
+     * Opens the transport, starts the flusher and subscribes to the changes of the cache.
+     */
+    @PostConstruct
+    public void start() {
+        transport.open(this::receive);
+        running = true;
+        flusher = new Thread(this::runFlusher, "cache-invalidation");
+        flusher.setDaemon(true);
+        flusher.start();
+        cacheService.setInvalidationListener(this::publish);
+    }
+
+    /**
+     * Unsubscribes from the cache, sends the pending changes and closes the transport.
+     */
+    @PreDestroy
+    public void stop() {
+        cacheService.setInvalidationListener(null);
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        transport.close();
+    }
+
+    /**
+     * Queues a change of this replica to be sent, replacing the pending change of the
+     * same ID. A clear drops every pending change.
+     *
+     * @param invalidation The change.
+     */
+    public void publish(Invalidation invalidation) {
+        published.increment();
+        lock.lock();
+        try {
+            boolean wasEmpty = pending.isEmpty() && !clearPending;
+            if (invalidation.type() == Invalidation.Type.CLEAR) {
+                pending.clear();
+                clearPending = true;
+            }
+            else {
+                pending.put(invalidation.id(), invalidation);
+            }
+            if (wasEmpty || pending.size() >= maxBatchSize) {
+                changed.signal();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends every pending change on the calling thread.
+     */
+    public void flush() {
+        sendLock.lock();
+        try {
+            List<Invalidation> invalidations;
+            lock.lock();
+            try {
+                if (pending.isEmpty() && !clearPending) {
+                    return;
+                }
+                invalidations = new ArrayList<>(pending.size() + 1);
+                if (clearPending) {
+                    invalidations.add(Invalidation.clear());
+                }
+                invalidations.addAll(pending.values());
+                pending = new LinkedHashMap<>();
+                clearPending = false;
+            }
+            finally {
+                lock.unlock();
+            }
+            for (int from = 0; from < invalidations.size(); from += maxBatchSize) {
+                List<Invalidation> batch = invalidations.subList(from, Math.min(from + maxBatchSize,
+                        invalidations.size()));
+                try {
+                    transport.send(new InvalidationBatch(origin, List.copyOf(batch)));
+                    sent.increment(batch.size());
+                    batches.increment();
+                }
+                catch (RuntimeException e) {
+                    log.warn("Failed to send {} invalidations, replicas may keep stale copies", batch.size(), e);
+                }
+            }
+        }
+        finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Applies a batch received from another replica; batches of this replica are ignored.
+     */
+    void receive(InvalidationBatch batch) {
+        if (origin.equals(batch.origin())) {
+            return;
+        }
+        received.increment(batch.invalidations().size());
+        cacheService.applyInvalidations(batch.invalidations());
+    }
+
+    /**
+     * Flusher loop: waits for a first change, then for the batch to fill up or the
+     * flush interval to elapse, and sends the pending changes.
+     */
+    private void runFlusher() {
+        while (running) {
+            try {
+                awaitBatch();
+            }
+            catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+            flush();
+        }
+    }
+
+    private void awaitBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            while (pending.isEmpty() && !clearPending) {
+                changed.await();
+            }
+            long remaining = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+            while (pending.size() < maxBatchSize && remaining > 0) {
+                remaining = changed.awaitNanos(remaining);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ *
+ */
+package com.jpmc.cache.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link InvalidationBatch}es between the replicas of the cache service.
+ *
+ * The transport is selected with {@code cache.invalidation.transport}: {@code udp}
+ * ({@link UdpInvalidationTransport}) between processes, or {@code in-process}
+ * ({@link InProcessInvalidationTransport}) between application contexts of the same
+ * JVM. Another transport, such as a message broker, is plugged in by declaring an
+ * {@code InvalidationTransport} bean and setting the property to any other value.
+ *
+ * Delivery is best effort: a lost batch leaves stale copies on a replica until they
+ * are replaced, removed or evicted.
+ *
+ * @author r.pandiarajan
+ */
+public interface InvalidationTransport
+{
+    /**
+     * Starts receiving the batches sent by the other replicas.
+     *
+     * @param receiver The callback applying a received batch, possibly called by several threads.
+     */
+    void open(Consumer<InvalidationBatch> receiver);
+
+    /**
+     * Sends a batch to every other replica.
+     *
+     * @param batch The batch to send.
+     */
+    void send(InvalidationBatch batch);
+
+    /**
+     * Stops receiving batches and releases the resources of the transport.
+     */
+    void close();
+}
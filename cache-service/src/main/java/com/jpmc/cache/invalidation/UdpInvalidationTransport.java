@@ -0,0 +1,174 @@
+/**
+ *
+ */
+package com.jpmc.cache.invalidation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link InvalidationTransport} sending each batch as a JSON datagram to every peer
+ * listed in {@code cache.invalidation.udp.peers}, and receiving the batches of the
+ * peers on {@code cache.invalidation.udp.port}.
+ *
+ * Batches larger than a datagram are split in halves until they fit. UDP neither
+ * retries nor orders datagrams, so it suits replicas on one network, where losses
+ * are rare and only leave stale copies until they are replaced or evicted.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.transport", havingValue = "udp", matchIfMissing = true)
+@Slf4j
+public class UdpInvalidationTransport implements InvalidationTransport
+{
+    /** Largest UDP payload over IPv4. */
+    static final int MAX_DATAGRAM_SIZE = 65507;
+
+    /** Receive buffer absorbing bursts of datagrams while the receiver applies a batch. */
+    private static final int RECEIVE_BUFFER_SIZE = 1 << 20;
+
+    private final ObjectMapper objectMapper;
+    private final int port;
+    private final List<InetSocketAddress> peers;
+
+    private volatile DatagramChannel channel;
+    private Thread receiverThread;
+
+    /**
+     * Creates a transport, which binds its port when opened.
+     *
+     * @param objectMapper Mapper encoding the batches as JSON.
+     * @param port Port receiving the batches of the peers; {@code 0} picks a free port.
+     * @param peers Addresses of the other replicas, as {@code host:port}.
+     */
+    public UdpInvalidationTransport(ObjectMapper objectMapper,
+            @Value("${cache.invalidation.udp.port:7600}") int port,
+            @Value("${cache.invalidation.udp.peers:}") List<String> peers) {
+        this.objectMapper = objectMapper;
+        this.port = port;
+        this.peers = peers.stream().map(String::trim).filter(peer -> !peer.isEmpty())
+                .map(UdpInvalidationTransport::address).toList();
+    }
+
+    @Override
+    public void open(Consumer<InvalidationBatch> receiver) {
+        try {
+            channel = DatagramChannel.open()
+                    .setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_SIZE)
+                    .bind(new InetSocketAddress(port));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to bind invalidation port " + port, e);
+        }
+        log.info("Receiving invalidations on {}, sending them to {}", getLocalPort(), peers);
+        receiverThread = new Thread(() -> receive(receiver), "cache-invalidation-udp");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    @Override
+    public void send(InvalidationBatch batch) {
+        byte[] datagram;
+        try {
+            datagram = objectMapper.writeValueAsBytes(batch);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<Invalidation> invalidations = batch.invalidations();
+        if (datagram.length > MAX_DATAGRAM_SIZE && invalidations.size() > 1) {
+            int half = invalidations.size() / 2;
+            send(new InvalidationBatch(batch.origin(), invalidations.subList(0, half)));
+            send(new InvalidationBatch(batch.origin(), invalidations.subList(half, invalidations.size())));
+            return;
+        }
+        if (datagram.length > MAX_DATAGRAM_SIZE) {
+            log.warn("Invalidation of id - {} does not fit in a datagram, dropping it", invalidations.get(0).id());
+            return;
+        }
+        for (InetSocketAddress peer : peers) {
+            try {
+                channel.send(ByteBuffer.wrap(datagram), peer);
+            }
+            catch (IOException e) {
+                log.warn("Failed to send {} invalidations to {}: {}", invalidations.size(), peer, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        DatagramChannel open = channel;
+        if (open == null) {
+            return;
+        }
+        try {
+            open.close();
+            receiverThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        catch (IOException e) {
+            log.warn("Failed to close invalidation port {}", port, e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The port receiving the batches of the peers, or {@code -1} until opened.
+     */
+    public int getLocalPort() {
+        try {
+            return channel != null ? ((InetSocketAddress) channel.getLocalAddress()).getPort() : -1;
+        }
+        catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Receiver loop: decodes each datagram and applies it, until the channel is closed.
+     */
+    private void receive(Consumer<InvalidationBatch> receiver) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        while (channel.isOpen()) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                receiver.accept(objectMapper.readValue(buffer.array(), 0, buffer.limit(), InvalidationBatch.class));
+            }
+            catch (ClosedChannelException e) {
+                break;
+            }
+            catch (IOException | RuntimeException e) {
+                log.warn("Failed to apply a received invalidation batch", e);
+            }
+        }
+    }
+
+    private static InetSocketAddress address(String peer) {
+        int colon = peer.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Invalidation peer must be host:port - " + peer);
+        }
+        return new InetSocketAddress(peer.substring(0, colon), Integer.parseInt(peer.substring(colon + 1)));
+    }
+}
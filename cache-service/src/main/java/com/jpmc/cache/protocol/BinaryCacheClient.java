@@ -0,0 +1,247 @@
+/**
+ *
+ */
+package com.jpmc.cache.protocol;
+
+import static com.jpmc.cache.protocol.BinaryProtocol.HEADER_SIZE;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jpmc.cache.model.Employee;
+
+/**
+ * Blocking client of the {@link BinaryProtocol}, holding one connection to a
+ * {@link BinaryProtocolServer}. It is safe for use by several threads, which take
+ * turns on the connection.
+ *
+ * {@link #getPipelined(List)} sends many GETs in one write before reading their
+ * responses, so a round trip is shared by all of them.
+ *
+ * @author r.pandiarajan
+ */
+public class BinaryCacheClient implements AutoCloseable
+{
+    /** Requests sent by {@link #getPipelined(List)} before their responses are read. */
+    public static final int PIPELINE_WINDOW = 256;
+
+    private final SocketChannel channel;
+    private final ObjectMapper objectMapper;
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE);
+    private int nextOpaque;
+
+    /**
+     * Connects to a server.
+     *
+     * @param host The host of the server.
+     * @param port The port of the server, {@code cache.binary.port}.
+     * @param objectMapper Mapper encoding and decoding the values.
+     */
+    public BinaryCacheClient(String host, int port, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        try {
+            this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+            this.channel.socket().setTcpNoDelay(true);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to connect to " + host + ":" + port, e);
+        }
+    }
+
+    /**
+     * @param id The ID of the entry.
+     * @return The entry, or {@code null} if it is neither cached nor in the database.
+     */
+    public synchronized Employee get(long id) {
+        int opaque = sendKeys(BinaryProtocol.GET, List.of(id));
+        flush();
+        return decode(receive(BinaryProtocol.GET, opaque));
+    }
+
+    /**
+     * Sends a GET per ID, then reads their responses. Requests are sent in windows of
+     * {@link #PIPELINE_WINDOW}, whose responses are read before the next window is sent,
+     * so that neither side blocks on a full socket buffer.
+     *
+     * @param ids The IDs of the entries.
+     * @return The entries, in the order of the IDs, with {@code null} for those not found.
+     */
+    public synchronized List<Employee> getPipelined(List<Long> ids) {
+        List<Employee> employees = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += PIPELINE_WINDOW) {
+            List<Long> window = ids.subList(from, Math.min(from + PIPELINE_WINDOW, ids.size()));
+            int first = nextOpaque;
+            for (Long id : window) {
+                sendKeys(BinaryProtocol.GET, List.of(id));
+            }
+            flush();
+            for (int i = 0; i < window.size(); i++) {
+                employees.add(decode(receive(BinaryProtocol.GET, first + i)));
+            }
+        }
+        return employees;
+    }
+
+    /**
+     * @param ids The IDs of the entries.
+     * @return The entries found, in the order of the IDs.
+     */
+    public synchronized List<Employee> getMany(Collection<Long> ids) {
+        int opaque = sendKeys(BinaryProtocol.MULTI_GET, ids);
+        flush();
+        ByteBuffer body = ByteBuffer.wrap(receive(BinaryProtocol.MULTI_GET, opaque));
+        List<Employee> employees = new ArrayList<>();
+        while (body.hasRemaining()) {
+            body.getLong();
+            byte[] value = new byte[body.getInt()];
+            body.get(value);
+            employees.add(decode(value));
+        }
+        return employees;
+    }
+
+    /**
+     * Adds an entry to the cache.
+     *
+     * @param employee The entry.
+     */
+    public synchronized void set(Employee employee) {
+        byte[] value;
+        try {
+            value = objectMapper.writeValueAsBytes(employee);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int opaque = nextOpaque++;
+        ensureWritable(HEADER_SIZE + value.length);
+        BinaryProtocol.putHeader(writeBuffer, BinaryProtocol.REQUEST_MAGIC, BinaryProtocol.SET, (short) 0, opaque,
+                value.length);
+        writeBuffer.put(value);
+        flush();
+        receive(BinaryProtocol.SET, opaque);
+    }
+
+    /**
+     * Removes an entry from the cache and the database.
+     *
+     * @param id The ID of the entry.
+     */
+    public synchronized void delete(long id) {
+        int opaque = sendKeys(BinaryProtocol.DELETE, List.of(id));
+        flush();
+        receive(BinaryProtocol.DELETE, opaque);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Buffers a request whose body is a sequence of keys.
+     *
+     * @return The opaque value of the request.
+     */
+    private int sendKeys(byte opcode, Collection<Long> ids) {
+        int opaque = nextOpaque++;
+        int bodyLength = ids.size() * Long.BYTES;
+        ensureWritable(HEADER_SIZE + bodyLength);
+        BinaryProtocol.putHeader(writeBuffer, BinaryProtocol.REQUEST_MAGIC, opcode, (short) 0, opaque, bodyLength);
+        for (Long id : ids) {
+            writeBuffer.putLong(id);
+        }
+        return opaque;
+    }
+
+    private void ensureWritable(int length) {
+        if (writeBuffer.remaining() < length) {
+            flush();
+        }
+        if (writeBuffer.capacity() < length) {
+            writeBuffer = ByteBuffer.allocateDirect(length);
+        }
+    }
+
+    private void flush() {
+        writeBuffer.flip();
+        try {
+            while (writeBuffer.hasRemaining()) {
+                channel.write(writeBuffer);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        writeBuffer.clear();
+    }
+
+    /**
+     * Reads the response to a request.
+     *
+     * @return The body of the response, or {@code null} if the entry was not found.
+     * @throws IllegalStateException if the server answered with an error.
+     */
+    private byte[] receive(byte opcode, int opaque) {
+        header.clear();
+        readFully(header);
+        header.flip();
+        byte magic = header.get();
+        byte responseOpcode = header.get();
+        short status = header.getShort();
+        int responseOpaque = header.getInt();
+        byte[] body = new byte[header.getInt()];
+        readFully(ByteBuffer.wrap(body));
+        if (magic != BinaryProtocol.RESPONSE_MAGIC || responseOpcode != opcode || responseOpaque != opaque) {
+            throw new IllegalStateException("Unexpected response to request " + opaque);
+        }
+        if (status == BinaryProtocol.STATUS_NOT_FOUND) {
+            return null;
+        }
+        if (status != BinaryProtocol.STATUS_OK) {
+            throw new IllegalStateException("Request failed with status " + status + ": "
+                    + new String(body, StandardCharsets.UTF_8));
+        }
+        return body;
+    }
+
+    private void readFully(ByteBuffer buffer) {
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Connection closed by the server");
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Employee decode(byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(value, Employee.class);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
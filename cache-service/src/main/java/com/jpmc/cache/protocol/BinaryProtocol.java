@@ -0,0 +1,77 @@
+/**
+ *
+ */
+package com.jpmc.cache.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Framing of the binary protocol served by {@link BinaryProtocolServer}, modelled on
+ * the memcached binary protocol.
+ *
+ * Every request and response starts with a 12-byte header:
+ * <pre>
+ *  0      magic: 0x80 for a request, 0x81 for a response
+ *  1      opcode
+ *  2..3   status of a response, 0 in a request
+ *  4..7   opaque: chosen by the client and echoed in the response
+ *  8..11  length of the body that follows
+ * </pre>
+ * Numbers are big-endian. Keys are 8-byte {@link com.jpmc.cache.model.Employee} IDs
+ * and values are their JSON encoding, as returned by the REST API.
+ *
+ * <ul>
+ * <li>{@link #GET}: body is a key; the response body is the value.</li>
+ * <li>{@link #SET}: body is a value, which is added to the cache; empty response body.</li>
+ * <li>{@link #DELETE}: body is a key, removed from the cache and the database; empty response body.</li>
+ * <li>{@link #NOOP}: empty body and response body.</li>
+ * <li>{@link #MULTI_GET}: body is a sequence of keys; the response body holds, for each
+ * key found, the key, the 4-byte length of its value and the value.</li>
+ * </ul>
+ *
+ * In cluster mode, a request for a key owned by another member is answered with
+ * {@link #STATUS_NOT_OWNED}, whose body names the owner, instead of being forwarded.
+ *
+ * Requests of a connection are answered in order, so a client may pipeline them: send
+ * many requests before reading the responses.
+ *
+ * @author r.pandiarajan
+ */
+public final class BinaryProtocol
+{
+    public static final byte REQUEST_MAGIC = (byte) 0x80;
+    public static final byte RESPONSE_MAGIC = (byte) 0x81;
+    public static final int HEADER_SIZE = 12;
+
+    public static final byte GET = 0x00;
+    public static final byte SET = 0x01;
+    public static final byte DELETE = 0x04;
+    public static final byte NOOP = 0x0A;
+    public static final byte MULTI_GET = 0x20;
+
+    public static final short STATUS_OK = 0x0000;
+    public static final short STATUS_NOT_FOUND = 0x0001;
+    public static final short STATUS_INVALID_ARGUMENTS = 0x0004;
+    public static final short STATUS_NOT_OWNED = 0x0007;
+    public static final short STATUS_UNKNOWN_COMMAND = 0x0081;
+    public static final short STATUS_INTERNAL_ERROR = 0x0084;
+    public static final short STATUS_TEMPORARY_FAILURE = 0x0086;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Writes a header at the position of the buffer.
+     *
+     * @param buffer The buffer, with at least {@link #HEADER_SIZE} bytes remaining.
+     * @param magic {@link #REQUEST_MAGIC} or {@link #RESPONSE_MAGIC}.
+     * @param opcode The opcode.
+     * @param status The status of a response, {@code 0} for a request.
+     * @param opaque The opaque value.
+     * @param bodyLength The length of the body.
+     */
+    public static void putHeader(ByteBuffer buffer, byte magic, byte opcode, short status, int opaque,
+            int bodyLength) {
+        buffer.put(magic).put(opcode).putShort(status).putInt(opaque).putInt(bodyLength);
+    }
+}
@@ -0,0 +1,534 @@
+/**
+ *
+ */
+package com.jpmc.cache.protocol;
+
+import static com.jpmc.cache.protocol.BinaryProtocol.HEADER_SIZE;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jpmc.cache.cluster.CacheCluster;
+import com.jpmc.cache.exception.DatabaseUnavailableException;
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.service.CacheService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Listener of the {@link BinaryProtocol}, an alternative to the REST API for
+ * service-to-service traffic, where parsing HTTP and JSON requests costs more than
+ * the cache lookup. It calls the same {@link CacheService}.
+ *
+ * One selector thread accepts connections, reads requests into a direct buffer per
+ * connection and writes responses. Requests are executed on a virtual thread per
+ * connection, in order, so that a miss waiting for the database does not hold up the
+ * other connections. A client may pipeline requests; the responses of a pipeline are
+ * written together with a gathering write, and GET hits write the JSON bytes kept by
+ * the {@link CacheService} as they are, without encoding or copying them into a
+ * response buffer. A connection stops being read while it has
+ * {@link #MAX_PIPELINED_REQUESTS} requests waiting, until they are answered.
+ *
+ * The protocol has no authentication, so the listener binds {@code cache.binary.bind-address},
+ * the loopback interface by default. In cluster mode, requests for IDs owned by another
+ * member are refused with {@link BinaryProtocol#STATUS_NOT_OWNED} and the owner's URL,
+ * so that clients send them there: the listener only serves the IDs this instance owns.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.binary.enabled", havingValue = "true")
+@Slf4j
+public class BinaryProtocolServer
+{
+    /** Requests read ahead on a connection before it stops being read. */
+    static final int MAX_PIPELINED_REQUESTS = 1024;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /** Buffers passed to one gathering write, below the usual IOV_MAX of 1024. */
+    private static final int MAX_WRITE_BUFFERS = 512;
+
+    /** Key and value length preceding each value of a multi-get response. */
+    private static final int MULTI_GET_ENTRY_PREFIX = Long.BYTES + Integer.BYTES;
+
+    private final CacheService cacheService;
+    private final ObjectMapper objectMapper;
+    private final String bindAddress;
+    private final int port;
+    private final int maxFrameBytes;
+
+    /** Runs the requests of each connection, one virtual thread at a time per connection. */
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("cache-binary-", 0).factory());
+
+    /** Membership of the cluster, telling the IDs this instance owns; absent when clustering is disabled. */
+    @Autowired(required = false)
+    CacheCluster cacheCluster;
+
+    /** Connections whose interest in reads or writes changed, applied by the selector thread. */
+    private final Queue<Connection> interestChanges = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    /**
+     * Creates the listener, which binds its port when started.
+     *
+     * @param cacheService The service executing the requests.
+     * @param objectMapper Mapper decoding set values.
+     * @param bindAddress Address of the interface to listen on.
+     * @param port Port to listen on; {@code 0} picks a free port.
+     * @param maxFrameBytes Largest request body accepted; larger requests close the connection.
+     */
+    public BinaryProtocolServer(CacheService cacheService, ObjectMapper objectMapper,
+            @Value("${cache.binary.bind-address:127.0.0.1}") String bindAddress,
+            @Value("${cache.binary.port:11211}") int port,
+            @Value("${cache.binary.max-frame-bytes:1048576}") int maxFrameBytes) {
+        this.cacheService = cacheService;
+        this.objectMapper = objectMapper;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.maxFrameBytes = maxFrameBytes;
+    }
+
+    /**
+     * Binds the port and starts the selector thread.
+     */
+    @PostConstruct
+    public void start() {
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(bindAddress, port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to listen on binary protocol address " + bindAddress + ":" + port,
+                    e);
+        }
+        running = true;
+        selectorThread = new Thread(this::runSelector, "cache-binary-selector");
+        selectorThread.start();
+        log.info("Listening for the binary protocol on {}:{}", bindAddress, getPort());
+    }
+
+    /**
+     * Stops accepting requests and closes every connection.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+    }
+
+    /**
+     * @return The port the listener is bound to.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void runSelector() {
+        try {
+            while (running) {
+                selector.select();
+                Connection changed;
+                while ((changed = interestChanges.poll()) != null) {
+                    changed.updateInterest();
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                        }
+                    }
+                    catch (IOException | CancelledKeyException e) {
+                        if (key.attachment() instanceof Connection connection) {
+                            log.debug("Closing binary protocol connection: {}", e.getMessage());
+                            connection.close();
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        }
+        catch (IOException e) {
+            log.error("Binary protocol selector failed", e);
+        }
+        finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection) {
+                    connection.close();
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            }
+            catch (IOException e) {
+                log.warn("Failed to close the binary protocol listener", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    /**
+     * Executes a request and returns the buffers of its response.
+     */
+    private ByteBuffer[] execute(byte opcode, int opaque, byte[] body) {
+        try {
+            return switch (opcode) {
+                case BinaryProtocol.GET -> get(opaque, body);
+                case BinaryProtocol.SET -> set(opaque, body);
+                case BinaryProtocol.DELETE -> delete(opaque, body);
+                case BinaryProtocol.NOOP -> response(opcode, BinaryProtocol.STATUS_OK, opaque, null);
+                case BinaryProtocol.MULTI_GET -> multiGet(opaque, body);
+                default -> error(opcode, BinaryProtocol.STATUS_UNKNOWN_COMMAND, opaque, "Unknown opcode " + opcode);
+            };
+        }
+        catch (NotOwnedException e) {
+            return error(opcode, BinaryProtocol.STATUS_NOT_OWNED, opaque, e.getMessage());
+        }
+        catch (IllegalArgumentException | IOException e) {
+            return error(opcode, BinaryProtocol.STATUS_INVALID_ARGUMENTS, opaque, e.getMessage());
+        }
+        catch (DatabaseUnavailableException e) {
+            return error(opcode, BinaryProtocol.STATUS_TEMPORARY_FAILURE, opaque, e.getMessage());
+        }
+        catch (RuntimeException e) {
+            log.error("Failed to execute binary protocol opcode {}", opcode, e);
+            return error(opcode, BinaryProtocol.STATUS_INTERNAL_ERROR, opaque, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private ByteBuffer[] get(int opaque, byte[] body) {
+        Long id = key(body);
+        requireOwned(List.of(id));
+        try {
+            return response(BinaryProtocol.GET, BinaryProtocol.STATUS_OK, opaque, cacheService.getJson(id));
+        }
+        catch (EntityNotFoundException e) {
+            return response(BinaryProtocol.GET, BinaryProtocol.STATUS_NOT_FOUND, opaque, null);
+        }
+    }
+
+    private ByteBuffer[] set(int opaque, byte[] body) throws IOException {
+        Employee employee = objectMapper.readValue(body, Employee.class);
+        if (employee.getId() == null) {
+            throw new IllegalArgumentException("Value has no id");
+        }
+        requireOwned(List.of(employee.getId()));
+        cacheService.add(employee);
+        return response(BinaryProtocol.SET, BinaryProtocol.STATUS_OK, opaque, null);
+    }
+
+    private ByteBuffer[] delete(int opaque, byte[] body) {
+        List<Long> ids = List.of(key(body));
+        requireOwned(ids);
+        cacheService.removeMany(ids);
+        return response(BinaryProtocol.DELETE, BinaryProtocol.STATUS_OK, opaque, null);
+    }
+
+    private ByteBuffer[] multiGet(int opaque, byte[] body) {
+        if (body.length % Long.BYTES != 0) {
+            throw new IllegalArgumentException("Body is not a sequence of 8-byte keys");
+        }
+        ByteBuffer keys = ByteBuffer.wrap(body);
+        List<Long> ids = new ArrayList<>(body.length / Long.BYTES);
+        while (keys.hasRemaining()) {
+            ids.add(keys.getLong());
+        }
+        requireOwned(ids);
+        Map<Long, byte[]> values = cacheService.getManyJson(ids);
+        // The header and the key and length of every value, followed in the write by the stored values
+        ByteBuffer prefixes = ByteBuffer.allocate(HEADER_SIZE + values.size() * MULTI_GET_ENTRY_PREFIX);
+        ByteBuffer[] response = new ByteBuffer[1 + 2 * values.size()];
+        int length = 0;
+        for (byte[] value : values.values()) {
+            length += MULTI_GET_ENTRY_PREFIX + value.length;
+        }
+        BinaryProtocol.putHeader(prefixes, BinaryProtocol.RESPONSE_MAGIC, BinaryProtocol.MULTI_GET,
+                BinaryProtocol.STATUS_OK, opaque, length);
+        response[0] = prefixes.slice(0, HEADER_SIZE);
+        int i = 1;
+        for (Map.Entry<Long, byte[]> value : values.entrySet()) {
+            int position = prefixes.position();
+            prefixes.putLong(value.getKey()).putInt(value.getValue().length);
+            response[i++] = prefixes.slice(position, MULTI_GET_ENTRY_PREFIX);
+            response[i++] = ByteBuffer.wrap(value.getValue());
+        }
+        return response;
+    }
+
+    /**
+     * Refuses a request for IDs owned by another member of the cluster, which this
+     * listener does not forward.
+     */
+    private void requireOwned(Collection<Long> ids) {
+        if (cacheCluster == null) {
+            return;
+        }
+        for (Long id : ids) {
+            if (!cacheCluster.isLocal(id)) {
+                throw new NotOwnedException(cacheCluster.ownerOf(id));
+            }
+        }
+    }
+
+    private static Long key(byte[] body) {
+        if (body.length != Long.BYTES) {
+            throw new IllegalArgumentException("Key must be 8 bytes, was " + body.length);
+        }
+        return ByteBuffer.wrap(body).getLong();
+    }
+
+    private static ByteBuffer[] error(byte opcode, short status, int opaque, String message) {
+        return response(opcode, status, opaque, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return The header of a response followed, if any, by a buffer wrapping the body without copying it.
+     */
+    private static ByteBuffer[] response(byte opcode, short status, int opaque, byte[] body) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        BinaryProtocol.putHeader(header, BinaryProtocol.RESPONSE_MAGIC, opcode, status, opaque,
+                body == null ? 0 : body.length);
+        header.flip();
+        return body == null || body.length == 0 ? new ByteBuffer[] { header }
+                : new ByteBuffer[] { header, ByteBuffer.wrap(body) };
+    }
+
+    /**
+     * Thrown for a request about an ID owned by another member; the message is the owner's URL.
+     */
+    private static final class NotOwnedException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        NotOwnedException(String owner) {
+            super(owner);
+        }
+    }
+
+    /**
+     * A request waiting to be executed.
+     */
+    private record Request(byte opcode, int opaque, byte[] body)
+    {
+    }
+
+    /**
+     * State of a client connection. Reads, writes and interest changes run on the
+     * selector thread; requests are executed by a worker, which hands the responses
+     * back under the connection's monitor.
+     */
+    private final class Connection
+    {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+        /** Requests read and not yet executed, guarded by this connection. */
+        private final ArrayDeque<Request> requests = new ArrayDeque<>();
+
+        /** Response buffers not yet written, guarded by this connection. */
+        private final ArrayDeque<ByteBuffer> responses = new ArrayDeque<>();
+
+        /** Whether a worker is executing the requests, guarded by this connection. */
+        private boolean executing;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Reads the available bytes, queues every complete request and starts a worker if none runs.
+         */
+        void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            List<Request> read = new ArrayList<>();
+            while (readBuffer.remaining() >= HEADER_SIZE) {
+                int start = readBuffer.position();
+                if (readBuffer.get(start) != BinaryProtocol.REQUEST_MAGIC) {
+                    throw new IOException("Bad request magic " + readBuffer.get(start));
+                }
+                int bodyLength = readBuffer.getInt(start + 8);
+                if (bodyLength < 0 || bodyLength > maxFrameBytes) {
+                    throw new IOException("Request body of " + bodyLength + " bytes exceeds the limit");
+                }
+                if (readBuffer.remaining() < HEADER_SIZE + bodyLength) {
+                    break;
+                }
+                byte opcode = readBuffer.get(start + 1);
+                int opaque = readBuffer.getInt(start + 4);
+                byte[] body = new byte[bodyLength];
+                readBuffer.position(start + HEADER_SIZE);
+                readBuffer.get(body);
+                read.add(new Request(opcode, opaque, body));
+            }
+            readBuffer.compact();
+            growForNextFrame();
+            if (read.isEmpty()) {
+                return;
+            }
+            synchronized (this) {
+                requests.addAll(read);
+                if (requests.size() >= MAX_PIPELINED_REQUESTS) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+                if (!executing) {
+                    executing = true;
+                    workers.execute(this::executeRequests);
+                }
+            }
+        }
+
+        /**
+         * Worker loop: executes the queued requests in order and hands their responses
+         * to the selector thread, which is woken up once the queue is drained.
+         */
+        private void executeRequests() {
+            while (true) {
+                Request request;
+                synchronized (this) {
+                    request = requests.poll();
+                    if (request == null) {
+                        executing = false;
+                        break;
+                    }
+                }
+                ByteBuffer[] response = execute(request.opcode(), request.opaque(), request.body());
+                boolean flush;
+                synchronized (this) {
+                    for (ByteBuffer buffer : response) {
+                        responses.add(buffer);
+                    }
+                    flush = requests.isEmpty() || responses.size() >= MAX_WRITE_BUFFERS;
+                }
+                if (flush) {
+                    interestChanges.add(this);
+                    selector.wakeup();
+                }
+            }
+        }
+
+        /**
+         * Writes as many queued responses as the socket accepts, with one gathering write.
+         */
+        void write() throws IOException {
+            ByteBuffer[] buffers;
+            synchronized (this) {
+                buffers = responses.stream().limit(MAX_WRITE_BUFFERS).toArray(ByteBuffer[]::new);
+            }
+            channel.write(buffers);
+            synchronized (this) {
+                while (!responses.isEmpty() && !responses.peek().hasRemaining()) {
+                    responses.poll();
+                }
+            }
+            updateInterest();
+        }
+
+        /**
+         * Reads while fewer than {@link #MAX_PIPELINED_REQUESTS} requests wait, and
+         * writes while responses wait. Runs on the selector thread.
+         */
+        synchronized void updateInterest() {
+            if (!key.isValid()) {
+                return;
+            }
+            int ops = requests.size() < MAX_PIPELINED_REQUESTS ? SelectionKey.OP_READ : 0;
+            if (!responses.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+
+        /**
+         * Replaces the read buffer by a larger one when the next request does not fit in it.
+         */
+        private void growForNextFrame() {
+            if (readBuffer.position() < HEADER_SIZE) {
+                return;
+            }
+            int frameLength = HEADER_SIZE + readBuffer.getInt(8);
+            if (frameLength > readBuffer.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(frameLength);
+                readBuffer.flip();
+                larger.put(readBuffer);
+                readBuffer = larger;
+            }
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            }
+            catch (IOException e) {
+                log.debug("Failed to close binary protocol connection", e);
+            }
+        }
+    }
+}
@@ -3,7 +3,13 @@
  */
 package com.jpmc.cache.repository;
 
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.jpmc.cache.model.Employee;
 
@@ -20,5 +26,58 @@ import com.jpmc.cache.model.Employee;
  */
 public interface EmployeeRepository extends JpaRepository<Employee, Long>
 {
+    /**
+     * Finds up to {@code limit} employees with IDs in the given range, in ID order. 
+     * Scanning a table by calling it again from the last ID returned (keyset 
+     * pagination) reads each page through the primary key index, where an offset 
+     * would skip over every previous row.
+     * 
+     * @param fromId The lowest ID returned, inclusive.
+     * @param toId The highest ID returned, inclusive.
+     * @param limit The maximum number of employees returned.
+     * @return The employees found, in ascending ID order.
+     */
+    List<Employee> findByIdBetweenOrderByIdAsc(Long fromId, Long toId, Limit limit);
+
+    /**
+     * Finds up to {@code limit} IDs from the given one, in ID order, for keyset 
+     * pagination over the IDs alone: neither the other columns are read nor entities 
+     * loaded into the persistence context.
+     * 
+     * @param fromId The lowest ID returned, inclusive.
+     * @param limit The maximum number of IDs returned.
+     * @return The IDs found, in ascending order.
+     */
+    @Query("select e.id from Employee e where e.id >= :fromId order by e.id")
+    List<Long> findIdsFrom(@Param("fromId") Long fromId, Limit limit);
+
+    /**
+     * @return The employee with the lowest ID, if any.
+     */
+    Optional<Employee> findFirstByOrderByIdAsc();
+
+    /**
+     * @return The employee with the highest ID, if any.
+     */
+    Optional<Employee> findFirstByOrderByIdDesc();
+
+    /**
+     * @param min The lowest salary, inclusive.
+     * @param max The highest salary, inclusive.
+     * @return The employees with a salary in the range.
+     */
+    List<Employee> findBySalaryBetween(Double min, Double max);
+
+    /**
+     * @param name The name.
+     * @return The employees with this name.
+     */
+    List<Employee> findByName(String name);
 
+    /**
+     * @param prefix The prefix of the names, matched literally rather than as a 
+     *        {@code LIKE} pattern.
+     * @return The employees whose name starts with the prefix.
+     */
+    List<Employee> findByNameStartingWith(String prefix);
 }
@@ -0,0 +1,150 @@
+/**
+ *
+ */
+package com.jpmc.cache.repository;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.jpmc.cache.model.Employee;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes {@link Employee} rows to the {@code employees} table with batched JDBC
+ * statements, for the cache's write-backs and deletes.
+ *
+ * {@link EmployeeRepository#save(Object)} merges an entity with an assigned ID, which
+ * selects the row before writing it, and logs every statement through Hibernate.
+ * This writer upserts instead, with {@code MERGE} on H2 and
+ * {@code INSERT ... ON DUPLICATE KEY UPDATE} on MySQL, so that each entry costs one
+ * statement whether its row exists or not. Rows are written and deleted by a single
+ * prepared statement per call, executed in batches of {@code cache.jdbc-writer.batch-size},
+ * within one transaction.
+ *
+ * The writer bypasses the JPA persistence context, so entities loaded by the
+ * repository must not be held across its writes; the cache service only holds
+ * detached copies.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.jdbc-writer.enabled", havingValue = "true")
+@Slf4j
+public class JdbcEmployeeWriter
+{
+    private static final String H2_UPSERT = "MERGE INTO employees (id, name, salary) KEY (id) VALUES (?, ?, ?)";
+    private static final String MYSQL_UPSERT = "INSERT INTO employees (id, name, salary) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE name = VALUES(name), salary = VALUES(salary)";
+    private static final String DELETE_BY_ID = "DELETE FROM employees WHERE id = ?";
+    private static final String DELETE_ALL = "DELETE FROM employees";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+    private final String upsertSql;
+
+    /**
+     * Creates a writer for the database behind the template.
+     *
+     * @param jdbcTemplate Template of the application's data source.
+     * @param batchSize Maximum number of statements sent to the database in one batch.
+     * @throws IllegalStateException if the database is neither H2 nor MySQL.
+     */
+    public JdbcEmployeeWriter(JdbcTemplate jdbcTemplate, @Value("${cache.jdbc-writer.batch-size:500}") int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+        String database = databaseProductName(jdbcTemplate);
+        this.upsertSql = upsertSql(database);
+        log.info("Writing employees with batched JDBC upserts on {}, {} statements per batch", database, batchSize);
+    }
+
+    /**
+     * Inserts an {@link Employee} row, or updates the row with its ID.
+     *
+     * @param employee The {@link Employee} to write.
+     */
+    @Transactional
+    public void upsert(Employee employee) {
+        jdbcTemplate.update(upsertSql, statement -> setRow(statement, employee));
+    }
+
+    /**
+     * Inserts or updates the rows of several {@link Employee} entities.
+     *
+     * @param employees The {@link Employee} entities to write.
+     */
+    @Transactional
+    public void upsertAll(Collection<Employee> employees) {
+        if (employees.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(upsertSql, rows(employees), batchSize, JdbcEmployeeWriter::setRow);
+    }
+
+    /**
+     * Deletes the rows with the given IDs; IDs without a row are ignored.
+     *
+     * @param ids The IDs of the rows to delete.
+     */
+    @Transactional
+    public void deleteAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(DELETE_BY_ID, rows(ids), batchSize,
+                (statement, id) -> statement.setLong(1, id));
+    }
+
+    /**
+     * Deletes every row.
+     */
+    @Transactional
+    public void deleteAll() {
+        jdbcTemplate.update(DELETE_ALL);
+    }
+
+    private static <T> List<T> rows(Collection<T> rows) {
+        return rows instanceof List<T> list ? list : new ArrayList<>(rows);
+    }
+
+    private static void setRow(PreparedStatement statement, Employee employee) throws SQLException {
+        statement.setLong(1, employee.getId());
+        statement.setString(2, employee.getName());
+        statement.setObject(3, employee.getSalary(), Types.DOUBLE);
+    }
+
+    private static String databaseProductName(JdbcTemplate jdbcTemplate) {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+                    DatabaseMetaData::getDatabaseProductName);
+        }
+        catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Failed to read the database product name", e);
+        }
+    }
+
+    private static String upsertSql(String database) {
+        return switch (database) {
+            case "H2" -> H2_UPSERT;
+            case "MySQL", "MariaDB" -> MYSQL_UPSERT;
+            default -> throw new IllegalStateException("No JDBC upsert is defined for " + database
+                    + ", disable cache.jdbc-writer.enabled");
+        };
+    }
+}
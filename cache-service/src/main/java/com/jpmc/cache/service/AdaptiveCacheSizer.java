@@ -0,0 +1,247 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resizes the cache at runtime, between {@code cache.adaptive-sizing.min-size} and
+ * {@code cache.adaptive-sizing.max-size} entries, once per
+ * {@code cache.adaptive-sizing.interval-ms}.
+ *
+ * The cache shrinks by {@code shrink-factor} while the heap is under pressure, as
+ * reported by the JVM memory and garbage collector MXBeans: when the tenured pool is
+ * fuller than {@code heap-high-watermark} after the last collection, or when more
+ * than {@code gc-time-limit} of the interval was spent collecting. It grows by
+ * {@code growth-factor} while the tenured pool is below {@code heap-low-watermark}
+ * and the {@link MissRatioCurve} estimates that the larger size would miss at least
+ * {@code min-gain} fewer reads, so that memory is only spent where it buys hits.
+ *
+ * Resizes go through {@link CacheService#resize(int)}, which evicts the entries over
+ * a lower size a step at a time. Entries kept off the heap are bounded by their
+ * memory budget instead, so the sizer does not run with off-heap storage.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.adaptive-sizing.enabled", havingValue = "true")
+@Slf4j
+public class AdaptiveCacheSizer
+{
+    private final CacheService cacheService;
+    private final MissRatioCurve missRatioCurve;
+    private final int minSize;
+    private final int maxSize;
+    private final long intervalMillis;
+    private final double heapHighWatermark;
+    private final double heapLowWatermark;
+    private final double gcTimeLimit;
+    private final double shrinkFactor;
+    private final double growthFactor;
+    private final double minGain;
+    private final long minSamples;
+
+    /** Heap pool holding long-lived objects, such as cached entries; {@code null} if none is found. */
+    private final MemoryPoolMXBean tenuredPool = tenuredPool();
+
+    private long lastGcMillis = -1;
+    private long lastCheckNanos;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a sizer.
+     *
+     * @param cacheService The service whose cache is resized.
+     * @param missRatioCurve Estimate of the miss ratio of the cache at other sizes.
+     * @param minSize Smallest maximum size the cache is shrunk to.
+     * @param maxSize Largest maximum size the cache is grown to.
+     * @param intervalMillis Time between two sizing decisions.
+     * @param heapHighWatermark Fraction of the tenured pool used after a collection above which the cache shrinks.
+     * @param heapLowWatermark Fraction of the tenured pool used below which the cache may grow.
+     * @param gcTimeLimit Fraction of the interval spent collecting above which the cache shrinks.
+     * @param shrinkFactor Factor applied to the number of entries when shrinking.
+     * @param growthFactor Factor applied to the maximum size when growing.
+     * @param minGain Decrease of the estimated miss ratio needed to grow.
+     * @param minSamples Number of sampled reads needed before the curve is trusted to grow.
+     */
+    public AdaptiveCacheSizer(CacheService cacheService, MissRatioCurve missRatioCurve,
+            @Value("${cache.adaptive-sizing.min-size:1000}") int minSize,
+            @Value("${cache.adaptive-sizing.max-size:1000000}") int maxSize,
+            @Value("${cache.adaptive-sizing.interval-ms:10000}") long intervalMillis,
+            @Value("${cache.adaptive-sizing.heap-high-watermark:0.8}") double heapHighWatermark,
+            @Value("${cache.adaptive-sizing.heap-low-watermark:0.6}") double heapLowWatermark,
+            @Value("${cache.adaptive-sizing.gc-time-limit:0.1}") double gcTimeLimit,
+            @Value("${cache.adaptive-sizing.shrink-factor:0.75}") double shrinkFactor,
+            @Value("${cache.adaptive-sizing.growth-factor:1.25}") double growthFactor,
+            @Value("${cache.adaptive-sizing.min-gain:0.01}") double minGain,
+            @Value("${cache.adaptive-sizing.min-samples:1000}") long minSamples) {
+        if (minSize <= 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Sizes must satisfy 0 < min-size <= max-size: " + minSize + ", " + maxSize);
+        }
+        if (shrinkFactor <= 0 || shrinkFactor >= 1 || growthFactor <= 1) {
+            throw new IllegalArgumentException("Shrink factor must be in (0, 1) and growth factor above 1");
+        }
+        this.cacheService = cacheService;
+        this.missRatioCurve = missRatioCurve;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.intervalMillis = intervalMillis;
+        this.heapHighWatermark = heapHighWatermark;
+        this.heapLowWatermark = heapLowWatermark;
+        this.gcTimeLimit = gcTimeLimit;
+        this.shrinkFactor = shrinkFactor;
+        this.growthFactor = growthFactor;
+        this.minGain = minGain;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * Schedules the sizing decisions once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (cacheService.getStorageMode() == CacheService.StorageMode.OFF_HEAP) {
+            log.info("Adaptive sizing is disabled with off-heap storage, bounded by its memory budget");
+            return;
+        }
+        log.info("Sizing the cache between {} and {} entries every {} ms, from the {} heap pool", minSize, maxSize,
+                intervalMillis, tenuredPool != null ? tenuredPool.getName() : "whole");
+        lastGcMillis = gcMillis();
+        lastCheckNanos = System.nanoTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-adaptive-sizing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::adjustQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the sizing decisions.
+     */
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the heap usage and the time spent collecting since the last decision, and
+     * resizes the cache accordingly.
+     */
+    void adjust() {
+        long gcMillis = gcMillis();
+        long now = System.nanoTime();
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(now - lastCheckNanos));
+        double gcTimeRatio = lastGcMillis < 0 ? 0.0 : (double) (gcMillis - lastGcMillis) / elapsedMillis;
+        lastGcMillis = gcMillis;
+        lastCheckNanos = now;
+        adjust(heapUsage(), gcTimeRatio);
+    }
+
+    /**
+     * Decides the maximum size of the cache, and resizes it if it changes.
+     *
+     * @param heapUsage Fraction of the tenured pool used.
+     * @param gcTimeRatio Fraction of the last interval spent collecting.
+     * @return The maximum size the cache is resized to, or its current one.
+     */
+    int adjust(double heapUsage, double gcTimeRatio) {
+        int current = cacheService.getTargetCacheSize();
+        int next = current;
+        if (heapUsage > heapHighWatermark || gcTimeRatio > gcTimeLimit) {
+            // Lowering a capacity the cache does not fill frees nothing
+            int entries = Math.min(current, cacheService.getCache().size());
+            next = Math.min(current, Math.max(minSize, (int) (entries * shrinkFactor)));
+            if (next != current) {
+                log.info("Shrinking the cache from {} to {} entries, heap usage {}, GC time {}", current, next,
+                        heapUsage, gcTimeRatio);
+            }
+        }
+        else if (heapUsage < heapLowWatermark && current < maxSize && missRatioCurve.getSamples() >= minSamples) {
+            int grown = (int) Math.min(maxSize, Math.max(current + 1L, (long) (current * growthFactor)));
+            double gain = missRatioCurve.missRatio(current) - missRatioCurve.missRatio(grown);
+            if (gain >= minGain) {
+                next = grown;
+                log.info("Growing the cache from {} to {} entries, estimated miss ratio down by {}", current, next,
+                        gain);
+            }
+        }
+        if (next != current) {
+            cacheService.resize(next);
+        }
+        return next;
+    }
+
+    private void adjustQuietly() {
+        try {
+            adjust();
+        }
+        catch (RuntimeException e) {
+            log.warn("Failed to adjust the cache size", e);
+        }
+    }
+
+    /**
+     * @return The fraction of the tenured pool used after the last collection, or of
+     *         the whole heap if no tenured pool is found.
+     */
+    private double heapUsage() {
+        MemoryUsage usage = null;
+        if (tenuredPool != null) {
+            usage = tenuredPool.getCollectionUsage();
+            if (usage == null || usage.getUsed() == 0) {
+                // Not collected yet: the current usage, garbage included
+                usage = tenuredPool.getUsage();
+            }
+        }
+        if (usage == null) {
+            usage = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        }
+        long max = usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+        return max > 0 ? (double) usage.getUsed() / max : 0.0;
+    }
+
+    /**
+     * @return The total time spent collecting by every collector, in milliseconds.
+     */
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * @return The heap pool supporting a usage threshold, which the JVM only supports
+     *         on the pool of long-lived objects, or {@code null} if there is none.
+     */
+    private static MemoryPoolMXBean tenuredPool() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported()) {
+                return pool;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+/**
+ * Limit on the number of concurrent database calls, adapted to their latency with
+ * the gradient algorithm of Netflix's concurrency-limits library.
+ *
+ * A long-term average of the call latencies estimates the latency of the database
+ * without queueing. When recent calls are slower than that, the database or the
+ * connection pool is queueing them, and the limit shrinks in proportion to the
+ * slowdown, by half at most per sample. When they are not, the limit grows by its
+ * square root, which leaves a small queue to absorb bursts. Samples taken while the
+ * calls in flight use less than half of the limit tell nothing about it, and are
+ * only used for the average. Each new limit is smoothed with the previous one.
+ *
+ * Not thread-safe: the {@link DatabaseGuard} updates it under its lock.
+ *
+ * @author r.pandiarajan
+ */
+public class AdaptiveConcurrencyLimit
+{
+    /** Number of samples averaged before the long-term latency is tracked. */
+    private static final int WARM_UP_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final double longWindowFactor;
+
+    private double limit;
+    private double longLatencyNanos;
+    private int samples;
+
+    /**
+     * Creates a limit.
+     *
+     * @param initialLimit Limit before any sample.
+     * @param minLimit Lowest limit.
+     * @param maxLimit Highest limit.
+     * @param tolerance Slowdown of recent calls over the long-term latency tolerated before shrinking.
+     * @param smoothing Weight of each new limit against the previous one, in (0, 1].
+     * @param longWindow Number of samples the long-term latency is averaged over.
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance,
+            double smoothing, int longWindow) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < min-limit <= max-limit: " + minLimit + ", "
+                    + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = Math.max(tolerance, 1.0);
+        this.smoothing = Math.min(Math.max(smoothing, 0.01), 1.0);
+        this.longWindowFactor = 2.0 / (Math.max(longWindow, 1) + 1);
+        this.limit = Math.min(Math.max(initialLimit, minLimit), maxLimit);
+    }
+
+    /**
+     * @return The current limit.
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Adapts the limit to the latency of a call.
+     *
+     * @param latencyNanos Time the call took.
+     * @param inFlight Number of calls in flight when it completed, itself included.
+     * @return The new limit.
+     */
+    public int onSample(long latencyNanos, int inFlight) {
+        double latency = Math.max(latencyNanos, 1);
+        if (samples < WARM_UP_SAMPLES) {
+            samples++;
+            longLatencyNanos += (latency - longLatencyNanos) / samples;
+        }
+        else {
+            longLatencyNanos += (latency - longLatencyNanos) * longWindowFactor;
+        }
+        if (longLatencyNanos / latency > 2) {
+            // Recovering from a slow period, whose latencies would let the limit grow too fast
+            longLatencyNanos *= 0.95;
+        }
+        if (inFlight < limit / 2) {
+            return getLimit();
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longLatencyNanos / latency));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.min(maxLimit, Math.max(minLimit, limit * (1 - smoothing) + newLimit * smoothing));
+        return getLimit();
+    }
+}
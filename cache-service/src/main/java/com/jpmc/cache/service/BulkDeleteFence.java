@@ -0,0 +1,123 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Fence between the rows the cache writes to the database and a
+ * {@link RemoveAllJob}, which deletes every row that existed when it started, one
+ * chunk of IDs at a time.
+ *
+ * While a job runs, the IDs of the rows written by the cache are recorded and left
+ * out of the chunks it deletes, so an entry added after the job started is not lost
+ * when it is written back. Each chunk is filtered and deleted under the write lock,
+ * and each write records its IDs and runs under the read lock, so a write either
+ * completes before a chunk is filtered or starts after it is deleted. Writes only
+ * wait for the delete of the chunk in progress.
+ *
+ * Rows neither deleted nor written yet are hidden from loads until the job ends.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+public class BulkDeleteFence
+{
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** IDs written since the running job started, or {@code null} when no job runs. */
+    private volatile Set<Long> written;
+
+    /**
+     * Runs a write of rows to the database, recording their IDs while a job runs.
+     *
+     * @param ids The IDs of the written rows.
+     * @param write The write.
+     */
+    public void write(Collection<Long> ids, Runnable write) {
+        lock.readLock().lock();
+        try {
+            Set<Long> current = written;
+            if (current != null) {
+                current.addAll(ids);
+            }
+            write.run();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Records the ID of a row written by another replica, so that the running job does
+     * not delete it.
+     *
+     * @param id The ID of the row.
+     */
+    public void recordWrite(Long id) {
+        Set<Long> current = written;
+        if (current != null) {
+            current.add(id);
+        }
+    }
+
+    /**
+     * @param id The ID of a row read from the database.
+     * @return Whether the running job deletes the row, which must then be treated as missing.
+     */
+    public boolean isDeleted(Long id) {
+        Set<Long> current = written;
+        return current != null && !current.contains(id);
+    }
+
+    /**
+     * @return Whether a job is running.
+     */
+    public boolean isActive() {
+        return written != null;
+    }
+
+    /**
+     * Starts recording the written IDs for a job.
+     */
+    void begin() {
+        written = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Deletes a chunk of rows, except those written since the job started.
+     *
+     * @param ids The IDs of the rows read by the job.
+     * @param delete Deletes the rows with the given IDs.
+     * @return The number of rows deleted.
+     */
+    int delete(List<Long> ids, Consumer<List<Long>> delete) {
+        lock.writeLock().lock();
+        try {
+            Set<Long> current = written;
+            List<Long> deleted = current == null ? ids : ids.stream().filter(id -> !current.contains(id)).toList();
+            if (!deleted.isEmpty()) {
+                delete.accept(deleted);
+            }
+            return deleted.size();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stops recording the written IDs once the job has ended.
+     */
+    void end() {
+        written = null;
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Micrometer instrumentation of the {@link com.jpmc.cache.model.Employee} cache,
+ * following the naming of Micrometer's own cache binders: {@code cache.gets} tagged
+ * with {@code result=hit|miss}, {@code cache.puts}, {@code cache.evictions} and
+ * {@code cache.size}, all tagged with {@code cache=employees}.
+ *
+ * Meters are registered once and kept in fields, so recording on the hit path only
+ * increments a counter and allocates nothing.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+public class CacheMetrics
+{
+    /** Value of the {@code cache} tag of every meter. */
+    public static final String CACHE_NAME = "employees";
+
+    private static final String CACHE_TAG = "cache";
+
+    private final MeterRegistry registry;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter puts;
+    private final Counter evictions;
+    private final Counter writeBackFailures;
+    private final Counter skippedWriteBacks;
+    private final Counter refreshes;
+    private final Counter refreshFailures;
+    private final Counter staleHits;
+    private final Timer loads;
+    private final Timer evictionSaves;
+
+    /**
+     * Creates the cache meters in the given registry.
+     *
+     * @param registry The registry publishing the meters.
+     */
+    public CacheMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.hits = Counter.builder("cache.gets").tag(CACHE_TAG, CACHE_NAME).tag("result", "hit")
+                .description("Lookups served from the cache").register(registry);
+        this.misses = Counter.builder("cache.gets").tag(CACHE_TAG, CACHE_NAME).tag("result", "miss")
+                .description("Lookups not found in the cache").register(registry);
+        this.puts = Counter.builder("cache.puts").tag(CACHE_TAG, CACHE_NAME)
+                .description("Entries added to the cache").register(registry);
+        this.evictions = Counter.builder("cache.evictions").tag(CACHE_TAG, CACHE_NAME)
+                .description("Entries evicted from the cache to the DB").register(registry);
+        this.writeBackFailures = Counter.builder("cache.write-back.failures").tag(CACHE_TAG, CACHE_NAME)
+                .description("Evicted entries that failed to save to the DB").register(registry);
+        this.skippedWriteBacks = Counter.builder("cache.write-back.skipped").tag(CACHE_TAG, CACHE_NAME)
+                .description("Clean evicted entries dropped without a DB write").register(registry);
+        this.refreshes = Counter.builder("cache.refreshes").tag(CACHE_TAG, CACHE_NAME).tag("result", "success")
+                .description("Entries past their refresh age reloaded from the DB").register(registry);
+        this.refreshFailures = Counter.builder("cache.refreshes").tag(CACHE_TAG, CACHE_NAME).tag("result", "failure")
+                .description("Reloads of entries past their refresh age that failed").register(registry);
+        this.staleHits = Counter.builder("cache.stale.hits").tag(CACHE_TAG, CACHE_NAME)
+                .description("Hits served past the refresh age of the entry").register(registry);
+        this.loads = Timer.builder("cache.load").tag(CACHE_TAG, CACHE_NAME)
+                .description("Time spent loading missed entries from the DB").register(registry);
+        this.evictionSaves = Timer.builder("cache.eviction.save").tag(CACHE_TAG, CACHE_NAME)
+                .description("Time spent saving evicted entries to the DB").register(registry);
+    }
+
+    public void recordHit() {
+        hits.increment();
+    }
+
+    public void recordMiss() {
+        misses.increment();
+    }
+
+    public void recordPut() {
+        puts.increment();
+    }
+
+    public void recordEviction() {
+        evictions.increment();
+    }
+
+    /**
+     * @param count The number of evicted entries that failed to save.
+     */
+    public void recordWriteBackFailures(int count) {
+        writeBackFailures.increment(count);
+    }
+
+    public void recordSkippedWriteBack() {
+        skippedWriteBacks.increment();
+    }
+
+    public void recordRefresh() {
+        refreshes.increment();
+    }
+
+    public void recordRefreshFailure() {
+        refreshFailures.increment();
+    }
+
+    public void recordStaleHit() {
+        staleHits.increment();
+    }
+
+    /**
+     * @param nanos The duration of a DB load of missed entries.
+     */
+    public void recordLoad(long nanos) {
+        loads.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param nanos The duration of a DB save of evicted entries.
+     */
+    public void recordEvictionSave(long nanos) {
+        evictionSaves.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Registers a counter of the cache, tagged like the other cache meters.
+     *
+     * @param name The name of the counter.
+     * @param description What the counter counts.
+     * @return The counter, to be kept by the caller.
+     */
+    public Counter counter(String name, String description) {
+        return Counter.builder(name).tag(CACHE_TAG, CACHE_NAME).description(description).register(registry);
+    }
+
+    /**
+     * Registers a gauge of the cache, tagged like the other cache meters.
+     *
+     * @param name The name of the gauge.
+     * @param description What the gauge measures.
+     * @param source The object sampled by the gauge, which is only weakly referenced.
+     * @param value Function sampling the gauge value from the source.
+     */
+    public <T> void gauge(String name, String description, T source, ToDoubleFunction<T> value) {
+        Gauge.builder(name, source, value).tag(CACHE_TAG, CACHE_NAME).description(description).strongReference(false)
+                .register(registry);
+    }
+
+    public long getHits() {
+        return (long) hits.count();
+    }
+
+    public long getMisses() {
+        return (long) misses.count();
+    }
+
+    public long getPuts() {
+        return (long) puts.count();
+    }
+
+    public long getEvictions() {
+        return (long) evictions.count();
+    }
+
+    public long getWriteBackFailures() {
+        return (long) writeBackFailures.count();
+    }
+
+    public long getSkippedWriteBacks() {
+        return (long) skippedWriteBacks.count();
+    }
+
+    public long getRefreshes() {
+        return (long) refreshes.count();
+    }
+
+    public long getRefreshFailures() {
+        return (long) refreshFailures.count();
+    }
+
+    public long getStaleHits() {
+        return (long) staleHits.count();
+    }
+
+    public Timer getLoads() {
+        return loads;
+    }
+
+    public Timer getEvictionSaves() {
+        return evictionSaves;
+    }
+}
@@ -4,20 +4,49 @@
 package com.jpmc.cache.service;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jpmc.cache.datasource.RecentWrites;
+import com.jpmc.cache.exception.DatabaseUnavailableException;
+import com.jpmc.cache.invalidation.Invalidation;
 import com.jpmc.cache.model.Employee;
 import com.jpmc.cache.repository.EmployeeRepository;
+import com.jpmc.cache.repository.JdbcEmployeeWriter;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -26,55 +55,440 @@ import lombok.extern.slf4j.Slf4j;
  * from a local cache with automatic eviction to a database when the cache exceeds 
  * the maximum size.
  * 
+ * Entries are held in a {@link CacheStore}, by default a {@link SegmentedLruCacheStore},
+ * which is safe for concurrent use by request threads and evicts the least recently
+ * used entry through {@link #evictToDatabase(Long, Employee)}. Other replacement 
+ * policies are selected with {@code cache.eviction-policy}, see {@link EvictionPolicyType}.
+ * 
+ * Hits, misses, puts, evictions, DB load and eviction save latencies are recorded 
+ * in {@link CacheMetrics}, together with gauges of the cache size and capacity.
+ * 
+ * When the {@link WriteAheadLog} is enabled, adds, removals and clears are appended 
+ * to it before they are acknowledged, and the entries it recovers on startup are put 
+ * back in the cache, so entries not yet saved to the database survive a restart.
+ * 
+ * With {@code cache.serialized-responses.enabled}, {@link #getJson(Long)} keeps the 
+ * JSON encoding of each cached entry, so that GET hits are answered without Jackson.
+ * 
+ * {@link #getAsync(Long)}, {@link #addAsync(Employee)} and {@link #removeAsync(Employee)} 
+ * return futures and run their database work on virtual threads of the 
+ * {@link DatabaseExecutor}. Locks taken on these paths are {@link ReentrantLock}s 
+ * rather than monitors, so a virtual thread waiting for one does not pin its carrier.
+ * 
+ * Adds and removals are passed to the invalidation listener, which the 
+ * {@link com.jpmc.cache.invalidation.InvalidationBus} sets to broadcast them to the 
+ * other replicas, and {@link #applyInvalidations(Collection)} applies theirs.
+ * 
+ * With the {@link JdbcEmployeeWriter} enabled, evicted entries are upserted and removed 
+ * entries deleted with batched JDBC statements instead of the {@link EmployeeRepository}. 
+ * 
+ * With the {@link DiskCacheTier} enabled, entries evicted from memory are also demoted 
+ * to it, and misses read it before the database. 
+ * 
+ * Entries are tracked as dirty from the time they are added until they are written 
+ * back, while entries loaded from the database or the {@link DiskCacheTier} are clean. 
+ * Clean entries are dropped on eviction without a database write, so reads alone 
+ * do not cause writes. 
+ * 
+ * {@link #clear()} and {@link #removeAll()} swap the heap store for an empty one rather 
+ * than emptying it, and {@link #startRemoveAll()} deletes the rows in the background, 
+ * fenced from the rows written meanwhile by the {@link BulkDeleteFence}. 
+ * 
+ * With {@code cache.indexes.enabled}, an {@link EmployeeIndex} of the cached entries by 
+ * salary and by name answers {@link #findBySalaryBetween(double, double)}, 
+ * {@link #findByName(String)} and {@link #findByNamePrefix(String)} without the database, 
+ * while the cache is authoritative: it holds every entry of the data set. 
+ * 
+ * With {@code cache.refresh.after-write-ms}, a clean entry older than that age is still 
+ * served on a hit, while a background reload replaces it with the row of the database; 
+ * while the database is slow or down, the stale entry keeps being served until it is 
+ * older than {@code cache.refresh.max-stale-ms}, and only then loaded before the read 
+ * returns. 
+ * 
+ * {@link #resize(int)} changes the maximum size at runtime, evicting the entries over 
+ * a lower size a step at a time, so a large shrink does not stall writers; the 
+ * {@link AdaptiveCacheSizer} resizes the cache from heap pressure and from the 
+ * {@link MissRatioCurve} estimated on the reads. 
+ * 
+ * With the {@link DatabaseGuard} enabled, the database calls of requests go through its 
+ * adaptive bulkhead and circuit breaker, which refuse them with a 
+ * {@link DatabaseUnavailableException} rather than letting them queue behind a slow or 
+ * failing database; entries past their maximum staleness are then served as they are. 
+ * 
+ * With {@code cache.datasource.routing.enabled}, loads use a read pool, possibly of a 
+ * read replica, apart from the pool of the writes; rows the cache has just written or 
+ * deleted are read through {@link RecentWrites} from the primary database until the 
+ * replica has them. 
+ * 
  * @author r.pandiarajan
  */
 @Service
 @Slf4j
 public class CacheService
 {
-    /** The cache storing {@link Employee} objects by their ID. */
+    /** The cache storing {@link Employee} objects by their ID, replaced by an empty store when cleared. */
     @Getter
-    private final Map<Long, Employee> cache;
+    private volatile CacheStore<Long, Employee> cache;
     
     /** Maximum number of entries allowed in the cache. */
     @Value("${cache.max-size}")
-    @Setter
-    private int maxCacheSize;
+    @Getter
+    private volatile int maxCacheSize;
+    
+    /** Expected number of concurrently writing threads, used to size the lock stripes of the cache. */
+    @Value("${cache.concurrency-level:16}")
+    private int concurrencyLevel;
+    
+    /** Where cached entries are kept: as objects on the heap, or encoded in off-heap memory. */
+    @Value("${cache.storage-mode:heap}")
+    @Getter
+    private StorageMode storageMode;
+    
+    /** Replacement policy of the cache on the heap; entries off the heap are always evicted in LRU order. */
+    @Value("${cache.eviction-policy:lru}")
+    private EvictionPolicyType evictionPolicy = EvictionPolicyType.LRU;
+    
+    /** Time after which a written entry expires with the {@link EvictionPolicyType#TTL} policy; {@code 0} disables it. */
+    @Value("${cache.expiry.after-write-ms:0}")
+    private long expireAfterWriteMillis;
+    
+    /** Time after which an entry not accessed expires with the {@link EvictionPolicyType#TTL} policy; {@code 0} disables it. */
+    @Value("${cache.expiry.after-access-ms:0}")
+    private long expireAfterAccessMillis;
+    
+    /** Off-heap memory budget of the cache, replacing the maximum size in {@link StorageMode#OFF_HEAP} mode. */
+    @Value("${cache.off-heap.max-bytes:67108864}")
+    private long offHeapMaxBytes;
+    
+    /** Time an ID not found in the DB is remembered as missing; {@code 0} disables negative caching. */
+    @Value("${cache.negative-cache.ttl-ms:0}")
+    private long negativeCacheTtlMillis;
+    
+    /** Maximum number of IDs remembered as missing. */
+    @Value("${cache.negative-cache.max-entries:10000}")
+    private int negativeCacheMaxEntries;
+    
+    /** Whether the JSON encoding of cached entries is kept for {@link #getJson(Long)}; heap storage only. */
+    @Value("${cache.serialized-responses.enabled:false}")
+    private boolean serializedResponses;
+    
+    /** Whether the cached entries are indexed by salary and by name for queries; heap storage only. */
+    @Value("${cache.indexes.enabled:false}")
+    private boolean indexesEnabled;
+    
+    /** Age after which a clean entry is reloaded in the background on its next hit; {@code 0} disables refresh. */
+    @Value("${cache.refresh.after-write-ms:0}")
+    private long refreshAfterMillis;
+    
+    /** Age after which a clean entry is reloaded before it is served; {@code 0} serves it for as long as reloads fail. */
+    @Value("${cache.refresh.max-stale-ms:0}")
+    private long maxStaleMillis;
+    
+    /** Time after a failed reload during which no background reload starts, so a DB outage is not retried on every hit. */
+    @Value("${cache.refresh.failure-backoff-ms:1000}")
+    private long refreshBackoffMillis;
+    
+    /** Number of entries evicted per step when {@link #resize(int)} shrinks the cache. */
+    @Value("${cache.resize.step-size:1000}")
+    private int resizeStepSize = DEFAULT_RESIZE_STEP_SIZE;
+    
+    /** Pause between two eviction steps of {@link #resize(int)}, letting writers through. */
+    @Value("${cache.resize.step-pause-ms:10}")
+    private long resizeStepPauseMillis;
+    
+    /** Number of rows read and deleted per chunk by a {@link RemoveAllJob}. */
+    @Value("${cache.remove-all.chunk-size:1000}")
+    private int removeAllChunkSize = DEFAULT_REMOVE_ALL_CHUNK_SIZE;
+    
+    /** Times the cache stopped holding every entry of the data set, such as when an entry was evicted. */
+    private final LongAdder dataSetLosses = new LongAdder();
+    
+    /** Value of {@link #dataSetLosses} when the cache last held every entry, or {@code -1} if it never did. */
+    private volatile long completeSince = -1;
+    
+    /** 
+     * Entries added since they were last written back, by ID. Entries absent from it are 
+     * clean: the DB, or the {@link WriteBehindQueue}, already holds them. 
+     */
+    private final ConcurrentHashMap<Long, Employee> dirtyEntries = new ConcurrentHashMap<>();
+    
+    /** Time each cached entry was put in the cache, by ID, on the {@link #ticker}; kept while refresh is enabled. */
+    private final ConcurrentHashMap<Long, Long> loadedAt = new ConcurrentHashMap<>();
+    
+    /** Reloads of entries past their refresh age in flight by ID, so concurrent hits share one query. */
+    private final ConcurrentHashMap<Long, CompletableFuture<Employee>> inFlightRefreshes = new ConcurrentHashMap<>();
+    
+    /** Whether the last reload failed, in which case no background reload starts before {@link #refreshBackoffUntil}. */
+    private volatile boolean refreshFailed;
+    private volatile long refreshBackoffUntil;
+    
+    /** Source of the current time in nanoseconds for the age of entries. */
+    LongSupplier ticker = System::nanoTime;
+    
+    /** JSON encoding of cached entries by ID, together with the cached object it encodes. */
+    private final ConcurrentHashMap<Long, SerializedEntry> serializedEntries = new ConcurrentHashMap<>();
+    
+    /** Tells whether this instance owns an ID; every ID unless a cluster shards them. */
+    private volatile Predicate<Long> ownership = id -> true;
+    
+    /** Receives the adds and removals to broadcast to other replicas; ignores them unless a bus is set. */
+    private volatile Consumer<Invalidation> invalidationListener = invalidation -> { };
+    
+    /** IDs recently not found in the DB. */
+    NegativeCache negativeCache;
+    
+    /** The running {@link RemoveAllJob}, or {@code null}; guarded by {@link #removeAllLock} for starts. */
+    private volatile RemoveAllJob activeRemoveAll;
+    
+    /** Maximum size {@link #resize(int)} is stepping the cache to; the maximum size once reached. */
+    @Getter
+    private volatile int targetCacheSize;
+    
+    /** Whether a thread is stepping the maximum size to {@link #targetCacheSize}. */
+    private final AtomicBoolean resizing = new AtomicBoolean();
+    
+    private final ReentrantLock removeAllLock = new ReentrantLock();
+    private final AtomicLong removeAllJobIds = new AtomicLong();
+    
+    /** The latest {@link RemoveAllJob}s by ID, running or finished, guarded by {@link #removeAllLock}. */
+    private final Map<Long, RemoveAllJob> removeAllJobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, RemoveAllJob> eldest) {
+            return size() > MAX_REMOVE_ALL_JOBS;
+        }
+    };
+    
+    /** DB loads in flight by ID, so concurrent misses for the same ID share one query. */
+    private final ConcurrentHashMap<Long, CompletableFuture<Employee>> inFlightLoads = new ConcurrentHashMap<>();
     
     private static final String ENTITY_NOT_FOUND = "Entry not found for the id - {0}";
+    private static final Comparator<Employee> BY_SALARY = Comparator.comparing(Employee::getSalary)
+            .thenComparing(Employee::getId);
+    private static final Comparator<Employee> BY_NAME = Comparator.comparing(Employee::getName)
+            .thenComparing(Employee::getId);
+    private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+    private static final int LOG_LOCK_STRIPES = 64;
+    private static final int DEFAULT_ASYNC_CONCURRENCY = 10;
+    private static final int DEFAULT_REMOVE_ALL_CHUNK_SIZE = 1000;
+    private static final int MAX_REMOVE_ALL_JOBS = 16;
+    private static final int DEFAULT_RESIZE_STEP_SIZE = 1000;
+    
+    /** Locks ordering the log records and cache updates of the same ID, striped by ID. */
+    private final ReentrantLock[] logLocks = new ReentrantLock[LOG_LOCK_STRIPES];
     
     /** Repository used to interact with the database for {@link Employee} entities. */
     @Autowired
     EmployeeRepository employeeRepository;
+    
+    /** Writer of rows with batched JDBC upserts and deletes; the repository writes them when it is disabled. */
+    @Autowired(required = false)
+    JdbcEmployeeWriter jdbcWriter;
+    
+    /** Queue saving evicted entries in the background; evictions are saved inline when it is disabled. */
+    @Autowired(required = false)
+    WriteBehindQueue writeBehindQueue;
+    
+    /** Second tier on local disk, holding copies of evicted entries; absent when disabled. */
+    @Autowired(required = false)
+    DiskCacheTier diskTier;
+    
+    /** Log making added entries durable before they reach the DB; absent when disabled. */
+    @Autowired(required = false)
+    WriteAheadLog writeAheadLog;
+    
+    /** Estimate of the miss ratio at other cache sizes, fed with every read; absent unless adaptive sizing is enabled. */
+    @Autowired(required = false)
+    MissRatioCurve missRatioCurve;
+    
+    /** Bulkhead and circuit breaker of the database calls of request paths; absent when disabled. */
+    @Autowired(required = false)
+    DatabaseGuard databaseGuard;
+    
+    /** Sends the reads of rows just written to the primary DB rather than the replica; absent without routing. */
+    @Autowired(required = false)
+    RecentWrites recentWrites;
+    
+    /** Keeps the rows written during a {@link RemoveAllJob} from being deleted by it; a default instance until injected. */
+    @Autowired
+    BulkDeleteFence bulkDeleteFence = new BulkDeleteFence();
+    
+    /** Runs the database work of the asynchronous API on virtual threads; a default instance until injected. */
+    @Autowired
+    DatabaseExecutor databaseExecutor = new DatabaseExecutor(DEFAULT_ASYNC_CONCURRENCY);
+    
+    /** Mapper encoding entries for {@link #getJson(Long)}; a default instance until the application's one is injected. */
+    @Autowired
+    ObjectMapper objectMapper = new ObjectMapper();
+    
+    /** Cache meters, recorded in a private registry until the application's one is injected. */
+    @Autowired
+    @Getter
+    CacheMetrics metrics = new CacheMetrics(new SimpleMeterRegistry());
 
     /**
-     * Constructor that initializes the cache with a maximum size and 
-     * an eviction policy where the least recently used (LRU) entries 
-     * are removed when the cache exceeds the size limit.
+     * Constructor that initializes the cache with an eviction policy where the 
+     * least recently used (LRU) entries are evicted to the database when the 
+     * cache exceeds the size limit.
      */
-    @SuppressWarnings("serial")
     public CacheService() {
-        this.cache = new LinkedHashMap<Long, Employee>(maxCacheSize, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<Long, Employee> eldest) {
-                return size() > maxCacheSize;
+        for (int i = 0; i < LOG_LOCK_STRIPES; i++) {
+            logLocks[i] = new ReentrantLock();
+        }
+        this.cache = createStore();
+        this.negativeCache = new NegativeCache(negativeCacheTtlMillis, negativeCacheMaxEntries);
+    }
+    
+    /**
+     * Rebuilds the cache once the configured size, concurrency level and negative 
+     * cache settings have been injected, as they are not yet available when the 
+     * constructor runs.
+     */
+    @PostConstruct
+    void init() {
+        if (indexesEnabled && storageMode == StorageMode.OFF_HEAP) {
+            log.info("Indexes are not kept with off-heap storage, which decodes a new entry per read");
+            indexesEnabled = false;
+        }
+        this.cache = createStore();
+        this.targetCacheSize = maxCacheSize;
+        this.negativeCache = new NegativeCache(negativeCacheTtlMillis, negativeCacheMaxEntries);
+        if (serializedResponses && storageMode == StorageMode.OFF_HEAP) {
+            log.info("Serialized responses are not kept with off-heap storage, which decodes a new entry per read");
+            serializedResponses = false;
+        }
+        registerGauges();
+        long since = beginFullLoad();
+        recover();
+        if (indexesEnabled && employeeRepository.count() == 0) {
+            // Nothing was saved to the DB, so the cache holds every entry there is
+            completeFullLoad(since);
+        }
+    }
+    
+    /**
+     * Puts the entries recovered by the {@link WriteAheadLog} back in the cache, as dirty 
+     * entries. They are already logged, so they are not appended again; entries beyond 
+     * the capacity are evicted to the database as usual.
+     */
+    void recover() {
+        if (writeAheadLog == null || writeAheadLog.getRecovered().isEmpty()) {
+            return;
+        }
+        log.info("Recovering {} entries from the write-ahead log", writeAheadLog.getRecovered().size());
+        writeAheadLog.getRecovered().forEach((id, employee) -> {
+            dirtyEntries.put(id, employee);
+            cache.put(id, employee);
+        });
+        writeAheadLog.clearRecovered();
+    }
+    
+    /**
+     * Sets the maximum number of entries allowed in the cache. Lowering the size 
+     * evicts the least recently used entries to the database.
+     * 
+     * @param maxCacheSize The new maximum number of entries.
+     */
+    public void setMaxCacheSize(int maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+        this.targetCacheSize = maxCacheSize;
+        cache.setCapacity(maxCacheSize);
+    }
+    
+    /**
+     * Changes the maximum number of entries allowed in the cache at runtime. A larger 
+     * size applies at once. A smaller size is reached in the background: the capacity 
+     * is lowered by {@code cache.resize.step-size} entries at a time, each step evicting 
+     * the least recently used entries to the database, with a pause of 
+     * {@code cache.resize.step-pause-ms} between steps. A resize requested while 
+     * another runs replaces its target.
+     * 
+     * @param maxSize The new maximum number of entries.
+     * @throws IllegalArgumentException if the size is not positive.
+     * @throws IllegalStateException if entries are kept off the heap, bounded by a memory budget.
+     */
+    public void resize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Maximum cache size must be positive: " + maxSize);
+        }
+        if (storageMode == StorageMode.OFF_HEAP) {
+            throw new IllegalStateException("The off-heap cache is bounded by cache.off-heap.max-bytes, not resized");
+        }
+        log.info("Resizing the cache from {} to {} entries", maxCacheSize, maxSize);
+        targetCacheSize = maxSize;
+        if (maxSize >= maxCacheSize) {
+            // Growing evicts nothing; a running resize sees the reached target and stops
+            this.maxCacheSize = maxSize;
+            cache.setCapacity(maxSize);
+        }
+        if (maxCacheSize != targetCacheSize && resizing.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("cache-resize").start(this::runResize);
+        }
+    }
+    
+    /**
+     * Steps the maximum size to the target until it is reached, then checks the target 
+     * again once the resizing flag is reset, as a resize may have been requested since.
+     */
+    private void runResize() {
+        do {
+            try {
+                for (int target = targetCacheSize; maxCacheSize != target; target = targetCacheSize) {
+                    // A capacity above the number of entries evicts nothing, so steps start from the size
+                    int from = Math.min(maxCacheSize, cache.size());
+                    int next = Math.max(target, from - Math.max(resizeStepSize, 1));
+                    this.maxCacheSize = next;
+                    cache.setCapacity(next);
+                    if (next != target && resizeStepPauseMillis > 0) {
+                        Thread.sleep(resizeStepPauseMillis);
+                    }
+                }
+                log.info("Cache resized to {} entries", maxCacheSize);
             }
-        };
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (RuntimeException e) {
+                log.error("Failed to resize the cache to {} entries", targetCacheSize, e);
+            }
+            finally {
+                resizing.set(false);
+            }
+        } while (maxCacheSize != targetCacheSize && resizing.compareAndSet(false, true));
     }
     
     /**
-     * Adds an {@link Employee} to the cache. If the cache is full, it evicts 
-     * the least recently used entry to the database before adding the new entry.
+     * Adds an {@link Employee} to the cache. If the cache is full, the least 
+     * recently used entry is evicted to the database.
      * 
      * @param employee The {@link Employee} to be added to the cache.
      */    
     public void add(Employee employee) {
         logCacheKeys();
         log.info("Current cache size is {}, max cache size is {}", cache.size(), maxCacheSize);
-        if (cache.size() >= maxCacheSize) {
-            evictToDatabase();
+        awaitDurable(logAndPut(employee));
+        negativeCache.remove(employee.getId());
+        invalidationListener.accept(Invalidation.put(employee));
+    }
+
+    /**
+     * Adds several {@link Employee} entities to the cache. Least recently used 
+     * entries are evicted to the database as the cache fills up.
+     * 
+     * @param employees The {@link Employee} entities to be added to the cache.
+     */
+    public void addAll(Collection<Employee> employees) {
+        log.info("Adding {} entries, current cache size is {}, max cache size is {}", employees.size(), 
+                cache.size(), maxCacheSize);
+        long sequence = 0;
+        for (Employee employee : employees) {
+            sequence = logAndPut(employee);
+            negativeCache.remove(employee.getId());
+        }
+        awaitDurable(sequence);
+        for (Employee employee : employees) {
+            invalidationListener.accept(Invalidation.put(employee));
         }
-        cache.put(employee.getId(), employee);
     }
 
     /**
@@ -84,23 +498,131 @@ public class CacheService
      */
     public void remove(Employee employee) {
         logCacheKeys();
-        cache.remove(employee.getId());
-        employeeRepository.delete(employee);
+        awaitDurable(logAndRemove(employee.getId()));
+        if (writeBehindQueue != null) {
+            writeBehindQueue.cancel(employee.getId());
+        }
+        runGuarded(() -> {
+            if (jdbcWriter != null) {
+                jdbcWriter.deleteAllById(List.of(employee.getId()));
+            }
+            else {
+                employeeRepository.delete(employee);
+            }
+        });
+        recordWrites(List.of(employee.getId()));
+        invalidationListener.accept(Invalidation.remove(employee.getId()));
+    }
+
+    /**
+     * Removes several {@link Employee} entities from the cache and deletes them from 
+     * the database in a single batch statement.
+     * 
+     * @param ids The IDs of the {@link Employee} entities to be removed.
+     */
+    public void removeMany(Collection<Long> ids) {
+        log.info("Removing {} entries from cache and DB", ids.size());
+        long sequence = 0;
+        for (Long id : ids) {
+            sequence = logAndRemove(id);
+            if (writeBehindQueue != null) {
+                writeBehindQueue.cancel(id);
+            }
+        }
+        awaitDurable(sequence);
+        runGuarded(() -> deleteRows(ids));
+        recordWrites(ids);
+        for (Long id : ids) {
+            invalidationListener.accept(Invalidation.remove(id));
+        }
     }
 
     /**
      * Clears all entries from the cache and deletes all {@link Employee} entries 
-     * from the database.
+     * from the database, with a single bulk statement that does not load the rows.
      */
     public void removeAll() {
         logCacheKeys();
-        cache.clear();
-        employeeRepository.deleteAll();
+        logAndClear();
+        if (writeBehindQueue != null) {
+            writeBehindQueue.cancelAll();
+        }
+        long since = beginFullLoad();
+        if (jdbcWriter != null) {
+            jdbcWriter.deleteAll();
+        }
+        else {
+            employeeRepository.deleteAllInBatch();
+        }
+        if (recentWrites != null) {
+            recentWrites.recordAll();
+        }
+        completeFullLoad(since);
+        invalidationListener.accept(Invalidation.clear());
+    }
+
+    /**
+     * Clears all entries from the cache and starts deleting all {@link Employee} entries 
+     * from the database in the background, one chunk of IDs at a time, so that no 
+     * statement or transaction spans the whole table. Until the job ends, rows it has not 
+     * deleted yet are treated as missing, and rows written by the cache since it started 
+     * are kept. Only one job runs at a time.
+     * 
+     * @return The job started, or the job already running.
+     */
+    public RemoveAllJob startRemoveAll() {
+        removeAllLock.lock();
+        try {
+            if (activeRemoveAll != null) {
+                return activeRemoveAll;
+            }
+            logCacheKeys();
+            logAndClear();
+            if (writeBehindQueue != null) {
+                writeBehindQueue.cancelAll();
+            }
+            long since = beginFullLoad();
+            bulkDeleteFence.begin();
+            RemoveAllJob job = new RemoveAllJob(removeAllJobIds.incrementAndGet(), employeeRepository.count());
+            removeAllJobs.put(job.getId(), job);
+            activeRemoveAll = job;
+            log.info("Started job {} removing {} entries from DB", job.getId(), job.getRowsTotal());
+            Thread.ofVirtual().name("cache-remove-all-" + job.getId()).start(() -> runRemoveAll(job, since));
+            invalidationListener.accept(Invalidation.clear());
+            return job;
+        }
+        finally {
+            removeAllLock.unlock();
+        }
+    }
+
+    /**
+     * @param id The ID of a job started by {@link #startRemoveAll()}.
+     * @return The job, running or finished.
+     * @throws EntityNotFoundException if no recent job has this ID.
+     */
+    public RemoveAllJob getRemoveAllJob(long id) {
+        RemoveAllJob job;
+        removeAllLock.lock();
+        try {
+            job = removeAllJobs.get(id);
+        }
+        finally {
+            removeAllLock.unlock();
+        }
+        if (job == null) {
+            throw new EntityNotFoundException("Remove all job not found for the id - " + id);
+        }
+        return job;
     }
 
     /**
      * Retrieves an {@link Employee} by its ID. If the employee is not found in the 
-     * cache, it will be fetched from the database and added to the cache.
+     * cache, it is taken from the write-behind queue when its eviction has not been 
+     * flushed yet, then from the {@link DiskCacheTier}, or otherwise fetched from the 
+     * database, and added to the cache.
+     * Concurrent misses for the same ID wait for a single database load, and IDs 
+     * recently not found in the database are rejected without a query.
      * 
      * @param id The ID of the {@link Employee} to retrieve.
      * @return The {@link Employee} if found.
@@ -108,52 +630,1254 @@ public class CacheService
      */
     public Employee get(Long id) {
         logCacheKeys();
+        recordRead(id);
         Employee employee = cache.get(id);
+        if (employee != null) {
+            if (!isTooStale(id, employee)) {
+                metrics.recordHit();
+                return employee;
+            }
+            metrics.recordMiss();
+            return reloadTooStale(id, employee);
+        }
+        metrics.recordMiss();
+        employee = reclaimFromWriteBehind(id);
         if (employee == null) {
-            log.info("Entry is not in cache, getting it from DB with id - {}", id);
-            Optional<Employee> employeeOptional = employeeRepository.findById(id);
-            if (employeeOptional.isPresent()) {
-                log.info("Entry present in DB for the id - {}", id);
-                employee = employeeOptional.get();
-                if (cache.size() >= maxCacheSize) {
-                    evictToDatabase();
-                }
-                cache.put(id, employee);
+            employee = promoteFromDisk(id);
+        }
+        if (employee == null) {
+            employee = load(id);
+        }
+        return employee;
+    }
+
+    /**
+     * Retrieves an {@link Employee} by its ID, like {@link #get(Long)}, as JSON. When 
+     * serialized responses are enabled, the encoding of a cached entry is kept until 
+     * the entry is replaced, removed or evicted, so repeated hits return the same 
+     * bytes without running Jackson. The returned array is shared and must not be 
+     * modified.
+     * 
+     * @param id The ID of the {@link Employee} to retrieve.
+     * @return The JSON encoding of the {@link Employee}.
+     * @throws EntityNotFoundException if no {@link Employee} is found for the given ID.
+     */
+    public byte[] getJson(Long id) {
+        return json(id, get(id));
+    }
+
+    /**
+     * Retrieves several {@link Employee} entities by their IDs, like 
+     * {@link #getMany(Collection)}, as JSON, reusing the encodings kept for cached 
+     * entries like {@link #getJson(Long)}. The returned arrays are shared and must not 
+     * be modified.
+     * 
+     * @param ids The IDs of the {@link Employee} entities to retrieve.
+     * @return The JSON encoding of each {@link Employee} found, keyed by ID in the order of
+     *         the requested IDs.
+     */
+    public Map<Long, byte[]> getManyJson(Collection<Long> ids) {
+        Map<Long, byte[]> found = new LinkedHashMap<>();
+        for (Employee employee : getMany(ids)) {
+            found.put(employee.getId(), json(employee.getId(), employee));
+        }
+        return found;
+    }
+
+    private byte[] json(Long id, Employee employee) {
+        if (!serializedResponses) {
+            return encode(employee);
+        }
+        // The encoding is reused only for the object it was produced from, so a replaced entry is never served stale
+        SerializedEntry serialized = serializedEntries.get(id);
+        if (serialized != null && serialized.employee() == employee) {
+            return serialized.json();
+        }
+        serialized = new SerializedEntry(employee, encode(employee));
+        serializedEntries.put(id, serialized);
+        if (!cache.containsKey(id)) {
+            // Evicted or removed concurrently, after its encoding was dropped
+            serializedEntries.remove(id, serialized);
+        }
+        return serialized.json();
+    }
+    
+    /**
+     * Asynchronous variant of {@link #get(Long)}. A cache hit, an entry pending 
+     * write-behind or an entry of the {@link DiskCacheTier} completes the returned 
+     * future on the calling thread; only a database load runs on the {@link DatabaseExecutor}.
+     * 
+     * @param id The ID of the {@link Employee} to retrieve.
+     * @return A future completed with the {@link Employee}, or with an 
+     *         {@link EntityNotFoundException} if no {@link Employee} is found for the given ID.
+     */
+    public CompletableFuture<Employee> getAsync(Long id) {
+        recordRead(id);
+        Employee employee = cache.get(id);
+        if (employee != null) {
+            if (!isTooStale(id, employee)) {
+                metrics.recordHit();
+                return CompletableFuture.completedFuture(employee);
+            }
+            metrics.recordMiss();
+            return reloadTooStaleAsync(id, employee).thenCompose(reloaded -> reloaded != null
+                    ? CompletableFuture.completedFuture(reloaded)
+                    : CompletableFuture.failedFuture(new EntityNotFoundException(MessageFormat.format(ENTITY_NOT_FOUND, id))));
+        }
+        metrics.recordMiss();
+        employee = reclaimFromWriteBehind(id);
+        if (employee == null) {
+            employee = promoteFromDisk(id);
+        }
+        if (employee != null) {
+            return CompletableFuture.completedFuture(employee);
+        }
+        if (negativeCache.contains(id)) {
+            return CompletableFuture.failedFuture(
+                    new EntityNotFoundException(MessageFormat.format(ENTITY_NOT_FOUND, id)));
+        }
+        return databaseExecutor.submit(() -> load(id));
+    }
+    
+    /**
+     * Asynchronous variant of {@link #add(Employee)}, run on the {@link DatabaseExecutor} 
+     * as the entry it evicts may be saved inline and the write-ahead log may be forced.
+     * 
+     * @param employee The {@link Employee} to be added to the cache.
+     * @return A future completed once the entry is added.
+     */
+    public CompletableFuture<Void> addAsync(Employee employee) {
+        return databaseExecutor.submit(() -> {
+            add(employee);
+            return null;
+        });
+    }
+    
+    /**
+     * Asynchronous variant of {@link #remove(Employee)}, run on the {@link DatabaseExecutor}.
+     * 
+     * @param employee The {@link Employee} to be removed from the cache and database.
+     * @return A future completed once the entry is deleted from the database.
+     */
+    public CompletableFuture<Void> removeAsync(Employee employee) {
+        return databaseExecutor.submit(() -> {
+            remove(employee);
+            return null;
+        });
+    }
+
+    /**
+     * Retrieves several {@link Employee} entities by their IDs. Entries missing from 
+     * the cache and the {@link DiskCacheTier} are fetched from the database with a 
+     * single query and added to the cache. IDs found neither in the cache nor in the database are left out of the 
+     * result.
+     * 
+     * @param ids The IDs of the {@link Employee} entities to retrieve.
+     * @return The {@link Employee} entities found, in the order of the requested IDs.
+     */
+    public List<Employee> getMany(Collection<Long> ids) {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        Map<Long, Employee> found = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        Map<Long, CompletableFuture<Employee>> reloads = new HashMap<>();
+        for (Long id : requested) {
+            recordRead(id);
+            Employee employee = cache.get(id);
+            if (employee != null && isTooStale(id, employee)) {
+                metrics.recordMiss();
+                reloads.put(id, reloadTooStaleAsync(id, employee));
+                continue;
+            }
+            if (employee != null) {
+                metrics.recordHit();
             }
             else {
-                throw new EntityNotFoundException(MessageFormat.format(ENTITY_NOT_FOUND, id));
+                metrics.recordMiss();
+                employee = reclaimFromWriteBehind(id);
+                if (employee == null) {
+                    employee = promoteFromDisk(id);
+                }
+            }
+            if (employee != null) {
+                found.put(id, employee);
+            }
+            else if (!negativeCache.contains(id)) {
+                misses.add(id);
             }
         }
-        return employee;
+        if (!misses.isEmpty()) {
+            log.info("{} of {} entries are not in cache, getting them from DB", misses.size(), requested.size());
+            long start = System.nanoTime();
+            List<Employee> loaded = guarded(() -> readRows(misses, () -> employeeRepository.findAllById(misses)));
+            metrics.recordLoad(System.nanoTime() - start);
+            for (Employee employee : loaded) {
+                if (bulkDeleteFence.isDeleted(employee.getId())) {
+                    continue;
+                }
+                put(employee.getId(), employee);
+                found.put(employee.getId(), employee);
+            }
+            for (Long id : misses) {
+                if (!found.containsKey(id)) {
+                    negativeCache.add(id);
+                }
+            }
+        }
+        reloads.forEach((id, reload) -> {
+            Employee employee = join(reload);
+            if (employee != null) {
+                found.put(id, employee);
+            }
+        });
+        List<Employee> employees = new ArrayList<>(found.size());
+        for (Long id : requested) {
+            Employee employee = found.get(id);
+            if (employee != null) {
+                employees.add(employee);
+            }
+        }
+        return employees;
     }
 
     /**
-     * Clears all entries from the cache without affecting the database.
+     * Adds entries loaded from the database by a warm-up. Entries already cached, or 
+     * evicted and still pending write-behind, are newer than the database and are 
+     * kept, and IDs owned by another instance of a cluster or being deleted by a 
+     * {@link RemoveAllJob} are skipped. Warm-up 
+     * entries are not logged, as the database already holds them.
+     * 
+     * @param employees The {@link Employee} entities read from the database.
+     * @return The number of entries added to the cache.
      */
-    public void clear() {
-        logCacheKeys();
-        cache.clear();
+    public int warmUp(Collection<Employee> employees) {
+        int added = 0;
+        for (Employee employee : employees) {
+            if (!ownership.test(employee.getId()) || bulkDeleteFence.isDeleted(employee.getId())) {
+                continue;
+            }
+            if (writeBehindQueue != null && writeBehindQueue.get(employee.getId()) != null) {
+                continue;
+            }
+            if (cache.putIfAbsent(employee.getId(), employee) == null) {
+                stampLoaded(employee.getId());
+                metrics.recordPut();
+                negativeCache.remove(employee.getId());
+                added++;
+            }
+        }
+        return added;
     }
 
     /**
-     * Evicts the least recently used (LRU) entry from the cache and saves it 
-     * to the database.
+     * Sets which IDs this instance owns, when a cluster shards the IDs between 
+     * instances. Only owned IDs are warmed up.
+     * 
+     * @param ownership Predicate accepting the owned IDs.
      */
-    private void evictToDatabase() {
-        Long lruKey = cache.entrySet().iterator().next().getKey();
-        log.info("Evicting LRU entry with key - {} from cache to DB", lruKey);
-        Employee lruEmployee = cache.remove(lruKey);
-        if (lruEmployee != null) {
-            employeeRepository.save(lruEmployee);
+    public void setOwnership(Predicate<Long> ownership) {
+        this.ownership = ownership;
+        // Other instances hold the entries they own
+        dataSetLosses.increment();
+    }
+    
+    /**
+     * Sets the listener receiving the adds and removals of this instance, to be 
+     * broadcast to other replicas. Clears of the cache alone, evictions and loads 
+     * from the database leave the other replicas' copies valid and are not passed on.
+     * 
+     * @param invalidationListener The listener, or {@code null} to stop broadcasting.
+     */
+    public void setInvalidationListener(Consumer<Invalidation> invalidationListener) {
+        this.invalidationListener = invalidationListener != null ? invalidationListener : invalidation -> { };
+    }
+    
+    /**
+     * Applies the adds and removals made by another replica. Copies of added entries 
+     * are replaced only where this instance holds them; removed entries are dropped. 
+     * Pending write-behinds of the changed IDs are cancelled, so that an older copy 
+     * evicted here does not overwrite the database after the change, and the changes 
+     * are logged, so that recovery does not bring older copies back.
+     * 
+     * @param invalidations The changes, in the order they were made.
+     */
+    public void applyInvalidations(Collection<Invalidation> invalidations) {
+        for (Invalidation invalidation : invalidations) {
+            switch (invalidation.type()) {
+                case PUT -> applyPut(invalidation.employee());
+                case REMOVE -> {
+                    if (writeBehindQueue != null) {
+                        writeBehindQueue.cancel(invalidation.id());
+                    }
+                    logAndRemove(invalidation.id());
+                }
+                case CLEAR -> {
+                    if (writeBehindQueue != null) {
+                        writeBehindQueue.cancelAll();
+                    }
+                    logAndClear();
+                }
+            }
         }
     }
     
     /**
-     * Logs the current keys in the cache for debugging purposes.
+     * Removes entries handed off to another instance of a cluster, which now owns 
+     * them, without deleting them from the database. An entry is only removed if its 
+     * cached copy is still the one handed off: a copy changed, removed or evicted 
+     * since, such as by a request forwarded by a member with an older view of the ring, 
+     * is left as it is. The removals are logged, so the entries are not recovered by 
+     * this instance after a restart.
+     * 
+     * @param handedOff The entries, as they were handed off.
+     * @return The IDs of the entries not removed, as they changed or left the cache.
      */
-    private void logCacheKeys() {
-        log.info("Current cache - {}", cache.keySet());
+    public List<Long> release(Collection<Employee> handedOff) {
+        dataSetLosses.increment();
+        List<Long> changed = new ArrayList<>();
+        long sequence = 0;
+        for (Employee employee : handedOff) {
+            Long id = employee.getId();
+            ReentrantLock lock = logLock(id);
+            lock.lock();
+            try {
+                Employee current = cache.get(id);
+                if (current == null || !sameState(current, employee)) {
+                    changed.add(id);
+                    continue;
+                }
+                sequence = logAndRemove(id);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+        awaitDurable(sequence);
+        return changed;
+    }
+    
+    /**
+     * Saves the evicted entries waiting in the {@link WriteBehindQueue} to the database, 
+     * so that other instances loading them read their latest copy.
+     */
+    public void flushEvicted() {
+        if (writeBehindQueue != null) {
+            writeBehindQueue.flush();
+        }
+    }
+    
+    /**
+     * Evicts entries to the database as if the cache had run out of room, such as 
+     * entries that could not be handed off to their new owner in a cluster. They are 
+     * not kept in the {@link DiskCacheTier}, as their owner may change them.
+     * 
+     * @param ids The IDs of the entries to evict.
+     */
+    public void evict(Collection<Long> ids) {
+        for (Long id : ids) {
+            Employee employee = cache.remove(id);
+            if (employee != null) {
+                evictToDatabase(id, employee);
+                removeFromDisk(id);
+            }
+        }
+    }
+    
+    /**
+     * Applies rows changed in the database by other systems, as captured by the 
+     * {@link com.jpmc.cache.changefeed.ChangeFeed}. Clean cached entries of updated rows are 
+     * replaced by the rows read again from the database, or only dropped when 
+     * {@code reload} is {@code false}, and entries of deleted rows are dropped. Dirty 
+     * entries are newer than the database and are kept, and so are the copies of 
+     * entries pending write-behind. Nothing is written to the database.
+     * 
+     * @param updated The IDs of the rows inserted or updated.
+     * @param deleted The IDs of the rows deleted.
+     * @param reload Whether cached entries of updated rows are replaced rather than dropped.
+     * @return The number of cached entries replaced or dropped.
+     */
+    public int applyDatabaseChanges(Collection<Long> updated, Collection<Long> deleted, boolean reload) {
+        Map<Long, Employee> rows = new HashMap<>();
+        List<Long> reloaded = reload ? updated.stream().filter(id -> cache.containsKey(id) 
+                && !dirtyEntries.containsKey(id)).toList() : List.of();
+        if (!reloaded.isEmpty()) {
+            long start = System.nanoTime();
+            // Changes are read from the primary DB, the replica may not have them yet
+            readPrimary(() -> employeeRepository.findAllById(reloaded)).forEach(row -> rows.put(row.getId(), row));
+            metrics.recordLoad(System.nanoTime() - start);
+        }
+        int applied = 0;
+        for (Long id : updated) {
+            applied += applyDatabaseChange(id, rows.get(id), false);
+        }
+        for (Long id : deleted) {
+            applied += applyDatabaseChange(id, null, true);
+        }
+        return applied;
+    }
+    
+    /**
+     * Replaces or drops the clean cached entry of a changed row, holding the lock of its ID.
+     * 
+     * @param row The row read again from the database, or {@code null} to drop the entry.
+     * @return {@code 1} if a cached entry was replaced or dropped, {@code 0} otherwise.
+     */
+    private int applyDatabaseChange(Long id, Employee row, boolean deleted) {
+        negativeCache.remove(id);
+        ReentrantLock lock = logLock(id);
+        lock.lock();
+        try {
+            if (writeBehindQueue == null || writeBehindQueue.get(id) == null) {
+                removeFromDisk(id);
+            }
+            if (!cache.containsKey(id)) {
+                if (!deleted && ownership.test(id)) {
+                    // A row this instance owns was added or changed without being cached
+                    dataSetLosses.increment();
+                }
+                return 0;
+            }
+            if (dirtyEntries.containsKey(id)) {
+                return 0;
+            }
+            if (row != null && !bulkDeleteFence.isDeleted(id)) {
+                put(id, row);
+                return 1;
+            }
+            if (!deleted) {
+                dataSetLosses.increment();
+            }
+            cache.remove(id);
+            loadedAt.remove(id);
+            serializedEntries.remove(id);
+            return 1;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Returns the IDs of the cached entries, from the most to the least recently used 
+     * when the cache tracks recency, as written to snapshots by the {@link CacheWarmer}.
+     * 
+     * @param limit The maximum number of IDs returned.
+     * @return At most {@code limit} IDs.
+     */
+    public List<Long> hottestKeys(int limit) {
+        return cache.hottestKeys(limit);
+    }
+
+    /**
+     * Clears all entries from the cache without affecting the database.
+     */
+    public void clear() {
+        logCacheKeys();
+        dataSetLosses.increment();
+        logAndClear();
+    }
+
+    /**
+     * Finds the {@link Employee} entities with a salary in the range. While the cache is 
+     * authoritative, they are taken from the salary index without touching the database.
+     * 
+     * @param min The lowest salary, inclusive.
+     * @param max The highest salary, inclusive.
+     * @return The {@link Employee} entities found, by salary and then by ID.
+     */
+    public List<Employee> findBySalaryBetween(double min, double max) {
+        return query(index -> index.findBySalaryBetween(min, max),
+                () -> employeeRepository.findBySalaryBetween(min, max),
+                employee -> employee.getSalary() != null && employee.getSalary() >= min && employee.getSalary() <= max,
+                BY_SALARY);
+    }
+
+    /**
+     * Finds the {@link Employee} entities with the given name. While the cache is 
+     * authoritative, they are taken from the name index without touching the database.
+     * 
+     * @param name The name.
+     * @return The {@link Employee} entities found, by ID.
+     */
+    public List<Employee> findByName(String name) {
+        return query(index -> index.findByName(name), () -> employeeRepository.findByName(name),
+                employee -> name.equals(employee.getName()), BY_NAME);
+    }
+
+    /**
+     * Finds the {@link Employee} entities whose name starts with the given prefix. While 
+     * the cache is authoritative, they are taken from the name index without touching 
+     * the database.
+     * 
+     * @param prefix The prefix of the names.
+     * @return The {@link Employee} entities found, by name and then by ID.
+     */
+    public List<Employee> findByNamePrefix(String prefix) {
+        return query(index -> index.findByNamePrefix(prefix), () -> employeeRepository.findByNameStartingWith(prefix),
+                employee -> employee.getName() != null && employee.getName().startsWith(prefix), BY_NAME);
+    }
+
+    /**
+     * Tells whether the cache holds every entry of the data set, so that queries can be 
+     * answered from the indexes. It is the case from a point where nothing was outside of 
+     * the cache, such as a warm-up that loaded the whole database, until an entry is 
+     * evicted, released to another instance of a cluster or cleared from the cache alone, 
+     * or an entry added by another replica is not taken. Rows written to the database 
+     * other than through the cache are not seen.
+     * 
+     * @return {@code true} if queries are answered from the indexes.
+     */
+    public boolean isAuthoritative() {
+        return cache instanceof IndexedCacheStore && completeSince == dataSetLosses.sum();
+    }
+
+    /**
+     * Starts loading the whole data set into the cache, such as a warm-up scanning the 
+     * database.
+     * 
+     * @return The token to pass to {@link #completeFullLoad(long)}.
+     */
+    public long beginFullLoad() {
+        return dataSetLosses.sum();
+    }
+
+    /**
+     * Marks the cache as holding every entry of the data set, unless an entry left the 
+     * cache since the load began.
+     * 
+     * @param since The token returned by {@link #beginFullLoad()} when the load began.
+     */
+    public void completeFullLoad(long since) {
+        completeSince = since;
+        log.debug("Cache is {}authoritative for queries", isAuthoritative() ? "" : "not ");
+    }
+
+    /**
+     * Deletes the rows of a {@link RemoveAllJob} in chunks of IDs, read in ID order 
+     * from the database, and marks the cache authoritative again once they are gone.
+     */
+    private void runRemoveAll(RemoveAllJob job, long since) {
+        RuntimeException failure = null;
+        try {
+            long from = Long.MIN_VALUE;
+            while (true) {
+                long first = from;
+                List<Long> ids = readPrimary(() -> employeeRepository.findIdsFrom(first,
+                        Limit.of(removeAllChunkSize)));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                job.chunkDeleted(ids.size(), bulkDeleteFence.delete(ids, this::deleteRows));
+                long last = ids.get(ids.size() - 1);
+                if (ids.size() < removeAllChunkSize || last == Long.MAX_VALUE) {
+                    break;
+                }
+                from = last + 1;
+            }
+            if (recentWrites != null) {
+                recentWrites.recordAll();
+            }
+            completeFullLoad(since);
+        }
+        catch (RuntimeException e) {
+            failure = e;
+        }
+        finally {
+            bulkDeleteFence.end();
+            activeRemoveAll = null;
+        }
+        // Ended only once the fence is lifted, so a new job can start as soon as it is seen ended
+        if (failure == null) {
+            job.complete();
+            log.info("Job {} removed {} entries from DB", job.getId(), job.getRowsDeleted());
+        }
+        else {
+            log.error("Job {} failed to remove the entries from DB", job.getId(), failure);
+            job.fail(failure);
+        }
+    }
+    
+    private void deleteRows(Collection<Long> ids) {
+        if (jdbcWriter != null) {
+            jdbcWriter.deleteAllById(ids);
+        }
+        else {
+            employeeRepository.deleteAllByIdInBatch(ids);
+        }
+    }
+    
+    /**
+     * Replaces the copy of an entry changed by another replica, if this instance 
+     * caches it, has it pending write-behind or holds it in the {@link DiskCacheTier}.
+     */
+    private void applyPut(Employee employee) {
+        Long id = employee.getId();
+        negativeCache.remove(id);
+        // The other replica writes the entry back, which a running job must not delete
+        bulkDeleteFence.recordWrite(id);
+        ReentrantLock lock = logLock(id);
+        lock.lock();
+        try {
+            boolean pendingWrite = writeBehindQueue != null && writeBehindQueue.get(id) != null;
+            if (writeBehindQueue != null) {
+                writeBehindQueue.cancel(id);
+            }
+            boolean onDisk = diskTier != null && diskTier.remove(id);
+            if (pendingWrite || onDisk || cache.containsKey(id)) {
+                logAndPut(employee);
+            }
+            else {
+                dataSetLosses.increment();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Answers a query from the index while the cache is authoritative. Otherwise the 
+     * write-behind queue is flushed and the database is queried, and the rows of cached 
+     * entries are replaced by the cached copies, which are newer: the indexed matches, or 
+     * without indexes, the cached copies of the rows found that still match.
+     */
+    private List<Employee> query(Function<EmployeeIndex, List<Employee>> indexed, Supplier<List<Employee>> database,
+            Predicate<Employee> matches, Comparator<Employee> order) {
+        EmployeeIndex index = cache instanceof IndexedCacheStore store ? store.getIndex() : null;
+        if (index != null && isAuthoritative()) {
+            return indexed.apply(index);
+        }
+        log.info("Cache is not authoritative, querying the DB");
+        if (writeBehindQueue != null) {
+            writeBehindQueue.flush();
+        }
+        Map<Long, Employee> found = new HashMap<>();
+        if (index != null) {
+            indexed.apply(index).forEach(employee -> found.put(employee.getId(), employee));
+        }
+        List<Employee> rows = guarded(() -> recentWrites != null ? recentWrites.query(database) : database.get());
+        for (Employee row : rows) {
+            if (bulkDeleteFence.isDeleted(row.getId())) {
+                continue;
+            }
+            if (index != null) {
+                if (!cache.containsKey(row.getId())) {
+                    found.putIfAbsent(row.getId(), row);
+                }
+                continue;
+            }
+            Employee cached = cache.get(row.getId());
+            if (cached == null) {
+                found.put(row.getId(), row);
+            }
+            else if (matches.test(cached)) {
+                found.put(row.getId(), cached);
+            }
+        }
+        List<Employee> employees = new ArrayList<>(found.values());
+        employees.sort(order);
+        return employees;
+    }
+    
+    /**
+     * Puts an evicted {@link Employee} whose write-behind has not been flushed yet 
+     * back into the cache, and drops its pending write. The entry is dirty again, so 
+     * that its next eviction writes it back.
+     * 
+     * @param id The ID of the {@link Employee}.
+     * @return The pending {@link Employee}, or {@code null} if nothing is pending for the ID.
+     */
+    private Employee reclaimFromWriteBehind(Long id) {
+        if (writeBehindQueue == null) {
+            return null;
+        }
+        Employee employee = writeBehindQueue.get(id);
+        if (employee != null) {
+            log.info("Entry is pending write-behind, putting it back in cache with id - {}", id);
+            ReentrantLock lock = logLock(id);
+            lock.lock();
+            try {
+                putDirty(employee);
+            }
+            finally {
+                lock.unlock();
+            }
+            writeBehindQueue.cancel(id, employee);
+        }
+        return employee;
+    }
+    
+    /**
+     * Puts an {@link Employee} held by the {@link DiskCacheTier} back into the cache, as 
+     * a clean entry. Its copy on disk is kept, as it is still the latest saved version 
+     * of the entry.
+     * 
+     * @param id The ID of the {@link Employee}.
+     * @return The {@link Employee}, or {@code null} if the disk tier is disabled or does not hold it.
+     */
+    private Employee promoteFromDisk(Long id) {
+        if (diskTier == null) {
+            return null;
+        }
+        Employee employee = diskTier.get(id);
+        if (employee != null) {
+            log.info("Entry is in the disk tier, putting it back in cache with id - {}", id);
+            put(id, employee);
+        }
+        return employee;
+    }
+    
+    /**
+     * Loads an {@link Employee} missing from the cache from the database. The first 
+     * caller for an ID runs the query and the others wait for its result.
+     * 
+     * @param id The ID of the {@link Employee} to load.
+     * @return The {@link Employee} loaded from the database.
+     * @throws EntityNotFoundException if no {@link Employee} is found for the given ID.
+     */
+    private Employee load(Long id) {
+        if (negativeCache.contains(id)) {
+            throw new EntityNotFoundException(MessageFormat.format(ENTITY_NOT_FOUND, id));
+        }
+        CompletableFuture<Employee> load = new CompletableFuture<>();
+        CompletableFuture<Employee> inFlight = inFlightLoads.putIfAbsent(id, load);
+        if (inFlight != null) {
+            log.info("Entry is already being loaded from DB, waiting for it with id - {}", id);
+            return join(inFlight);
+        }
+        try {
+            Employee employee = loadFromDatabase(id);
+            load.complete(employee);
+            return employee;
+        }
+        catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlightLoads.remove(id, load);
+        }
+    }
+    
+    /**
+     * Fetches an {@link Employee} from the database and adds it to the cache, or 
+     * remembers the ID as missing.
+     */
+    private Employee loadFromDatabase(Long id) {
+        log.info("Entry is not in cache, getting it from DB with id - {}", id);
+        long start = System.nanoTime();
+        Optional<Employee> employeeOptional = guarded(() -> readRows(List.of(id), () -> employeeRepository.findById(id)));
+        metrics.recordLoad(System.nanoTime() - start);
+        if (employeeOptional.isPresent() && !bulkDeleteFence.isDeleted(id)) {
+            log.info("Entry present in DB for the id - {}", id);
+            Employee employee = employeeOptional.get();
+            put(id, employee);
+            return employee;
+        }
+        negativeCache.add(id);
+        throw new EntityNotFoundException(MessageFormat.format(ENTITY_NOT_FOUND, id));
+    }
+    
+    /**
+     * Appends an added entry to the {@link WriteAheadLog}, when enabled, and puts it 
+     * in the cache as a dirty entry, holding the lock of its ID so that the log, the 
+     * dirty entries and the cache see the updates of an ID in the same order.
+     * 
+     * @return The sequence number of the log record, or {@code 0} without a log.
+     */
+    private long logAndPut(Employee employee) {
+        ReentrantLock lock = logLock(employee.getId());
+        lock.lock();
+        try {
+            long sequence = writeAheadLog != null ? writeAheadLog.logAdd(employee) : 0;
+            putDirty(employee);
+            return sequence;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Appends a removal to the {@link WriteAheadLog}, when enabled, and removes the 
+     * entry from the cache, holding the lock of its ID.
+     * 
+     * @return The sequence number of the log record, or {@code 0} without a log.
+     */
+    private long logAndRemove(Long id) {
+        ReentrantLock lock = logLock(id);
+        lock.lock();
+        try {
+            long sequence = writeAheadLog != null ? writeAheadLog.logRemove(id) : 0;
+            cache.remove(id);
+            dirtyEntries.remove(id);
+            loadedAt.remove(id);
+            serializedEntries.remove(id);
+            removeFromDisk(id);
+            return sequence;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Appends a clear to the {@link WriteAheadLog}, when enabled, waits for it to be 
+     * durable and clears the cache. A heap store is replaced by an empty one in a single 
+     * reference swap, so readers and writers never wait for its entries to be dropped; 
+     * requests still holding the old store finish on it, as if they ran before the clear. 
+     * An off-heap store is emptied in place, which only resets its segments, as another 
+     * store would hold a second budget of direct memory until the old one is collected.
+     */
+    private void logAndClear() {
+        if (writeAheadLog != null) {
+            writeAheadLog.sync(writeAheadLog.logClear());
+        }
+        dirtyEntries.clear();
+        loadedAt.clear();
+        if (storageMode == StorageMode.OFF_HEAP) {
+            cache.clear();
+        }
+        else {
+            cache = createStore();
+        }
+        serializedEntries.clear();
+        if (diskTier != null) {
+            diskTier.clear();
+        }
+    }
+    
+    /**
+     * Waits for a {@link WriteAheadLog} record to be durable, so that an update is 
+     * only acknowledged once it survives a restart.
+     */
+    private void awaitDurable(long sequence) {
+        if (writeAheadLog != null && sequence > 0) {
+            writeAheadLog.sync(sequence);
+        }
+    }
+    
+    private ReentrantLock logLock(Long id) {
+        int hash = id.hashCode();
+        return logLocks[(hash ^ (hash >>> 16)) & (LOG_LOCK_STRIPES - 1)];
+    }
+    
+    /**
+     * Puts an entry in the cache and counts it.
+     */
+    private void put(Long id, Employee employee) {
+        cache.put(id, employee);
+        stampLoaded(id);
+        serializedEntries.remove(id);
+        metrics.recordPut();
+    }
+    
+    /**
+     * Records the time an entry was put in the cache, from which its age is counted.
+     */
+    private void stampLoaded(Long id) {
+        if (refreshAfterMillis > 0) {
+            loadedAt.put(id, ticker.getAsLong());
+        }
+    }
+    
+    /**
+     * Checks the age of a clean entry hit in the cache, when refresh is enabled. Past 
+     * the refresh age, the entry is served and a background reload is started, unless 
+     * the last reload failed less than {@code cache.refresh.failure-backoff-ms} ago. 
+     * Dirty entries are newer than the database and never refreshed.
+     * 
+     * @return Whether the entry is past the maximum staleness, and must be reloaded before it is served.
+     */
+    private boolean isTooStale(Long id, Employee employee) {
+        if (refreshAfterMillis <= 0) {
+            return false;
+        }
+        Long loaded = loadedAt.get(id);
+        if (loaded == null || dirtyEntries.containsKey(id)) {
+            return false;
+        }
+        long now = ticker.getAsLong();
+        long age = now - loaded;
+        if (age < TimeUnit.MILLISECONDS.toNanos(refreshAfterMillis)) {
+            return false;
+        }
+        if (maxStaleMillis > 0 && age >= TimeUnit.MILLISECONDS.toNanos(maxStaleMillis)
+                && (databaseGuard == null || databaseGuard.isAvailable())) {
+            return true;
+        }
+        metrics.recordStaleHit();
+        if (!refreshFailed || now - refreshBackoffUntil >= 0) {
+            refreshAsync(id, employee);
+        }
+        return false;
+    }
+    
+    /**
+     * Reloads an entry past the maximum staleness, sharing a reload already in flight.
+     * 
+     * @throws EntityNotFoundException if its row is no longer in the database.
+     */
+    private Employee reloadTooStale(Long id, Employee stale) {
+        Employee employee = join(reloadTooStaleAsync(id, stale));
+        if (employee == null) {
+            throw new EntityNotFoundException(MessageFormat.format(ENTITY_NOT_FOUND, id));
+        }
+        return employee;
+    }
+    
+    /**
+     * Reloads an entry past the maximum staleness, sharing a reload already in flight, 
+     * and serves the stale entry if the {@link DatabaseGuard} sheds or refuses the reload.
+     * 
+     * @return A future completed with the entry, or {@code null} if its row is gone.
+     */
+    private CompletableFuture<Employee> reloadTooStaleAsync(Long id, Employee stale) {
+        log.info("Entry is past its maximum staleness, reloading it from DB with id - {}", id);
+        return refreshAsync(id, stale).exceptionallyCompose(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (!(cause instanceof DatabaseUnavailableException)) {
+                return CompletableFuture.failedFuture(cause);
+            }
+            // Shed or refused without reaching the DB: a stale entry beats a 503
+            log.warn("DB is unavailable, serving entry past its maximum staleness with id - {}", id);
+            metrics.recordStaleHit();
+            return CompletableFuture.completedFuture(stale);
+        });
+    }
+    
+    /**
+     * Reloads an entry past its refresh age on the {@link DatabaseExecutor}, or returns 
+     * the reload of the same ID already in flight. A failure is counted and starts the 
+     * backoff; the stale entry stays cached.
+     * 
+     * @return A future completed with the reloaded entry, or {@code null} if its row is gone.
+     */
+    private CompletableFuture<Employee> refreshAsync(Long id, Employee stale) {
+        CompletableFuture<Employee> refresh = new CompletableFuture<>();
+        CompletableFuture<Employee> inFlight = inFlightRefreshes.putIfAbsent(id, refresh);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        databaseExecutor.submit(() -> refresh(id, stale)).whenComplete((employee, e) -> {
+            inFlightRefreshes.remove(id, refresh);
+            if (e != null) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                log.warn("Failed to refresh entry with id - {}, serving it stale", id, cause);
+                metrics.recordRefreshFailure();
+                refreshBackoffUntil = ticker.getAsLong() + TimeUnit.MILLISECONDS.toNanos(refreshBackoffMillis);
+                refreshFailed = true;
+                refresh.completeExceptionally(cause);
+            }
+            else {
+                metrics.recordRefresh();
+                refreshFailed = false;
+                refresh.complete(employee);
+            }
+        });
+        return refresh;
+    }
+    
+    /**
+     * Reads the row of a cached entry from the database and replaces the entry with it, 
+     * as a clean entry, unless the entry was changed, removed or evicted meanwhile. An 
+     * entry whose row is gone is dropped, without deleting anything.
+     * 
+     * @return The entry now cached, the row if the entry left the cache meanwhile, or 
+     *         {@code null} if the row is gone.
+     */
+    private Employee refresh(Long id, Employee stale) {
+        long start = System.nanoTime();
+        Optional<Employee> row = guarded(() -> readRows(List.of(id), () -> employeeRepository.findById(id)));
+        metrics.recordLoad(System.nanoTime() - start);
+        boolean deleted = row.isEmpty() || bulkDeleteFence.isDeleted(id);
+        ReentrantLock lock = logLock(id);
+        lock.lock();
+        try {
+            Employee current = cache.get(id);
+            if (current == null) {
+                return deleted ? null : row.get();
+            }
+            if (dirtyEntries.containsKey(id) || !sameState(current, stale)) {
+                // Changed since it was found stale, the newer entry wins
+                return current;
+            }
+            if (deleted) {
+                log.info("Entry was deleted from DB, dropping it from cache with id - {}", id);
+                cache.remove(id);
+                loadedAt.remove(id);
+                serializedEntries.remove(id);
+                removeFromDisk(id);
+                negativeCache.add(id);
+                return null;
+            }
+            Employee employee = row.get();
+            if (!sameState(employee, current)) {
+                // The disk tier would otherwise serve the old copy after an eviction
+                removeFromDisk(id);
+            }
+            put(id, employee);
+            return employee;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Makes a database call through the {@link DatabaseGuard}, when enabled.
+     * 
+     * @throws DatabaseUnavailableException if the guard refuses the call.
+     */
+    private <T> T guarded(Supplier<T> call) {
+        return databaseGuard != null ? databaseGuard.call(call) : call.get();
+    }
+    
+    private void runGuarded(Runnable call) {
+        if (databaseGuard != null) {
+            databaseGuard.run(call);
+        }
+        else {
+            call.run();
+        }
+    }
+    
+    /**
+     * Reads rows through {@link RecentWrites}, when enabled, so that rows just written 
+     * are read from the primary database.
+     */
+    private <T> T readRows(Collection<Long> ids, Supplier<T> read) {
+        return recentWrites != null ? recentWrites.read(ids, read) : read.get();
+    }
+    
+    private <T> T readPrimary(Supplier<T> read) {
+        return recentWrites != null ? recentWrites.readPrimary(read) : read.get();
+    }
+    
+    private void recordWrites(Collection<Long> ids) {
+        if (recentWrites != null) {
+            recentWrites.record(ids);
+        }
+    }
+    
+    /**
+     * Waits for a load or reload, rethrowing its failure as is.
+     */
+    private static Employee join(CompletableFuture<Employee> load) {
+        try {
+            return load.join();
+        }
+        catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+    
+    /**
+     * Marks an entry dirty and puts it in the cache. It is marked first, so that it is 
+     * written back even if its own put evicts it.
+     */
+    private void putDirty(Employee employee) {
+        dirtyEntries.put(employee.getId(), employee);
+        put(employee.getId(), employee);
+    }
+    
+    /**
+     * Clears the dirty mark of an evicted entry, if the entry is the one marked.
+     * 
+     * @return Whether the entry was dirty and must be written back.
+     */
+    private boolean clearDirty(Long id, Employee employee) {
+        Employee dirty = dirtyEntries.get(id);
+        // Off-heap stores evict a decoded copy, so the marked entry is matched by its state
+        return dirty != null && sameState(dirty, employee) && dirtyEntries.remove(id, dirty);
+    }
+    
+    private static boolean sameState(Employee employee, Employee other) {
+        return employee == other || (Objects.equals(employee.getName(), other.getName())
+                && Objects.equals(employee.getSalary(), other.getSalary()));
+    }
+    
+    private byte[] encode(Employee employee) {
+        try {
+            return objectMapper.writeValueAsBytes(employee);
+        }
+        catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode entry with id - " + employee.getId(), e);
+        }
+    }
+    
+    /**
+     * Saves an entry evicted from the cache to the database. Invoked by the 
+     * {@link CacheStore} for every least recently used (LRU) entry it evicts. 
+     * A clean entry is dropped without a write, as the database already holds it. 
+     * A dirty entry is handed to the {@link WriteBehindQueue} when it is enabled, 
+     * otherwise it is saved on the calling thread. Once dropped, handed off or saved, 
+     * a copy is demoted to the {@link DiskCacheTier}, when enabled. 
+     * 
+     * The inline save does not go through the {@link DatabaseGuard}: the entry has 
+     * already left the cache, so a shed save would lose it, and the put causing the 
+     * eviction has already succeeded.
+     * 
+     * @param lruKey The ID of the evicted entry.
+     * @param lruEmployee The evicted {@link Employee}.
+     */
+    private void evictToDatabase(Long lruKey, Employee lruEmployee) {
+        dataSetLosses.increment();
+        serializedEntries.remove(lruKey);
+        loadedAt.remove(lruKey);
+        metrics.recordEviction();
+        if (!clearDirty(lruKey, lruEmployee)) {
+            log.info("Evicting clean LRU entry with key - {} from cache without writing it to DB", lruKey);
+            metrics.recordSkippedWriteBack();
+            demoteToDisk(lruEmployee);
+            return;
+        }
+        log.info("Evicting LRU entry with key - {} from cache to DB", lruKey);
+        if (writeBehindQueue != null) {
+            writeBehindQueue.enqueue(lruEmployee);
+            demoteToDisk(lruEmployee);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            bulkDeleteFence.write(List.of(lruKey), () -> {
+                if (jdbcWriter != null) {
+                    jdbcWriter.upsert(lruEmployee);
+                }
+                else {
+                    employeeRepository.save(lruEmployee);
+                }
+            });
+            recordWrites(List.of(lruKey));
+        }
+        catch (RuntimeException e) {
+            metrics.recordWriteBackFailures(1);
+            throw e;
+        }
+        finally {
+            metrics.recordEvictionSave(System.nanoTime() - start);
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.logFlushed(lruEmployee);
+        }
+        demoteToDisk(lruEmployee);
+    }
+    
+    private void demoteToDisk(Employee employee) {
+        if (diskTier != null) {
+            diskTier.put(employee);
+        }
+    }
+    
+    private void removeFromDisk(Long id) {
+        if (diskTier != null) {
+            diskTier.remove(id);
+        }
+    }
+    
+    /**
+     * Creates the cache store for the configured storage mode and eviction policy, 
+     * bounded by the maximum size on the heap or by the off-heap memory budget.
+     */
+    private CacheStore<Long, Employee> createStore() {
+        if (storageMode == StorageMode.OFF_HEAP) {
+            log.info("Keeping cache entries off-heap within {} bytes", offHeapMaxBytes);
+            return createStore(this::evictToDatabase);
+        }
+        if (indexesEnabled) {
+            log.info("Indexing cache entries by salary and by name");
+            return new IndexedCacheStore(this::createStore, new EmployeeIndex(), this::evictToDatabase);
+        }
+        return createStore(this::evictToDatabase);
+    }
+    
+    private CacheStore<Long, Employee> createStore(CacheStore.EvictionListener<Long, Employee> evictionListener) {
+        int level = concurrencyLevel > 0 ? concurrencyLevel : DEFAULT_CONCURRENCY_LEVEL;
+        if (storageMode == StorageMode.OFF_HEAP) {
+            return new OffHeapEmployeeStore(level, offHeapMaxBytes, evictionListener);
+        }
+        return switch (evictionPolicy) {
+            case LFU -> new PolicyCacheStore<>(new LfuPolicy<>(), maxCacheSize, evictionListener);
+            case TINY_LFU -> new PolicyCacheStore<>(new TinyLfuPolicy<>(maxCacheSize), maxCacheSize, evictionListener);
+            case TTL -> new PolicyCacheStore<>(new TtlPolicy<>(expireAfterWriteMillis, expireAfterAccessMillis, 
+                    System::nanoTime), maxCacheSize, evictionListener);
+            default -> new SegmentedLruCacheStore<>(level, maxCacheSize, evictionListener);
+        };
+    }
+    
+    /**
+     * Registers gauges of the number of cached entries and of the cache capacity, 
+     * which is the maximum size on the heap and the memory budget off the heap.
+     */
+    private void registerGauges() {
+        metrics.gauge("cache.size", "Entries in the cache", this, service -> service.cache.size());
+        if (cache instanceof OffHeapEmployeeStore) {
+            metrics.gauge("cache.off-heap.used", "Off-heap memory used by cached entries, in bytes", this,
+                    service -> ((OffHeapEmployeeStore) service.cache).getUsedBytes());
+            metrics.gauge("cache.off-heap.max", "Off-heap memory budget of the cache, in bytes", this,
+                    service -> ((OffHeapEmployeeStore) service.cache).getMaxBytes());
+        }
+        else {
+            metrics.gauge("cache.capacity", "Maximum number of entries in the cache", this,
+                    service -> service.maxCacheSize);
+        }
+    }
+    
+    /**
+     * Feeds a read to the {@link MissRatioCurve}, if adaptive sizing is enabled.
+     */
+    private void recordRead(Long id) {
+        MissRatioCurve curve = missRatioCurve;
+        if (curve != null) {
+            curve.record(id);
+        }
+    }
+    
+    /**
+     * Logs the current keys in the cache at debug level. Copying the key set is 
+     * proportional to the cache size, so it is skipped unless debug logging is enabled.
+     */
+    private void logCacheKeys() {
+        if (log.isDebugEnabled()) {
+            log.debug("Current cache - {}", cache.keySet());
+        }
+    }
+    
+    /**
+     * JSON encoding of a cached {@link Employee}, valid while that same object is cached.
+     */
+    private record SerializedEntry(Employee employee, byte[] json)
+    {
+    }
+    
+    /**
+     * Storage modes of the cache, selected with the {@code cache.storage-mode} property.
+     */
+    public enum StorageMode
+    {
+        /** Entries are kept as {@link Employee} objects in a {@link SegmentedLruCacheStore}. */
+        HEAP,
+        
+        /** Entries are encoded in off-heap memory by an {@link OffHeapEmployeeStore}. */
+        OFF_HEAP
+    }
+    
+    /**
+     * Replacement policies of the cache on the heap, selected with the 
+     * {@code cache.eviction-policy} property.
+     */
+    public enum EvictionPolicyType
+    {
+        /** Least recently used, with lock-free reads ({@link SegmentedLruCacheStore}). */
+        LRU,
+        
+        /** Least frequently used ({@link LfuPolicy}). */
+        LFU,
+        
+        /** Window TinyLFU, admitting entries by estimated frequency ({@link TinyLfuPolicy}). */
+        TINY_LFU,
+        
+        /** Expiry after write and/or access, then least recently used ({@link TtlPolicy}). */
+        TTL
     }
-
 
 }
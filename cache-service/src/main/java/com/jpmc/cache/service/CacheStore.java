@@ -0,0 +1,132 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Storage abstraction used by {@link CacheService} to hold cached entries.
+ * Implementations are bounded by a capacity and must be safe for concurrent use
+ * by request threads. When an insert takes the store over its capacity, the entry
+ * chosen by the implementation's replacement policy is removed and handed to the
+ * {@link EvictionListener}, which is how the service writes evicted entries back
+ * to the database.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ *
+ * @author r.pandiarajan
+ */
+public interface CacheStore<K, V>
+{
+    /**
+     * Returns the value mapped to the given key and records the access for the
+     * replacement policy.
+     *
+     * @param key The key to look up.
+     * @return The cached value, or {@code null} if the key is not cached.
+     */
+    V get(K key);
+
+    /**
+     * Maps the given key to the value. If the store grows beyond its capacity,
+     * entries are evicted and passed to the {@link EvictionListener} before this
+     * method returns.
+     *
+     * @param key The key of the entry.
+     * @param value The value to cache.
+     * @return The previous value for the key, or {@code null} if there was none.
+     */
+    V put(K key, V value);
+
+    /**
+     * Tells whether the key is cached, without counting as an access of its entry.
+     *
+     * @param key The key of the entry.
+     * @return {@code true} if the key is cached.
+     */
+    boolean containsKey(K key);
+
+    /**
+     * Maps the given key to the value unless the key is already cached, in which
+     * case the cached value is kept. Evicts like {@link #put(Object, Object)}.
+     *
+     * @param key The key of the entry.
+     * @param value The value to cache.
+     * @return The value already cached for the key, or {@code null} if the value was added.
+     */
+    V putIfAbsent(K key, V value);
+
+    /**
+     * Removes the entry for the given key without notifying the {@link EvictionListener}.
+     *
+     * @param key The key to remove.
+     * @return The removed value, or {@code null} if the key was not cached.
+     */
+    V remove(K key);
+
+    /**
+     * Removes all entries without notifying the {@link EvictionListener}.
+     */
+    void clear();
+
+    /**
+     * @return The number of entries currently held by the store.
+     */
+    int size();
+
+    /**
+     * @return {@code true} if the store holds no entries.
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return The maximum number of entries the store holds before evicting.
+     */
+    int getCapacity();
+
+    /**
+     * Changes the capacity of the store. Lowering the capacity evicts entries
+     * until the store fits the new bound.
+     *
+     * @param capacity The new maximum number of entries.
+     */
+    void setCapacity(int capacity);
+
+    /**
+     * @return A point-in-time copy of the keys held by the store.
+     */
+    Set<K> keySet();
+
+    /**
+     * Returns the keys the replacement policy would evict last, from the most to the
+     * least recently used when the store tracks recency. Defaults to an arbitrary
+     * order for stores that do not.
+     *
+     * @param limit The maximum number of keys returned.
+     * @return A point-in-time list of at most {@code limit} keys.
+     */
+    default List<K> hottestKeys(int limit) {
+        List<K> keys = new ArrayList<>(keySet());
+        return keys.size() > limit ? new ArrayList<>(keys.subList(0, limit)) : keys;
+    }
+
+    /**
+     * Callback invoked with every entry a {@link CacheStore} evicts to stay within
+     * its capacity. It is called on the thread that triggered the eviction and
+     * outside of any internal lock of the store.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the cached values
+     */
+    @FunctionalInterface
+    interface EvictionListener<K, V>
+    {
+        void onEviction(K key, V value);
+    }
+}
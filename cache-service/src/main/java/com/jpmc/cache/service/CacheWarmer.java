@@ -0,0 +1,463 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.repository.EmployeeRepository;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Fills the cache after a restart, so that the first requests after a deploy are not
+ * all served from the database.
+ *
+ * When snapshots are enabled, the IDs of the cached entries are periodically written
+ * to a local file, from the most to the least recently used, and once more on
+ * shutdown. On startup, the cache is warmed up from the snapshot, by loading the
+ * listed IDs from the database in batches, hottest first; or from the database
+ * alone, by scanning the employee table in ID ranges with keyset-paginated queries.
+ * Batches and ranges are loaded by {@code cache.warm-up.concurrency} threads.
+ *
+ * Snapshots hold IDs rather than entries: an entry updated in the database after the
+ * snapshot was taken would otherwise be served stale. Warm-up never replaces an
+ * entry already cached, such as one recovered by the {@link WriteAheadLog}.
+ *
+ * The warm-up runs in the background once the application has started, and
+ * {@link #isReady()} reports whether the cache holds enough entries to take traffic,
+ * see {@code CacheWarmUpHealthIndicator}.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@Slf4j
+public class CacheWarmer
+{
+    private static final int SNAPSHOT_MAGIC = 0x43534E50;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /** Magic number, version and ID count. */
+    private static final int SNAPSHOT_HEADER_BYTES = 12;
+
+    private final CacheService cacheService;
+    private final EmployeeRepository employeeRepository;
+
+    @Getter
+    private final WarmUpSource source;
+    private final int concurrency;
+    private final int batchSize;
+    private final int maxEntries;
+    private final int readyFillPercent;
+    private final long timeoutMillis;
+    private final boolean snapshotEnabled;
+    private final Path snapshotFile;
+    private final long snapshotIntervalMillis;
+
+    /** Entries added to the cache by the warm-up. */
+    private final AtomicInteger loaded = new AtomicInteger();
+
+    /** Cache size from which the cache is ready, once the warm-up knows how many entries it can load. */
+    @Getter
+    private volatile int target;
+
+    @Getter
+    private volatile boolean complete;
+    private volatile boolean ready;
+    private volatile long startNanos;
+    private ScheduledExecutorService snapshotter;
+
+    /**
+     * Creates a cache warmer.
+     *
+     * @param cacheService The service whose cache is warmed up and snapshotted.
+     * @param employeeRepository Repository the cached entries are loaded from.
+     * @param source Where the warm-up takes the entries to load from.
+     * @param concurrency Number of threads loading batches or ranges of entries.
+     * @param batchSize Number of entries loaded by a single query.
+     * @param maxEntries Maximum number of entries loaded and snapshotted; {@code 0} uses the cache capacity.
+     * @param readyFillPercent Percentage of the entries to load that must be cached before the cache is ready.
+     * @param timeoutMillis Time after which the cache is ready even if the warm-up is still running.
+     * @param snapshotEnabled Whether snapshots of the cached IDs are written.
+     * @param snapshotFile File holding the latest snapshot.
+     * @param snapshotIntervalMillis Time between two snapshots; {@code 0} only writes one on shutdown.
+     */
+    public CacheWarmer(CacheService cacheService, EmployeeRepository employeeRepository,
+            @Value("${cache.warm-up.source:none}") WarmUpSource source,
+            @Value("${cache.warm-up.concurrency:4}") int concurrency,
+            @Value("${cache.warm-up.batch-size:500}") int batchSize,
+            @Value("${cache.warm-up.max-entries:0}") int maxEntries,
+            @Value("${cache.warm-up.ready-fill-percent:80}") int readyFillPercent,
+            @Value("${cache.warm-up.timeout-ms:300000}") long timeoutMillis,
+            @Value("${cache.snapshot.enabled:false}") boolean snapshotEnabled,
+            @Value("${cache.snapshot.file:data/cache-snapshot.bin}") Path snapshotFile,
+            @Value("${cache.snapshot.interval-ms:60000}") long snapshotIntervalMillis) {
+        this.cacheService = cacheService;
+        this.employeeRepository = employeeRepository;
+        this.source = source;
+        this.concurrency = Math.max(concurrency, 1);
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxEntries = maxEntries;
+        this.readyFillPercent = readyFillPercent;
+        this.timeoutMillis = timeoutMillis;
+        this.snapshotEnabled = snapshotEnabled;
+        this.snapshotFile = snapshotFile;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+        this.complete = source == WarmUpSource.NONE;
+    }
+
+    /**
+     * Starts the warm-up in the background and schedules the snapshots, once the
+     * application, including its database connections, has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!complete) {
+            Thread warmUp = new Thread(this::warmUp, "cache-warm-up");
+            warmUp.setDaemon(true);
+            warmUp.start();
+        }
+        if (snapshotEnabled && snapshotIntervalMillis > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cache-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(this::writeSnapshotQuietly, snapshotIntervalMillis,
+                    snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the snapshots and writes a last one, so that the next startup warms up
+     * with the entries cached at shutdown.
+     */
+    @PreDestroy
+    public void stop() {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        if (snapshotEnabled) {
+            writeSnapshotQuietly();
+        }
+    }
+
+    /**
+     * Fills the cache from the configured source, returning once every batch or range
+     * has been loaded. Failures are logged, and end the warm-up with the entries
+     * loaded so far.
+     */
+    public void warmUp() {
+        startNanos = System.nanoTime();
+        try {
+            switch (source) {
+                case SNAPSHOT -> warmUpFromSnapshot();
+                case DATABASE -> warmUpFromDatabase();
+                default -> { }
+            }
+            log.info("Warmed up the cache from the {} with {} entries in {} ms", source.name().toLowerCase(),
+                    loaded.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        }
+        catch (IOException | RuntimeException e) {
+            log.error("Failed to warm up the cache from the {}, {} entries loaded", source.name().toLowerCase(),
+                    loaded.get(), e);
+        }
+        finally {
+            complete = true;
+        }
+    }
+
+    /**
+     * Tells whether the cache can take traffic: once the warm-up has completed, has
+     * filled the cache up to the configured percentage of the entries it loads, or
+     * has run for longer than its timeout. A ready cache stays ready.
+     *
+     * @return {@code true} if the cache is ready.
+     */
+    public boolean isReady() {
+        if (ready) {
+            return true;
+        }
+        int threshold = target;
+        long start = startNanos;
+        ready = complete
+                || (threshold > 0 && cacheService.getCache().size() >= threshold)
+                || (start != 0 && System.nanoTime() - start > TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        return ready;
+    }
+
+    /**
+     * @return The number of entries added to the cache by the warm-up.
+     */
+    public int getLoaded() {
+        return loaded.get();
+    }
+
+    /**
+     * Writes the IDs of the cached entries, from the most to the least recently used,
+     * to a temporary file that then atomically replaces the snapshot. The file holds
+     * a header, the IDs and a CRC32C checksum of both.
+     *
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void writeSnapshot() throws IOException {
+        List<Long> ids = cacheService.hottestKeys(maxEntries());
+        ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES + ids.size() * Long.BYTES + Integer.BYTES);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(ids.size());
+        for (Long id : ids) {
+            buffer.putLong(id);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue()).flip();
+
+        Path file = snapshotFile.toAbsolutePath();
+        Files.createDirectories(file.getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.debug("Wrote a snapshot of {} cached IDs to {}", ids.size(), file);
+    }
+
+    /**
+     * Reads the IDs of a snapshot written by {@link #writeSnapshot()}.
+     *
+     * @param file The snapshot file.
+     * @return The IDs, from the most to the least recently used, or an empty list if there is no snapshot.
+     * @throws IOException if the snapshot cannot be read or is corrupt.
+     */
+    static List<Long> readSnapshot(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return List.of();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < SNAPSHOT_HEADER_BYTES + Integer.BYTES || buffer.getInt() != SNAPSHOT_MAGIC
+                || buffer.getInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Not a cache snapshot: " + file);
+        }
+        int count = buffer.getInt();
+        if (count < 0 || buffer.remaining() != (long) count * Long.BYTES + Integer.BYTES) {
+            throw new IOException("Truncated cache snapshot: " + file);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, SNAPSHOT_HEADER_BYTES + count * Long.BYTES);
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(buffer.getLong());
+        }
+        if (buffer.getInt() != (int) crc.getValue()) {
+            throw new IOException("Corrupt cache snapshot: " + file);
+        }
+        return ids;
+    }
+
+    /**
+     * Writes a snapshot unless the warm-up is still running, as the cache would then
+     * only hold part of the previous snapshot.
+     */
+    private void writeSnapshotQuietly() {
+        if (!complete) {
+            return;
+        }
+        try {
+            writeSnapshot();
+        }
+        catch (IOException | RuntimeException e) {
+            log.error("Failed to write the cache snapshot to {}", snapshotFile, e);
+        }
+    }
+
+    /**
+     * Loads the IDs of the snapshot, hottest first, in batches shared by the warm-up threads.
+     */
+    private void warmUpFromSnapshot() throws IOException {
+        List<Long> ids = readSnapshot(snapshotFile);
+        int size = cacheService.getCache().size();
+        int budget = Math.max(maxEntries() - size, 0);
+        if (ids.size() > budget) {
+            ids = ids.subList(0, budget);
+        }
+        target = fillTarget(size + ids.size());
+        log.info("Warming up the cache with {} IDs from snapshot {}", ids.size(), snapshotFile);
+
+        List<List<Long>> batches = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            batches.add(ids.subList(from, Math.min(from + batchSize, ids.size())));
+        }
+        runAll(batches.stream()
+                .<Runnable>map(batch -> () -> loaded.addAndGet(cacheService.warmUp(employeeRepository.findAllById(batch))))
+                .toList());
+    }
+
+    /**
+     * Splits the IDs of the employee table into one range per warm-up thread, and
+     * scans each range until the cache holds as many entries as it can. When every
+     * range is scanned to its end, the cache holds the whole table and is marked as
+     * authoritative for queries.
+     */
+    private void warmUpFromDatabase() {
+        long since = cacheService.beginFullLoad();
+        Optional<Employee> lowest = employeeRepository.findFirstByOrderByIdAsc();
+        Optional<Employee> highest = employeeRepository.findFirstByOrderByIdDesc();
+        if (lowest.isEmpty() || highest.isEmpty()) {
+            cacheService.completeFullLoad(since);
+            return;
+        }
+        int size = cacheService.getCache().size();
+        AtomicInteger budget = new AtomicInteger(Math.max(maxEntries() - size, 0));
+        target = fillTarget((int) Math.min((long) size + employeeRepository.count(), maxEntries()));
+        long min = lowest.get().getId();
+        long max = highest.get().getId();
+        long width = Math.ceilDiv(max - min + 1, concurrency);
+        log.info("Warming up the cache from the DB, scanning IDs {} to {} in {} ranges", min, max, concurrency);
+
+        List<Runnable> scans = new ArrayList<>();
+        AtomicInteger scanned = new AtomicInteger();
+        for (long from = min; from <= max; from += width) {
+            long to = Math.min(from + width - 1, max);
+            long rangeStart = from;
+            scans.add(() -> {
+                if (scanRange(rangeStart, to, budget)) {
+                    scanned.incrementAndGet();
+                }
+            });
+            if (to == max) {
+                break;
+            }
+        }
+        runAll(scans);
+        if (scanned.get() == scans.size()) {
+            cacheService.completeFullLoad(since);
+        }
+    }
+
+    /**
+     * Loads pages of the employees with IDs in the range, continuing each query after
+     * the last ID of the previous page, while the budget of entries allows.
+     *
+     * @return {@code true} if every employee of the range was loaded.
+     */
+    private boolean scanRange(long from, long to, AtomicInteger budget) {
+        while (from <= to) {
+            if (budget.get() <= 0 || Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            List<Employee> page = employeeRepository.findByIdBetweenOrderByIdAsc(from, to, Limit.of(batchSize));
+            if (page.isEmpty()) {
+                return true;
+            }
+            int granted = reserve(budget, page.size());
+            loaded.addAndGet(cacheService.warmUp(page.subList(0, granted)));
+            if (granted < page.size()) {
+                return false;
+            }
+            if (page.size() < batchSize) {
+                return true;
+            }
+            from = page.get(page.size() - 1).getId() + 1;
+        }
+        return true;
+    }
+
+    /**
+     * Takes up to the requested number of entries from the budget shared by the ranges,
+     * so that the warm-up never evicts the entries it has just loaded.
+     */
+    private static int reserve(AtomicInteger budget, int requested) {
+        for (;;) {
+            int available = budget.get();
+            int granted = Math.min(available, requested);
+            if (granted <= 0 || budget.compareAndSet(available, available - granted)) {
+                return Math.max(granted, 0);
+            }
+        }
+    }
+
+    /**
+     * Runs the tasks on the warm-up threads and waits for all of them. A failed task
+     * is logged without stopping the others.
+     */
+    private void runAll(List<Runnable> tasks) {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "cache-warm-up-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks.size());
+            for (Runnable task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                }
+                catch (ExecutionException e) {
+                    log.error("Failed to load part of the cache warm-up", e.getCause());
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int maxEntries() {
+        return maxEntries > 0 ? Math.min(maxEntries, cacheService.getCache().getCapacity())
+                : cacheService.getCache().getCapacity();
+    }
+
+    private int fillTarget(int expected) {
+        return (int) Math.ceil(expected * readyFillPercent / 100.0);
+    }
+
+    /**
+     * Sources of the cache warm-up, selected with the {@code cache.warm-up.source} property.
+     */
+    public enum WarmUpSource
+    {
+        /** The cache starts empty. */
+        NONE,
+
+        /** The IDs of the latest snapshot are loaded from the database. */
+        SNAPSHOT,
+
+        /** The employee table is scanned until the cache is full. */
+        DATABASE
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Circuit breaker over the outcomes of the last {@code windowSize} database calls.
+ *
+ * While {@link State#CLOSED}, every call is permitted. Once at least {@code minCalls}
+ * outcomes are recorded and the share of failures among them reaches
+ * {@code failureRateThreshold}, the breaker opens: calls are refused for
+ * {@code openMillis}, without reaching the database. It is then
+ * {@link State#HALF_OPEN}, and permits {@code halfOpenCalls} probe calls: the breaker
+ * closes again once they all succeed, with an empty window, and opens again on the
+ * first failure.
+ *
+ * Outcomes are recorded under a {@link ReentrantLock} rather than a monitor, as
+ * callers may be virtual threads.
+ *
+ * @author r.pandiarajan
+ */
+@Slf4j
+public class CircuitBreaker
+{
+    private final int windowSize;
+    private final int minCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier ticker;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Outcomes of the last calls in a ring, {@code true} for failures. */
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    private volatile State state = State.CLOSED;
+    private long openUntil;
+    private int probes;
+    private int probeSuccesses;
+
+    /**
+     * Creates a closed breaker.
+     *
+     * @param windowSize Number of the last outcomes the failure rate is computed over.
+     * @param minCalls Number of outcomes needed before the breaker may open.
+     * @param failureRateThreshold Share of failures at which the breaker opens.
+     * @param openMillis Time calls are refused for once the breaker opens.
+     * @param halfOpenCalls Number of probe calls that must succeed to close the breaker again.
+     * @param ticker Source of the current time in nanoseconds.
+     */
+    public CircuitBreaker(int windowSize, int minCalls, double failureRateThreshold, long openMillis,
+            int halfOpenCalls, LongSupplier ticker) {
+        this.windowSize = Math.max(windowSize, 1);
+        this.minCalls = Math.min(Math.max(minCalls, 1), this.windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.halfOpenCalls = Math.max(halfOpenCalls, 1);
+        this.ticker = ticker;
+        this.outcomes = new boolean[this.windowSize];
+    }
+
+    /**
+     * Asks to make a call. Every permitted call must be followed by
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #releasePermission()}.
+     *
+     * @return Whether the call may be made.
+     */
+    public boolean tryAcquirePermission() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (ticker.getAsLong() - openUntil < 0) {
+                    return false;
+                }
+                log.info("Circuit breaker is half-open, probing the database");
+                state = State.HALF_OPEN;
+                probes = 0;
+                probeSuccesses = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probes >= halfOpenCalls) {
+                    return false;
+                }
+                probes++;
+            }
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back the permission of a call that was not made.
+     */
+    public void releasePermission() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && probes > 0) {
+                probes--;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a call that succeeded.
+     */
+    public void onSuccess() {
+        record(false);
+    }
+
+    /**
+     * Records a call that failed.
+     */
+    public void onFailure() {
+        record(true);
+    }
+
+    /**
+     * @return The current state.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return The time left until the breaker lets probe calls through, in
+     *         milliseconds; {@code 0} unless it is open.
+     */
+    public long getRetryAfterMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openUntil - ticker.getAsLong()));
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(boolean failure) {
+        lock.lock();
+        try {
+            switch (state) {
+                case CLOSED -> {
+                    if (recorded == windowSize) {
+                        failures -= outcomes[next] ? 1 : 0;
+                    }
+                    else {
+                        recorded++;
+                    }
+                    outcomes[next] = failure;
+                    failures += failure ? 1 : 0;
+                    next = (next + 1) % windowSize;
+                    if (recorded >= minCalls && failures >= failureRateThreshold * recorded) {
+                        log.warn("Circuit breaker opened, {} of the last {} database calls failed", failures,
+                                recorded);
+                        open();
+                    }
+                }
+                case HALF_OPEN -> {
+                    if (failure) {
+                        log.warn("Circuit breaker opened again, a probe of the database failed");
+                        open();
+                    }
+                    else if (++probeSuccesses >= halfOpenCalls) {
+                        log.info("Circuit breaker closed, the database answered {} probes", probeSuccesses);
+                        reset();
+                    }
+                }
+                case OPEN -> {
+                    // Outcome of a call permitted before the breaker opened
+                }
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = ticker.getAsLong() + openNanos;
+    }
+
+    private void reset() {
+        next = 0;
+        recorded = 0;
+        failures = 0;
+        state = State.CLOSED;
+    }
+
+    /**
+     * States of a {@link CircuitBreaker}.
+     */
+    public enum State
+    {
+        /** Calls are made, and their outcomes recorded. */
+        CLOSED,
+
+        /** Calls are refused. */
+        OPEN,
+
+        /** A limited number of probe calls are made. */
+        HALF_OPEN
+    }
+}
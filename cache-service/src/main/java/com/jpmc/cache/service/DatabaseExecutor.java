@@ -0,0 +1,84 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+
+/**
+ * Runs the database work of the asynchronous {@link CacheService} API, such as loads
+ * on a miss, inline eviction saves and deletes, each on its own virtual thread.
+ *
+ * A virtual thread blocked on JDBC releases its carrier thread, so a slow database
+ * no longer holds request threads. The number of tasks running at once is bounded
+ * by a fair {@link Semaphore}, sized like each connection pool, so that a burst of
+ * misses waits here instead of timing out while borrowing a connection. Tasks
+ * waiting for a permit are parked virtual threads and cost no platform thread.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+public class DatabaseExecutor
+{
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("cache-db-", 0).factory());
+    private final Semaphore permits;
+
+    /** Maximum number of tasks running at once. */
+    @Getter
+    private final int maxConcurrency;
+
+    /**
+     * Creates an executor.
+     *
+     * @param maxConcurrency Maximum number of tasks running at once.
+     */
+    public DatabaseExecutor(@Value("${cache.async.max-concurrency:10}") int maxConcurrency) {
+        this.maxConcurrency = Math.max(maxConcurrency, 1);
+        this.permits = new Semaphore(this.maxConcurrency, true);
+    }
+
+    /**
+     * Runs a task on a new virtual thread once a permit is available.
+     *
+     * @param <T> the type of the task result
+     * @param task The task, which may block on the database.
+     * @return A future completed with the result of the task, or with the exception it threw.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                return task.get();
+            }
+            finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    /**
+     * @return The number of tasks waiting for a permit.
+     */
+    public int getQueued() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Stops accepting tasks; running tasks are left to complete.
+     */
+    @PreDestroy
+    public void close() {
+        executor.shutdown();
+    }
+}
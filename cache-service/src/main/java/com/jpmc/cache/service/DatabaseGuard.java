@@ -0,0 +1,268 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.jpmc.cache.exception.DatabaseUnavailableException;
+
+import io.micrometer.core.instrument.Counter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bulkhead and circuit breaker around the database calls of the request paths of
+ * {@link CacheService}: loads on a miss, reloads of stale entries, deletes and
+ * queries. The {@link WriteBehindQueue} is left out, as its single flusher thread
+ * already backs off after a failure, and so are inline saves of evicted entries, which
+ * would be lost if refused.
+ *
+ * At most {@link AdaptiveConcurrencyLimit#getLimit()} calls run at once, a limit
+ * adapted to the observed latency of the calls, between
+ * {@code cache.db-guard.min-limit} and {@code cache.db-guard.max-limit}. Further calls
+ * wait for a slot, at most {@code cache.db-guard.max-queue} of them and for up to
+ * {@code cache.db-guard.max-wait-ms}; calls over the queue, or still waiting after
+ * that time, are shed. When the database slows down, request threads are thereby
+ * released quickly instead of piling up behind it, and cache hits, which never wait
+ * here, keep being served.
+ *
+ * Failed calls are recorded by a {@link CircuitBreaker}, which refuses every call
+ * while it is open. Failures caused by the data of a call, such as constraint
+ * violations, say nothing about the health of the database and are not recorded.
+ *
+ * Shed and refused calls throw a {@link DatabaseUnavailableException}, answered with
+ * a 503 by the REST API.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.db-guard.enabled", havingValue = "true")
+@Slf4j
+public class DatabaseGuard
+{
+    private final CacheMetrics metrics;
+    private final AdaptiveConcurrencyLimit limit;
+    private final CircuitBreaker circuitBreaker;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final Counter shed;
+    private final Counter shortCircuited;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private int inFlight;
+    private int queued;
+
+    /**
+     * Creates a guard.
+     *
+     * @param metrics The cache meters, to which the guard adds its own.
+     * @param initialLimit Concurrency limit before any call completed.
+     * @param minLimit Lowest concurrency limit.
+     * @param maxLimit Highest concurrency limit, at most the size of each connection pool.
+     * @param latencyTolerance Slowdown of calls over their long-term latency tolerated before the limit shrinks.
+     * @param smoothing Weight of each new limit against the previous one.
+     * @param longWindow Number of calls the long-term latency is averaged over.
+     * @param maxQueue Maximum number of calls waiting for a slot.
+     * @param maxWaitMillis Maximum time a call waits for a slot.
+     * @param windowSize Number of the last calls the failure rate is computed over.
+     * @param minCalls Number of calls needed before the circuit breaker may open.
+     * @param failureRateThreshold Share of failed calls at which the circuit breaker opens.
+     * @param openMillis Time calls are refused for once the circuit breaker opens.
+     * @param halfOpenCalls Number of probe calls that must succeed to close the circuit breaker again.
+     */
+    public DatabaseGuard(CacheMetrics metrics,
+            @Value("${cache.db-guard.initial-limit:10}") int initialLimit,
+            @Value("${cache.db-guard.min-limit:1}") int minLimit,
+            @Value("${cache.db-guard.max-limit:10}") int maxLimit,
+            @Value("${cache.db-guard.latency-tolerance:1.5}") double latencyTolerance,
+            @Value("${cache.db-guard.smoothing:0.2}") double smoothing,
+            @Value("${cache.db-guard.long-window:600}") int longWindow,
+            @Value("${cache.db-guard.max-queue:50}") int maxQueue,
+            @Value("${cache.db-guard.max-wait-ms:500}") long maxWaitMillis,
+            @Value("${cache.db-guard.circuit.window-size:50}") int windowSize,
+            @Value("${cache.db-guard.circuit.min-calls:20}") int minCalls,
+            @Value("${cache.db-guard.circuit.failure-rate:0.5}") double failureRateThreshold,
+            @Value("${cache.db-guard.circuit.open-ms:5000}") long openMillis,
+            @Value("${cache.db-guard.circuit.half-open-calls:3}") int halfOpenCalls) {
+        this.metrics = metrics;
+        this.limit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, latencyTolerance, smoothing,
+                longWindow);
+        this.circuitBreaker = new CircuitBreaker(windowSize, minCalls, failureRateThreshold, openMillis, halfOpenCalls,
+                System::nanoTime);
+        this.maxQueue = Math.max(maxQueue, 0);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.shed = metrics.counter("cache.db.shed", "DB calls refused as too many were running or waiting");
+        this.shortCircuited = metrics.counter("cache.db.short-circuited", "DB calls refused by the open circuit breaker");
+        log.info("Guarding DB calls with a concurrency limit of {} to {}, {} queued for up to {} ms", minLimit,
+                maxLimit, maxQueue, maxWaitMillis);
+    }
+
+    /**
+     * Publishes the gauges of the limit, of the running and waiting calls, and of the
+     * circuit breaker.
+     */
+    @PostConstruct
+    public void registerMeters() {
+        metrics.gauge("cache.db.limit", "Concurrency limit of DB calls", this, DatabaseGuard::getLimit);
+        metrics.gauge("cache.db.in-flight", "DB calls running", this, DatabaseGuard::getInFlight);
+        metrics.gauge("cache.db.queued", "DB calls waiting for a slot", this, DatabaseGuard::getQueued);
+        metrics.gauge("cache.db.circuit.state", "State of the DB circuit breaker: 0 closed, 1 open, 2 half-open",
+                circuitBreaker, breaker -> breaker.getState().ordinal());
+    }
+
+    /**
+     * Makes a database call once a slot is free and the circuit breaker permits it.
+     *
+     * @param <T> the type of the call result
+     * @param call The call.
+     * @return The result of the call.
+     * @throws DatabaseUnavailableException if the call is refused without being made.
+     */
+    public <T> T call(Supplier<T> call) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            shortCircuited.increment();
+            throw new DatabaseUnavailableException("Database circuit breaker is open",
+                    Math.max(circuitBreaker.getRetryAfterMillis(), 1));
+        }
+        try {
+            acquire();
+        }
+        catch (DatabaseUnavailableException e) {
+            circuitBreaker.releasePermission();
+            throw e;
+        }
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            circuitBreaker.onSuccess();
+            return result;
+        }
+        catch (DataIntegrityViolationException e) {
+            circuitBreaker.onSuccess();
+            throw e;
+        }
+        catch (RuntimeException | Error e) {
+            circuitBreaker.onFailure();
+            throw e;
+        }
+        finally {
+            release(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Makes a database call without a result, like {@link #call(Supplier)}.
+     *
+     * @param call The call.
+     * @throws DatabaseUnavailableException if the call is refused without being made.
+     */
+    public void run(Runnable call) {
+        call(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return Whether the circuit breaker lets calls through; calls may still be shed.
+     */
+    public boolean isAvailable() {
+        return circuitBreaker.getState() != CircuitBreaker.State.OPEN || circuitBreaker.getRetryAfterMillis() == 0;
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit.getLimit();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void acquire() {
+        lock.lock();
+        try {
+            if (inFlight < limit.getLimit()) {
+                inFlight++;
+                return;
+            }
+            if (queued >= maxQueue) {
+                throw shed("Too many DB calls waiting, " + queued + " queued behind " + inFlight + " running");
+            }
+            queued++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= limit.getLimit()) {
+                    if (remaining <= 0) {
+                        throw shed("No DB call slot freed within " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)
+                                + " ms, " + inFlight + " running");
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inFlight++;
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw shed("Interrupted while waiting for a DB call slot");
+            }
+            finally {
+                queued--;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(long latencyNanos) {
+        lock.lock();
+        try {
+            limit.onSample(latencyNanos, inFlight);
+            inFlight--;
+            released.signalAll();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private DatabaseUnavailableException shed(String message) {
+        shed.increment();
+        return new DatabaseUnavailableException(message, Math.max(TimeUnit.NANOSECONDS.toMillis(maxWaitNanos), 1));
+    }
+}
@@ -0,0 +1,481 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.jpmc.cache.model.Employee;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Second cache tier on local disk, between the in-memory cache and the database.
+ * Entries evicted from memory are demoted to it, and misses of the memory tier read
+ * it before querying the database, so that a miss costs a read of a memory-mapped
+ * file instead of a database round trip.
+ *
+ * Entries are appended with {@link EmployeeCodec}, 8-byte aligned, to fixed-size
+ * segment files mapped in memory. A primitive {@link LongIntHashMap} maps each ID to
+ * the location of its latest record: the slot of its segment and its offset in 8-byte
+ * units. Replaced and removed records stay in their segment as garbage, and the live
+ * bytes of each segment are counted.
+ *
+ * When the active segment is full and every segment slot is taken, a slot is
+ * reclaimed: the sealed segment with the fewest live bytes is compacted, by copying its
+ * live records to a new segment, if its live ratio is at most the compaction
+ * threshold; otherwise the oldest segment is dropped together with its entries, which
+ * makes the tier a FIFO of segments.
+ *
+ * The tier only holds copies of entries already saved or queued to be saved to the
+ * database, so losing it loses nothing: its files are deleted when it is opened and
+ * closed, and nothing is forced to disk. Reads share a read lock; writes, compactions
+ * and drops take the write lock.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.disk-tier.enabled", havingValue = "true")
+@Slf4j
+public class DiskCacheTier
+{
+    private static final int ALIGNMENT = 8;
+    private static final int OFFSET_BITS = 23;
+
+    /** Largest number of segments, as a location keeps the slot in its upper bits. */
+    public static final int MAX_SEGMENTS = 1 << (Integer.SIZE - 1 - OFFSET_BITS);
+
+    /** Largest segment size, as a location keeps the offset in 8-byte units in its lower bits. */
+    public static final int MAX_SEGMENT_BYTES = ALIGNMENT << OFFSET_BITS;
+
+    private static final String PREFIX = "l2-";
+    private static final String SUFFIX = ".dat";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final double compactionThreshold;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongIntHashMap index = new LongIntHashMap();
+
+    /** Mapped segments by slot, {@code null} for free slots. */
+    private final MappedByteBuffer[] segments;
+
+    /** Sequence numbers of the segments by slot, naming their files and ordering them by age. */
+    private final long[] sequences;
+
+    /** End of the records written to each segment. */
+    private final int[] ends;
+
+    /** Aligned size of the live records of each segment. */
+    private final int[] liveBytes;
+
+    private int active = -1;
+    private long nextSequence;
+
+    /** Meters of the tier, in a private registry until the application's one is injected. */
+    @Autowired
+    CacheMetrics metrics = new CacheMetrics(new SimpleMeterRegistry());
+
+    private Counter hits;
+    private Counter misses;
+    private Counter compactions;
+    private Counter drops;
+
+    /**
+     * Creates a disk tier.
+     *
+     * @param directory Directory holding the segment files.
+     * @param segmentBytes Size of each memory-mapped segment file, at most {@link #MAX_SEGMENT_BYTES}.
+     * @param maxSegments Maximum number of segments, from 2 to {@link #MAX_SEGMENTS}.
+     * @param compactionThreshold Live ratio, below 1, up to which a segment is compacted rather than dropped.
+     */
+    public DiskCacheTier(@Value("${cache.disk-tier.directory:data/l2}") Path directory,
+            @Value("${cache.disk-tier.segment-bytes:67108864}") int segmentBytes,
+            @Value("${cache.disk-tier.max-segments:16}") int maxSegments,
+            @Value("${cache.disk-tier.compaction-threshold:0.5}") double compactionThreshold) {
+        if (segmentBytes <= EmployeeCodec.HEADER_BYTES || segmentBytes > MAX_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Segment size must be from " + (EmployeeCodec.HEADER_BYTES + 1) + " to "
+                    + MAX_SEGMENT_BYTES + " bytes: " + segmentBytes);
+        }
+        if (maxSegments < 2 || maxSegments > MAX_SEGMENTS) {
+            throw new IllegalArgumentException("Segment count must be from 2 to " + MAX_SEGMENTS + ": " + maxSegments);
+        }
+        if (compactionThreshold < 0 || compactionThreshold >= 1) {
+            throw new IllegalArgumentException("Compaction threshold must be at least 0 and below 1: "
+                    + compactionThreshold);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes - segmentBytes % ALIGNMENT;
+        this.maxSegments = maxSegments;
+        this.compactionThreshold = compactionThreshold;
+        this.segments = new MappedByteBuffer[maxSegments];
+        this.sequences = new long[maxSegments];
+        this.ends = new int[maxSegments];
+        this.liveBytes = new int[maxSegments];
+    }
+
+    /**
+     * Deletes the segments of a previous run, which may be older than the database,
+     * and opens the first segment.
+     */
+    @PostConstruct
+    public void open() {
+        hits = metrics.counter("cache.disk.hits", "Lookups served from the disk tier");
+        misses = metrics.counter("cache.disk.misses", "Lookups not found in the disk tier");
+        compactions = metrics.counter("cache.disk.compactions", "Segments of the disk tier compacted");
+        drops = metrics.counter("cache.disk.drops", "Segments of the disk tier dropped with their entries");
+        metrics.gauge("cache.disk.size", "Entries in the disk tier", this, DiskCacheTier::size);
+        metrics.gauge("cache.disk.live-bytes", "Bytes of the live records of the disk tier", this,
+                DiskCacheTier::getLiveBytes);
+        lock.writeLock().lock();
+        try {
+            Files.createDirectories(directory);
+            deleteSegmentFiles();
+            active = openSegment();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the disk tier in " + directory, e);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Opened disk tier in {}, up to {} segments of {} bytes", directory, maxSegments, segmentBytes);
+    }
+
+    /**
+     * Forgets every entry and deletes the segment files.
+     */
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            for (int slot = 0; slot < maxSegments; slot++) {
+                release(slot);
+            }
+            active = -1;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param id The ID of the entry.
+     * @return A copy of the entry, or {@code null} if the tier does not hold it.
+     */
+    public Employee get(long id) {
+        lock.readLock().lock();
+        try {
+            int location = index.get(id);
+            if (location == LongIntHashMap.NO_VALUE) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return EmployeeCodec.decode(segments[slot(location)], offset(location));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores an entry, replacing the one held for its ID. An entry larger than a segment
+     * is not stored, and the one held for its ID is removed.
+     *
+     * @param employee The entry.
+     */
+    public void put(Employee employee) {
+        byte[] nameBytes = EmployeeCodec.nameBytes(employee);
+        int size = align(EmployeeCodec.encodedSize(nameBytes));
+        lock.writeLock().lock();
+        try {
+            if (size > segmentBytes) {
+                log.info("Entry with id - {} does not fit in a segment of the disk tier", employee.getId());
+                discard(index.remove(employee.getId()));
+                return;
+            }
+            while (ends[active] + size > segmentBytes) {
+                roll();
+            }
+            int offset = ends[active];
+            EmployeeCodec.encode(segments[active], offset, employee, nameBytes);
+            ends[active] = offset + size;
+            liveBytes[active] += size;
+            discard(index.put(employee.getId(), location(active, offset)));
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the entry held for an ID.
+     *
+     * @param id The ID of the entry.
+     * @return {@code true} if the tier held the entry.
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int location = index.remove(id);
+            discard(location);
+            return location != LongIntHashMap.NO_VALUE;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every entry, deleting every segment but a new, empty one.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            for (int slot = 0; slot < maxSegments; slot++) {
+                release(slot);
+            }
+            active = openSegment();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to clear the disk tier in " + directory, e);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of entries held.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The aligned size of the live records, in bytes.
+     */
+    public long getLiveBytes() {
+        lock.readLock().lock();
+        try {
+            return Arrays.stream(liveBytes).asLongStream().sum();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Seals the active segment and opens a new one, in a free slot or in a slot
+     * reclaimed from a sealed segment. Must be called with the write lock held.
+     */
+    private void roll() {
+        try {
+            int slot = freeSlot();
+            if (slot >= 0) {
+                active = openSegment();
+                return;
+            }
+            int victim = emptiestSealedSlot();
+            if ((double) liveBytes[victim] / segmentBytes <= compactionThreshold) {
+                compact(victim);
+            }
+            else {
+                drop(oldestSealedSlot());
+                active = openSegment();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to open a segment of the disk tier in " + directory, e);
+        }
+    }
+
+    /**
+     * Copies the live records of a sealed segment to a new segment taking its slot,
+     * which becomes the active segment.
+     */
+    private void compact(int slot) throws IOException {
+        MappedByteBuffer source = segments[slot];
+        int[] live = liveOffsets(slot);
+        log.info("Compacting segment {} of the disk tier, {} live of {} bytes", sequences[slot], liveBytes[slot],
+                ends[slot]);
+        release(slot);
+        active = openSegment();
+        MappedByteBuffer target = segments[active];
+        int position = 0;
+        for (int offset : live) {
+            int size = align(EmployeeCodec.encodedSize(source, offset));
+            target.put(position, source, offset, size);
+            index.put(EmployeeCodec.id(source, offset), location(active, position));
+            position += size;
+        }
+        ends[active] = position;
+        liveBytes[active] = position;
+        compactions.increment();
+    }
+
+    /**
+     * Removes the entries of a sealed segment and deletes it.
+     */
+    private void drop(int slot) {
+        int[] live = liveOffsets(slot);
+        for (int offset : live) {
+            index.remove(EmployeeCodec.id(segments[slot], offset));
+        }
+        log.info("Dropping segment {} of the disk tier with {} entries", sequences[slot], live.length);
+        release(slot);
+        drops.increment();
+    }
+
+    /**
+     * @return The offsets of the records of a segment that the index points to.
+     */
+    private int[] liveOffsets(int slot) {
+        MappedByteBuffer segment = segments[slot];
+        int[] live = new int[16];
+        int count = 0;
+        for (int offset = 0; offset < ends[slot]; offset += align(EmployeeCodec.encodedSize(segment, offset))) {
+            if (index.get(EmployeeCodec.id(segment, offset)) == location(slot, offset)) {
+                if (count == live.length) {
+                    live = Arrays.copyOf(live, count * 2);
+                }
+                live[count++] = offset;
+            }
+        }
+        return Arrays.copyOf(live, count);
+    }
+
+    /**
+     * Accounts for a record that is no longer live.
+     */
+    private void discard(int location) {
+        if (location != LongIntHashMap.NO_VALUE) {
+            int slot = slot(location);
+            liveBytes[slot] -= align(EmployeeCodec.encodedSize(segments[slot], offset(location)));
+        }
+    }
+
+    /**
+     * Creates and maps a new segment file in a free slot.
+     *
+     * @return The slot of the new segment.
+     */
+    private int openSegment() throws IOException {
+        int slot = freeSlot();
+        long sequence = nextSequence++;
+        Path file = directory.resolve(PREFIX + sequence + SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segments[slot] = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        sequences[slot] = sequence;
+        ends[slot] = 0;
+        liveBytes[slot] = 0;
+        return slot;
+    }
+
+    /**
+     * Frees a slot and deletes the file of its segment. The mapping itself is released
+     * once the buffer is garbage collected.
+     */
+    private void release(int slot) {
+        if (segments[slot] == null) {
+            return;
+        }
+        segments[slot] = null;
+        ends[slot] = 0;
+        liveBytes[slot] = 0;
+        Path file = directory.resolve(PREFIX + sequences[slot] + SUFFIX);
+        try {
+            Files.deleteIfExists(file);
+        }
+        catch (IOException e) {
+            log.warn("Failed to delete segment file {} of the disk tier", file, e);
+        }
+    }
+
+    private void deleteSegmentFiles() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().startsWith(PREFIX)).toList();
+        }
+        for (Path file : files) {
+            Files.delete(file);
+        }
+    }
+
+    private int freeSlot() {
+        for (int slot = 0; slot < maxSegments; slot++) {
+            if (segments[slot] == null) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int emptiestSealedSlot() {
+        int emptiest = -1;
+        for (int slot = 0; slot < maxSegments; slot++) {
+            if (slot != active && (emptiest < 0 || liveBytes[slot] < liveBytes[emptiest])) {
+                emptiest = slot;
+            }
+        }
+        return emptiest;
+    }
+
+    private int oldestSealedSlot() {
+        int oldest = -1;
+        for (int slot = 0; slot < maxSegments; slot++) {
+            if (slot != active && (oldest < 0 || sequences[slot] < sequences[oldest])) {
+                oldest = slot;
+            }
+        }
+        return oldest;
+    }
+
+    private static int align(int size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    private static int location(int slot, int offset) {
+        return slot << OFFSET_BITS | offset / ALIGNMENT;
+    }
+
+    private static int slot(int location) {
+        return location >>> OFFSET_BITS;
+    }
+
+    private static int offset(int location) {
+        return (location & ((1 << OFFSET_BITS) - 1)) * ALIGNMENT;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.jpmc.cache.model.Employee;
+
+/**
+ * Compact binary encoding of an {@link Employee}, used to keep entries outside of
+ * the Java heap.
+ *
+ * A record is laid out as the ID (8 bytes), a flags byte, the salary (8 bytes), the
+ * length of the UTF-8 encoded name (4 bytes, {@code -1} for a {@code null} name) and
+ * the name bytes. Records are written and read with absolute offsets, so the position
+ * of the buffer is never changed.
+ *
+ * @author r.pandiarajan
+ */
+public final class EmployeeCodec
+{
+    /** Size of a record without its name bytes. */
+    public static final int HEADER_BYTES = 21;
+
+    private static final int FLAGS_OFFSET = 8;
+    private static final int SALARY_OFFSET = 9;
+    private static final int NAME_LENGTH_OFFSET = 17;
+    private static final byte HAS_SALARY = 1;
+    private static final int NO_NAME = -1;
+
+    private EmployeeCodec() {
+    }
+
+    /**
+     * @param employee The {@link Employee} to encode.
+     * @return The UTF-8 encoded name, or {@code null} if the employee has no name.
+     */
+    public static byte[] nameBytes(Employee employee) {
+        return employee.getName() == null ? null : employee.getName().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param nameBytes The UTF-8 encoded name, as returned by {@link #nameBytes(Employee)}.
+     * @return The size of the record encoding an employee with the given name.
+     */
+    public static int encodedSize(byte[] nameBytes) {
+        return HEADER_BYTES + (nameBytes == null ? 0 : nameBytes.length);
+    }
+
+    /**
+     * Writes the record of an {@link Employee} at the given offset.
+     *
+     * @param buffer The buffer to write to.
+     * @param offset The offset of the record.
+     * @param employee The {@link Employee} to encode.
+     * @param nameBytes The UTF-8 encoded name, as returned by {@link #nameBytes(Employee)}.
+     */
+    public static void encode(ByteBuffer buffer, int offset, Employee employee, byte[] nameBytes) {
+        Double salary = employee.getSalary();
+        buffer.putLong(offset, employee.getId());
+        buffer.put(offset + FLAGS_OFFSET, salary == null ? 0 : HAS_SALARY);
+        buffer.putDouble(offset + SALARY_OFFSET, salary == null ? 0d : salary);
+        if (nameBytes == null) {
+            buffer.putInt(offset + NAME_LENGTH_OFFSET, NO_NAME);
+        }
+        else {
+            buffer.putInt(offset + NAME_LENGTH_OFFSET, nameBytes.length);
+            buffer.put(offset + HEADER_BYTES, nameBytes);
+        }
+    }
+
+    /**
+     * Reads the record at the given offset into a new {@link Employee}.
+     *
+     * @param buffer The buffer to read from.
+     * @param offset The offset of the record.
+     * @return The decoded {@link Employee}.
+     */
+    public static Employee decode(ByteBuffer buffer, int offset) {
+        Employee employee = new Employee();
+        employee.setId(buffer.getLong(offset));
+        if ((buffer.get(offset + FLAGS_OFFSET) & HAS_SALARY) != 0) {
+            employee.setSalary(buffer.getDouble(offset + SALARY_OFFSET));
+        }
+        int nameLength = buffer.getInt(offset + NAME_LENGTH_OFFSET);
+        if (nameLength != NO_NAME) {
+            byte[] nameBytes = new byte[nameLength];
+            buffer.get(offset + HEADER_BYTES, nameBytes);
+            employee.setName(new String(nameBytes, StandardCharsets.UTF_8));
+        }
+        return employee;
+    }
+
+    /**
+     * @param buffer The buffer holding the record.
+     * @param offset The offset of the record.
+     * @return The ID stored in the record.
+     */
+    public static long id(ByteBuffer buffer, int offset) {
+        return buffer.getLong(offset);
+    }
+
+    /**
+     * @param buffer The buffer holding the record.
+     * @param offset The offset of the record.
+     * @return The size of the record at the given offset.
+     */
+    public static int encodedSize(ByteBuffer buffer, int offset) {
+        return HEADER_BYTES + Math.max(buffer.getInt(offset + NAME_LENGTH_OFFSET), 0);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.jpmc.cache.model.Employee;
+
+/**
+ * Secondary indexes of the cached {@link Employee} entities: a sorted salary index
+ * answering range queries, and a sorted name index answering exact and prefix lookups.
+ * Each index maps a value to the entries holding it, by ID.
+ *
+ * Entries are indexed by the {@link IndexedCacheStore} as they are added, replaced,
+ * removed and evicted, which serializes the updates. Lookups take no lock and see the
+ * indexes as of some point during the lookup, like the iterators of a concurrent map.
+ * Entries are indexed by identity, so a cached {@link Employee} must not be modified.
+ *
+ * @author r.pandiarajan
+ */
+public class EmployeeIndex
+{
+    private final ConcurrentSkipListMap<Double, ConcurrentSkipListMap<Long, Employee>> bySalary =
+            new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<Long, Employee>> byName =
+            new ConcurrentSkipListMap<>();
+
+    /**
+     * Indexes an entry. Entries without a salary or a name are left out of that index.
+     *
+     * @param id The ID of the entry.
+     * @param employee The cached entry.
+     */
+    void add(Long id, Employee employee) {
+        if (employee.getSalary() != null) {
+            bySalary.computeIfAbsent(employee.getSalary(), salary -> new ConcurrentSkipListMap<>()).put(id, employee);
+        }
+        if (employee.getName() != null) {
+            byName.computeIfAbsent(employee.getName(), name -> new ConcurrentSkipListMap<>()).put(id, employee);
+        }
+    }
+
+    /**
+     * Removes an entry from the indexes, if this very entry is indexed for the ID.
+     *
+     * @param id The ID of the entry.
+     * @param employee The entry that was cached.
+     */
+    void remove(Long id, Employee employee) {
+        remove(bySalary, employee.getSalary(), id, employee);
+        remove(byName, employee.getName(), id, employee);
+    }
+
+    /**
+     * Removes every entry from the indexes.
+     */
+    void clear() {
+        bySalary.clear();
+        byName.clear();
+    }
+
+    /**
+     * @param min The lowest salary, inclusive.
+     * @param max The highest salary, inclusive.
+     * @return The indexed entries with a salary in the range, by salary and then by ID.
+     */
+    public List<Employee> findBySalaryBetween(double min, double max) {
+        if (min > max) {
+            return List.of();
+        }
+        return collect(bySalary.subMap(min, true, max, true));
+    }
+
+    /**
+     * @param name The name.
+     * @return The indexed entries with this name, by ID.
+     */
+    public List<Employee> findByName(String name) {
+        Map<Long, Employee> entries = byName.get(name);
+        return entries == null ? List.of() : new ArrayList<>(entries.values());
+    }
+
+    /**
+     * @param prefix The prefix of the names.
+     * @return The indexed entries whose name starts with the prefix, by name and then by ID.
+     */
+    public List<Employee> findByNamePrefix(String prefix) {
+        List<Employee> employees = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentSkipListMap<Long, Employee>> entry : byName.tailMap(prefix).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            employees.addAll(entry.getValue().values());
+        }
+        return employees;
+    }
+
+    private static <T> void remove(ConcurrentSkipListMap<T, ConcurrentSkipListMap<Long, Employee>> index, T value,
+            Long id, Employee employee) {
+        if (value == null) {
+            return;
+        }
+        ConcurrentSkipListMap<Long, Employee> entries = index.get(value);
+        if (entries != null && entries.remove(id, employee) && entries.isEmpty()) {
+            // Updates are serialized, so no entry is added to the map between the check and its removal
+            index.remove(value, entries);
+        }
+    }
+
+    private static <T> List<Employee> collect(ConcurrentNavigableMap<T, ConcurrentSkipListMap<Long, Employee>> range) {
+        List<Employee> employees = new ArrayList<>();
+        for (ConcurrentSkipListMap<Long, Employee> entries : range.values()) {
+            employees.addAll(entries.values());
+        }
+        return employees;
+    }
+}
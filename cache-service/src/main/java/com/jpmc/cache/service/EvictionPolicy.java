@@ -0,0 +1,93 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+/**
+ * Replacement policy of a {@link PolicyCacheStore}: it is told about every insert,
+ * access, update and removal of a key, and chooses the key to evict when the store
+ * is over its capacity. Policies may also expire entries after a time, which the
+ * store checks on reads and purges on writes.
+ *
+ * Policies only track keys; values stay in the store. They are not thread-safe, as
+ * the store calls them while holding its lock.
+ *
+ * @param <K> the type of the keys
+ *
+ * @author r.pandiarajan
+ */
+public interface EvictionPolicy<K>
+{
+    /**
+     * Records a key newly added to the store.
+     *
+     * @param key The inserted key.
+     */
+    void recordInsert(K key);
+
+    /**
+     * Records a read of a cached key.
+     *
+     * @param key The accessed key.
+     */
+    void recordAccess(K key);
+
+    /**
+     * Records a new value put for a cached key. Treated as an access by default.
+     *
+     * @param key The updated key.
+     */
+    default void recordUpdate(K key) {
+        recordAccess(key);
+    }
+
+    /**
+     * Forgets a key removed from the store other than by {@link #evict()} or
+     * {@link #pollExpired()}.
+     *
+     * @param key The removed key.
+     */
+    void recordRemoval(K key);
+
+    /**
+     * Chooses the key to evict and forgets it. Called while the store holds more
+     * entries than its capacity, so the policy tracks at least one key. The victim may
+     * be the key that was just inserted, when the policy declines to admit it.
+     *
+     * @return The key to evict.
+     */
+    K evict();
+
+    /**
+     * @param key A cached key.
+     * @return {@code true} if the entry has outlived its time to live. An expired key
+     *         is evicted by the store, which then calls {@link #recordRemoval(Object)}.
+     */
+    default boolean isExpired(K key) {
+        return false;
+    }
+
+    /**
+     * Removes one expired key, if any, so stores can purge expired entries that are
+     * no longer read.
+     *
+     * @return An expired key, now forgotten, or {@code null} if no key has expired.
+     */
+    default K pollExpired() {
+        return null;
+    }
+
+    /**
+     * Sets the number of entries the store holds before evicting, for policies that
+     * size their internal structures from it.
+     *
+     * @param capacity The maximum number of entries.
+     */
+    default void setCapacity(int capacity) {
+    }
+
+    /**
+     * Forgets every key.
+     */
+    void clear();
+}
@@ -0,0 +1,131 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch estimating how often keys were accessed, used by
+ * {@link TinyLfuPolicy} to decide which entries are worth admitting.
+ *
+ * Counters are 4 bits wide, sixteen to a {@code long}. A key is counted in four
+ * counters, each picked by a different hash, and its frequency is the smallest of
+ * them. Once the number of increments reaches ten times the cache capacity, every
+ * counter is halved, so that the sketch follows changes in popularity.
+ *
+ * Not thread-safe: callers guard it with their own lock.
+ *
+ * @author r.pandiarajan
+ */
+final class FrequencySketch
+{
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_COUNT = 15;
+    private static final int MIN_TABLE_SIZE = 16;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int additions;
+
+    /**
+     * @param capacity The number of entries of the cache using the sketch.
+     */
+    FrequencySketch(int capacity) {
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Resizes the sketch for a larger cache, forgetting the counts so far.
+     *
+     * @param capacity The number of entries of the cache using the sketch.
+     */
+    void ensureCapacity(int capacity) {
+        int size = MIN_TABLE_SIZE;
+        while (size < capacity && size < (1 << 30)) {
+            size <<= 1;
+        }
+        if (table == null || size > table.length) {
+            table = new long[size];
+            tableMask = size - 1;
+            additions = 0;
+        }
+        sampleSize = (int) Math.min(10L * Math.max(capacity, 1), Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param key The key to estimate.
+     * @return The estimated number of recent accesses of the key, at most 15.
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Counts an access of the key.
+     *
+     * @param key The accessed key.
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Forgets every count.
+     */
+    void clear() {
+        Arrays.fill(table, 0L);
+        additions = 0;
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halves every counter, aging the counts of keys that are no longer accessed.
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.jpmc.cache.model.Employee;
+
+/**
+ * {@link CacheStore} keeping an {@link EmployeeIndex} in step with the entries of
+ * another store, which it wraps.
+ *
+ * Writes to the wrapped store and the matching index updates run under one lock, so
+ * that the index holds exactly the cached entries once a write returns. The entries
+ * the wrapped store evicts during a write are dropped from the index before the lock
+ * is released, and passed to the {@link CacheStore.EvictionListener} after it is.
+ * Entries found expired by a read are dropped from the index when they are reported.
+ * Reads take no lock of this store.
+ *
+ * @author r.pandiarajan
+ */
+public class IndexedCacheStore implements CacheStore<Long, Employee>
+{
+    private final CacheStore<Long, Employee> store;
+    private final EmployeeIndex index;
+    private final EvictionListener<Long, Employee> evictionListener;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /** Entries evicted by the write in progress on the current thread, or {@code null} outside of a write. */
+    private final ThreadLocal<List<Eviction>> pendingEvictions = new ThreadLocal<>();
+
+    /**
+     * Creates the wrapped store and the wrapper.
+     *
+     * @param storeFactory Creates the wrapped store, given the listener it must pass its evicted entries to.
+     * @param index The index to maintain, initially empty.
+     * @param evictionListener The callback receiving evicted and expired entries.
+     */
+    public IndexedCacheStore(Function<EvictionListener<Long, Employee>, CacheStore<Long, Employee>> storeFactory,
+            EmployeeIndex index, EvictionListener<Long, Employee> evictionListener) {
+        this.index = Objects.requireNonNull(index);
+        this.evictionListener = Objects.requireNonNull(evictionListener);
+        this.store = storeFactory.apply(this::onEviction);
+    }
+
+    @Override
+    public Employee get(Long key) {
+        return store.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Long key) {
+        return store.containsKey(key);
+    }
+
+    @Override
+    public Employee put(Long key, Employee value) {
+        return write(() -> {
+            Employee previous = store.put(key, value);
+            if (previous != null) {
+                index.remove(key, previous);
+            }
+            index.add(key, value);
+            return previous;
+        });
+    }
+
+    @Override
+    public Employee putIfAbsent(Long key, Employee value) {
+        return write(() -> {
+            Employee existing = store.putIfAbsent(key, value);
+            if (existing == null) {
+                index.add(key, value);
+            }
+            return existing;
+        });
+    }
+
+    @Override
+    public Employee remove(Long key) {
+        return write(() -> {
+            Employee removed = store.remove(key);
+            if (removed != null) {
+                index.remove(key, removed);
+            }
+            return removed;
+        });
+    }
+
+    @Override
+    public void clear() {
+        write(() -> {
+            store.clear();
+            index.clear();
+            return null;
+        });
+    }
+
+    @Override
+    public int size() {
+        return store.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return store.getCapacity();
+    }
+
+    @Override
+    public void setCapacity(int capacity) {
+        write(() -> {
+            store.setCapacity(capacity);
+            return null;
+        });
+    }
+
+    @Override
+    public Set<Long> keySet() {
+        return store.keySet();
+    }
+
+    @Override
+    public List<Long> hottestKeys(int limit) {
+        return store.hottestKeys(limit);
+    }
+
+    /**
+     * @return The index of the cached entries.
+     */
+    public EmployeeIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Runs a write to the wrapped store and the index under the write lock, then passes
+     * the entries it evicted to the listener.
+     */
+    private <T> T write(Supplier<T> operation) {
+        List<Eviction> evictions = new ArrayList<>(0);
+        pendingEvictions.set(evictions);
+        writeLock.lock();
+        try {
+            return operation.get();
+        }
+        finally {
+            // An entry evicted by the write that added it is indexed by then, and is dropped here
+            for (Eviction eviction : evictions) {
+                index.remove(eviction.key(), eviction.value());
+            }
+            pendingEvictions.remove();
+            writeLock.unlock();
+            for (Eviction eviction : evictions) {
+                evictionListener.onEviction(eviction.key(), eviction.value());
+            }
+        }
+    }
+
+    /**
+     * Receives the entries evicted by the wrapped store. Those evicted by a write of this
+     * store are handled once the write is done; others, such as entries found expired by a
+     * read, are dropped from the index under the write lock and passed on right away.
+     */
+    private void onEviction(Long key, Employee value) {
+        List<Eviction> evictions = pendingEvictions.get();
+        if (evictions != null) {
+            evictions.add(new Eviction(key, value));
+            return;
+        }
+        writeLock.lock();
+        try {
+            // Only this very entry is dropped, in case the key was cached again since
+            index.remove(key, value);
+        }
+        finally {
+            writeLock.unlock();
+        }
+        evictionListener.onEviction(key, value);
+    }
+
+    private record Eviction(Long key, Employee value)
+    {
+    }
+}
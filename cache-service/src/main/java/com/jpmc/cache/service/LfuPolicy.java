@@ -0,0 +1,97 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@link EvictionPolicy} evicting the least frequently used (LFU) key, counting the
+ * accesses of each key since it was inserted. Keys with the same count are evicted
+ * in least recently used order. The key inserted last is only evicted when it is the
+ * only one, otherwise a new key, counted once, would always be the victim and the
+ * cache would stop admitting entries.
+ *
+ * Counts are forgotten with their key, so a key evicted and loaded again starts
+ * over, while keys that were hot long ago keep their counts for as long as they are
+ * cached.
+ *
+ * @param <K> the type of the keys
+ *
+ * @author r.pandiarajan
+ */
+public class LfuPolicy<K> implements EvictionPolicy<K>
+{
+    /** Access count of each key. */
+    private final Map<K, Integer> counts = new HashMap<>();
+
+    /** Keys by access count, each bucket from the least to the most recently used. */
+    private final TreeMap<Integer, LinkedHashSet<K>> buckets = new TreeMap<>();
+
+    private K lastInserted;
+
+    @Override
+    public void recordInsert(K key) {
+        counts.put(key, 1);
+        bucket(1).add(key);
+        lastInserted = key;
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        Integer count = counts.get(key);
+        if (count == null) {
+            return;
+        }
+        removeFromBucket(key, count);
+        int incremented = count == Integer.MAX_VALUE ? count : count + 1;
+        counts.put(key, incremented);
+        bucket(incremented).add(key);
+    }
+
+    @Override
+    public void recordRemoval(K key) {
+        Integer count = counts.remove(key);
+        if (count != null) {
+            removeFromBucket(key, count);
+        }
+    }
+
+    @Override
+    public K evict() {
+        K victim = lastInserted;
+        search:
+        for (LinkedHashSet<K> bucket : buckets.values()) {
+            for (K key : bucket) {
+                if (!key.equals(lastInserted)) {
+                    victim = key;
+                    break search;
+                }
+            }
+        }
+        recordRemoval(victim);
+        return victim;
+    }
+
+    @Override
+    public void clear() {
+        counts.clear();
+        buckets.clear();
+        lastInserted = null;
+    }
+
+    private LinkedHashSet<K> bucket(int count) {
+        return buckets.computeIfAbsent(count, c -> new LinkedHashSet<>());
+    }
+
+    private void removeFromBucket(K key, int count) {
+        LinkedHashSet<K> bucket = buckets.get(count);
+        bucket.remove(key);
+        if (bucket.isEmpty()) {
+            buckets.remove(count);
+        }
+    }
+}
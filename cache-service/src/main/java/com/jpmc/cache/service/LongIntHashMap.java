@@ -0,0 +1,138 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to non-negative
+ * {@code int} values, so that neither keys nor values are boxed. Collisions are
+ * resolved by linear probing and removals shift the following entries back, so the
+ * table never accumulates tombstones.
+ *
+ * Not thread-safe: callers guard it with their own lock.
+ *
+ * @author r.pandiarajan
+ */
+final class LongIntHashMap
+{
+    /** Value returned for absent keys, and marker of empty slots. */
+    static final int NO_VALUE = -1;
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    LongIntHashMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * @param key The key to look up.
+     * @return The value mapped to the key, or {@link #NO_VALUE} if absent.
+     */
+    int get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int value = values[slot];
+            if (value == NO_VALUE || keys[slot] == key) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Maps the key to the value, replacing any previous value.
+     *
+     * @param key The key.
+     * @param value The value, which must not be negative.
+     * @return The previous value, or {@link #NO_VALUE} if absent.
+     */
+    int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        if ((size + 1) * 2 > values.length) {
+            resize(values.length * 2);
+        }
+        int slot = slot(key);
+        while (values[slot] != NO_VALUE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        int previous = values[slot];
+        if (previous == NO_VALUE) {
+            size++;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        return previous;
+    }
+
+    /**
+     * Removes the mapping for the key.
+     *
+     * @param key The key to remove.
+     * @return The removed value, or {@link #NO_VALUE} if absent.
+     */
+    int remove(long key) {
+        int slot = slot(key);
+        while (values[slot] != NO_VALUE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        int removed = values[slot];
+        if (removed == NO_VALUE) {
+            return NO_VALUE;
+        }
+        values[slot] = NO_VALUE;
+        size--;
+
+        // Shift back the entries of the probe sequence that follows the freed slot
+        int free = slot;
+        for (int next = (free + 1) & mask; values[next] != NO_VALUE; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            boolean reachable = free <= next ? (home <= free || home > next) : (home <= free && home > next);
+            if (reachable) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                values[next] = NO_VALUE;
+                free = next;
+            }
+        }
+        return removed;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != NO_VALUE) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NO_VALUE);
+        mask = capacity - 1;
+        size = 0;
+    }
+}
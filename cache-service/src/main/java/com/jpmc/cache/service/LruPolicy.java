@@ -0,0 +1,50 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.LinkedHashSet;
+
+/**
+ * {@link EvictionPolicy} evicting the least recently used (LRU) key. It is the
+ * reference policy of {@link PolicyCacheStore}; the service uses the lock-free
+ * {@link SegmentedLruCacheStore} when LRU is selected.
+ *
+ * @param <K> the type of the keys
+ *
+ * @author r.pandiarajan
+ */
+public class LruPolicy<K> implements EvictionPolicy<K>
+{
+    /** Keys from the least to the most recently used. */
+    private final LinkedHashSet<K> order = new LinkedHashSet<>();
+
+    @Override
+    public void recordInsert(K key) {
+        order.add(key);
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        if (order.remove(key)) {
+            order.add(key);
+        }
+    }
+
+    @Override
+    public void recordRemoval(K key) {
+        order.remove(key);
+    }
+
+    @Override
+    public K evict() {
+        K victim = order.iterator().next();
+        order.remove(victim);
+        return victim;
+    }
+
+    @Override
+    public void clear() {
+        order.clear();
+    }
+}
@@ -0,0 +1,314 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Online estimate of the miss ratio curve of an LRU cache: the ratio of reads it
+ * would miss at any size, from the reuse distances of a spatially hashed sample of
+ * the keys read (SHARDS).
+ *
+ * A key is sampled when its hash falls in the lowest {@code sample-rate} fraction of
+ * the hash space, so every read of a sampled key is seen and none of the others. The
+ * reuse distance of a read is the number of distinct sampled keys read since the
+ * previous read of the same key; scaled by {@code 1 / sample-rate}, it estimates the
+ * smallest LRU cache in which the read would have hit. Distances are counted with a
+ * Fenwick tree over read times, holding a mark at the time of the last read of each
+ * tracked key, so a read costs {@code O(log n)}.
+ *
+ * At most {@code max-tracked-keys} sampled keys are tracked, covering caches of up to
+ * {@code max-tracked-keys / sample-rate} entries; beyond that, the key read least
+ * recently is forgotten and its next read counts as a miss at every size. Counts are
+ * halved every {@code decay-samples} sampled reads, so the curve follows changes of
+ * the workload.
+ *
+ * Reads of keys not sampled cost a multiplication; sampled reads take a lock.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.adaptive-sizing.enabled", havingValue = "true")
+public class MissRatioCurve
+{
+    /** Hashes are compared on their top 24 bits. */
+    private static final int HASH_BITS = 24;
+
+    private final double sampleRate;
+    private final long threshold;
+    private final int maxTrackedKeys;
+    private final long decaySamples;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Time of the last read of each tracked key. */
+    private final LongIntHashMap lastRead;
+
+    /** Key read at each time, and whether that read is still the last read of its key. */
+    private final long[] keysByTime;
+    private final boolean[] live;
+
+    /** Fenwick tree of the {@link #live} marks, 1-based. */
+    private final int[] tree;
+
+    /** Next read time. */
+    private int now;
+
+    /** Reads counted by reuse distance, in sampled keys. */
+    private final long[] histogram;
+
+    /** Reads of keys not tracked, missed at every size. */
+    private long coldMisses;
+
+    private long samples;
+
+    /**
+     * Creates an estimator.
+     *
+     * @param sampleRate Fraction of the keys sampled, between {@code 0} exclusive and {@code 1}.
+     * @param maxTrackedKeys Maximum number of sampled keys tracked.
+     * @param decaySamples Number of sampled reads after which the counts are halved.
+     */
+    public MissRatioCurve(@Value("${cache.adaptive-sizing.sample-rate:0.01}") double sampleRate,
+            @Value("${cache.adaptive-sizing.max-tracked-keys:16384}") int maxTrackedKeys,
+            @Value("${cache.adaptive-sizing.decay-samples:1000000}") long decaySamples) {
+        if (sampleRate <= 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be in (0, 1]: " + sampleRate);
+        }
+        if (maxTrackedKeys <= 0 || decaySamples <= 0) {
+            throw new IllegalArgumentException("Tracked keys and decay samples must be positive");
+        }
+        this.sampleRate = sampleRate;
+        this.threshold = Math.max(1, Math.round(sampleRate * (1L << HASH_BITS)));
+        this.maxTrackedKeys = maxTrackedKeys;
+        this.decaySamples = decaySamples;
+        this.lastRead = new LongIntHashMap();
+        this.keysByTime = new long[2 * maxTrackedKeys];
+        this.live = new boolean[2 * maxTrackedKeys];
+        this.tree = new int[2 * maxTrackedKeys + 1];
+        this.histogram = new long[maxTrackedKeys];
+    }
+
+    /**
+     * Records a read of a key, whether it hit or missed.
+     *
+     * @param id The key read.
+     */
+    public void record(Long id) {
+        long key = id;
+        if (((key * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - HASH_BITS)) >= threshold) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (now == keysByTime.length) {
+                compact();
+            }
+            int previous = lastRead.get(key);
+            if (previous != LongIntHashMap.NO_VALUE) {
+                // Keys read after the previous read of this one
+                histogram[prefixSum(now) - prefixSum(previous + 1)]++;
+                unmark(previous);
+            }
+            else {
+                coldMisses++;
+                if (lastRead.size() == maxTrackedKeys) {
+                    forgetLeastRecent();
+                }
+            }
+            lastRead.put(key, now);
+            keysByTime[now] = key;
+            mark(now);
+            now++;
+            if (++samples >= decaySamples) {
+                decay();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param cacheSize A number of entries.
+     * @return The estimated ratio of reads an LRU cache of that size would miss, from
+     *         {@code 0} to {@code 1}; {@code 1} until reads are sampled.
+     */
+    public double missRatio(long cacheSize) {
+        lock.lock();
+        try {
+            if (samples == 0) {
+                return 1.0;
+            }
+            // A read at distance d hits in a cache of more than d sampled keys
+            double sampledSize = Math.min(cacheSize * sampleRate, maxTrackedKeys);
+            int whole = (int) sampledSize;
+            double hits = 0;
+            for (int distance = 0; distance < whole; distance++) {
+                hits += histogram[distance];
+            }
+            if (whole < maxTrackedKeys) {
+                hits += histogram[whole] * (sampledSize - whole);
+            }
+            return Math.max(0.0, 1.0 - hits / samples);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param points Number of points of the curve.
+     * @return The estimated miss ratio at evenly spaced sizes, up to the largest size covered.
+     */
+    public List<Point> curve(int points) {
+        long maxSize = getMaxCoveredSize();
+        List<Point> curve = new ArrayList<>(points);
+        for (int i = 1; i <= points; i++) {
+            long size = maxSize * i / points;
+            curve.add(new Point(size, missRatio(size)));
+        }
+        return curve;
+    }
+
+    /**
+     * @return The largest cache size the curve is estimated for.
+     */
+    public long getMaxCoveredSize() {
+        return Math.round(maxTrackedKeys / sampleRate);
+    }
+
+    /**
+     * @return The number of sampled reads the curve is estimated from, after decay.
+     */
+    public long getSamples() {
+        lock.lock();
+        try {
+            return samples;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets every read.
+     */
+    public void reset() {
+        lock.lock();
+        try {
+            lastRead.clear();
+            Arrays.fill(live, false);
+            Arrays.fill(tree, 0);
+            Arrays.fill(histogram, 0);
+            now = 0;
+            coldMisses = 0;
+            samples = 0;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops tracking the key read least recently, the one with the first live mark.
+     */
+    private void forgetLeastRecent() {
+        int time = firstMark();
+        lastRead.remove(keysByTime[time]);
+        unmark(time);
+    }
+
+    /**
+     * Renumbers the last reads of the tracked keys from {@code 0}, in order, once the
+     * read times are exhausted.
+     */
+    private void compact() {
+        int next = 0;
+        for (int time = 0; time < now; time++) {
+            if (live[time]) {
+                live[time] = false;
+                keysByTime[next] = keysByTime[time];
+                lastRead.put(keysByTime[next], next);
+                live[next] = true;
+                next++;
+            }
+        }
+        now = next;
+        // Linear build of the tree: each node passes its sum on to its parent
+        Arrays.fill(tree, 0);
+        for (int node = 1; node < tree.length; node++) {
+            if (node <= now) {
+                tree[node]++;
+            }
+            int parent = node + (node & -node);
+            if (parent < tree.length) {
+                tree[parent] += tree[node];
+            }
+        }
+    }
+
+    private void decay() {
+        for (int distance = 0; distance < histogram.length; distance++) {
+            histogram[distance] /= 2;
+        }
+        coldMisses /= 2;
+        samples = coldMisses;
+        for (long count : histogram) {
+            samples += count;
+        }
+    }
+
+    private void mark(int time) {
+        live[time] = true;
+        for (int node = time + 1; node < tree.length; node += node & -node) {
+            tree[node]++;
+        }
+    }
+
+    private void unmark(int time) {
+        live[time] = false;
+        for (int node = time + 1; node < tree.length; node += node & -node) {
+            tree[node]--;
+        }
+    }
+
+    /**
+     * @return The number of live marks at times before {@code end}.
+     */
+    private int prefixSum(int end) {
+        int sum = 0;
+        for (int node = end; node > 0; node -= node & -node) {
+            sum += tree[node];
+        }
+        return sum;
+    }
+
+    /**
+     * @return The first time with a live mark.
+     */
+    private int firstMark() {
+        int node = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            if (node + step < tree.length && tree[node + step] == 0) {
+                node += step;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Estimated miss ratio of a cache size.
+     */
+    public record Point(long size, double missRatio)
+    {
+    }
+}
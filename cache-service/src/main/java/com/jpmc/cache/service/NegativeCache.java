@@ -0,0 +1,88 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-lived record of IDs that were not found in the database, so repeated
+ * lookups of a nonexistent {@link com.jpmc.cache.model.Employee} do not each
+ * turn into a database query. Entries expire after a fixed time to live and are
+ * dropped as soon as the ID is added to the cache.
+ *
+ * The number of remembered IDs is bounded: once full, expired IDs are purged and
+ * new misses are not recorded until there is room again.
+ *
+ * @author r.pandiarajan
+ */
+public class NegativeCache
+{
+    private final Map<Long, Long> expiries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    /**
+     * Creates a negative cache.
+     *
+     * @param ttlMillis Time an ID is remembered as missing; {@code 0} disables the cache.
+     * @param maxEntries Maximum number of IDs remembered at once.
+     */
+    public NegativeCache(long ttlMillis, int maxEntries) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param id The ID to check.
+     * @return {@code true} if the ID was recently not found in the database.
+     */
+    public boolean contains(Long id) {
+        Long expiry = expiries.get(id);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry - System.nanoTime() > 0) {
+            return true;
+        }
+        expiries.remove(id, expiry);
+        return false;
+    }
+
+    /**
+     * Remembers that the ID was not found in the database.
+     *
+     * @param id The missing ID.
+     */
+    public void add(Long id) {
+        if (ttlNanos <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (expiries.size() >= maxEntries) {
+            expiries.values().removeIf(expiry -> expiry - now <= 0);
+            if (expiries.size() >= maxEntries) {
+                return;
+            }
+        }
+        expiries.put(id, now + ttlNanos);
+    }
+
+    /**
+     * Forgets the ID, typically because it has just been added to the cache.
+     *
+     * @param id The ID to forget.
+     */
+    public void remove(Long id) {
+        expiries.remove(id);
+    }
+
+    /**
+     * Forgets every ID.
+     */
+    public void clear() {
+        expiries.clear();
+    }
+}
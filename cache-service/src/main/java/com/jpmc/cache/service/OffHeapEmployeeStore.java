@@ -0,0 +1,448 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.jpmc.cache.model.Employee;
+
+/**
+ * {@link CacheStore} keeping {@link Employee} entries outside of the Java heap, so
+ * that multi-million entry caches do not add to garbage collection pause times.
+ *
+ * Entries are encoded with {@link EmployeeCodec} into direct byte buffers and
+ * located through a primitive {@code long}-keyed index, so neither keys nor values
+ * are boxed while cached. Keys are spread over segments, each owning a slice of the
+ * byte budget, an append-only arena, its index and a least recently used (LRU) list
+ * kept in primitive arrays. When an arena runs out of room, its least recently used
+ * entries are evicted to the {@link CacheStore.EvictionListener} until enough of it is
+ * garbage to be worth compacting.
+ *
+ * The store is bounded by its byte budget rather than by a number of entries, so
+ * {@link #setCapacity(int)} has no effect. Every {@link #get(Long)} decodes a new
+ * {@link Employee}, so changes to a returned object are not reflected in the cache.
+ *
+ * @author r.pandiarajan
+ */
+public class OffHeapEmployeeStore implements CacheStore<Long, Employee>
+{
+    private static final int NONE = -1;
+    private static final int INITIAL_ENTRIES = 64;
+    private static final int MAX_SEGMENTS = 1 << 10;
+    private static final int COMPACTION_DIVISOR = 16;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final AtomicInteger size = new AtomicInteger();
+    private final EvictionListener<Long, Employee> evictionListener;
+    private final long maxBytes;
+
+    /**
+     * Creates a store with the given concurrency level and byte budget.
+     *
+     * @param concurrencyLevel The expected number of concurrently writing threads,
+     *                         rounded up to a power of two to give the segment count.
+     * @param maxBytes The off-heap memory shared by all segments.
+     * @param evictionListener The callback receiving evicted entries.
+     */
+    public OffHeapEmployeeStore(int concurrencyLevel, long maxBytes, EvictionListener<Long, Employee> evictionListener) {
+        int segmentCount = 1;
+        while (segmentCount < Math.min(Math.max(concurrencyLevel, 1), MAX_SEGMENTS)) {
+            segmentCount <<= 1;
+        }
+        long segmentBytes = maxBytes / segmentCount;
+        if (segmentBytes < EmployeeCodec.HEADER_BYTES || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Off-heap budget of " + maxBytes + " bytes cannot be split into "
+                    + segmentCount + " segments");
+        }
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment((int) segmentBytes);
+        }
+        this.segmentMask = segmentCount - 1;
+        this.maxBytes = segmentBytes * segmentCount;
+        this.evictionListener = Objects.requireNonNull(evictionListener);
+    }
+
+    @Override
+    public Employee get(Long key) {
+        long id = key;
+        Segment segment = segmentFor(id);
+        segment.lock.lock();
+        try {
+            return segment.get(id);
+        }
+        finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(Long key) {
+        long id = key;
+        Segment segment = segmentFor(id);
+        segment.lock.lock();
+        try {
+            return segment.index.get(id) != NONE;
+        }
+        finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public Employee put(Long key, Employee value) {
+        long id = key;
+        byte[] nameBytes = EmployeeCodec.nameBytes(value);
+        List<Employee> evicted = new ArrayList<>(0);
+        Segment segment = segmentFor(id);
+        Employee previous;
+        segment.lock.lock();
+        try {
+            previous = segment.put(id, value, nameBytes, evicted);
+        }
+        finally {
+            segment.lock.unlock();
+        }
+        for (Employee employee : evicted) {
+            evictionListener.onEviction(employee.getId(), employee);
+        }
+        return previous;
+    }
+
+    @Override
+    public Employee putIfAbsent(Long key, Employee value) {
+        long id = key;
+        byte[] nameBytes = EmployeeCodec.nameBytes(value);
+        List<Employee> evicted = new ArrayList<>(0);
+        Segment segment = segmentFor(id);
+        segment.lock.lock();
+        try {
+            int handle = segment.index.get(id);
+            if (handle != NONE) {
+                return segment.read(handle);
+            }
+            segment.put(id, value, nameBytes, evicted);
+        }
+        finally {
+            segment.lock.unlock();
+        }
+        for (Employee employee : evicted) {
+            evictionListener.onEviction(employee.getId(), employee);
+        }
+        return null;
+    }
+
+    @Override
+    public Employee remove(Long key) {
+        long id = key;
+        Segment segment = segmentFor(id);
+        segment.lock.lock();
+        try {
+            int handle = segment.index.get(id);
+            if (handle == NONE) {
+                return null;
+            }
+            Employee removed = segment.read(handle);
+            segment.removeHandle(handle);
+            return removed;
+        }
+        finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.clear();
+            }
+            finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return {@link Integer#MAX_VALUE}, as the store is bounded by its byte budget.
+     */
+    @Override
+    public int getCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Has no effect, as the store is bounded by its byte budget.
+     */
+    @Override
+    public void setCapacity(int capacity) {
+        // Bounded by maxBytes
+    }
+
+    @Override
+    public Set<Long> keySet() {
+        Set<Long> keys = new HashSet<>();
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                for (int handle = segment.head; handle != NONE; handle = segment.next[handle]) {
+                    keys.add(segment.keys[handle]);
+                }
+            }
+            finally {
+                segment.lock.unlock();
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Segments do not share a clock, so their LRU lists are interleaved, taking the
+     * most recently used key of each segment in turn.
+     */
+    @Override
+    public List<Long> hottestKeys(int limit) {
+        List<List<Long>> perSegment = new ArrayList<>(segments.length);
+        for (Segment segment : segments) {
+            List<Long> keys = new ArrayList<>();
+            segment.lock.lock();
+            try {
+                for (int handle = segment.head; handle != NONE && keys.size() < limit; handle = segment.next[handle]) {
+                    keys.add(segment.keys[handle]);
+                }
+            }
+            finally {
+                segment.lock.unlock();
+            }
+            perSegment.add(keys);
+        }
+        List<Long> keys = new ArrayList<>();
+        for (int rank = 0; keys.size() < limit; rank++) {
+            boolean found = false;
+            for (List<Long> segmentKeys : perSegment) {
+                if (rank < segmentKeys.size() && keys.size() < limit) {
+                    keys.add(segmentKeys.get(rank));
+                    found = true;
+                }
+            }
+            if (!found) {
+                break;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return The off-heap memory reserved by the store.
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return The off-heap memory used by cached entries, excluding garbage awaiting compaction.
+     */
+    public long getUsedBytes() {
+        long used = 0;
+        for (Segment segment : segments) {
+            used += segment.liveBytes.get();
+        }
+        return used;
+    }
+
+    private Segment segmentFor(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 40) & segmentMask];
+    }
+
+    /**
+     * One stripe of the store. Entries are identified by an {@code int} handle that
+     * indexes the primitive arrays holding their key, arena offset, record length and
+     * links in the LRU list, ordered from the most (head) to the least (tail) recently
+     * used entry. All state is guarded by {@link #lock}.
+     */
+    private final class Segment
+    {
+        final ReentrantLock lock = new ReentrantLock();
+        final ByteBuffer arena;
+        final LongIntHashMap index = new LongIntHashMap();
+        final AtomicLong liveBytes = new AtomicLong();
+
+        long[] keys = new long[INITIAL_ENTRIES];
+        int[] offsets = new int[INITIAL_ENTRIES];
+        int[] lengths = new int[INITIAL_ENTRIES];
+        int[] prev = new int[INITIAL_ENTRIES];
+        int[] next = new int[INITIAL_ENTRIES];
+        int head = NONE;
+        int tail = NONE;
+        int freeHandles = NONE;
+        int allocatedHandles;
+        int writeOffset;
+
+        Segment(int bytes) {
+            this.arena = ByteBuffer.allocateDirect(bytes);
+        }
+
+        Employee get(long id) {
+            int handle = index.get(id);
+            if (handle == NONE) {
+                return null;
+            }
+            if (handle != head) {
+                unlink(handle);
+                linkHead(handle);
+            }
+            return read(handle);
+        }
+
+        Employee put(long id, Employee employee, byte[] nameBytes, List<Employee> evicted) {
+            Employee previous = null;
+            int existing = index.get(id);
+            if (existing != NONE) {
+                previous = read(existing);
+                removeHandle(existing);
+            }
+            int length = EmployeeCodec.encodedSize(nameBytes);
+            if (length > arena.capacity()) {
+                // Too large to ever fit in this segment, so it goes straight to the listener
+                evicted.add(employee);
+                return previous;
+            }
+            ensureSpace(length, evicted);
+            int handle = allocateHandle();
+            keys[handle] = id;
+            offsets[handle] = writeOffset;
+            lengths[handle] = length;
+            EmployeeCodec.encode(arena, writeOffset, employee, nameBytes);
+            writeOffset += length;
+            liveBytes.addAndGet(length);
+            index.put(id, handle);
+            linkHead(handle);
+            size.incrementAndGet();
+            return previous;
+        }
+
+        Employee read(int handle) {
+            return EmployeeCodec.decode(arena, offsets[handle]);
+        }
+
+        void removeHandle(int handle) {
+            index.remove(keys[handle]);
+            unlink(handle);
+            liveBytes.addAndGet(-lengths[handle]);
+            next[handle] = freeHandles;
+            freeHandles = handle;
+            size.decrementAndGet();
+        }
+
+        void clear() {
+            size.addAndGet(-index.size());
+            index.clear();
+            liveBytes.set(0);
+            head = NONE;
+            tail = NONE;
+            freeHandles = NONE;
+            allocatedHandles = 0;
+            writeOffset = 0;
+        }
+
+        /**
+         * Makes room for a record at the end of the arena. The arena is compacted once
+         * the garbage left by removed entries is at least a sixteenth of it, which keeps
+         * the copying cost amortized; until then, LRU entries are evicted.
+         */
+        private void ensureSpace(int length, List<Employee> evicted) {
+            while (arena.capacity() - writeOffset < length) {
+                long garbage = writeOffset - liveBytes.get();
+                if (garbage >= length && garbage >= arena.capacity() / COMPACTION_DIVISOR) {
+                    compact();
+                }
+                else {
+                    evicted.add(read(tail));
+                    removeHandle(tail);
+                }
+            }
+        }
+
+        /**
+         * Moves every live record to the front of the arena, in arena order.
+         */
+        private void compact() {
+            int target = 0;
+            for (int offset = 0; offset < writeOffset; ) {
+                int length = EmployeeCodec.encodedSize(arena, offset);
+                int handle = index.get(EmployeeCodec.id(arena, offset));
+                if (handle != NONE && offsets[handle] == offset) {
+                    if (target != offset) {
+                        arena.put(target, arena, offset, length);
+                        offsets[handle] = target;
+                    }
+                    target += length;
+                }
+                offset += length;
+            }
+            writeOffset = target;
+        }
+
+        private int allocateHandle() {
+            if (freeHandles != NONE) {
+                int handle = freeHandles;
+                freeHandles = next[handle];
+                return handle;
+            }
+            if (allocatedHandles == keys.length) {
+                int capacity = keys.length * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                prev = Arrays.copyOf(prev, capacity);
+                next = Arrays.copyOf(next, capacity);
+            }
+            return allocatedHandles++;
+        }
+
+        private void linkHead(int handle) {
+            prev[handle] = NONE;
+            next[handle] = head;
+            if (head != NONE) {
+                prev[head] = handle;
+            }
+            head = handle;
+            if (tail == NONE) {
+                tail = handle;
+            }
+        }
+
+        private void unlink(int handle) {
+            if (prev[handle] != NONE) {
+                next[prev[handle]] = next[handle];
+            }
+            else {
+                head = next[handle];
+            }
+            if (next[handle] != NONE) {
+                prev[next[handle]] = prev[handle];
+            }
+            else {
+                tail = prev[handle];
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link CacheStore} delegating the choice of evicted entries to an
+ * {@link EvictionPolicy}, such as {@link TinyLfuPolicy}, {@link LfuPolicy} or
+ * {@link TtlPolicy}.
+ *
+ * Policies keep a single, global view of the keys, so every operation, reads
+ * included, runs under one lock. Entries evicted to stay within the capacity, and
+ * entries found expired when read or purged on a write, are passed to the
+ * {@link CacheStore.EvictionListener} outside of the lock.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ *
+ * @author r.pandiarajan
+ */
+public class PolicyCacheStore<K, V> implements CacheStore<K, V>
+{
+    /** Expired entries purged by a single write, so writes stay cheap after an idle period. */
+    private static final int MAX_EXPIRED_PER_WRITE = 16;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<K, V> entries = new HashMap<>();
+    private final EvictionPolicy<K> policy;
+    private final EvictionListener<K, V> evictionListener;
+    private volatile int capacity;
+    private volatile int size;
+
+    /**
+     * Creates a store with the given policy and capacity.
+     *
+     * @param policy The policy choosing evicted entries, used only by this store.
+     * @param capacity The maximum number of entries held before evicting.
+     * @param evictionListener The callback receiving evicted and expired entries.
+     */
+    public PolicyCacheStore(EvictionPolicy<K> policy, int capacity, EvictionListener<K, V> evictionListener) {
+        this.policy = Objects.requireNonNull(policy);
+        this.capacity = capacity;
+        this.evictionListener = Objects.requireNonNull(evictionListener);
+        policy.setCapacity(capacity);
+    }
+
+    @Override
+    public V get(K key) {
+        V value;
+        lock.lock();
+        try {
+            value = entries.get(key);
+            if (value == null) {
+                return null;
+            }
+            if (!policy.isExpired(key)) {
+                policy.recordAccess(key);
+                return value;
+            }
+            entries.remove(key);
+            policy.recordRemoval(key);
+            size = entries.size();
+        }
+        finally {
+            lock.unlock();
+        }
+        evictionListener.onEviction(key, value);
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        lock.lock();
+        try {
+            return entries.containsKey(key);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        List<K> evictedKeys = new ArrayList<>(0);
+        List<V> evictedValues = new ArrayList<>(0);
+        V previous;
+        lock.lock();
+        try {
+            purgeExpired(evictedKeys, evictedValues);
+            previous = entries.get(key);
+            if (previous != null && onlyIfAbsent) {
+                policy.recordAccess(key);
+            }
+            else if (previous != null) {
+                entries.put(key, value);
+                policy.recordUpdate(key);
+            }
+            else {
+                entries.put(key, value);
+                policy.recordInsert(key);
+                evict(evictedKeys, evictedValues);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        notifyEvicted(evictedKeys, evictedValues);
+        return previous;
+    }
+
+    @Override
+    public V remove(K key) {
+        lock.lock();
+        try {
+            V removed = entries.remove(key);
+            if (removed != null) {
+                policy.recordRemoval(key);
+                size = entries.size();
+            }
+            return removed;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            policy.clear();
+            size = 0;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void setCapacity(int capacity) {
+        List<K> evictedKeys = new ArrayList<>(0);
+        List<V> evictedValues = new ArrayList<>(0);
+        lock.lock();
+        try {
+            this.capacity = capacity;
+            policy.setCapacity(capacity);
+            evict(evictedKeys, evictedValues);
+        }
+        finally {
+            lock.unlock();
+        }
+        notifyEvicted(evictedKeys, evictedValues);
+    }
+
+    @Override
+    public Set<K> keySet() {
+        lock.lock();
+        try {
+            return new HashSet<>(entries.keySet());
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /** Must be called with {@link #lock} held. */
+    private void purgeExpired(List<K> evictedKeys, List<V> evictedValues) {
+        for (int i = 0; i < MAX_EXPIRED_PER_WRITE; i++) {
+            K expired = policy.pollExpired();
+            if (expired == null) {
+                break;
+            }
+            evictedKeys.add(expired);
+            evictedValues.add(entries.remove(expired));
+        }
+        size = entries.size();
+    }
+
+    /** Must be called with {@link #lock} held. */
+    private void evict(List<K> evictedKeys, List<V> evictedValues) {
+        while (entries.size() > capacity) {
+            K victim = policy.evict();
+            evictedKeys.add(victim);
+            evictedValues.add(entries.remove(victim));
+        }
+        size = entries.size();
+    }
+
+    private void notifyEvicted(List<K> evictedKeys, List<V> evictedValues) {
+        for (int i = 0; i < evictedKeys.size(); i++) {
+            evictionListener.onEviction(evictedKeys.get(i), evictedValues.get(i));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Progress of a removal of every {@link com.jpmc.cache.model.Employee} run in the
+ * background by {@link CacheService#startRemoveAll()}. The cache is cleared when the
+ * job starts, and the rows of the database are then deleted one chunk of IDs at a
+ * time, so no single transaction spans the whole table.
+ *
+ * @author r.pandiarajan
+ */
+@Getter
+public class RemoveAllJob
+{
+    /**
+     * State of a job.
+     */
+    public enum State
+    {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    private final long id;
+
+    /** Number of rows in the table when the job started. */
+    private final long rowsTotal;
+
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    private volatile State state = State.RUNNING;
+
+    private volatile LocalDateTime finishedAt;
+
+    /** Why the job failed, if it did. */
+    private volatile String error;
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong rowsScanned = new AtomicLong();
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicLong rowsDeleted = new AtomicLong();
+
+    /**
+     * @param id The ID of the job.
+     * @param rowsTotal The number of rows in the table when the job started.
+     */
+    public RemoveAllJob(long id, long rowsTotal) {
+        this.id = id;
+        this.rowsTotal = rowsTotal;
+    }
+
+    /**
+     * @return The number of rows deleted so far.
+     */
+    public long getRowsDeleted() {
+        return rowsDeleted.get();
+    }
+
+    /**
+     * @return The fraction of the table scanned so far, from {@code 0} to {@code 1}.
+     */
+    public double getProgress() {
+        if (state == State.COMPLETED) {
+            return 1.0;
+        }
+        return rowsTotal == 0 ? 0.0 : Math.min(1.0, (double) rowsScanned.get() / rowsTotal);
+    }
+
+    /**
+     * Counts a chunk of rows.
+     *
+     * @param scanned The rows of the chunk.
+     * @param deleted The rows deleted, leaving out the rows written since the job started.
+     */
+    void chunkDeleted(int scanned, int deleted) {
+        rowsScanned.addAndGet(scanned);
+        rowsDeleted.addAndGet(deleted);
+    }
+
+    void complete() {
+        finishedAt = LocalDateTime.now();
+        state = State.COMPLETED;
+    }
+
+    void fail(RuntimeException e) {
+        error = e.getMessage();
+        finishedAt = LocalDateTime.now();
+        state = State.FAILED;
+    }
+}
@@ -0,0 +1,411 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Default {@link CacheStore}: a lock-striped, least recently used (LRU) store.
+ *
+ * Keys are spread over a power-of-two number of segments. Each segment owns a
+ * {@link ConcurrentHashMap} for lock-free lookups and a recency list guarded by the
+ * segment's lock. Reads do not take the lock: they record the accessed node in a small,
+ * lossy read buffer that is replayed onto the recency list whenever the segment lock
+ * is taken, so a hot GET path never serializes on a shared lock.
+ *
+ * The capacity is global. When an insert takes the store over its capacity, the
+ * victim is the tail of the segment whose least recently used entry is the oldest,
+ * which approximates a single global LRU order. Evicted entries are passed to the
+ * {@link CacheStore.EvictionListener} outside of any lock.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ *
+ * @author r.pandiarajan
+ */
+public class SegmentedLruCacheStore<K, V> implements CacheStore<K, V>
+{
+    /** Slots in each segment's read buffer; must be a power of two. */
+    private static final int READ_BUFFER_SIZE = 64;
+
+    /** Reads recorded between two attempts to drain a segment's read buffer, minus one. */
+    private static final int DRAIN_INTERVAL_MASK = 15;
+
+    private static final int MAX_SEGMENTS = 1 << 16;
+
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong ticker = new AtomicLong();
+    private final EvictionListener<K, V> evictionListener;
+    private volatile int capacity;
+
+    /**
+     * Creates a store with the given concurrency level and capacity.
+     *
+     * @param concurrencyLevel The expected number of concurrently writing threads,
+     *                         rounded up to a power of two to give the segment count.
+     * @param capacity The maximum number of entries held before evicting.
+     * @param evictionListener The callback receiving evicted entries.
+     */
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCacheStore(int concurrencyLevel, int capacity, EvictionListener<K, V> evictionListener) {
+        int segmentCount = 1;
+        while (segmentCount < Math.min(Math.max(concurrencyLevel, 1), MAX_SEGMENTS)) {
+            segmentCount <<= 1;
+        }
+        this.segments = (Segment<K, V>[]) new Segment<?, ?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment<>();
+        }
+        this.segmentMask = segmentCount - 1;
+        this.capacity = capacity;
+        this.evictionListener = Objects.requireNonNull(evictionListener);
+    }
+
+    @Override
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        Node<K, V> node = segment.map.get(key);
+        if (node == null) {
+            return null;
+        }
+        segment.recordRead(node, ticker);
+        return node.value;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return segmentFor(key).map.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return put(key, value, false);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        return put(key, value, true);
+    }
+
+    private V put(K key, V value, boolean onlyIfAbsent) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        Segment<K, V> segment = segmentFor(key);
+        V previous = null;
+        segment.lock.lock();
+        try {
+            segment.drainReadBuffer(ticker);
+            Node<K, V> node = segment.map.get(key);
+            if (node != null && onlyIfAbsent) {
+                return node.value;
+            }
+            if (node != null) {
+                previous = node.value;
+                node.value = value;
+                segment.moveToHead(node, ticker.incrementAndGet());
+            }
+            else {
+                node = new Node<>(key, value);
+                segment.map.put(key, node);
+                segment.linkHead(node, ticker.incrementAndGet());
+                size.incrementAndGet();
+            }
+        }
+        finally {
+            segment.lock.unlock();
+        }
+        evictIfNeeded();
+        return previous;
+    }
+
+    @Override
+    public V remove(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            Node<K, V> node = segment.map.remove(key);
+            if (node == null) {
+                return null;
+            }
+            segment.unlink(node);
+            size.decrementAndGet();
+            return node.value;
+        }
+        finally {
+            segment.lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                size.addAndGet(-segment.clear());
+            }
+            finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+        evictIfNeeded();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        Set<K> keys = new HashSet<>();
+        for (Segment<K, V> segment : segments) {
+            keys.addAll(segment.map.keySet());
+        }
+        return keys;
+    }
+
+    /**
+     * Orders the keys of every segment by the tick of their last access, which is the
+     * global order eviction approximates.
+     */
+    @Override
+    public List<K> hottestKeys(int limit) {
+        // Ticks are copied under the segment locks, as later reads move nodes and renew them
+        List<Map.Entry<K, Long>> ticks = new ArrayList<>();
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.drainReadBuffer(ticker);
+                int taken = 0;
+                for (Node<K, V> node = segment.head; node != null && taken < limit; node = node.next, taken++) {
+                    ticks.add(Map.entry(node.key, node.tick));
+                }
+            }
+            finally {
+                segment.lock.unlock();
+            }
+        }
+        ticks.sort(Map.Entry.<K, Long>comparingByValue(Comparator.reverseOrder()));
+        List<K> keys = new ArrayList<>(Math.min(limit, ticks.size()));
+        for (int i = 0; i < ticks.size() && i < limit; i++) {
+            keys.add(ticks.get(i).getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * Evicts entries until the store is within its capacity. The size is decremented
+     * before a victim is unlinked, so concurrent writers never evict more entries than
+     * the overflow between them.
+     */
+    private void evictIfNeeded() {
+        for (;;) {
+            int current = size.get();
+            if (current <= capacity) {
+                return;
+            }
+            if (!size.compareAndSet(current, current - 1)) {
+                continue;
+            }
+            Node<K, V> victim = removeOldest();
+            if (victim == null) {
+                size.incrementAndGet();
+                return;
+            }
+            evictionListener.onEviction(victim.key, victim.value);
+        }
+    }
+
+    /**
+     * Unlinks the least recently used node across all segments without touching the size.
+     *
+     * @return The removed node, or {@code null} if every segment is empty.
+     */
+    private Node<K, V> removeOldest() {
+        for (int attempt = 0; attempt < segments.length; attempt++) {
+            Segment<K, V> oldest = null;
+            long oldestTick = Long.MAX_VALUE;
+            for (Segment<K, V> segment : segments) {
+                segment.tryDrainReadBuffer(ticker);
+                long tick = segment.oldestTick;
+                if (tick < oldestTick) {
+                    oldestTick = tick;
+                    oldest = segment;
+                }
+            }
+            if (oldest == null) {
+                return null;
+            }
+            oldest.lock.lock();
+            try {
+                oldest.drainReadBuffer(ticker);
+                Node<K, V> victim = oldest.tail;
+                if (victim != null) {
+                    oldest.map.remove(victim.key);
+                    oldest.unlink(victim);
+                    return victim;
+                }
+            }
+            finally {
+                oldest.lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    /**
+     * A cached entry and its position in the recency list of its segment.
+     */
+    private static final class Node<K, V>
+    {
+        final K key;
+        volatile V value;
+
+        /** Guarded by the segment lock. */
+        Node<K, V> prev;
+        Node<K, V> next;
+        boolean live;
+        long tick;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * One stripe of the store: a lookup map, a recency list ordered from the most
+     * (head) to the least (tail) recently used node, and a read buffer of accesses
+     * not yet applied to the list.
+     */
+    private static final class Segment<K, V>
+    {
+        final ReentrantLock lock = new ReentrantLock();
+        final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+        final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        final AtomicLong readCount = new AtomicLong();
+
+        /** Guarded by {@link #lock}. */
+        Node<K, V> head;
+        Node<K, V> tail;
+
+        /** Tick of the tail node, readable without the lock; {@link Long#MAX_VALUE} when empty. */
+        volatile long oldestTick = Long.MAX_VALUE;
+        volatile long drainedCount;
+
+        void recordRead(Node<K, V> node, AtomicLong ticker) {
+            long index = readCount.getAndIncrement();
+            readBuffer.lazySet((int) (index & (READ_BUFFER_SIZE - 1)), node);
+            if ((index & DRAIN_INTERVAL_MASK) == DRAIN_INTERVAL_MASK) {
+                tryDrainReadBuffer(ticker);
+            }
+        }
+
+        void tryDrainReadBuffer(AtomicLong ticker) {
+            if (readCount.get() != drainedCount && lock.tryLock()) {
+                try {
+                    drainReadBuffer(ticker);
+                }
+                finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        /** Must be called with {@link #lock} held. */
+        void drainReadBuffer(AtomicLong ticker) {
+            long recorded = readCount.get();
+            if (recorded == drainedCount) {
+                return;
+            }
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                Node<K, V> node = readBuffer.getAndSet(i, null);
+                if (node != null && node.live) {
+                    moveToHead(node, ticker.incrementAndGet());
+                }
+            }
+            drainedCount = recorded;
+        }
+
+        void linkHead(Node<K, V> node, long tick) {
+            node.tick = tick;
+            node.live = true;
+            node.prev = null;
+            node.next = head;
+            if (head != null) {
+                head.prev = node;
+            }
+            head = node;
+            if (tail == null) {
+                tail = node;
+            }
+            oldestTick = tail.tick;
+        }
+
+        void moveToHead(Node<K, V> node, long tick) {
+            unlink(node);
+            linkHead(node, tick);
+        }
+
+        void unlink(Node<K, V> node) {
+            if (node.prev != null) {
+                node.prev.next = node.next;
+            }
+            else {
+                head = node.next;
+            }
+            if (node.next != null) {
+                node.next.prev = node.prev;
+            }
+            else {
+                tail = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            node.live = false;
+            oldestTick = tail == null ? Long.MAX_VALUE : tail.tick;
+        }
+
+        /** Must be called with {@link #lock} held; returns the number of removed entries. */
+        int clear() {
+            int removed = map.size();
+            for (Node<K, V> node = head; node != null; node = node.next) {
+                node.live = false;
+            }
+            map.clear();
+            head = null;
+            tail = null;
+            oldestTick = Long.MAX_VALUE;
+            return removed;
+        }
+    }
+}
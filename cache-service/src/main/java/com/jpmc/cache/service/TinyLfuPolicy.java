@@ -0,0 +1,138 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.LinkedHashSet;
+
+/**
+ * Window TinyLFU {@link EvictionPolicy}: new keys enter a small LRU admission
+ * window, and a key leaving the window only replaces an entry of the main space if
+ * it was accessed more often, as estimated by a {@link FrequencySketch}. A scan of
+ * one-off keys therefore cycles through the window without flushing the hot set.
+ *
+ * The window holds 1% of the capacity. The main space is a segmented LRU: keys
+ * admitted from the window start in a probation segment and move to a protected
+ * segment, of up to 80% of the main space, when they are accessed again. Keys
+ * demoted from the protected segment go back to probation, whose least recently used
+ * key is the victim the window candidates compete with.
+ *
+ * @param <K> the type of the keys
+ *
+ * @author r.pandiarajan
+ */
+public class TinyLfuPolicy<K> implements EvictionPolicy<K>
+{
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    /** Each segment orders its keys from the least to the most recently used. */
+    private final LinkedHashSet<K> window = new LinkedHashSet<>();
+    private final LinkedHashSet<K> probation = new LinkedHashSet<>();
+    private final LinkedHashSet<K> protectedSegment = new LinkedHashSet<>();
+    private final FrequencySketch sketch;
+
+    private int capacity;
+    private int windowCapacity;
+    private int protectedCapacity;
+
+    /**
+     * @param capacity The initial number of entries of the store.
+     */
+    public TinyLfuPolicy(int capacity) {
+        this.sketch = new FrequencySketch(capacity);
+        sizeSegments(capacity);
+    }
+
+    @Override
+    public void recordInsert(K key) {
+        sketch.increment(key);
+        window.add(key);
+        if (window.size() > windowCapacity && size() <= capacity) {
+            // Room to spare in the main space, so the window overflows into probation
+            K first = first(window);
+            window.remove(first);
+            probation.add(first);
+        }
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        sketch.increment(key);
+        if (window.remove(key)) {
+            window.add(key);
+        }
+        else if (probation.remove(key)) {
+            protectedSegment.add(key);
+            if (protectedSegment.size() > protectedCapacity) {
+                K demoted = first(protectedSegment);
+                protectedSegment.remove(demoted);
+                probation.add(demoted);
+            }
+        }
+        else if (protectedSegment.remove(key)) {
+            protectedSegment.add(key);
+        }
+    }
+
+    @Override
+    public void recordRemoval(K key) {
+        if (!window.remove(key) && !probation.remove(key)) {
+            protectedSegment.remove(key);
+        }
+    }
+
+    /**
+     * Evicts either the least recently used key of the window, when the window is
+     * over its share, or the victim of the main space, whichever was accessed less
+     * often. The candidate from the window takes the place of a victim it beats.
+     */
+    @Override
+    public K evict() {
+        K victim = !probation.isEmpty() ? first(probation)
+                : !protectedSegment.isEmpty() ? first(protectedSegment) : null;
+        if (window.size() <= windowCapacity || victim == null) {
+            if (victim == null) {
+                victim = first(window);
+            }
+            recordRemoval(victim);
+            return victim;
+        }
+        K candidate = first(window);
+        window.remove(candidate);
+        if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+            recordRemoval(victim);
+            probation.add(candidate);
+            return victim;
+        }
+        return candidate;
+    }
+
+    @Override
+    public void setCapacity(int capacity) {
+        sizeSegments(capacity);
+        sketch.ensureCapacity(capacity);
+    }
+
+    private void sizeSegments(int capacity) {
+        this.capacity = capacity;
+        this.windowCapacity = Math.max(1, capacity * WINDOW_PERCENT / 100);
+        this.protectedCapacity = (capacity - windowCapacity) * PROTECTED_PERCENT / 100;
+    }
+
+    @Override
+    public void clear() {
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+        sketch.clear();
+    }
+
+    private int size() {
+        return window.size() + probation.size() + protectedSegment.size();
+    }
+
+    private static <K> K first(LinkedHashSet<K> segment) {
+        return segment.iterator().next();
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Time-based {@link EvictionPolicy}: entries expire a fixed time after they were
+ * written, after they were last accessed, or both. When the store is over capacity
+ * before anything has expired, the least recently used key is evicted.
+ *
+ * Write and access times are kept in two maps ordered by time, so the next key to
+ * expire is always at the head of one of them.
+ *
+ * @param <K> the type of the keys
+ *
+ * @author r.pandiarajan
+ */
+public class TtlPolicy<K> implements EvictionPolicy<K>
+{
+    /** Write time of each key, from the oldest write. */
+    private final Map<K, Long> writeTimes = new LinkedHashMap<>();
+
+    /** Access time of each key, from the least recently used. */
+    private final Map<K, Long> accessTimes = new LinkedHashMap<>();
+
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final LongSupplier ticker;
+
+    /**
+     * @param expireAfterWriteMillis Time after which a written entry expires; {@code 0} disables it.
+     * @param expireAfterAccessMillis Time after which an entry not accessed expires; {@code 0} disables it.
+     * @param ticker Source of the current time in nanoseconds, typically {@link System#nanoTime()}.
+     */
+    public TtlPolicy(long expireAfterWriteMillis, long expireAfterAccessMillis, LongSupplier ticker) {
+        this.expireAfterWriteNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterWriteMillis);
+        this.expireAfterAccessNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterAccessMillis);
+        this.ticker = ticker;
+    }
+
+    @Override
+    public void recordInsert(K key) {
+        long now = ticker.getAsLong();
+        writeTimes.put(key, now);
+        accessTimes.put(key, now);
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        if (accessTimes.remove(key) != null) {
+            accessTimes.put(key, ticker.getAsLong());
+        }
+    }
+
+    @Override
+    public void recordUpdate(K key) {
+        writeTimes.remove(key);
+        accessTimes.remove(key);
+        recordInsert(key);
+    }
+
+    @Override
+    public void recordRemoval(K key) {
+        writeTimes.remove(key);
+        accessTimes.remove(key);
+    }
+
+    @Override
+    public K evict() {
+        K victim = accessTimes.keySet().iterator().next();
+        recordRemoval(victim);
+        return victim;
+    }
+
+    @Override
+    public boolean isExpired(K key) {
+        long now = ticker.getAsLong();
+        Long written = writeTimes.get(key);
+        Long accessed = accessTimes.get(key);
+        return (written != null && expired(written, expireAfterWriteNanos, now))
+                || (accessed != null && expired(accessed, expireAfterAccessNanos, now));
+    }
+
+    @Override
+    public K pollExpired() {
+        long now = ticker.getAsLong();
+        K expired = oldestExpired(writeTimes, expireAfterWriteNanos, now);
+        if (expired == null) {
+            expired = oldestExpired(accessTimes, expireAfterAccessNanos, now);
+        }
+        if (expired != null) {
+            recordRemoval(expired);
+        }
+        return expired;
+    }
+
+    @Override
+    public void clear() {
+        writeTimes.clear();
+        accessTimes.clear();
+    }
+
+    private static <K> K oldestExpired(Map<K, Long> times, long ttlNanos, long now) {
+        if (ttlNanos <= 0 || times.isEmpty()) {
+            return null;
+        }
+        Map.Entry<K, Long> oldest = times.entrySet().iterator().next();
+        return expired(oldest.getValue(), ttlNanos, now) ? oldest.getKey() : null;
+    }
+
+    private static boolean expired(long time, long ttlNanos, long now) {
+        return ttlNanos > 0 && now - time >= ttlNanos;
+    }
+}
@@ -0,0 +1,476 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.jpmc.cache.model.Employee;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only, memory-mapped write-ahead log of the changes made to the cache, so
+ * that entries only held in memory survive a crash or a restart without being
+ * written to the database synchronously.
+ *
+ * Every record is appended to a fixed-size segment file mapped in memory, as its
+ * length, a CRC32C checksum and a body starting with the record type:
+ * <ul>
+ * <li>{@code ADD}: an {@link Employee} added to the cache, encoded with {@link EmployeeCodec};</li>
+ * <li>{@code REMOVE}: the ID of an entry removed from the cache and the database;</li>
+ * <li>{@code CLEAR}: the cache was emptied;</li>
+ * <li>{@code FLUSHED}: an {@link Employee} saved to the database, which no longer
+ *     needs to be recovered unless it was added again since.</li>
+ * </ul>
+ *
+ * Callers append under their own ordering and then wait for {@link #sync(long)}.
+ * Syncing uses group commit: the first waiting thread forces the mapped segment to
+ * disk for every record appended so far, and the threads queued behind it usually
+ * find their records already durable.
+ *
+ * A periodic checkpoint starts a new segment and compacts the closed ones, together
+ * with the previous checkpoint, into a checkpoint file holding one {@code ADD}
+ * record per entry still to be recovered. On startup, the latest checkpoint and the
+ * segments written after it are replayed; replay stops at the first torn record of
+ * a segment.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.wal.enabled", havingValue = "true")
+@Slf4j
+public class WriteAheadLog
+{
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+    private static final byte FLUSHED = 4;
+
+    /** Length and checksum preceding the body of every record. */
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String CHECKPOINT_PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final boolean syncOnCommit;
+    private final long checkpointIntervalMillis;
+
+    /** Guards the current segment and the append counter. */
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    /** Held by the thread forcing the log to disk on behalf of a group of committers. */
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    /** Serializes checkpoints. */
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+
+    private MappedByteBuffer segment;
+    private long segmentSequence;
+    private long appended;
+    private volatile long durable;
+    private Map<Long, Employee> recovered = Collections.emptyMap();
+    private ScheduledExecutorService checkpointer;
+
+    /**
+     * Creates a write-ahead log.
+     *
+     * @param directory Directory holding the segment and checkpoint files.
+     * @param segmentBytes Size of each memory-mapped segment file.
+     * @param syncOnCommit Whether {@link #sync(long)} forces records to disk; without it,
+     *                     records survive a process crash but not an operating system crash.
+     * @param checkpointIntervalMillis Time between two checkpoints; {@code 0} disables them.
+     */
+    public WriteAheadLog(@Value("${cache.wal.directory:data/wal}") Path directory,
+            @Value("${cache.wal.segment-bytes:67108864}") int segmentBytes,
+            @Value("${cache.wal.sync:true}") boolean syncOnCommit,
+            @Value("${cache.wal.checkpoint-interval-ms:60000}") long checkpointIntervalMillis) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.syncOnCommit = syncOnCommit;
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    /**
+     * Replays the existing log, compacts it into a checkpoint and opens a new segment.
+     * The replayed entries are then available from {@link #getRecovered()}.
+     */
+    @PostConstruct
+    public void open() {
+        try {
+            Files.createDirectories(directory);
+            long lastSequence = Math.max(lastSequence(CHECKPOINT_PREFIX), lastSequence(SEGMENT_PREFIX));
+            Map<Long, byte[]> state = replay(lastSequence);
+            recovered = new LinkedHashMap<>();
+            state.forEach((id, record) -> recovered.put(id, EmployeeCodec.decode(ByteBuffer.wrap(record), 0)));
+            if (lastSequence >= 0) {
+                writeCheckpoint(lastSequence, state);
+            }
+            segmentSequence = lastSequence;
+            roll();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the write-ahead log in " + directory, e);
+        }
+        log.info("Opened write-ahead log in {}, {} entries to recover", directory, recovered.size());
+        if (checkpointIntervalMillis > 0) {
+            checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cache-wal-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            checkpointer.scheduleWithFixedDelay(this::checkpointQuietly, checkpointIntervalMillis,
+                    checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops checkpointing and forces every appended record to disk.
+     */
+    @PreDestroy
+    public void close() {
+        if (checkpointer != null) {
+            checkpointer.shutdownNow();
+        }
+        appendLock.lock();
+        try {
+            segment.force();
+            durable = appended;
+        }
+        finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return The entries replayed from the log when it was opened, in log order.
+     */
+    public Map<Long, Employee> getRecovered() {
+        return recovered;
+    }
+
+    /**
+     * Forgets the entries replayed when the log was opened, once they are back in the cache.
+     */
+    public void clearRecovered() {
+        recovered = Collections.emptyMap();
+    }
+
+    /**
+     * Appends an {@link Employee} added to the cache.
+     *
+     * @param employee The added {@link Employee}.
+     * @return The sequence number of the record, to pass to {@link #sync(long)}.
+     */
+    public long logAdd(Employee employee) {
+        return append(ADD, employee);
+    }
+
+    /**
+     * Appends the removal of an entry from the cache and the database.
+     *
+     * @param id The ID of the removed entry.
+     * @return The sequence number of the record, to pass to {@link #sync(long)}.
+     */
+    public long logRemove(Long id) {
+        ByteBuffer body = ByteBuffer.allocate(1 + Long.BYTES);
+        body.put(REMOVE).putLong(id);
+        return append(body.array());
+    }
+
+    /**
+     * Appends the removal of every entry from the cache.
+     *
+     * @return The sequence number of the record, to pass to {@link #sync(long)}.
+     */
+    public long logClear() {
+        return append(new byte[] { CLEAR });
+    }
+
+    /**
+     * Appends that an {@link Employee} was saved to the database. The record is not
+     * synced: if it is lost, the entry is recovered and saved once more.
+     *
+     * @param employee The saved {@link Employee}.
+     */
+    public void logFlushed(Employee employee) {
+        append(FLUSHED, employee);
+    }
+
+    /**
+     * Waits until the record with the given sequence number, and every record before
+     * it, is on disk. Returns immediately when syncing is disabled.
+     *
+     * @param sequence The sequence number returned when the record was appended.
+     */
+    public void sync(long sequence) {
+        if (!syncOnCommit || durable >= sequence) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durable >= sequence) {
+                return;
+            }
+            long target;
+            MappedByteBuffer current;
+            appendLock.lock();
+            try {
+                target = appended;
+                current = segment;
+            }
+            finally {
+                appendLock.unlock();
+            }
+            current.force();
+            durable = Math.max(durable, target);
+        }
+        finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new segment and compacts the previous checkpoint and every closed
+     * segment into a new checkpoint, then deletes them.
+     *
+     * @throws IOException if the checkpoint cannot be written.
+     */
+    public void checkpoint() throws IOException {
+        checkpointLock.lock();
+        try {
+            long lastClosed;
+            appendLock.lock();
+            try {
+                if (segment.position() == 0) {
+                    return;
+                }
+                lastClosed = segmentSequence;
+                closeSegment();
+            }
+            finally {
+                appendLock.unlock();
+            }
+            Map<Long, byte[]> state = replay(lastClosed);
+            writeCheckpoint(lastClosed, state);
+            log.info("Checkpointed write-ahead log up to segment {} with {} entries", lastClosed, state.size());
+        }
+        finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    private void checkpointQuietly() {
+        try {
+            checkpoint();
+        }
+        catch (IOException | RuntimeException e) {
+            log.error("Failed to checkpoint the write-ahead log", e);
+        }
+    }
+
+    private long append(byte type, Employee employee) {
+        byte[] nameBytes = EmployeeCodec.nameBytes(employee);
+        ByteBuffer body = ByteBuffer.allocate(1 + EmployeeCodec.encodedSize(nameBytes));
+        body.put(0, type);
+        EmployeeCodec.encode(body, 1, employee, nameBytes);
+        return append(body.array());
+    }
+
+    private long append(byte[] body) {
+        int length = RECORD_HEADER_BYTES + body.length;
+        if (length > segmentBytes) {
+            throw new IllegalArgumentException("Record of " + length + " bytes does not fit in a log segment");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(body);
+        appendLock.lock();
+        try {
+            if (segment.remaining() < length) {
+                closeSegment();
+            }
+            segment.putInt(body.length).putInt((int) crc.getValue()).put(body);
+            return ++appended;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to start a new write-ahead log segment", e);
+        }
+        finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Forces the current segment to disk and starts a new one. {@link #sync(long)} only 
+     * forces the current segment, so the records of a segment are made durable as it 
+     * is closed. Must be called with {@link #appendLock} held.
+     */
+    private void closeSegment() throws IOException {
+        segment.force();
+        durable = Math.max(durable, appended);
+        roll();
+    }
+
+    /** Must be called with {@link #appendLock} held, or before the log is shared. */
+    private void roll() throws IOException {
+        segmentSequence++;
+        Path file = directory.resolve(fileName(SEGMENT_PREFIX, segmentSequence));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+    }
+
+    /**
+     * Replays the latest checkpoint and the segments up to the given one.
+     *
+     * @return The encoded entries to recover, by ID, in log order.
+     */
+    private Map<Long, byte[]> replay(long lastSegment) throws IOException {
+        Map<Long, byte[]> state = new LinkedHashMap<>();
+        long checkpoint = lastSequence(CHECKPOINT_PREFIX);
+        if (checkpoint >= 0) {
+            replayFile(directory.resolve(fileName(CHECKPOINT_PREFIX, checkpoint)), state);
+        }
+        for (long sequence : sequences(SEGMENT_PREFIX)) {
+            if (sequence > checkpoint && sequence <= lastSegment) {
+                replayFile(directory.resolve(fileName(SEGMENT_PREFIX, sequence)), state);
+            }
+        }
+        return state;
+    }
+
+    private void replayFile(Path file, Map<Long, byte[]> state) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        CRC32C crc = new CRC32C();
+        while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] body = new byte[length];
+            buffer.get(body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != checksum) {
+                log.warn("Ignoring torn record at the end of write-ahead log file {}", file.getFileName());
+                break;
+            }
+            apply(body, state);
+        }
+    }
+
+    private static void apply(byte[] body, Map<Long, byte[]> state) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        switch (body[0]) {
+            case ADD -> {
+                byte[] record = Arrays.copyOfRange(body, 1, body.length);
+                long id = EmployeeCodec.id(buffer, 1);
+                state.remove(id);
+                state.put(id, record);
+            }
+            case REMOVE -> state.remove(buffer.getLong(1));
+            case CLEAR -> state.clear();
+            case FLUSHED -> {
+                long id = EmployeeCodec.id(buffer, 1);
+                byte[] current = state.get(id);
+                if (current != null && Arrays.equals(current, 0, current.length, body, 1, body.length)) {
+                    state.remove(id);
+                }
+            }
+            default -> throw new IllegalStateException("Unknown write-ahead log record type " + body[0]);
+        }
+    }
+
+    /**
+     * Writes the state as a checkpoint covering the segments up to the given one,
+     * then deletes those segments and the previous checkpoints.
+     */
+    private void writeCheckpoint(long lastSegment, Map<Long, byte[]> state) throws IOException {
+        Path temporary = directory.resolve(fileName(CHECKPOINT_PREFIX, lastSegment) + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CRC32C crc = new CRC32C();
+            for (byte[] record : state.values()) {
+                ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_BYTES + 1 + record.length);
+                crc.reset();
+                crc.update(ADD);
+                crc.update(record);
+                buffer.putInt(1 + record.length).putInt((int) crc.getValue()).put(ADD).put(record).flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(fileName(CHECKPOINT_PREFIX, lastSegment)),
+                StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (long sequence : sequences(CHECKPOINT_PREFIX)) {
+            if (sequence < lastSegment) {
+                Files.deleteIfExists(directory.resolve(fileName(CHECKPOINT_PREFIX, sequence)));
+            }
+        }
+        for (long sequence : sequences(SEGMENT_PREFIX)) {
+            if (sequence <= lastSegment) {
+                Files.deleteIfExists(directory.resolve(fileName(SEGMENT_PREFIX, sequence)));
+            }
+        }
+    }
+
+    private long lastSequence(String prefix) throws IOException {
+        List<Long> sequences = sequences(prefix);
+        return sequences.isEmpty() ? -1 : sequences.get(sequences.size() - 1);
+    }
+
+    /**
+     * @return The sequence numbers of the files with the given prefix, in ascending order.
+     */
+    private List<Long> sequences(String prefix) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix) && name.endsWith(SUFFIX))
+                    .forEach(name -> sequences.add(
+                            Long.parseLong(name.substring(prefix.length(), name.length() - SUFFIX.length()))));
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+
+    private static String fileName(String prefix, long sequence) {
+        return String.format("%s%016d%s", prefix, sequence, SUFFIX);
+    }
+}
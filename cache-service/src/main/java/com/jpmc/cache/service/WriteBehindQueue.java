@@ -0,0 +1,370 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.jpmc.cache.datasource.RecentWrites;
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.repository.EmployeeRepository;
+import com.jpmc.cache.repository.JdbcEmployeeWriter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded write-behind queue for {@link Employee} entries evicted from the cache.
+ *
+ * Evicted entries are parked in a pending map and their IDs are queued for a
+ * background flusher, which drains the queue and persists the entries with
+ * {@link EmployeeRepository#saveAll(Iterable)}, or with
+ * {@link JdbcEmployeeWriter#upsertAll(Collection)} when it is enabled, once a batch
+ * is full or the flush interval has elapsed. An entry stays readable through
+ * {@link #get(Long)} until its batch has been saved, so it is never invisible to
+ * the cache service.
+ *
+ * When the queue is full, {@link #enqueue(Employee)} blocks for the configured
+ * offer timeout and then saves the entry on the calling thread, which slows down
+ * producers instead of dropping writes.
+ *
+ * @author r.pandiarajan
+ */
+@Component
+@ConditionalOnProperty(name = "cache.write-behind.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class WriteBehindQueue
+{
+    private final EmployeeRepository employeeRepository;
+    private final BlockingQueue<Long> queue;
+    private final Map<Long, Employee> pending = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+
+    /** Held while a batch is saved, so that cancelled entries are never written after their delete. */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /** IDs carried over to the next batch, guarded by {@link #flushLock}. */
+    private final Set<Long> retry = new LinkedHashSet<>();
+
+    /** Writer upserting flushed batches with JDBC instead of the repository; absent when disabled. */
+    @Autowired(required = false)
+    JdbcEmployeeWriter jdbcWriter;
+
+    /** Keeps saved entries from being deleted by a running {@link RemoveAllJob}; a default instance until injected. */
+    @Autowired
+    BulkDeleteFence bulkDeleteFence = new BulkDeleteFence();
+
+    /** Log told about every saved entry, so it is not recovered again; absent when disabled. */
+    @Autowired(required = false)
+    WriteAheadLog writeAheadLog;
+
+    /** Told about every saved entry, so it is read from the primary DB until the replica has it; absent without routing. */
+    @Autowired(required = false)
+    RecentWrites recentWrites;
+
+    /** Meters of flushed batches, in a private registry until the application's one is injected. */
+    @Autowired
+    CacheMetrics metrics = new CacheMetrics(new SimpleMeterRegistry());
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    /**
+     * Creates a write-behind queue.
+     *
+     * @param employeeRepository Repository used to persist flushed entries.
+     * @param queueCapacity Maximum number of entries waiting to be flushed.
+     * @param batchSize Maximum number of entries saved in one {@code saveAll} call.
+     * @param flushIntervalMillis Maximum time an entry waits for its batch to fill up.
+     * @param offerTimeoutMillis Time a producer waits for space in a full queue before saving inline.
+     */
+    public WriteBehindQueue(EmployeeRepository employeeRepository,
+            @Value("${cache.write-behind.queue-capacity:10000}") int queueCapacity,
+            @Value("${cache.write-behind.batch-size:100}") int batchSize,
+            @Value("${cache.write-behind.flush-interval-ms:200}") long flushIntervalMillis,
+            @Value("${cache.write-behind.offer-timeout-ms:50}") long offerTimeoutMillis) {
+        this.employeeRepository = employeeRepository;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+    }
+
+    /**
+     * Starts the background flusher thread.
+     */
+    @PostConstruct
+    public void start() {
+        metrics.gauge("cache.write-behind.pending", "Evicted entries waiting to be saved to the DB", this,
+                WriteBehindQueue::size);
+        running = true;
+        flusher = new Thread(this::runFlusher, "cache-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Stops the background flusher and saves every entry still pending.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(10));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Queues an evicted {@link Employee} to be saved by the background flusher.
+     * Queuing an ID that is already pending replaces its value, so repeated
+     * evictions before a flush collapse into one write.
+     *
+     * @param employee The evicted {@link Employee}.
+     */
+    public void enqueue(Employee employee) {
+        Long id = employee.getId();
+        if (pending.put(id, employee) != null) {
+            return;
+        }
+        boolean queued;
+        try {
+            queued = queue.offer(id, offerTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            log.warn("Write-behind queue is full, saving entry with id - {} on the calling thread", id);
+            flush(List.of(id));
+        }
+    }
+
+    /**
+     * Returns the {@link Employee} waiting to be flushed for the given ID.
+     *
+     * @param id The ID of the {@link Employee}.
+     * @return The pending {@link Employee}, or {@code null} if nothing is pending for the ID.
+     */
+    public Employee get(Long id) {
+        return pending.get(id);
+    }
+
+    /**
+     * Drops the pending write for the given ID. Waits for a batch being saved to
+     * complete, so the entry is not written after this method returns.
+     *
+     * @param id The ID of the {@link Employee}.
+     */
+    public void cancel(Long id) {
+        flushLock.lock();
+        try {
+            pending.remove(id);
+        }
+        finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the pending write for the given ID if it is still for the given
+     * {@link Employee}, typically because the entry was put back into the cache.
+     * Does not wait for a batch being saved: writing the entry anyway is harmless, as
+     * the cache holds the same value.
+     *
+     * @param id The ID of the {@link Employee}.
+     * @param employee The {@link Employee} that is no longer to be written.
+     */
+    public void cancel(Long id, Employee employee) {
+        pending.remove(id, employee);
+    }
+
+    /**
+     * Drops every pending write.
+     */
+    public void cancelAll() {
+        flushLock.lock();
+        try {
+            queue.clear();
+            retry.clear();
+            pending.clear();
+        }
+        finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Saves every pending entry on the calling thread, including those the background
+     * flusher has taken from the queue but not saved yet, after waiting for a batch
+     * being saved. Stops at the first batch that fails to save, leaving it pending for
+     * the background flusher.
+     */
+    public void flush() {
+        List<Long> ids = new ArrayList<>(batchSize);
+        boolean flushed;
+        do {
+            ids.clear();
+            queue.drainTo(ids, batchSize);
+            flushed = flush(ids);
+        }
+        while (flushed && !queue.isEmpty());
+        // IDs of the batch the flusher is collecting, whose entries are still pending
+        List<Long> collected = new ArrayList<>(pending.keySet());
+        for (int from = 0; flushed && from < collected.size(); from += batchSize) {
+            flushed = flush(collected.subList(from, Math.min(from + batchSize, collected.size())));
+        }
+    }
+
+    /**
+     * @return The number of entries waiting to be flushed.
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Flusher loop: waits for a first ID, then collects IDs until the batch is full
+     * or the flush interval has elapsed, and saves the batch. After a failed batch
+     * the flusher backs off for one flush interval before retrying.
+     */
+    private void runFlusher() {
+        List<Long> ids = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                collectBatch(ids);
+            }
+            catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+            boolean flushed = flush(ids);
+            ids.clear();
+            if (!flushed) {
+                try {
+                    Thread.sleep(flushIntervalMillis);
+                }
+                catch (InterruptedException e) {
+                    // Woken up by shutdown, which flushes the remaining entries
+                }
+            }
+        }
+    }
+
+    private void collectBatch(List<Long> ids) throws InterruptedException {
+        Long first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        ids.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        while (ids.size() < batchSize) {
+            if (queue.drainTo(ids, batchSize - ids.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            Long next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            ids.add(next);
+        }
+    }
+
+    /**
+     * Saves the pending entries for the given IDs, together with any entries left
+     * over by an earlier batch, in one {@code saveAll} call. Entries replaced while
+     * the batch was saved, and every entry of a failed batch, are kept for the next
+     * batch.
+     *
+     * @return {@code false} if the batch failed to save.
+     */
+    private boolean flush(List<Long> ids) {
+        flushLock.lock();
+        try {
+            Map<Long, Employee> batch = new LinkedHashMap<>();
+            for (Long id : retry) {
+                addToBatch(batch, id);
+            }
+            for (Long id : ids) {
+                addToBatch(batch, id);
+            }
+            retry.clear();
+            if (batch.isEmpty()) {
+                return true;
+            }
+            long start = System.nanoTime();
+            try {
+                log.info("Flushing {} evicted entries to DB", batch.size());
+                bulkDeleteFence.write(batch.keySet(), () -> {
+                    if (jdbcWriter != null) {
+                        jdbcWriter.upsertAll(batch.values());
+                    }
+                    else {
+                        employeeRepository.saveAll(batch.values());
+                    }
+                });
+            }
+            catch (RuntimeException e) {
+                log.error("Failed to flush {} evicted entries to DB, retrying later", batch.size(), e);
+                metrics.recordWriteBackFailures(batch.size());
+                retry.addAll(batch.keySet());
+                return false;
+            }
+            finally {
+                metrics.recordEvictionSave(System.nanoTime() - start);
+            }
+            // Before the entries leave the queue, which serves them until then
+            if (recentWrites != null) {
+                recentWrites.record(batch.keySet());
+            }
+            batch.forEach((id, employee) -> {
+                if (!pending.remove(id, employee) && pending.containsKey(id)) {
+                    retry.add(id);
+                }
+                if (writeAheadLog != null) {
+                    writeAheadLog.logFlushed(employee);
+                }
+            });
+            return true;
+        }
+        finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void addToBatch(Map<Long, Employee> batch, Long id) {
+        Employee employee = pending.get(id);
+        if (employee != null) {
+            batch.put(id, employee);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ *
+ */
+package com.jpmc.cache;
+
+import com.jpmc.cache.model.Employee;
+
+/**
+ * Builds the {@link Employee} fixtures of the tests and benchmarks. Unless given, the
+ * name of an employee is {@code "test" + id} and its salary {@code 1000.0 * id}.
+ *
+ * @author r.pandiarajan
+ *
+ */
+public final class TestEmployees
+{
+    private TestEmployees() {
+    }
+
+    public static Employee employee(Long id) {
+        return employee(id, "test" + id);
+    }
+
+    public static Employee employee(Long id, String name) {
+        return employee(id, name, 1000.0 * id);
+    }
+
+    public static Employee employee(Long id, String name, Double salary) {
+        Employee employee = new Employee();
+        employee.setId(id);
+        employee.setName(name);
+        employee.setSalary(salary);
+        return employee;
+    }
+}
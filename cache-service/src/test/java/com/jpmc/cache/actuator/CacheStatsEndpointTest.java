@@ -0,0 +1,69 @@
+/**
+ * 
+ */
+package com.jpmc.cache.actuator;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Test class for the {@link CacheStatsEndpoint}.
+ * Exercises the cache through its REST API and verifies that hits, misses and puts 
+ * are reported by {@code /actuator/cache-stats} and by the {@code metrics} endpoint.
+ * 
+ * @author r.pandiarajan
+ *
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@DirtiesContext
+class CacheStatsEndpointTest
+{
+    @Autowired
+    MockMvc mockMvc;
+    
+    @Test
+    void testReportsCacheStatistics() throws Exception {
+        mockMvc.perform(post("/cache/add")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":1,\"name\":\"test1\",\"salary\":1000.0}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/cache/get/1")).andExpect(status().isOk());
+        mockMvc.perform(get("/cache/get/2")).andExpect(status().isNotFound());
+        
+        mockMvc.perform(get("/actuator/cache-stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hits").value(1))
+                .andExpect(jsonPath("$.misses").value(1))
+                .andExpect(jsonPath("$.hitRatio").value(0.5))
+                .andExpect(jsonPath("$.puts").value(1))
+                .andExpect(jsonPath("$.size").value(1))
+                .andExpect(jsonPath("$.maxSize").value(2))
+                .andExpect(jsonPath("$.load.count").value(1));
+        
+        mockMvc.perform(get("/actuator/metrics/cache.gets").param("tag", "result:hit"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[0].value").value(1.0));
+    }
+    
+    @Test
+    void testReadinessIncludesCacheWarmUp() throws Exception {
+        mockMvc.perform(get("/actuator/health/readiness"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("UP"));
+        
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("UP"));
+    }
+}
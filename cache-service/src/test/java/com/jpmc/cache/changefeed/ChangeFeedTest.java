@@ -0,0 +1,125 @@
+/**
+ *
+ */
+package com.jpmc.cache.changefeed;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import com.jpmc.cache.service.CacheMetrics;
+import com.jpmc.cache.service.CacheService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit test class for {@link ChangeFeed}, against a private in-memory H2 database
+ * whose changes are captured by the {@link EmployeeChangeTrigger}. Verifies that the
+ * changes of each poll are coalesced per ID and passed to the {@link CacheService},
+ * that a change committed after a later one is still applied, that installing twice
+ * keeps a single set of triggers, and that the lag is measured from the time of the
+ * changes.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class ChangeFeedTest
+{
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private CacheService cacheService;
+    private SimpleMeterRegistry registry;
+    private ChangeFeed feed;
+
+    @BeforeEach
+    public void setup() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:change-feed-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE employees (id BIGINT PRIMARY KEY, name VARCHAR(255), salary DOUBLE)");
+        jdbcTemplate.update("INSERT INTO employees VALUES (1, 'test1', 1000), (2, 'test2', 2000)");
+        cacheService = mock(CacheService.class);
+        registry = new SimpleMeterRegistry();
+        feed = new ChangeFeed(cacheService, jdbcTemplate, new CacheMetrics(registry), ChangeFeed.Mode.UPDATE, 1000, 2,
+                3600000, 10000);
+        feed.registerMeters();
+        feed.install();
+    }
+
+    @Test
+    void testChangesAreCoalescedPerIdAcrossBatches() {
+        feed.poll();
+        verify(cacheService, never()).applyDatabaseChanges(anyCollection(), anyCollection(), anyBoolean());
+
+        jdbcTemplate.update("UPDATE employees SET salary = 1500 WHERE id = 1");
+        jdbcTemplate.update("INSERT INTO employees VALUES (3, 'test3', 3000)");
+        jdbcTemplate.update("DELETE FROM employees WHERE id = 2");
+        jdbcTemplate.update("UPDATE employees SET name = 'renamed3' WHERE id = 3");
+        jdbcTemplate.update("DELETE FROM employees WHERE id = 3");
+        feed.poll();
+
+        // Batches of 2 changes: 1 and 3 updated, then 2 deleted and 3 updated, then 3 deleted
+        verify(cacheService).applyDatabaseChanges(List.of(1L, 3L), List.of(), true);
+        verify(cacheService).applyDatabaseChanges(List.of(3L), List.of(2L), true);
+        verify(cacheService).applyDatabaseChanges(List.of(), List.of(3L), true);
+        assertEquals(5, feed.getPosition());
+        assertEquals(5.0, registry.get("cache.change-feed.changes").counter().count());
+    }
+
+    @Test
+    void testChangeCommittedAfterLaterOneIsApplied() throws Exception {
+        try (Connection transaction = dataSource.getConnection()) {
+            transaction.setAutoCommit(false);
+            transaction.createStatement().executeUpdate("UPDATE employees SET salary = 1500 WHERE id = 1");
+            jdbcTemplate.update("UPDATE employees SET salary = 2500 WHERE id = 2");
+            feed.poll();
+            verify(cacheService).applyDatabaseChanges(List.of(2L), List.of(), true);
+
+            transaction.commit();
+        }
+        feed.poll();
+
+        verify(cacheService).applyDatabaseChanges(List.of(1L), List.of(), true);
+        assertEquals(2, feed.getPosition());
+    }
+
+    @Test
+    void testInstallingAgainKeepsOneChangePerStatement() {
+        feed.install();
+
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TRIGGERS "
+                + "WHERE TRIGGER_NAME LIKE 'EMPLOYEES_CHANGE_%'", Integer.class));
+        jdbcTemplate.update("UPDATE employees SET salary = 1500 WHERE id = 1");
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM employee_changes", Integer.class));
+    }
+
+    @Test
+    void testLagIsMeasuredFromChangeTimeAndGrowsWhilePollsFail() throws Exception {
+        jdbcTemplate.update("INSERT INTO employee_changes (employee_id, op, changed_at) "
+                + "VALUES (1, 'U', DATEADD(SECOND, -5, CURRENT_TIMESTAMP(3)))");
+        feed.poll();
+
+        long lag = feed.getLagMillis();
+        assertTrue(lag >= 5000 && lag < 10000, "lag " + lag);
+        assertEquals(lag, registry.get("cache.change-feed.lag").gauge().value());
+
+        jdbcTemplate.execute("DROP TABLE employee_changes");
+        feed.poll();
+        Thread.sleep(50);
+
+        assertEquals(1.0, registry.get("cache.change-feed.failures").counter().count());
+        assertTrue(feed.getLagMillis() >= lag + 50);
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ *
+ */
+package com.jpmc.cache.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import com.jpmc.cache.CacheServiceApplication;
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.service.CacheService;
+
+/**
+ * Test class for {@link CacheCluster}.
+ * Runs two instances of the service in the same JVM, sharing an in-memory database,
+ * and verifies that entries are placed on their owners, that requests are forwarded
+ * to the owner, that entries are handed off when an instance leaves, and that the
+ * new owner only drops the handed off copies that did not change.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class CacheClusterTest
+{
+    private final RestClient restClient = RestClient.create();
+
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+
+    @BeforeEach
+    public void setUp() {
+        nodeA = start();
+        nodeB = start("--cache.cluster.nodes=" + url(nodeA));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        nodeB.close();
+        nodeA.close();
+    }
+
+    @Test
+    void testMembersShareTheKeys() {
+        assertEquals(Set.of(url(nodeA), url(nodeB)), nodeA.getBean(CacheCluster.class).getNodes());
+        assertEquals(nodeA.getBean(CacheCluster.class).getNodes(), nodeB.getBean(CacheCluster.class).getNodes());
+
+        addAll(nodeA, 50);
+
+        CacheCluster cluster = nodeA.getBean(CacheCluster.class);
+        Set<Long> keysA = nodeA.getBean(CacheService.class).getCache().keySet();
+        Set<Long> keysB = nodeB.getBean(CacheService.class).getCache().keySet();
+        assertEquals(50, keysA.size() + keysB.size());
+        assertTrue(!keysA.isEmpty() && !keysB.isEmpty());
+        for (long id = 1; id <= 50; id++) {
+            assertTrue((cluster.ownerOf(id).equals(url(nodeA)) ? keysA : keysB).contains(id));
+        }
+    }
+
+    @Test
+    void testForwardsRequestsToOwner() {
+        addAll(nodeA, 50);
+        Long remoteId = nodeB.getBean(CacheService.class).getCache().keySet().iterator().next();
+
+        Employee employee = restClient.get()
+                .uri(url(nodeA) + "/cache/get/" + remoteId)
+                .retrieve()
+                .body(Employee.class);
+
+        assertEquals(remoteId, employee.getId());
+        assertEquals(0, nodeA.getBean(CacheService.class).getMetrics().getHits());
+        assertEquals(1, nodeB.getBean(CacheService.class).getMetrics().getHits());
+    }
+
+    @Test
+    void testHandsOffEntriesOnLeave() {
+        addAll(nodeA, 50);
+
+        nodeB.close();
+
+        CacheService cacheA = nodeA.getBean(CacheService.class);
+        assertEquals(Set.of(url(nodeA)), nodeA.getBean(CacheCluster.class).getNodes());
+        assertEquals(50, cacheA.getCache().size());
+        for (long id = 1; id <= 50; id++) {
+            assertEquals("test" + id, cacheA.get(id).getName());
+        }
+    }
+
+    @Test
+    void testReleaseDropsOnlyUnchangedHandedOffCopies() {
+        addAll(nodeA, 50);
+        CacheService cacheB = nodeB.getBean(CacheService.class);
+        List<Long> idsB = new ArrayList<>(cacheB.getCache().keySet());
+        Employee unchanged = cacheB.getCache().get(idsB.get(0));
+        Employee changed = new Employee();
+        changed.setId(idsB.get(1));
+        changed.setName("renamed");
+        changed.setSalary(1.0);
+
+        List<Long> kept = restClient.post()
+                .uri(url(nodeB) + "/cluster/release")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(List.of(unchanged, changed))
+                .retrieve()
+                .body(new ParameterizedTypeReference<List<Long>>() { });
+
+        assertEquals(List.of(changed.getId()), kept);
+        assertFalse(cacheB.getCache().containsKey(unchanged.getId()));
+        assertTrue(cacheB.getCache().containsKey(changed.getId()));
+    }
+
+    private void addAll(ConfigurableApplicationContext node, int count) {
+        List<Employee> employees = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            Employee employee = new Employee();
+            employee.setId(id);
+            employee.setName("test" + id);
+            employee.setSalary(1000.0 * id);
+            employees.add(employee);
+        }
+        restClient.post()
+                .uri(url(node) + "/cache/addAll")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(employees)
+                .retrieve()
+                .toBodilessEntity();
+    }
+
+    private static ConfigurableApplicationContext start(String... args) {
+        List<String> arguments = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--cache.cluster.enabled=true",
+                "--cache.max-size=1000",
+                "--spring.datasource.url=jdbc:h2:mem:cluster;DB_CLOSE_DELAY=-1",
+                "--spring.jmx.enabled=false"));
+        arguments.addAll(List.of(args));
+        return new SpringApplicationBuilder(CacheServiceApplication.class).run(arguments.toArray(String[]::new));
+    }
+
+    private static String url(ConfigurableApplicationContext node) {
+        return node.getBean(CacheCluster.class).getSelf();
+    }
+}
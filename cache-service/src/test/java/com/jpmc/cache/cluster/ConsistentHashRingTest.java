@@ -0,0 +1,81 @@
+/**
+ *
+ */
+package com.jpmc.cache.cluster;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test class for {@link ConsistentHashRing}.
+ * Verifies that keys are spread evenly over the nodes, and that joins and leaves only
+ * move the keys of the node that joined or left.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class ConsistentHashRingTest
+{
+    private static final int KEYS = 100_000;
+
+    private final ConsistentHashRing ring = new ConsistentHashRing(128,
+            List.of("http://node-a:8080", "http://node-b:8080", "http://node-c:8080", "http://node-d:8080"));
+
+    @Test
+    void testSpreadsKeysEvenly() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (long id = 0; id < KEYS; id++) {
+            counts.merge(ring.ownerOf(id), 1, Integer::sum);
+        }
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            // Each node owns a quarter of the keys, within 20%
+            assertTrue(Math.abs(count - KEYS / 4) < KEYS / 20, "Unbalanced share " + counts);
+        }
+    }
+
+    @Test
+    void testJoinOnlyMovesKeysToNewNode() {
+        ConsistentHashRing joined = ring.withNode("http://node-e:8080");
+        int moved = 0;
+        for (long id = 0; id < KEYS; id++) {
+            String before = ring.ownerOf(id);
+            String after = joined.ownerOf(id);
+            if (!before.equals(after)) {
+                assertEquals("http://node-e:8080", after);
+                moved++;
+            }
+        }
+        // About a fifth of the keys move to the fifth node
+        assertTrue(Math.abs(moved - KEYS / 5) < KEYS / 20, "Moved " + moved);
+    }
+
+    @Test
+    void testLeaveOnlyMovesKeysOfRemovedNode() {
+        ConsistentHashRing left = ring.withoutNode("http://node-b:8080");
+        for (long id = 0; id < KEYS; id++) {
+            String before = ring.ownerOf(id);
+            if (!before.equals("http://node-b:8080")) {
+                assertEquals(before, left.ownerOf(id));
+            }
+        }
+    }
+
+    @Test
+    void testSameNodesGiveSameRing() {
+        ConsistentHashRing reordered = new ConsistentHashRing(128,
+                List.of("http://node-d:8080", "http://node-b:8080", "http://node-a:8080"))
+                .withNode("http://node-c:8080");
+        for (long id = 0; id < 1000; id++) {
+            assertEquals(ring.ownerOf(id), reordered.ownerOf(id));
+        }
+        assertNull(new ConsistentHashRing(128, List.of()).ownerOf(1));
+    }
+}
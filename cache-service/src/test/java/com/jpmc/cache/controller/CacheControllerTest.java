@@ -6,9 +6,12 @@ package com.jpmc.cache.controller;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import java.text.MessageFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -21,11 +24,14 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.http.MediaType;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jpmc.cache.exception.DatabaseUnavailableException;
 import com.jpmc.cache.model.Employee;
 import com.jpmc.cache.service.CacheService;
+import com.jpmc.cache.service.RemoveAllJob;
 
 import jakarta.persistence.EntityNotFoundException;
 
@@ -85,6 +91,51 @@ class CacheControllerTest {
         verify(cacheService, times(1)).remove(any());
     }
     
+    @Test
+    void testAddEntities() throws Exception {
+        // Simulate a POST request to add several entities
+        mockMvc.perform(post("/cache/addAll")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(List.of(entry1))))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Entries added successfully."));
+        
+        // Verify that the addAll method in CacheService is called
+        verify(cacheService, times(1)).addAll(any());
+    }
+    
+    @Test
+    void testRemoveEntities() throws Exception {
+        // Simulate a DELETE request to remove several entities by ID
+        mockMvc.perform(delete("/cache/removeMany")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[1, 2]"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Entries removed from cache and DB successfully."));
+        
+        // Verify that the removeMany method in CacheService is called with the IDs
+        verify(cacheService, times(1)).removeMany(List.of(1L, 2L));
+    }
+    
+    @Test
+    void testGetEntities() throws Exception {
+        // Mock the behavior of the cacheService to return the entities found
+        when(cacheService.getMany(List.of(1L, 2L))).thenReturn(List.of(entry1));
+
+        // Simulate a POST request to fetch several entities
+        mockMvc.perform(post("/cache/getMany")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[1, 2]"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(entry1.getId()))
+                .andExpect(jsonPath("$[0].name").value(entry1.getName()));
+
+        // Verify that the getMany method in CacheService is called
+        verify(cacheService, times(1)).getMany(List.of(1L, 2L));
+    }
+    
     @Test
     void testRemoveAllEntity() throws Exception {
         // Simulate a DELETE request to remove all the entities
@@ -97,6 +148,25 @@ class CacheControllerTest {
         
     }
     
+    @Test
+    void testRemoveAllEntitiesAsync() throws Exception {
+        when(cacheService.startRemoveAll()).thenReturn(new RemoveAllJob(7L, 1000L));
+        when(cacheService.getRemoveAllJob(8L)).thenThrow(new EntityNotFoundException("Remove all job not found for the id - 8"));
+        
+        // The removal is accepted and its job returned
+        mockMvc.perform(delete("/cache/removeAll").param("async", "true"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/cache/removeAll/7"))
+                .andExpect(jsonPath("$.id").value(7))
+                .andExpect(jsonPath("$.state").value("RUNNING"))
+                .andExpect(jsonPath("$.rowsTotal").value(1000));
+        verify(cacheService, times(1)).startRemoveAll();
+        verify(cacheService, never()).removeAll();
+        
+        mockMvc.perform(get("/cache/removeAll/8"))
+                .andExpect(status().isNotFound());
+    }
+    
     @Test
     void testClearCache() throws Exception {
         // Simulate a DELETE request to clear the entities from cache
@@ -108,10 +178,32 @@ class CacheControllerTest {
         verify(cacheService, times(1)).clear();
     }
     
+    @Test
+    void testResizeCache() throws Exception {
+        // Simulate a POST request to resize the cache, evicting in the background
+        mockMvc.perform(post("/cache/resize").param("maxSize", "100"))
+                .andExpect(status().isAccepted())
+                .andExpect(content().string("Cache resize to 100 entries accepted."));
+        verify(cacheService, times(1)).resize(100);
+        
+        mockMvc.perform(post("/cache/resize").param("maxSize", "0"))
+                .andExpect(status().isBadRequest());
+        
+        when(cacheService.getStorageMode()).thenReturn(CacheService.StorageMode.OFF_HEAP);
+        mockMvc.perform(post("/cache/resize").param("maxSize", "100"))
+                .andExpect(status().isConflict());
+        verify(cacheService, times(1)).resize(any(Integer.class));
+        
+        // Without adaptive sizing, no curve is estimated
+        mockMvc.perform(get("/cache/missRatioCurve"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+    }
+    
     @Test
     void testGetEntity() throws Exception {
-        // Mock the behavior of the cacheService to return an entity
-        when(cacheService.get(1L)).thenReturn(entry1);
+        // Mock the behavior of the cacheService to return the encoded entity
+        when(cacheService.getJson(1L)).thenReturn(new ObjectMapper().writeValueAsBytes(entry1));
 
         // Simulate a GET request to fetch the entity
         mockMvc.perform(get("/cache/get/{id}", 1L))
@@ -121,14 +213,46 @@ class CacheControllerTest {
                 .andExpect(jsonPath("$.name").value(entry1.getName()))
                 .andExpect(jsonPath("$.salary").value(entry1.getSalary()));
 
-        // Verify that the get method in CacheService is called
-        verify(cacheService, times(1)).get(1L);
+        // Verify that the getJson method in CacheService is called
+        verify(cacheService, times(1)).getJson(1L);
     }
     
+    @Test
+    void testGetEntityAsync() throws Exception {
+        CompletableFuture<Employee> load = new CompletableFuture<>();
+        when(cacheService.getAsync(1L)).thenReturn(load);
+
+        // The request is released until the future completes
+        MvcResult result = mockMvc.perform(get("/cache/async/get/{id}", 1L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        load.complete(entry1);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(entry1.getId()))
+                .andExpect(jsonPath("$.name").value(entry1.getName()));
+    }
+
+    @Test
+    void testGetEntityAsyncNotFound() throws Exception {
+        when(cacheService.getAsync(1L)).thenReturn(CompletableFuture.supplyAsync(() -> {
+            throw new EntityNotFoundException(MessageFormat.format(ENTITY_NOT_FOUND, 1));
+        }));
+
+        MvcResult result = mockMvc.perform(get("/cache/async/get/{id}", 1L))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Entry not found for the id - 1"));
+    }
+
     @Test
     void testGetEntityNotFound() throws Exception {
         // Mock the behavior of the cacheService to throw exception
-        when(cacheService.get(1L))
+        when(cacheService.getJson(1L))
             .thenThrow(new EntityNotFoundException(MessageFormat.format(ENTITY_NOT_FOUND, 1)));
         
         // Simulate a GET request to fetch the entity
@@ -139,6 +263,19 @@ class CacheControllerTest {
                 .andExpect(jsonPath("$.message").value("Entry not found for the id - 1"));
     }
     
+    @Test
+    void testGetEntityDatabaseUnavailable() throws Exception {
+        when(cacheService.getJson(1L))
+            .thenThrow(new DatabaseUnavailableException("Database circuit breaker is open", 2500));
+
+        // Refused DB calls are answered with a 503, rounding the retry delay up to seconds
+        mockMvc.perform(get("/cache/get/{id}", 1L))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.error").value("Service Unavailable"))
+                .andExpect(jsonPath("$.message").value("Database circuit breaker is open"));
+    }
+
     @Test
     void testInternalError() throws Exception {
         
@@ -0,0 +1,142 @@
+/**
+ *
+ */
+package com.jpmc.cache.datasource;
+
+import static com.jpmc.cache.TestEmployees.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.jpmc.cache.repository.EmployeeRepository;
+import com.jpmc.cache.service.CacheService;
+import com.jpmc.cache.service.WriteBehindQueue;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityNotFoundException;
+
+/**
+ * Test class for the {@link ReadWriteDataSourceConfig} and {@link RecentWrites}, with two
+ * in-memory H2 databases standing for the primary database and a read replica that has
+ * not caught up: the replica is given rows of its own, and never receives the writes.
+ * Verifies that the repository reads from the replica and writes to the primary
+ * database, and that rows written back or deleted by the cache are read from the
+ * primary database afterwards.
+ *
+ * @author r.pandiarajan
+ *
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "cache.datasource.read.url=" + ReadWriteDataSourceConfigTest.REPLICA_URL,
+        "cache.datasource.write.max-pool-size=2",
+        "cache.datasource.read.max-pool-size=3",
+        "cache.datasource.replica-lag-ms=600000" })
+@DirtiesContext
+class ReadWriteDataSourceConfigTest
+{
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    EmployeeRepository employeeRepository;
+
+    @Autowired
+    CacheService cacheService;
+
+    @Autowired
+    WriteBehindQueue writeBehindQueue;
+
+    @Autowired
+    RecentWrites recentWrites;
+
+    @Autowired
+    HikariDataSource writeDataSource;
+
+    @Autowired
+    HikariDataSource readDataSource;
+
+    @Autowired
+    MeterRegistry registry;
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    public void setup() {
+        primary = new JdbcTemplate(writeDataSource);
+        replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+        replica.execute("CREATE TABLE IF NOT EXISTS employees (id BIGINT PRIMARY KEY, name VARCHAR(255), salary DOUBLE)");
+        replica.update("DELETE FROM employees");
+        primary.update("DELETE FROM employees");
+        cacheService.clear();
+    }
+
+    @Test
+    void testRepositoryReadsReplicaAndWritesPrimary() {
+        assertEquals(ReadWriteDataSourceConfig.WRITE_POOL, writeDataSource.getPoolName());
+        assertEquals(2, writeDataSource.getMaximumPoolSize());
+        assertEquals(ReadWriteDataSourceConfig.READ_POOL, readDataSource.getPoolName());
+        assertEquals(3, readDataSource.getMaximumPoolSize());
+        assertTrue(readDataSource.isReadOnly());
+        assertEquals(2000, writeDataSource.getConnectionTimeout());
+        assertEquals(2000, readDataSource.getConnectionTimeout());
+
+        replica.update("INSERT INTO employees VALUES (1, 'replica1', 1000)");
+        employeeRepository.save(employee(1L, "primary1"));
+
+        assertEquals("primary1", primary.queryForObject("SELECT name FROM employees WHERE id = 1", String.class));
+        assertEquals("replica1", employeeRepository.findById(1L).orElseThrow().getName());
+
+        // Only rows recorded as written are read from the primary DB
+        recentWrites.record(List.of(1L));
+        assertEquals("primary1", recentWrites.read(List.of(1L), () -> employeeRepository.findById(1L))
+                .orElseThrow().getName());
+        assertEquals("replica1", recentWrites.read(List.of(2L), () -> employeeRepository.findById(1L))
+                .orElseThrow().getName());
+    }
+
+    @Test
+    void testCacheReadsItsOwnWrites() throws InterruptedException {
+        // A miss loads the replica's row, as nothing was written to it
+        replica.update("INSERT INTO employees VALUES (11, 'replica11', 1000), (12, 'replica12', 1000)");
+        assertEquals("replica11", cacheService.get(11L).getName());
+        assertFalse(recentWrites.isRecent(11L));
+
+        // The replica still has the deleted row
+        cacheService.remove(employee(12L, "replica12"));
+        assertThrows(EntityNotFoundException.class, () -> cacheService.get(12L));
+
+        // And not the row written back
+        double primaryReads = registry.get("cache.db.primary-reads").counter().count();
+        for (long id = 13; id <= 15; id++) {
+            cacheService.add(employee(id, "primary" + id));
+        }
+        awaitWriteBack();
+        assertTrue(recentWrites.isRecent(13L));
+        cacheService.clear();
+        assertEquals("primary13", cacheService.get(13L).getName());
+        assertTrue(registry.get("cache.db.primary-reads").counter().count() > primaryReads);
+    }
+
+    private void awaitWriteBack() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (writeBehindQueue.size() > 0 && System.nanoTime() < deadline) {
+            writeBehindQueue.flush();
+            Thread.sleep(5);
+        }
+        assertEquals(0, writeBehindQueue.size());
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ *
+ */
+package com.jpmc.cache.datasource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.jpmc.cache.service.CacheMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit test class for {@link RecentWrites}, on a manual clock, with a replica lag of
+ * 1 second and at most 2 IDs tracked. Reads sent to the primary database are told
+ * apart by the transaction they run in, on a private in-memory H2 database.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class RecentWritesTest
+{
+    private static final String REPLICA_URL = "jdbc:h2:mem:replica";
+
+    private final AtomicLong now = new AtomicLong();
+    private SimpleMeterRegistry registry;
+    private RecentWrites recentWrites;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        recentWrites = recentWrites(REPLICA_URL);
+    }
+
+    @Test
+    void testWrittenRowsAreReadFromPrimaryWithinLag() {
+        recentWrites.record(List.of(1L, 2L));
+        assertEquals("primary", recentWrites.read(List.of(3L, 2L), RecentWritesTest::source));
+        assertEquals("replica", recentWrites.read(List.of(3L), RecentWritesTest::source));
+        assertEquals("primary", recentWrites.query(RecentWritesTest::source));
+
+        now.set(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertFalse(recentWrites.isRecent(1L));
+        assertEquals("replica", recentWrites.read(List.of(1L, 2L), RecentWritesTest::source));
+        assertEquals("replica", recentWrites.query(RecentWritesTest::source));
+        assertEquals(2.0, registry.get("cache.db.primary-reads").counter().count());
+    }
+
+    @Test
+    void testTooManyWritesSendEveryReadToPrimary() {
+        recentWrites.record(List.of(1L, 2L));
+        now.set(TimeUnit.MILLISECONDS.toNanos(500));
+        recentWrites.record(List.of(3L));
+        assertTrue(recentWrites.isRecent(4L));
+
+        now.set(TimeUnit.MILLISECONDS.toNanos(1499));
+        assertEquals("primary", recentWrites.read(List.of(4L), RecentWritesTest::source));
+        now.set(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertFalse(recentWrites.isRecent(3L));
+
+        // Without a replica, nothing is tracked
+        recentWrites = recentWrites("");
+        recentWrites.record(List.of(1L));
+        recentWrites.recordAll();
+        assertFalse(recentWrites.isRecent(1L));
+        assertEquals("replica", recentWrites.readPrimary(RecentWritesTest::source));
+    }
+
+    private RecentWrites recentWrites(String readUrl) {
+        RecentWrites recentWrites = new RecentWrites(new DataSourceTransactionManager(
+                new DriverManagerDataSource("jdbc:h2:mem:recent-writes")), new CacheMetrics(registry), readUrl, 1000, 2);
+        recentWrites.ticker = now::get;
+        return recentWrites;
+    }
+
+    private static String source() {
+        return TransactionSynchronizationManager.isActualTransactionActive() ? "primary" : "replica";
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ *
+ */
+package com.jpmc.cache.invalidation;
+
+import static com.jpmc.cache.TestEmployees.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.jpmc.cache.repository.EmployeeRepository;
+import com.jpmc.cache.service.CacheMetrics;
+import com.jpmc.cache.service.CacheService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit test class for {@link InvalidationBus}.
+ * Verifies that replicas connected by an {@link InProcessInvalidationTransport} replace
+ * and drop their copies as another replica changes them, and that changes of the same
+ * ID are coalesced and sent in bounded batches.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class InvalidationBusTest
+{
+    private final List<InvalidationBus> buses = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        buses.forEach(InvalidationBus::stop);
+    }
+
+    @Test
+    void testReplicasReplaceAndDropTheirCopies() {
+        CacheService replicaA = cacheService();
+        CacheService replicaB = cacheService();
+        start(replicaA, new InProcessInvalidationTransport("test-replicas"), 500, 1);
+        start(replicaB, new InProcessInvalidationTransport("test-replicas"), 500, 1);
+
+        replicaA.add(employee(1L, "test1"));
+        replicaB.add(employee(1L, "test1"));
+        replicaB.add(employee(2L, "test2"));
+
+        // B caches ID 1, so it takes the new value; A does not cache ID 3, so it ignores it
+        replicaA.add(employee(1L, "renamed1"));
+        replicaB.add(employee(3L, "test3"));
+        awaitUntil(() -> "renamed1".equals(replicaB.getCache().get(1L).getName()));
+        assertFalse(replicaA.getCache().containsKey(3L));
+
+        replicaA.removeMany(List.of(2L));
+        awaitUntil(() -> !replicaB.getCache().containsKey(2L));
+
+        replicaB.removeAll();
+        awaitUntil(() -> replicaA.getCache().size() == 0);
+    }
+
+    @Test
+    void testCoalescesChangesOfTheSameId() {
+        List<InvalidationBatch> sent = new CopyOnWriteArrayList<>();
+        CacheService replica = cacheService();
+        InvalidationBus bus = start(replica, recordingTransport(sent), 4, 60_000);
+
+        for (int i = 0; i < 100; i++) {
+            replica.add(employee(1L, "test" + i));
+        }
+        replica.add(employee(2L, "test2"));
+        replica.remove(employee(2L, "test2"));
+        bus.flush();
+
+        assertEquals(1, sent.size());
+        List<Invalidation> invalidations = sent.get(0).invalidations();
+        assertEquals(2, invalidations.size());
+        assertEquals("test99", invalidations.get(0).employee().getName());
+        assertEquals(Invalidation.remove(2L), invalidations.get(1));
+        assertEquals(bus.getOrigin(), sent.get(0).origin());
+    }
+
+    @Test
+    void testSendsClearFirstAndSplitsBatches() {
+        List<InvalidationBatch> sent = new CopyOnWriteArrayList<>();
+        CacheService replica = cacheService();
+        InvalidationBus bus = start(replica, recordingTransport(sent), 4, 60_000);
+
+        replica.add(employee(1L, "test1"));
+        replica.removeAll();
+        for (long id = 2; id <= 7; id++) {
+            replica.add(employee(id, "test" + id));
+        }
+        bus.flush();
+
+        // The add before the clear is dropped; a batch is sent as soon as it is full
+        List<Invalidation> invalidations = new ArrayList<>();
+        for (InvalidationBatch batch : sent) {
+            assertTrue(batch.invalidations().size() <= 4);
+            invalidations.addAll(batch.invalidations());
+        }
+        assertEquals(7, invalidations.size());
+        assertEquals(Invalidation.clear(), invalidations.get(0));
+        for (int i = 1; i < 7; i++) {
+            assertEquals(i + 1L, invalidations.get(i).id());
+        }
+    }
+
+    @Test
+    void testIgnoresOwnBatches() {
+        CacheService replica = cacheService();
+        InvalidationBus bus = start(replica, recordingTransport(new ArrayList<>()), 4, 60_000);
+        replica.add(employee(1L, "test1"));
+
+        bus.receive(new InvalidationBatch(bus.getOrigin(), List.of(Invalidation.remove(1L))));
+        assertTrue(replica.getCache().containsKey(1L));
+
+        bus.receive(new InvalidationBatch("other", List.of(Invalidation.remove(1L))));
+        assertFalse(replica.getCache().containsKey(1L));
+    }
+
+    private InvalidationBus start(CacheService replica, InvalidationTransport transport, int maxBatchSize,
+            long flushIntervalMillis) {
+        InvalidationBus bus = new InvalidationBus(replica, transport, new CacheMetrics(new SimpleMeterRegistry()),
+                maxBatchSize, flushIntervalMillis);
+        bus.start();
+        buses.add(bus);
+        return bus;
+    }
+
+    private static InvalidationTransport recordingTransport(List<InvalidationBatch> sent) {
+        return new InvalidationTransport() {
+            @Override
+            public void open(Consumer<InvalidationBatch> receiver) {
+            }
+
+            @Override
+            public void send(InvalidationBatch batch) {
+                sent.add(batch);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static CacheService cacheService() {
+        CacheService service = new CacheService();
+        ReflectionTestUtils.setField(service, "employeeRepository", mock(EmployeeRepository.class));
+        service.setMaxCacheSize(10);
+        return service;
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
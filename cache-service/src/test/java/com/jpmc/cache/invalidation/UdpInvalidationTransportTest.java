@@ -0,0 +1,93 @@
+/**
+ *
+ */
+package com.jpmc.cache.invalidation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jpmc.cache.model.Employee;
+
+/**
+ * Unit test class for {@link UdpInvalidationTransport}.
+ * Sends batches between two transports over the loopback interface, and verifies
+ * that they are decoded intact and that batches larger than a datagram are split.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class UdpInvalidationTransportTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BlockingQueue<InvalidationBatch> received = new LinkedBlockingQueue<>();
+
+    private UdpInvalidationTransport receiver;
+    private UdpInvalidationTransport sender;
+
+    @AfterEach
+    public void tearDown() {
+        sender.close();
+        receiver.close();
+    }
+
+    @Test
+    void testSendsBatchesOverLoopback() throws InterruptedException {
+        open();
+        Employee employee = new Employee();
+        employee.setId(1L);
+        employee.setName("test1");
+        employee.setSalary(1000.0);
+
+        sender.send(new InvalidationBatch("replica-a", List.of(Invalidation.put(employee), Invalidation.remove(2L),
+                Invalidation.clear())));
+
+        InvalidationBatch batch = received.poll(5, TimeUnit.SECONDS);
+        assertEquals("replica-a", batch.origin());
+        assertEquals(3, batch.invalidations().size());
+        Invalidation put = batch.invalidations().get(0);
+        assertEquals(Invalidation.Type.PUT, put.type());
+        assertEquals(1L, put.id());
+        assertEquals("test1", put.employee().getName());
+        assertEquals(1000.0, put.employee().getSalary());
+        assertEquals(Invalidation.remove(2L), batch.invalidations().get(1));
+        assertEquals(Invalidation.clear(), batch.invalidations().get(2));
+    }
+
+    @Test
+    void testSplitsBatchesLargerThanDatagram() throws InterruptedException {
+        open();
+        List<Invalidation> invalidations = new ArrayList<>();
+        for (long id = 1; id <= 1500; id++) {
+            Employee employee = new Employee();
+            employee.setId(id);
+            employee.setName("employee with a long enough name " + id);
+            employee.setSalary(1000.0 * id);
+            invalidations.add(Invalidation.put(employee));
+        }
+
+        sender.send(new InvalidationBatch("replica-a", invalidations));
+
+        List<Long> ids = new ArrayList<>();
+        while (ids.size() < invalidations.size()) {
+            InvalidationBatch batch = received.poll(5, TimeUnit.SECONDS);
+            batch.invalidations().forEach(invalidation -> ids.add(invalidation.id()));
+        }
+        assertEquals(invalidations.stream().map(Invalidation::id).toList(), ids);
+    }
+
+    private void open() {
+        receiver = new UdpInvalidationTransport(objectMapper, 0, List.of());
+        receiver.open(received::add);
+        sender = new UdpInvalidationTransport(objectMapper, 0, List.of("127.0.0.1:" + receiver.getLocalPort()));
+        sender.open(batch -> { });
+    }
+}
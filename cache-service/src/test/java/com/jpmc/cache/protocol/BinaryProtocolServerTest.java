@@ -0,0 +1,172 @@
+/**
+ *
+ */
+package com.jpmc.cache.protocol;
+
+import static com.jpmc.cache.TestEmployees.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jpmc.cache.cluster.CacheCluster;
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.repository.EmployeeRepository;
+import com.jpmc.cache.service.CacheService;
+
+/**
+ * Unit test class for {@link BinaryProtocolServer} and {@link BinaryCacheClient}.
+ * Runs the server on a free port in front of a {@link CacheService} and verifies
+ * get, set, delete and multi-get, pipelined requests answered in order, and the
+ * status of requests the server cannot execute or that are for IDs owned by another
+ * member of a cluster.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class BinaryProtocolServerTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private EmployeeRepository employeeRepository;
+    private CacheService cacheService;
+    private BinaryProtocolServer server;
+    private BinaryCacheClient client;
+
+    @BeforeEach
+    public void setUp() {
+        employeeRepository = mock(EmployeeRepository.class);
+        when(employeeRepository.findById(anyLong())).thenReturn(Optional.empty());
+        cacheService = new CacheService();
+        ReflectionTestUtils.setField(cacheService, "employeeRepository", employeeRepository);
+        cacheService.setMaxCacheSize(2000);
+        server = new BinaryProtocolServer(cacheService, objectMapper, "127.0.0.1", 0, 1024 * 1024);
+        server.start();
+        client = new BinaryCacheClient("localhost", server.getPort(), objectMapper);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        client.close();
+        server.stop();
+    }
+
+    @Test
+    void testGetSetAndDelete() {
+        assertNull(client.get(1L));
+
+        client.set(employee(1L));
+        Employee employee = client.get(1L);
+        assertEquals(1L, employee.getId());
+        assertEquals("test1", employee.getName());
+        assertEquals(1000.0, employee.getSalary());
+
+        client.delete(1L);
+        assertFalse(cacheService.getCache().containsKey(1L));
+        verify(employeeRepository).deleteAllByIdInBatch(List.of(1L));
+    }
+
+    @Test
+    void testMultiGetLeavesOutMissingIds() {
+        when(employeeRepository.findAllById(any())).thenReturn(List.of());
+        client.set(employee(1L));
+        client.set(employee(3L));
+
+        List<Employee> employees = client.getMany(List.of(3L, 2L, 1L));
+
+        assertEquals(List.of(3L, 1L), employees.stream().map(Employee::getId).toList());
+    }
+
+    @Test
+    void testAnswersPipelinedRequestsInOrder() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 1500; id++) {
+            if (id % 3 != 0) {
+                cacheService.add(employee(id));
+            }
+            ids.add(id);
+        }
+
+        List<Employee> employees = client.getPipelined(ids);
+
+        assertEquals(ids.size(), employees.size());
+        for (int i = 0; i < ids.size(); i++) {
+            long id = ids.get(i);
+            if (id % 3 == 0) {
+                assertNull(employees.get(i));
+            }
+            else {
+                assertEquals(id, employees.get(i).getId());
+            }
+        }
+    }
+
+    @Test
+    void testAnswersBadRequestsWithStatus() throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.getPort()))) {
+            ByteBuffer requests = ByteBuffer.allocate(3 * BinaryProtocol.HEADER_SIZE + 2);
+            BinaryProtocol.putHeader(requests, BinaryProtocol.REQUEST_MAGIC, (byte) 0x7F, (short) 0, 1, 0);
+            BinaryProtocol.putHeader(requests, BinaryProtocol.REQUEST_MAGIC, BinaryProtocol.GET, (short) 0, 2, 2);
+            requests.putShort((short) 1);
+            BinaryProtocol.putHeader(requests, BinaryProtocol.REQUEST_MAGIC, BinaryProtocol.NOOP, (short) 0, 3, 0);
+            channel.write(requests.flip());
+
+            assertEquals(BinaryProtocol.STATUS_UNKNOWN_COMMAND, readStatus(channel, 1));
+            assertEquals(BinaryProtocol.STATUS_INVALID_ARGUMENTS, readStatus(channel, 2));
+            assertEquals(BinaryProtocol.STATUS_OK, readStatus(channel, 3));
+        }
+    }
+
+    @Test
+    void testRefusesIdsOwnedByOtherMembers() {
+        CacheCluster cacheCluster = mock(CacheCluster.class);
+        when(cacheCluster.isLocal(anyLong())).thenAnswer(invocation -> invocation.<Long> getArgument(0) % 2 == 1);
+        when(cacheCluster.ownerOf(anyLong())).thenReturn("http://node-b:8080");
+        server.cacheCluster = cacheCluster;
+
+        client.set(employee(1L));
+        assertEquals(1L, client.get(1L).getId());
+        IllegalStateException refused = assertThrows(IllegalStateException.class, () -> client.get(2L));
+        assertTrue(refused.getMessage().contains("status " + BinaryProtocol.STATUS_NOT_OWNED + ": http://node-b:8080"));
+        assertThrows(IllegalStateException.class, () -> client.set(employee(4L)));
+        assertThrows(IllegalStateException.class, () -> client.getMany(List.of(1L, 2L)));
+        assertFalse(cacheService.getCache().containsKey(4L));
+    }
+
+    /**
+     * Reads a response and returns its status, after checking its opaque value.
+     */
+    private static short readStatus(SocketChannel channel, int opaque) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BinaryProtocol.HEADER_SIZE);
+        while (header.hasRemaining()) {
+            channel.read(header);
+        }
+        header.flip();
+        assertEquals(BinaryProtocol.RESPONSE_MAGIC, header.get(0));
+        assertEquals(opaque, header.getInt(4));
+        ByteBuffer body = ByteBuffer.allocate(header.getInt(8));
+        while (body.hasRemaining()) {
+            channel.read(body);
+        }
+        return header.getShort(2);
+    }
+}
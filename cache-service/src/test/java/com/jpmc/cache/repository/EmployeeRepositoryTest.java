@@ -0,0 +1,38 @@
+/**
+ *
+ */
+package com.jpmc.cache.repository;
+
+import static com.jpmc.cache.TestEmployees.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+/**
+ * Test class for the queries of {@link EmployeeRepository}, against an embedded H2
+ * database. Verifies that IDs are paged in ID order from a given ID.
+ *
+ * @author r.pandiarajan
+ *
+ */
+@DataJpaTest
+class EmployeeRepositoryTest
+{
+    @Autowired
+    EmployeeRepository employeeRepository;
+
+    @Test
+    void testFindIdsFromPagesIdsInOrder() {
+        employeeRepository.saveAll(List.of(employee(5L), employee(2L), employee(9L), employee(7L)));
+
+        assertEquals(List.of(2L, 5L), employeeRepository.findIdsFrom(Long.MIN_VALUE, Limit.of(2)));
+        assertEquals(List.of(7L, 9L), employeeRepository.findIdsFrom(6L, Limit.of(2)));
+        assertEquals(List.of(9L), employeeRepository.findIdsFrom(9L, Limit.of(2)));
+        assertEquals(List.of(), employeeRepository.findIdsFrom(10L, Limit.of(2)));
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ *
+ */
+package com.jpmc.cache.repository;
+
+import static com.jpmc.cache.TestEmployees.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Unit test class for {@link JdbcEmployeeWriter}, against a private in-memory H2
+ * database. Uses batches of 3 statements to verify that rows are inserted or updated
+ * across several batches, that null columns are written, and that rows are deleted
+ * by ID or all at once.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class JdbcEmployeeWriterTest
+{
+    private JdbcTemplate jdbcTemplate;
+    private JdbcEmployeeWriter writer;
+
+    @BeforeEach
+    public void setup() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:writer-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1"));
+        jdbcTemplate.execute("CREATE TABLE employees (id BIGINT PRIMARY KEY, name VARCHAR(255), salary DOUBLE)");
+        writer = new JdbcEmployeeWriter(jdbcTemplate, 3);
+    }
+
+    @Test
+    void testUpsertInsertsNewRowsAndUpdatesExistingOnes() {
+        writer.upsertAll(LongStream.rangeClosed(1, 7).mapToObj(id -> employee(id, "test" + id, 1000.0 * id)).toList());
+        writer.upsertAll(Set.of(employee(2L, "renamed2", 2500.0), employee(8L, "test8", 8000.0)));
+        writer.upsert(employee(3L, null, null));
+        writer.upsertAll(List.of());
+
+        assertEquals(8, count());
+        Map<String, Object> renamed = row(2L);
+        assertEquals("renamed2", renamed.get("NAME"));
+        assertEquals(2500.0, renamed.get("SALARY"));
+        assertEquals("test7", row(7L).get("NAME"));
+        assertEquals("test8", row(8L).get("NAME"));
+        assertNull(row(3L).get("NAME"));
+        assertNull(row(3L).get("SALARY"));
+    }
+
+    @Test
+    void testDeletesRowsByIdOrAll() {
+        writer.upsertAll(LongStream.rangeClosed(1, 7).mapToObj(id -> employee(id, "test" + id, 1000.0)).toList());
+
+        // IDs without a row are ignored
+        writer.deleteAllById(List.of(1L, 2L, 3L, 4L, 9L));
+        assertEquals(List.of(5L, 6L, 7L), jdbcTemplate.queryForList("SELECT id FROM employees ORDER BY id", Long.class));
+
+        writer.deleteAll();
+        assertEquals(0, count());
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM employees", Integer.class);
+    }
+
+    private Map<String, Object> row(Long id) {
+        return jdbcTemplate.queryForMap("SELECT name, salary FROM employees WHERE id = ?", id);
+    }
+}
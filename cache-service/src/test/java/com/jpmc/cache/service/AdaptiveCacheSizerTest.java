@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.jpmc.cache.model.Employee;
+
+/**
+ * Unit test class for the sizing decisions of {@link AdaptiveCacheSizer}, from given
+ * heap usages and GC time ratios and a {@link MissRatioCurve} fed with cyclic reads
+ * over 1500 keys: growing from 1000 to 1250 entries gains nothing, while growing
+ * from 1250 to 1562 entries hits every read.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class AdaptiveCacheSizerTest
+{
+    private CacheService cacheService;
+    private CacheStore<Long, Employee> cache;
+    private MissRatioCurve curve;
+    private AdaptiveCacheSizer sizer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        cacheService = mock(CacheService.class);
+        cache = mock(CacheStore.class);
+        when(cacheService.getCache()).thenReturn(cache);
+        curve = new MissRatioCurve(1.0, 4096, Long.MAX_VALUE);
+        sizer = new AdaptiveCacheSizer(cacheService, curve, 500, 2000, 1000, 0.8, 0.6, 0.1, 0.75, 1.25, 0.01, 1000);
+    }
+
+    @Test
+    void testShrinksUnderHeapOrGcPressureDownToMinimum() {
+        when(cacheService.getTargetCacheSize()).thenReturn(1000);
+        when(cache.size()).thenReturn(1000);
+
+        assertEquals(750, sizer.adjust(0.9, 0.0));
+        verify(cacheService).resize(750);
+        assertEquals(750, sizer.adjust(0.5, 0.2));
+
+        // Shrinks from the entries held, and never below the minimum
+        when(cache.size()).thenReturn(600);
+        assertEquals(500, sizer.adjust(0.9, 0.0));
+        verify(cacheService).resize(500);
+    }
+
+    @Test
+    void testGrowsOnlyWhileMissRatioDrops() {
+        when(cacheService.getTargetCacheSize()).thenReturn(1000);
+        assertEquals(1000, sizer.adjust(0.1, 0.0));
+
+        cycle(1500, 4);
+        assertEquals(1000, sizer.adjust(0.1, 0.0));
+        verify(cacheService, never()).resize(anyInt());
+
+        when(cacheService.getTargetCacheSize()).thenReturn(1250);
+        assertEquals(1562, sizer.adjust(0.1, 0.0));
+        verify(cacheService).resize(1562);
+
+        // Not between the watermarks, nor above the maximum
+        assertEquals(1250, sizer.adjust(0.7, 0.0));
+        when(cacheService.getTargetCacheSize()).thenReturn(2000);
+        assertEquals(2000, sizer.adjust(0.1, 0.0));
+    }
+
+    private void cycle(int keys, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (long id = 0; id < keys; id++) {
+                curve.record(id);
+            }
+        }
+    }
+}
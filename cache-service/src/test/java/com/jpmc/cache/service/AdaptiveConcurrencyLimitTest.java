@@ -0,0 +1,61 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test class for {@link AdaptiveConcurrencyLimit}, fed with the latencies of
+ * calls made at the limit: steady latencies raise it to its maximum, a tenfold
+ * slowdown brings it down, and the limit recovers once latencies are back to normal.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class AdaptiveConcurrencyLimitTest
+{
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void testLimitFollowsLatency() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 2, 50, 1.5, 0.2, 100);
+
+        samples(limit, FAST, 100);
+        assertEquals(50, limit.getLimit());
+
+        samples(limit, SLOW, 20);
+        assertTrue(limit.getLimit() < 20, "limit " + limit.getLimit());
+
+        samples(limit, FAST, 50);
+        assertEquals(50, limit.getLimit());
+    }
+
+    @Test
+    void testCallsWellBelowLimitDoNotChangeIt() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 8, 50, 1.5, 0.2, 100);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(i % 2 == 0 ? FAST : SLOW, 4);
+        }
+        assertEquals(10, limit.getLimit());
+
+        // Never below the minimum
+        samples(limit, SLOW * 100, 10);
+        assertEquals(8, limit.getLimit());
+
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(10, 5, 4, 1.5, 0.2, 100));
+    }
+
+    private static void samples(AdaptiveConcurrencyLimit limit, long latencyNanos, int count) {
+        for (int i = 0; i < count; i++) {
+            limit.onSample(latencyNanos, limit.getLimit());
+        }
+    }
+}
@@ -4,28 +4,59 @@
 package com.jpmc.cache.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.jpmc.cache.exception.DatabaseUnavailableException;
 import com.jpmc.cache.model.Employee;
 import com.jpmc.cache.repository.EmployeeRepository;
+import com.jpmc.cache.repository.JdbcEmployeeWriter;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
 
 /**
@@ -175,9 +206,10 @@ class CacheServiceTest
         // Remove all entities from cache and database
         cacheService.removeAll();
 
-        // Verify cache is cleared and entities are deleted from the database
+        // Verify cache is cleared and entities are deleted from the database by a single statement
         assertTrue(cacheService.getCache().isEmpty());
-        verify(employeeRepository, times(1)).deleteAll();
+        verify(employeeRepository, times(1)).deleteAllInBatch();
+        verify(employeeRepository, never()).deleteAll();
     }
     
     @Test
@@ -187,13 +219,705 @@ class CacheServiceTest
         cacheService.add(entry2);
 
         // Clear the cache
+        CacheStore<Long, Employee> cleared = cacheService.getCache();
         cacheService.clear();
 
         // Verify that the cache is cleared but database is unaffected
         assertTrue(cacheService.getCache().isEmpty());
+        // The store was swapped for an empty one, leaving readers of the old one undisturbed
+        assertNotSame(cleared, cacheService.getCache());
+        assertEquals(2, cleared.size());
         verify(employeeRepository, never()).deleteById(anyLong());
     }
+    
+    @Test
+    void testRemoveAllJobDeletesRowsInChunksExceptThoseWrittenMeanwhile() throws Exception {
+        ReflectionTestUtils.setField(cacheService, "removeAllChunkSize", 2);
+        CountDownLatch written = new CountDownLatch(1);
+        when(employeeRepository.count()).thenReturn(3L);
+        when(employeeRepository.findIdsFrom(eq(Long.MIN_VALUE), any())).thenAnswer(invocation -> {
+            assertTrue(written.await(5, TimeUnit.SECONDS));
+            return List.of(1L, 2L);
+        });
+        when(employeeRepository.findIdsFrom(eq(3L), any())).thenReturn(List.of(3L));
+        when(employeeRepository.findById(1L)).thenReturn(Optional.of(entry1));
+        when(employeeRepository.findById(2L)).thenReturn(Optional.of(entry2));
+        
+        cacheService.add(entry1);
+        RemoveAllJob job = cacheService.startRemoveAll();
+        assertTrue(cacheService.getCache().isEmpty());
+        assertSame(job, cacheService.startRemoveAll());
+        
+        // entity2 is written back while the job runs, entity1 is no longer visible
+        cacheService.bulkDeleteFence.write(List.of(2L), () -> { });
+        assertThrows(EntityNotFoundException.class, () -> cacheService.get(1L));
+        assertEquals(entry2, cacheService.get(2L));
+        written.countDown();
+        
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (job.getState() == RemoveAllJob.State.RUNNING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(RemoveAllJob.State.COMPLETED, job.getState());
+        assertEquals(1.0, job.getProgress());
+        assertEquals(2, job.getRowsDeleted());
+        verify(employeeRepository, times(1)).deleteAllByIdInBatch(List.of(1L));
+        verify(employeeRepository, times(1)).deleteAllByIdInBatch(List.of(3L));
+        assertFalse(cacheService.bulkDeleteFence.isActive());
+        assertSame(job, cacheService.getRemoveAllJob(job.getId()));
+        assertThrows(EntityNotFoundException.class, () -> cacheService.getRemoveAllJob(job.getId() + 1));
+    }
+    
+    @Test
+    void testEvictedEntryPendingWriteBehindIsServedWithoutDatabase() {
+        // Queue evictions instead of saving them inline
+        cacheService.writeBehindQueue = new WriteBehindQueue(employeeRepository, 100, 100, 60_000, 10);
+        
+        Employee entry3 = new Employee();
+        entry3.setId(3L);
+        
+        // Add three entries so that entity1 is evicted to the write-behind queue
+        cacheService.add(entry1);
+        cacheService.add(entry2);
+        cacheService.add(entry3);
+        assertNull(cacheService.getCache().get(entry1.getId()));
+        verify(employeeRepository, never()).save(any());
+        
+        // The pending entry is still visible and is put back in the cache
+        assertEquals(entry1, cacheService.get(entry1.getId()));
+        verify(employeeRepository, never()).findById(anyLong());
+        assertNull(cacheService.writeBehindQueue.get(entry1.getId()));
+        assertEquals(entry2, cacheService.writeBehindQueue.get(entry2.getId()));
+    }
+    
+    @Test
+    void testConcurrentMissesForSameIdShareOneDatabaseLoad() throws Exception {
+        int threads = 16;
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        
+        // Hold the first DB load until every caller has missed the cache
+        when(employeeRepository.findById(entry1.getId())).thenAnswer(invocation -> {
+            loadStarted.countDown();
+            releaseLoad.await();
+            return Optional.of(entry1);
+        });
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Employee>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> cacheService.get(entry1.getId())));
+        }
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        releaseLoad.countDown();
+        
+        // Every caller gets the entity from a single DB query
+        for (Future<Employee> future : futures) {
+            assertEquals(entry1, future.get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        verify(employeeRepository, times(1)).findById(entry1.getId());
+    }
+    
+    @Test
+    void testMissingEntityIsNegativelyCached() {
+        cacheService.negativeCache = new NegativeCache(60_000, 100);
+        when(employeeRepository.findById(1L)).thenReturn(Optional.empty());
+        
+        // Repeated lookups of a missing ID only query the DB once
+        assertThrows(EntityNotFoundException.class, () -> cacheService.get(1L));
+        Exception exception = assertThrows(EntityNotFoundException.class, () -> cacheService.get(1L));
+        
+        assertEquals("Entry not found for the id - 1", exception.getMessage());
+        verify(employeeRepository, times(1)).findById(1L);
+    }
+    
+    @Test
+    void testAddingEntityClearsNegativeCacheEntry() {
+        cacheService.negativeCache = new NegativeCache(60_000, 100);
+        when(employeeRepository.findById(1L)).thenReturn(Optional.empty());
+        assertThrows(EntityNotFoundException.class, () -> cacheService.get(1L));
+        
+        // Once added, the entity is served from the cache
+        cacheService.add(entry1);
+        
+        assertEquals(entry1, cacheService.get(1L));
+    }
+    
+    @Test
+    void testGetManyLoadsMissesWithSingleQuery() {
+        cacheService.setMaxCacheSize(10);
+        cacheService.negativeCache = new NegativeCache(60_000, 100);
+        when(employeeRepository.findAllById(List.of(3L, 2L))).thenReturn(List.of(entry2));
+        
+        // entity1 is cached, entity2 is only in the DB and ID 3 does not exist
+        cacheService.add(entry1);
+        List<Employee> employees = cacheService.getMany(List.of(3L, 2L, 1L, 2L));
+        
+        assertEquals(List.of(entry2, entry1), employees);
+        verify(employeeRepository, times(1)).findAllById(List.of(3L, 2L));
+        verify(employeeRepository, never()).findById(anyLong());
+        assertEquals(entry2, cacheService.getCache().get(entry2.getId()));
+        
+        // The missing ID is negatively cached and not queried again
+        assertEquals(List.of(entry1, entry2), cacheService.getMany(List.of(1L, 2L, 3L)));
+        verify(employeeRepository, times(1)).findAllById(any());
+    }
+    
+    @Test
+    void testAddAllEvictsLeastRecentlyUsedEntries() {
+        Employee entry3 = new Employee();
+        entry3.setId(3L);
+        
+        cacheService.addAll(List.of(entry1, entry2, entry3));
+        
+        assertEquals(2, cacheService.getCache().size());
+        assertNull(cacheService.getCache().get(entry1.getId()));
+        verify(employeeRepository, times(1)).save(entry1);
+    }
+    
+    @Test
+    void testRemoveManyDeletesInBatch() {
+        cacheService.add(entry1);
+        cacheService.add(entry2);
+        
+        cacheService.removeMany(List.of(1L, 2L));
+        
+        assertTrue(cacheService.getCache().isEmpty());
+        verify(employeeRepository, times(1)).deleteAllByIdInBatch(List.of(1L, 2L));
+    }
+    
+    @Test
+    void testRecordsHitsMissesPutsAndEvictions() {
+        when(employeeRepository.findById(1L)).thenReturn(Optional.of(entry1));
+        when(employeeRepository.findById(9L)).thenReturn(Optional.empty());
+        
+        // One hit, one miss loaded from the DB and one miss not found
+        cacheService.add(entry2);
+        cacheService.get(entry2.getId());
+        cacheService.get(entry1.getId());
+        assertThrows(EntityNotFoundException.class, () -> cacheService.get(9L));
+        
+        // A third entry evicts the least recently used one, loaded unchanged from the DB
+        Employee entry3 = new Employee();
+        entry3.setId(3L);
+        cacheService.add(entry3);
+        
+        CacheMetrics metrics = cacheService.getMetrics();
+        assertEquals(1, metrics.getHits());
+        assertEquals(2, metrics.getMisses());
+        assertEquals(3, metrics.getPuts());
+        assertEquals(1, metrics.getEvictions());
+        assertEquals(2, metrics.getLoads().count());
+        assertEquals(0, metrics.getEvictionSaves().count());
+        assertEquals(1, metrics.getSkippedWriteBacks());
+        assertEquals(0, metrics.getWriteBackFailures());
+    }
+    
+    @Test
+    void testOnlyEntriesChangedSinceLoadedAreWrittenBackOnEviction() {
+        when(employeeRepository.findById(1L)).thenReturn(Optional.of(entry1));
+        Employee entry3 = new Employee();
+        entry3.setId(3L);
+        
+        // entity1 is loaded from the DB and evicted unchanged, without a write
+        cacheService.get(entry1.getId());
+        cacheService.add(entry2);
+        cacheService.add(entry3);
+        assertNull(cacheService.getCache().get(entry1.getId()));
+        verify(employeeRepository, never()).save(any());
+        assertEquals(1, cacheService.getMetrics().getSkippedWriteBacks());
+        
+        // Repeated adds of entity2 are written back once, with the latest copy
+        Employee renamed = new Employee();
+        renamed.setId(2L);
+        renamed.setName("renamed2");
+        cacheService.add(entry2);
+        cacheService.add(renamed);
+        cacheService.get(entry3.getId());
+        Employee entry4 = new Employee();
+        entry4.setId(4L);
+        cacheService.add(entry4);
+        
+        verify(employeeRepository, times(1)).save(any());
+        verify(employeeRepository, times(1)).save(renamed);
+        assertEquals(2, cacheService.getMetrics().getEvictions());
+        assertEquals(1, cacheService.getMetrics().getSkippedWriteBacks());
+    }
+    
+    @Test
+    void testEvictionsAndDeletesGoThroughJdbcWriterWhenEnabled() {
+        cacheService.jdbcWriter = mock(JdbcEmployeeWriter.class);
+        Employee entry3 = new Employee();
+        entry3.setId(3L);
+        
+        // entity1 is evicted and upserted, then every entry is deleted through the writer
+        cacheService.add(entry1);
+        cacheService.add(entry2);
+        cacheService.add(entry3);
+        cacheService.remove(entry2);
+        cacheService.removeMany(List.of(3L));
+        cacheService.removeAll();
+        
+        verify(cacheService.jdbcWriter, times(1)).upsert(entry1);
+        verify(cacheService.jdbcWriter, times(1)).deleteAllById(List.of(2L));
+        verify(cacheService.jdbcWriter, times(1)).deleteAllById(List.of(3L));
+        verify(cacheService.jdbcWriter, times(1)).deleteAll();
+        verify(employeeRepository, never()).save(any());
+        verify(employeeRepository, never()).delete(any());
+        verify(employeeRepository, never()).deleteAllInBatch();
+    }
+    
+    @Test
+    void testSerializedResponseIsReusedUntilEntryChanges() {
+        ReflectionTestUtils.setField(cacheService, "serializedResponses", true);
+        cacheService.add(entry1);
+        
+        byte[] json = cacheService.getJson(entry1.getId());
+        assertEquals("{\"id\":1,\"name\":\"test1\",\"salary\":1000.0}", new String(json, StandardCharsets.UTF_8));
+        assertSame(json, cacheService.getJson(entry1.getId()));
+        
+        // Replacing the entry drops its encoding
+        Employee renamed = new Employee();
+        renamed.setId(1L);
+        renamed.setName("renamed1");
+        renamed.setSalary(1000.0);
+        cacheService.add(renamed);
+        assertTrue(new String(cacheService.getJson(entry1.getId()), StandardCharsets.UTF_8).contains("renamed1"));
+        
+        // An evicted entry is encoded again once reloaded
+        byte[] evicted = cacheService.getJson(entry1.getId());
+        cacheService.setMaxCacheSize(0);
+        when(employeeRepository.findById(1L)).thenReturn(Optional.of(renamed));
+        cacheService.setMaxCacheSize(2);
+        assertNotSame(evicted, cacheService.getJson(entry1.getId()));
+    }
+    
+    @Test
+    void testGetManyJsonReusesSerializedResponses() {
+        ReflectionTestUtils.setField(cacheService, "serializedResponses", true);
+        when(employeeRepository.findAllById(any())).thenReturn(List.of());
+        cacheService.add(entry1);
+        cacheService.add(entry2);
+        byte[] json = cacheService.getJson(entry1.getId());
+        
+        Map<Long, byte[]> values = cacheService.getManyJson(List.of(2L, 3L, 1L));
+        
+        assertEquals(List.of(2L, 1L), List.copyOf(values.keySet()));
+        assertSame(json, values.get(1L));
+        assertSame(values.get(2L), cacheService.getJson(entry2.getId()));
+    }
+    
+    @Test
+    void testGetAsyncCompletesHitsInlineAndLoadsMissesOnVirtualThreads() throws Exception {
+        Set<Boolean> loadedOnVirtualThread = ConcurrentHashMap.newKeySet();
+        when(employeeRepository.findById(1L)).thenAnswer(invocation -> {
+            loadedOnVirtualThread.add(Thread.currentThread().isVirtual());
+            return Optional.of(entry1);
+        });
+        cacheService.add(entry2);
+        
+        // A hit is already complete when returned, with no thread hop
+        CompletableFuture<Employee> hit = cacheService.getAsync(entry2.getId());
+        assertTrue(hit.isDone());
+        assertEquals(entry2, hit.getNow(null));
+        
+        assertEquals(entry1, cacheService.getAsync(entry1.getId()).get(5, TimeUnit.SECONDS));
+        assertEquals(Set.of(true), loadedOnVirtualThread);
+        
+        // A miss not found in the DB fails the future with the same exception as get
+        when(employeeRepository.findById(9L)).thenReturn(Optional.empty());
+        ExecutionException failure = assertThrows(ExecutionException.class, 
+                () -> cacheService.getAsync(9L).get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof EntityNotFoundException);
+        
+        cacheService.removeAsync(entry2).get(5, TimeUnit.SECONDS);
+        verify(employeeRepository, times(1)).delete(entry2);
+    }
+    
+    @Test
+    void testEntriesOnlyInCacheAreRecoveredFromWriteAheadLog(@TempDir Path directory) {
+        cacheService.writeAheadLog = new WriteAheadLog(directory, 1 << 20, true, 0);
+        cacheService.writeAheadLog.open();
+        
+        Employee entry3 = new Employee();
+        entry3.setId(3L);
+        
+        // entity1 is evicted and saved, entity2 is removed, entity3 is only in the cache
+        cacheService.add(entry1);
+        cacheService.add(entry2);
+        cacheService.add(entry3);
+        cacheService.remove(entry2);
+        cacheService.writeAheadLog.close();
+        
+        // A restarted service gets entity3 back without reading the DB
+        WriteAheadLog reopened = new WriteAheadLog(directory, 1 << 20, true, 0);
+        reopened.open();
+        CacheService restarted = new CacheService();
+        restarted.employeeRepository = employeeRepository;
+        restarted.writeAheadLog = reopened;
+        restarted.setMaxCacheSize(2);
+        restarted.recover();
+        reopened.close();
+        
+        assertEquals(Set.of(3L), restarted.getCache().keySet());
+        assertTrue(reopened.getRecovered().isEmpty());
+        verify(employeeRepository, times(1)).save(entry1);
+        verify(employeeRepository, never()).findById(anyLong());
+    }
+    
+    @Test
+    void testConcurrentGetAndAddKeepSizeAndEvictionInvariants() throws Exception {
+        int maxCacheSize = 50;
+        int keySpace = 500;
+        int threads = 32;
+        int operationsPerThread = 1_000;
+        cacheService.setMaxCacheSize(maxCacheSize);
+        
+        // Every id is present in the DB; record every id written back on eviction
+        Set<Long> savedIds = ConcurrentHashMap.newKeySet();
+        Set<Long> addedIds = ConcurrentHashMap.newKeySet();
+        when(employeeRepository.findById(anyLong())).thenAnswer(invocation -> {
+            Employee employee = new Employee();
+            employee.setId(invocation.getArgument(0));
+            return Optional.of(employee);
+        });
+        when(employeeRepository.save(any())).thenAnswer(invocation -> {
+            Employee employee = invocation.getArgument(0);
+            savedIds.add(employee.getId());
+            return employee;
+        });
+        
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < operationsPerThread; i++) {
+                    long id = random.nextInt(keySpace);
+                    if (random.nextBoolean()) {
+                        assertEquals(id, cacheService.get(id).getId());
+                    }
+                    else {
+                        Employee employee = new Employee();
+                        employee.setId(id);
+                        cacheService.add(employee);
+                        addedIds.add(id);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        
+        // The cache is full but never above its maximum size
+        assertEquals(maxCacheSize, cacheService.getCache().size());
+        assertEquals(maxCacheSize, cacheService.getCache().keySet().size());
+        
+        // Every added entry is either still cached or was evicted to the database
+        Set<Long> cachedOrSaved = new HashSet<>(cacheService.getCache().keySet());
+        cachedOrSaved.addAll(savedIds);
+        assertTrue(cachedOrSaved.containsAll(addedIds));
+    }
+    
+    @Test
+    void testQueriesAreAnsweredFromIndexesWhileCacheHoldsEveryEntry() {
+        ReflectionTestUtils.setField(cacheService, "indexesEnabled", true);
+        when(employeeRepository.count()).thenReturn(0L);
+        cacheService.init();
+        cacheService.add(entry1);
+        cacheService.add(entry2);
+        
+        // Nothing was ever saved to the DB, so the indexes hold every entry
+        assertTrue(cacheService.isAuthoritative());
+        assertEquals(List.of(entry2), cacheService.findBySalaryBetween(1500.0, 2500.0));
+        assertEquals(List.of(entry1, entry2), cacheService.findByNamePrefix("test"));
+        assertEquals(List.of(entry1), cacheService.findByName("test1"));
+        verify(employeeRepository, never()).findBySalaryBetween(any(), any());
+        verify(employeeRepository, never()).findByNameStartingWith(any());
+        
+        // Once entity1 is evicted, the DB is queried and its rows replaced by the cached copies
+        Employee entry3 = new Employee();
+        entry3.setId(3L);
+        entry3.setName("test3");
+        entry3.setSalary(3000.0);
+        cacheService.add(entry3);
+        Employee staleEntry2 = new Employee();
+        staleEntry2.setId(2L);
+        staleEntry2.setName("test2");
+        staleEntry2.setSalary(1.0);
+        when(employeeRepository.findByNameStartingWith("test")).thenReturn(List.of(entry1, staleEntry2));
+        
+        assertFalse(cacheService.isAuthoritative());
+        List<Employee> found = cacheService.findByNamePrefix("test");
+        assertEquals(List.of(1L, 2L, 3L), found.stream().map(Employee::getId).toList());
+        assertSame(entry2, found.get(1));
+        
+        // Removing every entry makes the cache authoritative again
+        cacheService.removeAll();
+        assertTrue(cacheService.isAuthoritative());
+        assertEquals(List.of(), cacheService.findBySalaryBetween(0.0, 5000.0));
+    }
+    
+    @Test
+    void testQueriesWithoutIndexesReplaceRowsByCachedCopies() {
+        Employee renamed = new Employee();
+        renamed.setId(1L);
+        renamed.setName("renamed1");
+        renamed.setSalary(1000.0);
+        cacheService.add(renamed);
+        when(employeeRepository.findByName("test1")).thenReturn(List.of(entry1));
+        when(employeeRepository.findByName("test2")).thenReturn(List.of(entry2));
+        
+        assertFalse(cacheService.isAuthoritative());
+        assertEquals(List.of(), cacheService.findByName("test1"));
+        assertEquals(List.of(entry2), cacheService.findByName("test2"));
+    }
+    
+    @Test
+    void testEvictedEntriesAreServedFromDiskTierBeforeDatabase(@TempDir Path directory) {
+        cacheService.diskTier = new DiskCacheTier(directory, 1 << 20, 2, 0.5);
+        cacheService.diskTier.open();
+        Employee entry3 = new Employee();
+        entry3.setId(3L);
+        entry3.setName("test3");
+        
+        // entity1 is evicted, saved to the DB and demoted to the disk tier
+        cacheService.add(entry1);
+        cacheService.add(entry2);
+        cacheService.add(entry3);
+        verify(employeeRepository, times(1)).save(entry1);
+        
+        Employee promoted = cacheService.get(1L);
+        assertEquals("test1", promoted.getName());
+        assertTrue(cacheService.getCache().containsKey(1L));
+        verify(employeeRepository, never()).findById(anyLong());
+        
+        // A removed entry is dropped from both tiers
+        cacheService.remove(entry1);
+        assertNull(cacheService.diskTier.get(1L));
+        cacheService.diskTier.close();
+    }
+
+    @Test
+    void testResizeGrowsAtOnceAndShrinksStepByStep() throws Exception {
+        ReflectionTestUtils.setField(cacheService, "resizeStepSize", 3);
+        ReflectionTestUtils.setField(cacheService, "resizeStepPauseMillis", 100L);
+        cacheService.resize(20);
+        assertEquals(20, cacheService.getMaxCacheSize());
+        for (long id = 1; id <= 10; id++) {
+            Employee employee = new Employee();
+            employee.setId(id);
+            employee.setName("test" + id);
+            cacheService.add(employee);
+        }
+        
+        // 10 entries are evicted down to 4 in steps of 3, pausing between steps
+        cacheService.resize(4);
+        assertEquals(4, cacheService.getTargetCacheSize());
+        assertTrue(cacheService.getCache().size() >= 7);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cacheService.getMaxCacheSize() != 4 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(4, cacheService.getMaxCacheSize());
+        assertEquals(4, cacheService.getCache().size());
+        verify(employeeRepository, times(6)).save(any(Employee.class));
+        
+        assertThrows(IllegalArgumentException.class, () -> cacheService.resize(0));
+        ReflectionTestUtils.setField(cacheService, "storageMode", CacheService.StorageMode.OFF_HEAP);
+        assertThrows(IllegalStateException.class, () -> cacheService.resize(10));
+    }
+
+    @Test
+    void testStaleEntriesAreServedWhileRefreshedUntilMaxStaleness() throws Exception {
+        AtomicLong now = new AtomicLong();
+        cacheService.ticker = now::get;
+        ReflectionTestUtils.setField(cacheService, "refreshAfterMillis", 100L);
+        ReflectionTestUtils.setField(cacheService, "maxStaleMillis", 1000L);
+        ReflectionTestUtils.setField(cacheService, "refreshBackoffMillis", 50L);
+        Employee updated = new Employee();
+        updated.setId(1L);
+        updated.setName("test1");
+        updated.setSalary(1500.0);
+        when(employeeRepository.findById(1L)).thenReturn(Optional.of(entry1)).thenReturn(Optional.of(updated));
+        
+        // Loaded at 0 ms and fresh until 100 ms
+        assertSame(entry1, cacheService.get(1L));
+        now.set(TimeUnit.MILLISECONDS.toNanos(50));
+        assertSame(entry1, cacheService.get(1L));
+        verify(employeeRepository, times(1)).findById(1L);
+        
+        // Past the refresh age, the stale entry is served while it is reloaded
+        now.set(TimeUnit.MILLISECONDS.toNanos(200));
+        assertSame(entry1, cacheService.get(1L));
+        awaitCached(1L, updated);
+        assertEquals(1, cacheService.getMetrics().getStaleHits());
+        assertEquals(1, cacheService.getMetrics().getRefreshes());
+        
+        // Dirty entries are newer than the DB and never refreshed
+        cacheService.add(entry2);
+        now.set(TimeUnit.MILLISECONDS.toNanos(5000));
+        assertSame(entry2, cacheService.get(2L));
+        verify(employeeRepository, never()).findById(2L);
+        
+        // While the DB is down, the stale entry is served and reloads back off
+        doThrow(new RuntimeException("DB down")).when(employeeRepository).findById(1L);
+        now.set(TimeUnit.MILLISECONDS.toNanos(400));
+        assertSame(updated, cacheService.get(1L));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cacheService.getMetrics().getRefreshFailures() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, cacheService.getMetrics().getRefreshFailures());
+        now.set(TimeUnit.MILLISECONDS.toNanos(420));
+        assertSame(updated, cacheService.get(1L));
+        verify(employeeRepository, times(3)).findById(1L);
+        
+        // Past the maximum staleness, it is reloaded before it is served
+        now.set(TimeUnit.MILLISECONDS.toNanos(1300));
+        assertThrows(RuntimeException.class, () -> cacheService.get(1L));
+        assertSame(updated, cacheService.getCache().get(1L));
+        
+        // A row deleted from the DB drops the entry
+        doReturn(Optional.empty()).when(employeeRepository).findById(1L);
+        assertThrows(EntityNotFoundException.class, () -> cacheService.get(1L));
+        assertFalse(cacheService.getCache().containsKey(1L));
+        verify(employeeRepository, never()).delete(any(Employee.class));
+    }
+    
+    @Test
+    void testDatabaseChangesReplaceOrDropOnlyCleanEntries() {
+        Employee changed = new Employee();
+        changed.setId(1L);
+        changed.setName("changed1");
+        changed.setSalary(1500.0);
+        when(employeeRepository.findById(1L)).thenReturn(Optional.of(entry1));
+        when(employeeRepository.findAllById(List.of(1L))).thenReturn(List.of(changed));
+        cacheService.get(1L);
+        cacheService.add(entry2);
+
+        // The clean entry is replaced by its row, the dirty one is kept
+        assertEquals(1, cacheService.applyDatabaseChanges(List.of(1L, 2L, 3L), List.of(), true));
+        assertSame(changed, cacheService.getCache().get(1L));
+        assertSame(entry2, cacheService.getCache().get(2L));
+        verify(employeeRepository, never()).findById(3L);
 
+        // Without reloading, the clean entry is dropped and loaded again on its next miss
+        assertEquals(1, cacheService.applyDatabaseChanges(List.of(1L), List.of(), false));
+        assertFalse(cacheService.getCache().containsKey(1L));
 
+        cacheService.get(1L);
+        assertEquals(1, cacheService.applyDatabaseChanges(List.of(), List.of(1L, 2L), true));
+        assertFalse(cacheService.getCache().containsKey(1L));
+        assertSame(entry2, cacheService.getCache().get(2L));
+        verify(employeeRepository, never()).delete(any(Employee.class));
+        verify(employeeRepository, never()).save(any(Employee.class));
+    }
+
+    @Test
+    void testOpenCircuitFailsMissesFastAndServesStaleEntries() {
+        AtomicLong now = new AtomicLong();
+        cacheService.ticker = now::get;
+        ReflectionTestUtils.setField(cacheService, "refreshAfterMillis", 100L);
+        ReflectionTestUtils.setField(cacheService, "maxStaleMillis", 1000L);
+        cacheService.databaseGuard = new DatabaseGuard(new CacheMetrics(new SimpleMeterRegistry()), 10, 1, 10, 1.5, 
+                0.2, 600, 10, 100, 2, 2, 0.5, 60000, 1);
+        when(employeeRepository.findById(1L)).thenReturn(Optional.of(entry1));
+        when(employeeRepository.findById(2L)).thenThrow(new QueryTimeoutException("timed out"));
+        assertSame(entry1, cacheService.get(1L));
+        
+        // One of the last two calls failed, which opens the circuit
+        assertThrows(QueryTimeoutException.class, () -> cacheService.get(2L));
+        assertThrows(DatabaseUnavailableException.class, () -> cacheService.get(3L));
+        assertThrows(DatabaseUnavailableException.class, () -> cacheService.getMany(List.of(1L, 3L)));
+        verify(employeeRepository, never()).findById(3L);
+        
+        // Hits, even past the maximum staleness, are served while the DB is refused
+        now.set(TimeUnit.MILLISECONDS.toNanos(5000));
+        assertSame(entry1, cacheService.get(1L));
+        verify(employeeRepository, times(1)).findById(1L);
+    }
+    
+    @Test
+    void testEvictedEntryIsSavedWhenGuardRefusesCalls() {
+        DatabaseGuard guard = mock(DatabaseGuard.class);
+        doThrow(new DatabaseUnavailableException("Circuit breaker is open", 5000)).when(guard).run(any());
+        when(guard.call(any())).thenThrow(new DatabaseUnavailableException("Circuit breaker is open", 5000));
+        cacheService.databaseGuard = guard;
+        Employee entry3 = new Employee();
+        entry3.setId(3L);
+        entry3.setName("test3");
+        entry3.setSalary(3000.0);
+        
+        // The add evicting the dirty entry1 succeeds, and entry1 is written to the DB
+        cacheService.add(entry1);
+        cacheService.add(entry2);
+        cacheService.add(entry3);
+        
+        verify(employeeRepository).save(entry1);
+        assertFalse(cacheService.getCache().containsKey(1L));
+        assertTrue(cacheService.getCache().containsKey(3L));
+    }
+    
+    @Test
+    void testAsyncReadsServeTooStaleEntriesWhenReloadIsRefused() {
+        AtomicLong now = new AtomicLong();
+        cacheService.ticker = now::get;
+        ReflectionTestUtils.setField(cacheService, "refreshAfterMillis", 100L);
+        ReflectionTestUtils.setField(cacheService, "maxStaleMillis", 1000L);
+        when(employeeRepository.findById(1L)).thenReturn(Optional.of(entry1));
+        when(employeeRepository.findById(2L)).thenReturn(Optional.of(entry2));
+        assertSame(entry1, cacheService.get(1L));
+        assertSame(entry2, cacheService.get(2L));
+        
+        // The guard still takes calls, but sheds the reloads of both entries
+        DatabaseGuard guard = mock(DatabaseGuard.class);
+        when(guard.isAvailable()).thenReturn(true);
+        when(guard.call(any())).thenThrow(new DatabaseUnavailableException("Too many DB calls", 500));
+        cacheService.databaseGuard = guard;
+        now.set(TimeUnit.MILLISECONDS.toNanos(5000));
+        
+        assertSame(entry1, cacheService.getAsync(1L).join());
+        assertEquals(List.of(entry1, entry2), cacheService.getMany(List.of(1L, 2L)));
+        assertEquals(3, cacheService.getMetrics().getStaleHits());
+        verify(employeeRepository, times(1)).findById(1L);
+    }
+    
+    @Test
+    void testReleaseKeepsEntriesChangedSinceHandOff() {
+        cacheService.add(entry1);
+        cacheService.add(entry2);
+        Employee handedOff = new Employee();
+        handedOff.setId(entry2.getId());
+        handedOff.setName("test2");
+        handedOff.setSalary(1500.0);
+        Employee removed = new Employee();
+        removed.setId(3L);
+        removed.setName("test3");
+        removed.setSalary(3000.0);
+        
+        // Only the entry still cached as it was handed off is released, without a DB write
+        assertEquals(List.of(entry2.getId(), 3L), cacheService.release(List.of(entry1, handedOff, removed)));
+        assertFalse(cacheService.getCache().containsKey(entry1.getId()));
+        assertSame(entry2, cacheService.getCache().get(entry2.getId()));
+        verify(employeeRepository, never()).save(any());
+    }
+    
+    private void awaitCached(Long id, Employee employee) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cacheService.getCache().get(id) != employee && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertSame(employee, cacheService.getCache().get(id));
+    }
 
 }
@@ -0,0 +1,187 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static com.jpmc.cache.TestEmployees.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.repository.EmployeeRepository;
+import com.jpmc.cache.service.CacheWarmer.WarmUpSource;
+
+/**
+ * Unit test class for {@link CacheWarmer}.
+ * Verifies that snapshots list the cached IDs from the most to the least recently
+ * used, that a warm-up from a snapshot or from the database fills the cache without
+ * replacing cached entries or exceeding the capacity, and when the cache is ready.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class CacheWarmerTest
+{
+    @TempDir
+    Path directory;
+
+    private EmployeeRepository employeeRepository;
+    private CacheService cacheService;
+
+    @BeforeEach
+    public void setup() {
+        employeeRepository = mock(EmployeeRepository.class);
+        cacheService = cacheService(10);
+    }
+
+    @Test
+    void testSnapshotListsHottestIdsFirstAndWarmsUpNewCache() throws IOException {
+        for (long id = 1; id <= 5; id++) {
+            cacheService.add(employee(id, "test" + id));
+        }
+        cacheService.get(2L);
+        cacheService.get(4L);
+
+        warmer(cacheService, WarmUpSource.NONE, 80).writeSnapshot();
+        assertEquals(List.of(4L, 2L, 5L, 3L, 1L), CacheWarmer.readSnapshot(directory.resolve("snapshot.bin")));
+
+        // A restarted instance loads the snapshot IDs from the DB
+        CacheService restarted = cacheService(10);
+        when(employeeRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<Employee> employees = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                employees.add(employee(id, "test" + id));
+            }
+            return employees;
+        });
+        CacheWarmer warmer = warmer(restarted, WarmUpSource.SNAPSHOT, 80);
+        assertFalse(warmer.isReady());
+
+        warmer.warmUp();
+
+        assertTrue(warmer.isReady());
+        assertEquals(5, warmer.getLoaded());
+        assertEquals(4, warmer.getTarget());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), restarted.getCache().keySet().stream().sorted().toList());
+    }
+
+    @Test
+    void testWarmUpKeepsEntriesAlreadyCached() throws IOException {
+        cacheService.add(employee(1L, "test1"));
+        cacheService.add(employee(2L, "test2"));
+        warmer(cacheService, WarmUpSource.NONE, 80).writeSnapshot();
+
+        CacheService restarted = cacheService(10);
+        restarted.add(employee(1L, "recovered1"));
+        when(employeeRepository.findAllById(any())).thenReturn(List.of(employee(1L, "stale1"),
+                employee(2L, "test2")));
+
+        warmer(restarted, WarmUpSource.SNAPSHOT, 80).warmUp();
+
+        assertEquals("recovered1", restarted.getCache().get(1L).getName());
+        assertEquals("test2", restarted.getCache().get(2L).getName());
+    }
+
+    @Test
+    void testDatabaseWarmUpScansRangesUntilCacheIsFull() {
+        List<Employee> table = LongStream.rangeClosed(1, 100).mapToObj(id -> employee(id, "test" + id)).toList();
+        when(employeeRepository.findFirstByOrderByIdAsc()).thenReturn(Optional.of(table.get(0)));
+        when(employeeRepository.findFirstByOrderByIdDesc()).thenReturn(Optional.of(table.get(99)));
+        when(employeeRepository.count()).thenReturn(100L);
+        when(employeeRepository.findByIdBetweenOrderByIdAsc(anyLong(), anyLong(), any(Limit.class)))
+                .thenAnswer(invocation -> {
+                    long from = invocation.getArgument(0);
+                    long to = invocation.getArgument(1);
+                    int limit = invocation.<Limit>getArgument(2).max();
+                    return table.stream()
+                            .filter(employee -> employee.getId() >= from && employee.getId() <= to)
+                            .limit(limit)
+                            .toList();
+                });
+
+        CacheWarmer warmer = warmer(cacheService, WarmUpSource.DATABASE, 50);
+        warmer.warmUp();
+
+        assertTrue(warmer.isReady());
+        assertEquals(10, warmer.getLoaded());
+        assertEquals(5, warmer.getTarget());
+        assertEquals(10, cacheService.getCache().size());
+        verify(employeeRepository, never()).save(any());
+    }
+
+    @Test
+    void testDatabaseWarmUpOfWholeTableMakesCacheAuthoritative() {
+        CacheService indexed = cacheService(10);
+        ReflectionTestUtils.setField(indexed, "indexesEnabled", true);
+        when(employeeRepository.count()).thenReturn(5L);
+        indexed.init();
+        assertFalse(indexed.isAuthoritative());
+
+        List<Employee> table = LongStream.rangeClosed(1, 5).mapToObj(id -> employee(id, "test" + id)).toList();
+        when(employeeRepository.findFirstByOrderByIdAsc()).thenReturn(Optional.of(table.get(0)));
+        when(employeeRepository.findFirstByOrderByIdDesc()).thenReturn(Optional.of(table.get(4)));
+        when(employeeRepository.findByIdBetweenOrderByIdAsc(anyLong(), anyLong(), any(Limit.class)))
+                .thenAnswer(invocation -> {
+                    long from = invocation.getArgument(0);
+                    long to = invocation.getArgument(1);
+                    return table.stream()
+                            .filter(employee -> employee.getId() >= from && employee.getId() <= to)
+                            .limit(invocation.<Limit>getArgument(2).max())
+                            .toList();
+                });
+
+        warmer(indexed, WarmUpSource.DATABASE, 50).warmUp();
+
+        assertTrue(indexed.isAuthoritative());
+        assertEquals(List.of(2L, 3L), indexed.findBySalaryBetween(2000.0, 3000.0).stream().map(Employee::getId)
+                .toList());
+        verify(employeeRepository, never()).findBySalaryBetween(any(), any());
+    }
+
+    @Test
+    void testCorruptSnapshotEndsWarmUpEmpty() throws IOException {
+        Files.write(directory.resolve("snapshot.bin"), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14 });
+        assertThrows(IOException.class, () -> CacheWarmer.readSnapshot(directory.resolve("snapshot.bin")));
+
+        CacheWarmer warmer = warmer(cacheService, WarmUpSource.SNAPSHOT, 80);
+        warmer.warmUp();
+
+        assertTrue(warmer.isComplete());
+        assertTrue(warmer.isReady());
+        assertEquals(0, cacheService.getCache().size());
+    }
+
+    private CacheService cacheService(int maxSize) {
+        CacheService service = new CacheService();
+        service.employeeRepository = employeeRepository;
+        service.setMaxCacheSize(maxSize);
+        return service;
+    }
+
+    private CacheWarmer warmer(CacheService service, WarmUpSource source, int readyFillPercent) {
+        return new CacheWarmer(service, employeeRepository, source, 2, 3, 0, readyFillPercent, 60_000, true,
+                directory.resolve("snapshot.bin"), 0);
+    }
+}
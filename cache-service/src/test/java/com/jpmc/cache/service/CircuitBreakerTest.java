@@ -0,0 +1,95 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test class for {@link CircuitBreaker}, on a manual clock, with a window of 10
+ * calls, at least 4 of them recorded, a failure rate threshold of 50%, 1 second open
+ * and 2 probes.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class CircuitBreakerTest
+{
+    private final AtomicLong now = new AtomicLong();
+    private CircuitBreaker breaker;
+
+    @BeforeEach
+    public void setup() {
+        breaker = new CircuitBreaker(10, 4, 0.5, 1000, 2, now::get);
+    }
+
+    @Test
+    void testOpensAtFailureRateOverWindow() {
+        // Too few calls to judge
+        outcomes(true, true, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        outcomes(false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+        assertEquals(1000, breaker.getRetryAfterMillis());
+
+        // Only the last 10 calls count
+        breaker = new CircuitBreaker(10, 4, 0.5, 1000, 2, now::get);
+        outcomes(true, false, false, false, false, false, false, false, true, true);
+        outcomes(true, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        outcomes(true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testProbesCloseOrReopenBreaker() {
+        outcomes(true, true, true, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        now.set(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.tryAcquirePermission());
+
+        // A probe given back frees its slot, a failed one opens the breaker again
+        breaker.releasePermission();
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+
+        now.set(TimeUnit.MILLISECONDS.toNanos(2500));
+        assertTrue(breaker.tryAcquirePermission());
+        assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        // The window starts empty once closed
+        outcomes(true, true, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private void outcomes(boolean... failures) {
+        for (boolean failure : failures) {
+            assertTrue(breaker.tryAcquirePermission());
+            if (failure) {
+                breaker.onFailure();
+            }
+            else {
+                breaker.onSuccess();
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test class for {@link DatabaseExecutor}.
+ * Verifies that tasks run on virtual threads and that no more of them run at once
+ * than the concurrency limit.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class DatabaseExecutorTest
+{
+    private final DatabaseExecutor executor = new DatabaseExecutor(3);
+
+    @AfterEach
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void testRunsTasksOnVirtualThreads() throws Exception {
+        assertTrue(executor.submit(() -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testBoundsTasksRunningAtOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(executor.submit(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return 1;
+            }));
+        }
+
+        // Three tasks hold the permits while the others queue for them
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.getQueued() < 17 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(17, executor.getQueued());
+        release.countDown();
+
+        int completed = 0;
+        for (CompletableFuture<Integer> future : futures) {
+            completed += future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(20, completed);
+        assertEquals(3, maxRunning.get());
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+
+import com.jpmc.cache.exception.DatabaseUnavailableException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit test class for {@link DatabaseGuard}, limited to 2 concurrent calls with 1
+ * more waiting up to 200 ms, and a circuit breaker opening after 4 calls of which
+ * half failed.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class DatabaseGuardTest
+{
+    private SimpleMeterRegistry registry;
+    private DatabaseGuard guard;
+
+    @BeforeEach
+    public void setup() {
+        registry = new SimpleMeterRegistry();
+        guard = new DatabaseGuard(new CacheMetrics(registry), 2, 1, 2, 1.5, 0.2, 600, 1, 200, 4, 4, 0.5, 60000, 1);
+        guard.registerMeters();
+    }
+
+    @Test
+    void testCallsOverLimitWaitThenAreShed() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            Future<Integer> first = executor.submit(() -> guard.call(() -> await(blocked, 1)));
+            Future<Integer> second = executor.submit(() -> guard.call(() -> await(blocked, 2)));
+            awaitGauge("cache.db.in-flight", 2);
+
+            // One call waits for a slot, the next is shed at once
+            Future<Integer> queued = executor.submit(() -> guard.call(() -> 3));
+            awaitGauge("cache.db.queued", 1);
+            long start = System.nanoTime();
+            assertThrows(DatabaseUnavailableException.class, () -> guard.call(() -> 4));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+
+            // The waiting call is shed once its wait is over
+            Exception shed = assertThrows(Exception.class, () -> queued.get(5, TimeUnit.SECONDS));
+            assertTrue(shed.getCause() instanceof DatabaseUnavailableException);
+            assertEquals(2.0, registry.get("cache.db.shed").counter().count());
+
+            blocked.countDown();
+            assertEquals(1, first.get(5, TimeUnit.SECONDS));
+            assertEquals(2, second.get(5, TimeUnit.SECONDS));
+            assertEquals(5, guard.call(() -> 5));
+            assertEquals(0, guard.getInFlight());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testOpenCircuitRefusesCallsWithoutMakingThem() {
+        // Constraint violations are not failures of the database
+        for (int i = 0; i < 4; i++) {
+            assertThrows(DataIntegrityViolationException.class, () -> guard.run(() -> {
+                throw new DataIntegrityViolationException("duplicate key");
+            }));
+        }
+        assertTrue(guard.isAvailable());
+
+        guard.call(() -> 1);
+        for (int i = 0; i < 2; i++) {
+            assertThrows(QueryTimeoutException.class, () -> guard.run(() -> {
+                throw new QueryTimeoutException("timed out");
+            }));
+        }
+        assertFalse(guard.isAvailable());
+        assertEquals(CircuitBreaker.State.OPEN, guard.getCircuitState());
+
+        AtomicInteger calls = new AtomicInteger();
+        DatabaseUnavailableException refused = assertThrows(DatabaseUnavailableException.class,
+                () -> guard.call(calls::incrementAndGet));
+        assertEquals(0, calls.get());
+        assertTrue(refused.getRetryAfterMillis() > 59000);
+        assertEquals(1.0, registry.get("cache.db.short-circuited").counter().count());
+        assertEquals(1.0, registry.get("cache.db.circuit.state").gauge().value());
+    }
+
+    private static int await(CountDownLatch latch, int result) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    private void awaitGauge(String name, double value) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get(name).gauge().value() != value && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(value, registry.get(name).gauge().value());
+    }
+}
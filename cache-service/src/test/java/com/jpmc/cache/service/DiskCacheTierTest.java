@@ -0,0 +1,134 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static com.jpmc.cache.TestEmployees.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.jpmc.cache.model.Employee;
+
+/**
+ * Unit test class for {@link DiskCacheTier}.
+ * Uses segments of 256 bytes, which hold 8 records of employees named {@code testN},
+ * to verify that entries are replaced and removed, that a mostly dead segment is
+ * compacted and a live one dropped with its entries when every slot is taken, and
+ * that segment files do not outlive the tier.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class DiskCacheTierTest
+{
+    @TempDir
+    Path directory;
+
+    private DiskCacheTier tier;
+
+    @AfterEach
+    public void tearDown() {
+        if (tier != null) {
+            tier.close();
+        }
+    }
+
+    @Test
+    void testGetReturnsLatestCopyUntilRemoved() {
+        tier = open(4);
+        tier.put(employee(1L, "test1", 1000.0));
+        tier.put(employee(2L, null, null));
+        tier.put(employee(1L, "renamed1", 1500.0));
+
+        Employee employee = tier.get(1L);
+        assertEquals("renamed1", employee.getName());
+        assertEquals(1500.0, employee.getSalary());
+        assertNull(tier.get(2L).getName());
+        assertNull(tier.get(2L).getSalary());
+        assertNull(tier.get(3L));
+        assertEquals(2, tier.size());
+
+        assertTrue(tier.remove(1L));
+        assertFalse(tier.remove(1L));
+        assertNull(tier.get(1L));
+        assertEquals(1, tier.size());
+
+        tier.clear();
+        assertNull(tier.get(2L));
+        assertEquals(0, tier.getLiveBytes());
+    }
+
+    @Test
+    void testMostlyDeadSegmentIsCompactedWhenSlotsRunOut() {
+        tier = open(2);
+        for (long id = 1; id <= 8; id++) {
+            tier.put(employee(id, "test" + id, 1000.0));
+        }
+        // The first segment keeps 3 live records out of 8
+        for (long id = 1; id <= 5; id++) {
+            tier.put(employee(id, "next" + id, 2000.0));
+        }
+        for (long id = 9; id <= 12; id++) {
+            tier.put(employee(id, "test" + id, 1000.0));
+        }
+
+        assertEquals(1.0, counter("cache.disk.compactions"));
+        assertEquals(0.0, counter("cache.disk.drops"));
+        assertEquals(12, tier.size());
+        for (long id = 1; id <= 12; id++) {
+            assertEquals((id <= 5 ? "next" : "test") + id, tier.get(id).getName());
+        }
+        assertEquals(12 * 32, tier.getLiveBytes());
+    }
+
+    @Test
+    void testOldestLiveSegmentIsDroppedWithItsEntries() throws IOException {
+        tier = open(2);
+        for (long id = 1; id <= 17; id++) {
+            tier.put(employee(id, "test" + id, 1000.0));
+        }
+
+        assertEquals(0.0, counter("cache.disk.compactions"));
+        assertEquals(1.0, counter("cache.disk.drops"));
+        for (long id = 1; id <= 8; id++) {
+            assertNull(tier.get(id));
+        }
+        for (long id = 9; id <= 17; id++) {
+            assertEquals("test" + id, tier.get(id).getName());
+        }
+        assertEquals(2, segmentFiles());
+
+        // A reopened tier starts empty, as the database may have changed meanwhile
+        tier.close();
+        tier = open(2);
+        assertNull(tier.get(9L));
+        assertEquals(1, segmentFiles());
+    }
+
+    private DiskCacheTier open(int maxSegments) {
+        DiskCacheTier diskTier = new DiskCacheTier(directory, 256, maxSegments, 0.5);
+        diskTier.open();
+        return diskTier;
+    }
+
+    private double counter(String name) {
+        return tier.metrics.counter(name, "").count();
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
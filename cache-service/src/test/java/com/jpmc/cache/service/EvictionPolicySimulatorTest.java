@@ -0,0 +1,153 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Trace-driven simulation of the {@link EvictionPolicy} implementations.
+ * Each trace of requested IDs is replayed against a {@link PolicyCacheStore} per
+ * policy, loading every miss into the store as {@link CacheService} does, and the
+ * hit ratio of each policy is logged.
+ *
+ * Recorded traces live in {@code src/test/resources/traces}, as gzipped files with
+ * one ID per line and {@code #} comments.
+ *
+ * @author r.pandiarajan
+ *
+ */
+@Slf4j
+class EvictionPolicySimulatorTest
+{
+    private static final int CAPACITY = 500;
+
+    @Test
+    void testTinyLfuResistsScansInRecordedTrace() throws IOException {
+        long[] trace = readTrace("/traces/employee-lookups-with-scans.trace.gz");
+
+        Map<String, Double> hitRatios = simulate("employee-lookups-with-scans", trace);
+
+        // Scans of one-off IDs flush the hot set out of LRU, but are not admitted by W-TinyLFU
+        assertTrue(hitRatios.get("tiny-lfu") > hitRatios.get("lru") + 0.05);
+        assertTrue(hitRatios.get("lfu") > hitRatios.get("lru"));
+    }
+
+    @Test
+    void testFrequencyPoliciesOnSkewedTrace() {
+        long[] trace = zipfTrace(100_000, 10_000, 0.99, 42);
+
+        Map<String, Double> hitRatios = simulate("zipf-0.99", trace);
+
+        assertTrue(hitRatios.get("tiny-lfu") >= hitRatios.get("lru"));
+    }
+
+    @Test
+    void testTinyLfuKeepsPartOfLoopLargerThanCache() {
+        // A cyclic pattern over more keys than fit: LRU always evicts the next key needed
+        long[] trace = new long[50_000];
+        for (int i = 0; i < trace.length; i++) {
+            trace[i] = i % (CAPACITY + CAPACITY / 10);
+        }
+
+        Map<String, Double> hitRatios = simulate("loop", trace);
+
+        assertTrue(hitRatios.get("lru") < 0.01);
+        assertTrue(hitRatios.get("tiny-lfu") > 0.5);
+    }
+
+    /**
+     * Replays the trace against every policy and logs the hit ratios.
+     *
+     * @return The hit ratio of each policy, by name.
+     */
+    private Map<String, Double> simulate(String traceName, long[] trace) {
+        Map<String, Supplier<EvictionPolicy<Long>>> policies = new LinkedHashMap<>();
+        policies.put("lru", LruPolicy::new);
+        policies.put("lfu", LfuPolicy::new);
+        policies.put("tiny-lfu", () -> new TinyLfuPolicy<>(CAPACITY));
+        // One tick per request, so that entries not accessed for 5,000 requests expire
+        long[] clock = new long[1];
+        policies.put("ttl", () -> new TtlPolicy<>(0, 5_000, () -> clock[0] * 1_000_000L));
+
+        Map<String, Double> hitRatios = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<EvictionPolicy<Long>>> policy : policies.entrySet()) {
+            clock[0] = 0;
+            PolicyCacheStore<Long, Long> store = new PolicyCacheStore<>(policy.getValue().get(), CAPACITY,
+                    (key, value) -> { });
+            long hits = 0;
+            for (long id : trace) {
+                clock[0]++;
+                if (store.get(id) != null) {
+                    hits++;
+                }
+                else {
+                    store.put(id, id);
+                }
+            }
+            hitRatios.put(policy.getKey(), (double) hits / trace.length);
+        }
+        log.info("Hit ratios for trace {} ({} requests, capacity {}): {}", traceName, trace.length, CAPACITY,
+                hitRatios);
+        return hitRatios;
+    }
+
+    private long[] readTrace(String resource) throws IOException {
+        InputStream stream = getClass().getResourceAsStream(resource);
+        assertNotNull(stream, resource);
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new GZIPInputStream(stream), StandardCharsets.UTF_8))) {
+            return reader.lines()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .mapToLong(Long::parseLong)
+                    .toArray();
+        }
+    }
+
+    /**
+     * Generates IDs following a Zipf distribution, by inverting its cumulative distribution.
+     */
+    private static long[] zipfTrace(int length, int keys, double skew, long seed) {
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int rank = 0; rank < keys; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        Random random = new Random(seed);
+        long[] trace = new long[length];
+        for (int i = 0; i < length; i++) {
+            double target = random.nextDouble() * sum;
+            int low = 0;
+            int high = keys - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (cumulative[mid] < target) {
+                    low = mid + 1;
+                }
+                else {
+                    high = mid;
+                }
+            }
+            trace[i] = low;
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,120 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static com.jpmc.cache.TestEmployees.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.jpmc.cache.model.Employee;
+
+/**
+ * Unit test class for {@link IndexedCacheStore} and {@link EmployeeIndex}.
+ * Verifies salary range, name and name prefix lookups as entries are added, replaced,
+ * removed, evicted and cleared, and that concurrent writes leave the index holding
+ * exactly the cached entries.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class IndexedCacheStoreTest
+{
+    private final List<Long> evicted = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void testIndexFollowsPutsReplacementsAndRemovals() {
+        IndexedCacheStore store = store(10);
+        store.put(1L, employee(1L, "alice", 1000.0));
+        store.put(2L, employee(2L, "alan", 2000.0));
+        store.put(3L, employee(3L, "bob", 2000.0));
+        EmployeeIndex index = store.getIndex();
+
+        assertEquals(List.of(2L, 3L), ids(index.findBySalaryBetween(1500.0, 2000.0)));
+        assertEquals(List.of(2L, 1L), ids(index.findByNamePrefix("al")));
+        assertEquals(List.of(3L), ids(index.findByName("bob")));
+        assertEquals(List.of(), ids(index.findBySalaryBetween(2000.0, 1000.0)));
+
+        // A replaced entry is only found under its new values
+        store.put(2L, employee(2L, "bob", 500.0));
+        assertEquals(List.of(2L, 1L), ids(index.findBySalaryBetween(0.0, 1000.0)));
+        assertEquals(List.of(2L, 3L), ids(index.findByName("bob")));
+        assertEquals(List.of(1L), ids(index.findByNamePrefix("al")));
+
+        store.remove(3L);
+        store.putIfAbsent(1L, employee(1L, "carol", 1000.0));
+        assertEquals(List.of(2L), ids(index.findByName("bob")));
+        assertEquals(List.of(1L), ids(index.findByName("alice")));
+
+        store.clear();
+        assertEquals(List.of(), ids(index.findBySalaryBetween(0.0, Double.MAX_VALUE)));
+    }
+
+    @Test
+    void testEvictedEntriesLeaveTheIndexBeforeTheListenerIsCalled() {
+        IndexedCacheStore store = store(2);
+        store.put(1L, employee(1L, "test1", 1000.0));
+        store.put(2L, employee(2L, "test2", 2000.0));
+        store.put(3L, employee(3L, "test3", 3000.0));
+
+        assertEquals(List.of(1L), evicted);
+        assertEquals(List.of(2L, 3L), ids(store.getIndex().findByNamePrefix("test")));
+
+        store.setCapacity(1);
+        assertEquals(List.of(1L, 2L), evicted);
+        assertEquals(List.of(3L), ids(store.getIndex().findBySalaryBetween(0.0, 5000.0)));
+    }
+
+    @Test
+    void testConcurrentWritesLeaveIndexMatchingTheStore() throws Exception {
+        IndexedCacheStore store = store(64);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        long id = random.nextLong(256);
+                        if (random.nextInt(10) == 0) {
+                            store.remove(id);
+                        }
+                        else {
+                            store.put(id, employee(id, "test" + random.nextInt(8), (double) random.nextInt(100)));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        List<Long> indexed = ids(store.getIndex().findBySalaryBetween(0.0, 100.0));
+        assertEquals(store.keySet().stream().sorted().toList(), indexed.stream().sorted().toList());
+        assertEquals(indexed.size(), store.getIndex().findByNamePrefix("test").size());
+        assertTrue(store.size() <= 64);
+    }
+
+    private IndexedCacheStore store(int capacity) {
+        return new IndexedCacheStore(listener -> new SegmentedLruCacheStore<>(1, capacity, listener),
+                new EmployeeIndex(), (key, value) -> evicted.add(key));
+    }
+
+    private static List<Long> ids(List<Employee> employees) {
+        return employees.stream().map(Employee::getId).toList();
+    }
+}
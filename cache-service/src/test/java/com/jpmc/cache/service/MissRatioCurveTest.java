@@ -0,0 +1,93 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test class for {@link MissRatioCurve}. Cyclic reads over a fixed set of keys
+ * miss at every LRU size below the set and hit from it on, which the curve must
+ * reproduce exactly with every key sampled, and approximately with a sample of them,
+ * including once the read times have been compacted and keys forgotten.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class MissRatioCurveTest
+{
+    @Test
+    void testCyclicReadsHitOnlyInCacheHoldingTheWholeCycle() {
+        MissRatioCurve curve = new MissRatioCurve(1.0, 1024, Long.MAX_VALUE);
+        assertEquals(1.0, curve.missRatio(1000));
+
+        cycle(curve, 100, 10);
+
+        // The first round misses at every size
+        assertEquals(1000, curve.getSamples());
+        assertEquals(1.0, curve.missRatio(50));
+        assertEquals(1.0, curve.missRatio(99));
+        assertEquals(0.1, curve.missRatio(100), 1e-9);
+        assertEquals(0.1, curve.missRatio(10_000), 1e-9);
+    }
+
+    @Test
+    void testDistancesSurviveCompactionOfReadTimes() {
+        // 32 read times for 16 keys, so a cycle over 4 keys is compacted every 28 reads
+        MissRatioCurve curve = new MissRatioCurve(1.0, 16, Long.MAX_VALUE);
+        cycle(curve, 4, 100);
+
+        assertEquals(1.0, curve.missRatio(3));
+        assertEquals(0.01, curve.missRatio(4), 1e-9);
+    }
+
+    @Test
+    void testKeysBeyondTrackedOnesAlwaysMiss() {
+        MissRatioCurve curve = new MissRatioCurve(1.0, 4, Long.MAX_VALUE);
+        cycle(curve, 5, 20);
+
+        assertEquals(1.0, curve.missRatio(1_000_000));
+        assertEquals(4, curve.getMaxCoveredSize());
+    }
+
+    @Test
+    void testSampledKeysEstimateTheCurveOfAllKeys() {
+        MissRatioCurve curve = new MissRatioCurve(0.1, 4096, Long.MAX_VALUE);
+        cycle(curve, 10_000, 5);
+
+        assertTrue(curve.getSamples() > 4000 && curve.getSamples() < 6000, "samples " + curve.getSamples());
+        assertEquals(1.0, curve.missRatio(8000));
+        assertEquals(0.2, curve.missRatio(12_000), 1e-9);
+
+        List<MissRatioCurve.Point> points = curve.curve(4);
+        assertEquals(40_960, points.get(3).size());
+        assertEquals(0.2, points.get(3).missRatio(), 1e-9);
+    }
+
+    @Test
+    void testCountsAreHalvedAfterDecaySamples() {
+        MissRatioCurve curve = new MissRatioCurve(1.0, 1024, 100);
+        cycle(curve, 10, 50);
+
+        assertTrue(curve.getSamples() < 100);
+        // Cold misses of the first round fade away
+        assertTrue(curve.missRatio(10) < 0.05);
+
+        curve.reset();
+        assertEquals(0, curve.getSamples());
+        assertEquals(1.0, curve.missRatio(10));
+    }
+
+    private static void cycle(MissRatioCurve curve, int keys, int rounds) {
+        for (int round = 0; round < rounds; round++) {
+            for (long id = 0; id < keys; id++) {
+                curve.record(id);
+            }
+        }
+    }
+}
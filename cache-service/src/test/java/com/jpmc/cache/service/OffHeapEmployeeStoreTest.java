@@ -0,0 +1,184 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static com.jpmc.cache.TestEmployees.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.jpmc.cache.model.Employee;
+
+/**
+ * Unit test class for {@link OffHeapEmployeeStore}.
+ * Covers the binary round trip of entries, eviction by byte budget in LRU order,
+ * compaction of the arena and the size invariants under concurrent access.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class OffHeapEmployeeStoreTest
+{
+    /** Size of an encoded employee named "test" followed by a single digit. */
+    private static final int RECORD_BYTES = EmployeeCodec.HEADER_BYTES + 5;
+
+    private List<Employee> evicted;
+    private OffHeapEmployeeStore store;
+
+    @BeforeEach
+    public void setup() {
+        evicted = new ArrayList<>();
+        // A single segment with room for three records
+        store = new OffHeapEmployeeStore(1, 3 * RECORD_BYTES, (key, value) -> evicted.add(value));
+    }
+
+    @Test
+    void testEntryRoundTrip() {
+        Employee unnamed = new Employee();
+        unnamed.setId(-7L);
+
+        store.put(1L, employee(1L, "Zoë Ñandú", 1234.5));
+        store.put(-7L, unnamed);
+
+        Employee fetched = store.get(1L);
+        assertEquals(1L, fetched.getId());
+        assertEquals("Zoë Ñandú", fetched.getName());
+        assertEquals(1234.5, fetched.getSalary());
+        assertNull(store.get(-7L).getName());
+        assertNull(store.get(-7L).getSalary());
+        assertNull(store.get(2L));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedEntryWhenBudgetIsExhausted() {
+        store.put(1L, employee(1L));
+        store.put(2L, employee(2L));
+        store.put(3L, employee(3L));
+
+        // Touch entry 1 so that entry 2 becomes the least recently used
+        store.get(1L);
+        store.put(4L, employee(4L));
+
+        assertEquals(1, evicted.size());
+        assertEquals(2L, evicted.get(0).getId());
+        assertEquals("test2", evicted.get(0).getName());
+        assertEquals(3, store.size());
+        assertEquals(Set.of(1L, 3L, 4L), store.keySet());
+    }
+
+    @Test
+    void testCompactsArenaInsteadOfEvicting() {
+        store.put(1L, employee(1L));
+        store.put(2L, employee(2L));
+        store.put(3L, employee(3L));
+
+        // Removing and replacing entries leaves garbage that is reclaimed by compaction
+        assertEquals("test1", store.remove(1L).getName());
+        assertEquals("test2", store.put(2L, employee(2L, "test5", 5.0)).getName());
+        store.put(4L, employee(4L));
+
+        assertTrue(evicted.isEmpty());
+        assertEquals(3, store.size());
+        assertEquals(3L * RECORD_BYTES, store.getUsedBytes());
+        assertEquals("test5", store.get(2L).getName());
+        assertEquals("test3", store.get(3L).getName());
+        assertEquals("test4", store.get(4L).getName());
+    }
+
+    @Test
+    void testEntryLargerThanSegmentGoesStraightToListener() {
+        Employee large = employee(9L, "x".repeat(4 * RECORD_BYTES), 1.0);
+
+        store.put(9L, large);
+
+        assertEquals(List.of(large), evicted);
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    void testClearAndRemoveDoNotNotifyListener() {
+        store.put(1L, employee(1L));
+        store.put(2L, employee(2L));
+
+        store.remove(1L);
+        store.clear();
+        store.put(3L, employee(3L));
+
+        assertTrue(evicted.isEmpty());
+        assertEquals(1, store.size());
+        assertEquals(RECORD_BYTES, store.getUsedBytes());
+    }
+
+    @Test
+    void testRejectsBudgetTooSmallForSegments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new OffHeapEmployeeStore(16, 16, (key, value) -> { }));
+    }
+
+    @Test
+    void testConcurrentGetAndPutKeepSizeInvariants() throws Exception {
+        int threads = 32;
+        int operationsPerThread = 20_000;
+        int keySpace = 20_000;
+        Set<Long> evictedIds = ConcurrentHashMap.newKeySet();
+        OffHeapEmployeeStore concurrentStore = new OffHeapEmployeeStore(16, 256 * 1024,
+                (key, value) -> {
+                    assertEquals(key, value.getId());
+                    evictedIds.add(key);
+                });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < operationsPerThread; i++) {
+                    long id = random.nextInt(keySpace);
+                    if (random.nextBoolean()) {
+                        Employee employee = concurrentStore.get(id);
+                        if (employee != null) {
+                            assertEquals("test" + id, employee.getName());
+                        }
+                    }
+                    else {
+                        concurrentStore.put(id, employee(id));
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // The budget was exceeded, and the size matches the entries actually held
+        assertTrue(evictedIds.size() > 0);
+        assertEquals(concurrentStore.size(), concurrentStore.keySet().size());
+        assertTrue(concurrentStore.getUsedBytes() <= concurrentStore.getMaxBytes());
+        for (Long id : concurrentStore.keySet()) {
+            assertNotNull(concurrentStore.get(id));
+        }
+    }
+}
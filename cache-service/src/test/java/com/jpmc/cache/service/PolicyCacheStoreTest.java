@@ -0,0 +1,165 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test class for {@link PolicyCacheStore} and the {@link EvictionPolicy}
+ * implementations it delegates to.
+ * Verifies the victim chosen by each policy, the admission of new entries by
+ * W-TinyLFU and the expiry of entries after write and after access.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class PolicyCacheStoreTest
+{
+    private List<Long> evicted;
+    private long now;
+
+    @BeforeEach
+    public void setup() {
+        evicted = new ArrayList<>();
+        now = 0;
+    }
+
+    @Test
+    void testLruEvictsLeastRecentlyUsed() {
+        PolicyCacheStore<Long, String> store = store(new LruPolicy<>(), 3);
+        store.put(1L, "one");
+        store.put(2L, "two");
+        store.put(3L, "three");
+
+        store.get(1L);
+        store.put(4L, "four");
+
+        assertEquals(List.of(2L), evicted);
+        assertEquals(Set.of(1L, 3L, 4L), store.keySet());
+    }
+
+    @Test
+    void testLfuEvictsLeastFrequentlyUsed() {
+        PolicyCacheStore<Long, String> store = store(new LfuPolicy<>(), 3);
+        store.put(1L, "one");
+        store.put(2L, "two");
+        store.put(3L, "three");
+
+        // Entry 3 is the most recently used, but entries 1 and 2 were read more often
+        store.get(1L);
+        store.get(2L);
+        store.get(1L);
+        store.get(3L);
+        store.get(2L);
+        store.put(4L, "four");
+        store.put(5L, "five");
+
+        // Ties between entries read once are broken in LRU order
+        assertEquals(List.of(3L, 4L), evicted);
+        assertEquals(Set.of(1L, 2L, 5L), store.keySet());
+    }
+
+    @Test
+    void testTinyLfuRejectsCandidateAccessedLessThanVictim() {
+        PolicyCacheStore<Long, String> store = store(new TinyLfuPolicy<>(10), 10);
+        for (long id = 1; id <= 10; id++) {
+            store.put(id, "hot" + id);
+            store.get(id);
+            store.get(id);
+        }
+
+        // A scan of one-off IDs goes through the admission window without displacing hot entries
+        for (long id = 100; id < 120; id++) {
+            store.put(id, "cold" + id);
+        }
+
+        assertEquals(10, store.size());
+        assertTrue(store.keySet().containsAll(Set.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L)));
+        assertEquals(20, evicted.size());
+        assertTrue(evicted.stream().allMatch(id -> id == 10L || id >= 100L));
+    }
+
+    @Test
+    void testTinyLfuAdmitsCandidateAccessedMoreThanVictim() {
+        PolicyCacheStore<Long, String> store = store(new TinyLfuPolicy<>(2), 2);
+        store.put(1L, "one");
+        store.put(2L, "two");
+
+        // Entry 2, still in the admission window, is read more often than entry 1
+        for (int i = 0; i < 3; i++) {
+            store.get(2L);
+        }
+        store.put(3L, "three");
+
+        assertEquals(List.of(1L), evicted);
+        assertEquals(Set.of(2L, 3L), store.keySet());
+    }
+
+    @Test
+    void testEntriesExpireAfterWrite() {
+        PolicyCacheStore<Long, String> store = store(new TtlPolicy<>(100, 0, () -> now * 1_000_000L), 10);
+        store.put(1L, "one");
+        now = 60;
+        store.put(2L, "two");
+        assertEquals("one", store.get(1L));
+
+        // Reads do not extend the time to live of entry 1, and expired entries are evicted
+        now = 100;
+        assertNull(store.get(1L));
+        assertEquals(List.of(1L), evicted);
+        assertEquals("two", store.get(2L));
+
+        // Writes purge entries that expired without being read
+        now = 160;
+        store.put(3L, "three");
+        assertEquals(List.of(1L, 2L), evicted);
+        assertEquals(Set.of(3L), store.keySet());
+    }
+
+    @Test
+    void testEntriesExpireAfterAccess() {
+        PolicyCacheStore<Long, String> store = store(new TtlPolicy<>(0, 100, () -> now * 1_000_000L), 10);
+        store.put(1L, "one");
+        store.put(2L, "two");
+
+        // Entry 1 is kept alive by reads, entry 2 expires
+        for (now = 50; now <= 200; now += 50) {
+            assertEquals("one", store.get(1L));
+        }
+        store.put(3L, "three");
+
+        assertEquals(List.of(2L), evicted);
+        assertEquals(Set.of(1L, 3L), store.keySet());
+    }
+
+    @Test
+    void testLoweringCapacityEvictsAndClearDoesNotNotify() {
+        PolicyCacheStore<Long, String> store = store(new LruPolicy<>(), 3);
+        store.put(1L, "one");
+        store.put(2L, "two");
+        store.put(3L, "three");
+
+        store.setCapacity(1);
+        assertEquals(List.of(1L, 2L), evicted);
+        assertEquals(1, store.size());
+
+        store.clear();
+        store.put(4L, "four");
+        assertEquals(List.of(1L, 2L), evicted);
+        assertEquals(Set.of(4L), store.keySet());
+    }
+
+    private PolicyCacheStore<Long, String> store(EvictionPolicy<Long> policy, int capacity) {
+        return new PolicyCacheStore<>(policy, capacity, (key, value) -> evicted.add(key));
+    }
+}
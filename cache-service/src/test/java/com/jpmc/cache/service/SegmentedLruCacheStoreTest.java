@@ -0,0 +1,170 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test class for {@link SegmentedLruCacheStore}.
+ * Covers the LRU eviction order, the eviction callback contract and the size and
+ * eviction invariants of the store under heavy concurrent reads and writes.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class SegmentedLruCacheStoreTest
+{
+    private List<Long> evicted;
+    private SegmentedLruCacheStore<Long, String> store;
+
+    @BeforeEach
+    public void setup() {
+        evicted = new ArrayList<>();
+        store = new SegmentedLruCacheStore<>(16, 3, (key, value) -> evicted.add(key));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedEntry() {
+        store.put(1L, "one");
+        store.put(2L, "two");
+        store.put(3L, "three");
+
+        // Touch entry 1 so that entry 2 becomes the least recently used
+        store.get(1L);
+        store.put(4L, "four");
+
+        assertEquals(List.of(2L), evicted);
+        assertEquals(3, store.size());
+        assertNull(store.get(2L));
+    }
+
+    @Test
+    void testReplacingExistingKeyDoesNotEvict() {
+        store.put(1L, "one");
+        store.put(2L, "two");
+        store.put(3L, "three");
+
+        assertEquals("one", store.put(1L, "uno"));
+
+        assertTrue(evicted.isEmpty());
+        assertEquals("uno", store.get(1L));
+    }
+
+    @Test
+    void testPutIfAbsentKeepsCachedValue() {
+        store.put(1L, "one");
+
+        assertEquals("one", store.putIfAbsent(1L, "uno"));
+        assertNull(store.putIfAbsent(2L, "two"));
+
+        assertEquals("one", store.get(1L));
+        assertEquals("two", store.get(2L));
+    }
+
+    @Test
+    void testHottestKeysAreOrderedByRecencyAcrossSegments() {
+        store.put(1L, "one");
+        store.put(2L, "two");
+        store.put(3L, "three");
+        store.get(1L);
+
+        assertEquals(List.of(1L, 3L, 2L), store.hottestKeys(3));
+        assertEquals(List.of(1L, 3L), store.hottestKeys(2));
+    }
+
+    @Test
+    void testRemoveAndClearDoNotNotifyListener() {
+        store.put(1L, "one");
+        store.put(2L, "two");
+
+        assertEquals("one", store.remove(1L));
+        store.clear();
+
+        assertTrue(evicted.isEmpty());
+        assertTrue(store.isEmpty());
+        assertTrue(store.keySet().isEmpty());
+    }
+
+    @Test
+    void testLoweringCapacityEvictsOldestEntries() {
+        store.put(1L, "one");
+        store.put(2L, "two");
+        store.put(3L, "three");
+
+        store.setCapacity(1);
+
+        assertEquals(List.of(1L, 2L), evicted);
+        assertEquals(1, store.size());
+        assertEquals("three", store.get(3L));
+    }
+
+    @Test
+    void testConcurrentGetAndPutKeepSizeAndEvictionInvariants() throws Exception {
+        int capacity = 1_000;
+        int keySpace = 10_000;
+        int threads = 48;
+        int operationsPerThread = 20_000;
+
+        Map<Long, Integer> evictions = new ConcurrentHashMap<>();
+        AtomicInteger inserts = new AtomicInteger();
+        SegmentedLruCacheStore<Long, String> concurrentStore = new SegmentedLruCacheStore<>(16, capacity,
+                (key, value) -> {
+                    assertEquals(String.valueOf(key), value);
+                    evictions.merge(key, 1, Integer::sum);
+                });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < operationsPerThread; i++) {
+                    long key = random.nextInt(keySpace);
+                    if (random.nextInt(10) < 8) {
+                        String value = concurrentStore.get(key);
+                        if (value != null) {
+                            assertEquals(String.valueOf(key), value);
+                        }
+                    }
+                    else if (concurrentStore.put(key, String.valueOf(key)) == null) {
+                        inserts.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        int evictionCount = evictions.values().stream().mapToInt(Integer::intValue).sum();
+
+        // The store is full, never above capacity, and every insert is either cached or evicted
+        assertEquals(capacity, concurrentStore.size());
+        assertEquals(capacity, concurrentStore.keySet().size());
+        assertEquals(inserts.get(), concurrentStore.size() + evictionCount);
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static com.jpmc.cache.TestEmployees.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.jpmc.cache.model.Employee;
+
+/**
+ * Unit test class for {@link WriteAheadLog}.
+ * Verifies that logged adds and removals are replayed when the log is reopened, that
+ * entries saved to the database are not recovered again, and that checkpoints and
+ * torn records leave a consistent log.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class WriteAheadLogTest
+{
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    private WriteAheadLog writeAheadLog;
+
+    @AfterEach
+    public void tearDown() {
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+    }
+
+    @Test
+    void testReplaysAddsRemovesAndClears() {
+        writeAheadLog = open();
+        writeAheadLog.logAdd(employee(1L, "test1"));
+        writeAheadLog.logAdd(employee(2L, "test2"));
+        writeAheadLog.logAdd(employee(1L, "renamed1"));
+        writeAheadLog.logRemove(2L);
+        writeAheadLog.sync(writeAheadLog.logAdd(employee(3L, null)));
+
+        Map<Long, Employee> recovered = reopen().getRecovered();
+
+        assertEquals(List.of(1L, 3L), List.copyOf(recovered.keySet()));
+        assertEquals("renamed1", recovered.get(1L).getName());
+        assertEquals(3000.0, recovered.get(3L).getSalary());
+
+        writeAheadLog.logClear();
+        writeAheadLog.logAdd(employee(4L, "test4"));
+        assertEquals(List.of(4L), List.copyOf(reopen().getRecovered().keySet()));
+    }
+
+    @Test
+    void testFlushedEntryIsOnlyForgottenIfNotAddedAgain() {
+        writeAheadLog = open();
+        Employee first = employee(1L, "test1");
+        Employee second = employee(2L, "test2");
+        writeAheadLog.logAdd(first);
+        writeAheadLog.logAdd(second);
+        writeAheadLog.logFlushed(first);
+
+        // Entry 2 was updated while its previous value was being saved
+        writeAheadLog.logAdd(employee(2L, "renamed2"));
+        writeAheadLog.logFlushed(second);
+
+        Map<Long, Employee> recovered = reopen().getRecovered();
+
+        assertEquals(List.of(2L), List.copyOf(recovered.keySet()));
+        assertEquals("renamed2", recovered.get(2L).getName());
+    }
+
+    @Test
+    void testRollsSegmentsAndCompactsThemOnCheckpoint() throws IOException {
+        writeAheadLog = open();
+        for (long id = 1; id <= 200; id++) {
+            writeAheadLog.logAdd(employee(id % 20, "test" + id));
+        }
+        assertTrue(files("wal-") > 1);
+
+        writeAheadLog.checkpoint();
+        writeAheadLog.logRemove(5L);
+
+        // The closed segments are replaced by a checkpoint of the 20 live entries
+        assertEquals(1, files("checkpoint-"));
+        assertEquals(1, files("wal-"));
+        Map<Long, Employee> recovered = reopen().getRecovered();
+        assertEquals(19, recovered.size());
+        assertEquals("test200", recovered.get(0L).getName());
+        assertEquals("test199", recovered.get(19L).getName());
+    }
+
+    @Test
+    void testCheckpointForcesSegmentItCloses() throws IOException {
+        writeAheadLog = open();
+        long sequence = writeAheadLog.logAdd(employee(1L, "test1"));
+
+        // Syncing after the checkpoint only forces the new segment, the closed one was forced as it rolled
+        writeAheadLog.checkpoint();
+        assertEquals(sequence, (long) ReflectionTestUtils.getField(writeAheadLog, "durable"));
+        writeAheadLog.sync(sequence);
+        writeAheadLog.logAdd(employee(2L, "test2"));
+
+        assertEquals(List.of(1L, 2L), List.copyOf(reopen().getRecovered().keySet()));
+    }
+
+    @Test
+    void testIgnoresTornRecordAtEndOfSegment() throws IOException {
+        writeAheadLog = open();
+        writeAheadLog.logAdd(employee(1L, "test1"));
+        writeAheadLog.logAdd(employee(2L, "test2"));
+        writeAheadLog.close();
+
+        // Corrupt the last byte of the second record, as if the process died while writing it
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.getFileName().toString().startsWith("wal-")).findFirst().get();
+        }
+        int recordBytes = 8 + 1 + EmployeeCodec.HEADER_BYTES + 5;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 42 }), 2L * recordBytes - 1);
+        }
+        writeAheadLog = null;
+
+        assertEquals(List.of(1L), List.copyOf(reopen().getRecovered().keySet()));
+    }
+
+    @Test
+    void testConcurrentCommitsAreAllDurable() throws Exception {
+        writeAheadLog = new WriteAheadLog(directory, 1 << 20, true, 0);
+        writeAheadLog.open();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long base = t * 1000L;
+            futures.add(executor.submit(() -> {
+                for (long id = base; id < base + 100; id++) {
+                    writeAheadLog.sync(writeAheadLog.logAdd(employee(id, "test" + id)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(800, reopen().getRecovered().size());
+    }
+
+    private WriteAheadLog open() {
+        WriteAheadLog opened = new WriteAheadLog(directory, SEGMENT_BYTES, true, 0);
+        opened.open();
+        return opened;
+    }
+
+    private WriteAheadLog reopen() {
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+        writeAheadLog = open();
+        return writeAheadLog;
+    }
+
+    private long files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).count();
+        }
+    }
+}
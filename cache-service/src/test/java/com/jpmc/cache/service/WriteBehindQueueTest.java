@@ -0,0 +1,209 @@
+/**
+ *
+ */
+package com.jpmc.cache.service;
+
+import static com.jpmc.cache.TestEmployees.employee;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.jpmc.cache.model.Employee;
+import com.jpmc.cache.repository.EmployeeRepository;
+
+/**
+ * Unit test class for {@link WriteBehindQueue}.
+ * Verifies that evicted entries are saved in batches, stay readable until they are
+ * flushed, and that a full queue pushes back on the producer instead of dropping writes.
+ *
+ * @author r.pandiarajan
+ *
+ */
+class WriteBehindQueueTest
+{
+    @Mock
+    EmployeeRepository employeeRepository;
+
+    private WriteBehindQueue writeBehindQueue;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (writeBehindQueue != null) {
+            writeBehindQueue.shutdown();
+        }
+    }
+
+    @Test
+    void testFlushesFullBatchWithSaveAll() {
+        writeBehindQueue = new WriteBehindQueue(employeeRepository, 100, 3, 60_000, 10);
+        writeBehindQueue.start();
+
+        writeBehindQueue.enqueue(employee(1L));
+        writeBehindQueue.enqueue(employee(2L));
+        writeBehindQueue.enqueue(employee(3L));
+
+        // The batch is full, so it is flushed without waiting for the interval
+        assertEquals(List.of(1L, 2L, 3L), savedIds(1).get(0));
+    }
+
+    @Test
+    void testFlushesPartialBatchAfterInterval() {
+        writeBehindQueue = new WriteBehindQueue(employeeRepository, 100, 100, 50, 10);
+        writeBehindQueue.start();
+
+        writeBehindQueue.enqueue(employee(1L));
+
+        assertEquals(List.of(1L), savedIds(1).get(0));
+    }
+
+    @Test
+    void testPendingEntryIsReadableUntilFlushed() {
+        writeBehindQueue = new WriteBehindQueue(employeeRepository, 100, 100, 60_000, 10);
+        Employee entry = employee(1L);
+
+        writeBehindQueue.enqueue(entry);
+        assertSame(entry, writeBehindQueue.get(1L));
+
+        writeBehindQueue.flush();
+        assertNull(writeBehindQueue.get(1L));
+        assertEquals(0, writeBehindQueue.size());
+    }
+
+    @Test
+    void testRepeatedEvictionsCollapseIntoOneWrite() {
+        writeBehindQueue = new WriteBehindQueue(employeeRepository, 100, 100, 60_000, 10);
+        Employee latest = employee(1L);
+
+        writeBehindQueue.enqueue(employee(1L));
+        writeBehindQueue.enqueue(latest);
+        writeBehindQueue.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<Employee>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(employeeRepository, times(1)).saveAll(captor.capture());
+        List<Employee> saved = new ArrayList<>();
+        captor.getValue().forEach(saved::add);
+        assertEquals(List.of(latest), saved);
+    }
+
+    @Test
+    void testCancelledEntryIsNotWritten() {
+        writeBehindQueue = new WriteBehindQueue(employeeRepository, 100, 100, 60_000, 10);
+
+        writeBehindQueue.enqueue(employee(1L));
+        writeBehindQueue.cancel(1L);
+        writeBehindQueue.flush();
+
+        assertNull(writeBehindQueue.get(1L));
+        verify(employeeRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void testFlushSavesEntriesTakenByFlusher() {
+        writeBehindQueue = new WriteBehindQueue(employeeRepository, 100, 100, 60_000, 10);
+        writeBehindQueue.enqueue(employee(1L));
+
+        // As if the background flusher had collected the ID into its next batch
+        ((BlockingQueue<?>) ReflectionTestUtils.getField(writeBehindQueue, "queue")).clear();
+        writeBehindQueue.flush();
+
+        assertEquals(List.of(1L), savedIds(1).get(0));
+        assertEquals(0, writeBehindQueue.size());
+    }
+
+    @Test
+    void testReclaimDoesNotWaitForBatchBeingSaved() throws InterruptedException {
+        writeBehindQueue = new WriteBehindQueue(employeeRepository, 100, 100, 60_000, 10);
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(employeeRepository.saveAll(any())).thenAnswer(invocation -> {
+            saving.countDown();
+            release.await();
+            return List.of();
+        });
+        Employee entry = employee(1L);
+        Employee other = employee(2L);
+        writeBehindQueue.enqueue(entry);
+        writeBehindQueue.enqueue(other);
+        Thread flusher = new Thread(writeBehindQueue::flush);
+        flusher.start();
+        assertTrue(saving.await(5, TimeUnit.SECONDS));
+
+        // Put back into the cache while its batch is being saved
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> writeBehindQueue.cancel(1L, entry));
+        assertNull(writeBehindQueue.get(1L));
+        release.countDown();
+        flusher.join();
+        assertEquals(0, writeBehindQueue.size());
+    }
+
+    @Test
+    void testFullQueueSavesOnCallingThread() {
+        writeBehindQueue = new WriteBehindQueue(employeeRepository, 1, 100, 60_000, 10);
+
+        writeBehindQueue.enqueue(employee(1L));
+        writeBehindQueue.enqueue(employee(2L));
+
+        // The second entry did not fit in the queue and was saved by the producer
+        assertEquals(List.of(2L), savedIds(1).get(0));
+        assertNull(writeBehindQueue.get(2L));
+        assertEquals(1, writeBehindQueue.size());
+    }
+
+    @Test
+    void testFailedFlushKeepsEntriesPending() {
+        writeBehindQueue = new WriteBehindQueue(employeeRepository, 100, 100, 60_000, 10);
+        when(employeeRepository.saveAll(any())).thenThrow(new IllegalStateException("DB down")).thenReturn(List.of());
+
+        writeBehindQueue.enqueue(employee(1L));
+        writeBehindQueue.flush();
+        assertEquals(1, writeBehindQueue.size());
+        assertEquals(1, writeBehindQueue.metrics.getWriteBackFailures());
+
+        writeBehindQueue.flush();
+        assertEquals(0, writeBehindQueue.size());
+        verify(employeeRepository, times(2)).saveAll(any());
+        assertEquals(2, writeBehindQueue.metrics.getEvictionSaves().count());
+    }
+
+    private List<List<Long>> savedIds(int expectedCalls) {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Iterable<Employee>> captor = ArgumentCaptor.forClass(Iterable.class);
+        verify(employeeRepository, timeout(5_000).times(expectedCalls)).saveAll(captor.capture());
+        List<List<Long>> batches = new ArrayList<>();
+        for (Iterable<Employee> batch : captor.getAllValues()) {
+            List<Long> ids = new ArrayList<>();
+            batch.forEach(employee -> ids.add(employee.getId()));
+            batches.add(ids);
+        }
+        return batches;
+    }
+}